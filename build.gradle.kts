@@ -20,6 +20,15 @@ repositories {
     mavenCentral()
 }
 
+// JMH benchmarks live in their own source set so they are never shipped with the library.
+val jmh: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+configurations[jmh.implementationConfigurationName].extendsFrom(configurations.implementation.get())
+configurations[jmh.runtimeOnlyConfigurationName].extendsFrom(configurations.runtimeOnly.get())
+
 dependencies {
     implementation("org.jetbrains:annotations:26.0.2-1")
     implementation("org.slf4j:slf4j-api:2.0.17")
@@ -28,6 +37,9 @@ dependencies {
     testImplementation(platform("org.junit:junit-bom:5.10.0"))
     testImplementation("org.junit.jupiter:junit-jupiter")
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
 }
 
 java {
@@ -35,6 +47,11 @@ java {
     withJavadocJar()
 }
 
+// The library targets Java 17; compiling with --release keeps newer JDK APIs out of it.
+tasks.withType<JavaCompile> {
+    options.release.set(17)
+}
+
 tasks.jar {
     from(project.projectDir) {
         include("LICENSE", "LICENSE-FABRIC", "NOTICE")
@@ -46,6 +63,25 @@ tasks.test {
     useJUnitPlatform()
 }
 
+// Run with `./gradlew jmh`, optionally passing a benchmark regex with `-PjmhInclude=TransactionBenchmark`.
+// Results are written as JSON (ops/s plus the gc profiler allocation rates) so they can be compared across releases.
+tasks.register<JavaExec>("jmh") {
+    group = "benchmark"
+    description = "Runs the JMH benchmarks and writes the results to build/reports/jmh/results.json."
+    dependsOn(jmh.classesTaskName)
+
+    val resultFile = layout.buildDirectory.file("reports/jmh/results.json")
+
+    classpath = jmh.runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    args("-rf", "json", "-rff", resultFile.get().asFile.absolutePath, "-prof", "gc")
+    providers.gradleProperty("jmhInclude").orNull?.let { args(it) }
+
+    doFirst {
+        resultFile.get().asFile.parentFile.mkdirs()
+    }
+}
+
 // Use default javadoc doclint settings (strict) so we can surface missing tags and improve docs.
 
 // Register common custom Javadoc tags so we can use tags such as @apiNote and @implSpec
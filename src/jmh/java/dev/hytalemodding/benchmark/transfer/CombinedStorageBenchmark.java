@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2025 Shai List and contributors
+ * Licensed under the MIT license. See LICENSE file in the project root for details.
+ */
+
+package dev.hytalemodding.benchmark.transfer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import dev.hytalemodding.api.transfer.v1.storage.StorageView;
+import dev.hytalemodding.api.transfer.v1.storage.base.CombinedStorage;
+import dev.hytalemodding.api.transfer.v1.transaction.Transaction;
+import dev.hytalemodding.benchmark.transfer.utils.BenchmarkStorage;
+import dev.hytalemodding.benchmark.transfer.utils.BenchmarkVariant;
+
+/**
+ * Operations on a {@link CombinedStorage} where every part but the last is full of another resource,
+ * which is the worst case for the linear part scan. With {@code routing}, the storage remembers which part handled the resource.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CombinedStorageBenchmark {
+    private static final BenchmarkVariant STONE = BenchmarkVariant.of("stone");
+    private static final BenchmarkVariant DIRT = BenchmarkVariant.of("dirt");
+
+    @Param({"1", "10", "100", "1000", "10000"})
+    public int parts;
+
+    @Param({"false", "true"})
+    public boolean routing;
+
+    private CombinedStorage<BenchmarkVariant, BenchmarkStorage> storage;
+
+    @Setup
+    public void setup() {
+        storage = BenchmarkStorage.slotted(parts, 64, DIRT, 64, 1);
+
+        if (routing) {
+            storage = new CombinedStorage<>(storage.parts, true);
+        }
+
+        BenchmarkStorage last = storage.parts.get(parts - 1);
+        last.variant = STONE;
+        last.amount = 32;
+    }
+
+    @Benchmark
+    public long insertAborted() {
+        try (Transaction transaction = Transaction.openOuter()) {
+            return storage.insert(STONE, 16, transaction);
+        }
+    }
+
+    @Benchmark
+    public long extractAborted() {
+        try (Transaction transaction = Transaction.openOuter()) {
+            return storage.extract(STONE, 16, transaction);
+        }
+    }
+
+    @Benchmark
+    public void iterate(Blackhole blackhole) {
+        for (StorageView<BenchmarkVariant> view : storage) {
+            blackhole.consume(view.getAmount());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2025 Shai List and contributors
+ * Licensed under the MIT license. See LICENSE file in the project root for details.
+ */
+
+package dev.hytalemodding.benchmark.transfer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dev.hytalemodding.api.transfer.v1.transaction.Transaction;
+import dev.hytalemodding.benchmark.transfer.utils.BenchmarkStorage;
+import dev.hytalemodding.benchmark.transfer.utils.BenchmarkVariant;
+
+/**
+ * Insertion and extraction into a single {@link dev.hytalemodding.api.transfer.v1.storage.base.SingleVariantStorage},
+ * inside committed and aborted transactions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SingleVariantStorageBenchmark {
+    private static final BenchmarkVariant STONE = BenchmarkVariant.of("stone");
+
+    private BenchmarkStorage storage;
+
+    @Setup
+    public void setup() {
+        storage = new BenchmarkStorage(1_000_000);
+        storage.variant = STONE;
+        storage.amount = 500_000;
+    }
+
+    @Benchmark
+    public long insertCommitted() {
+        long inserted;
+
+        try (Transaction transaction = Transaction.openOuter()) {
+            inserted = storage.insert(STONE, 1, transaction);
+            transaction.commit();
+        }
+
+        // Keep the amount stable across invocations.
+        try (Transaction transaction = Transaction.openOuter()) {
+            storage.extract(STONE, inserted, transaction);
+            transaction.commit();
+        }
+
+        return inserted;
+    }
+
+    @Benchmark
+    public long insertAborted() {
+        try (Transaction transaction = Transaction.openOuter()) {
+            return storage.insert(STONE, 1, transaction);
+        }
+    }
+
+    @Benchmark
+    public long extractAborted() {
+        try (Transaction transaction = Transaction.openOuter()) {
+            return storage.extract(STONE, 1, transaction);
+        }
+    }
+
+    @Benchmark
+    public long insertExtractNestedAborted() {
+        try (Transaction transaction = Transaction.openOuter()) {
+            long moved;
+
+            try (Transaction nested = transaction.openNested()) {
+                moved = storage.insert(STONE, 10, nested);
+                nested.commit();
+            }
+
+            try (Transaction nested = transaction.openNested()) {
+                moved += storage.extract(STONE, 20, nested);
+                nested.commit();
+            }
+
+            return moved;
+        }
+    }
+}
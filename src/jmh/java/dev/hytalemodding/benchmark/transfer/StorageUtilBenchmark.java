@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2025 Shai List and contributors
+ * Licensed under the MIT license. See LICENSE file in the project root for details.
+ */
+
+package dev.hytalemodding.benchmark.transfer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dev.hytalemodding.api.transfer.v1.storage.SlottedStorage;
+import dev.hytalemodding.api.transfer.v1.storage.StorageUtil;
+import dev.hytalemodding.api.transfer.v1.storage.base.ResourceAmount;
+import dev.hytalemodding.api.transfer.v1.transaction.Transaction;
+import dev.hytalemodding.benchmark.transfer.utils.BenchmarkStorage;
+import dev.hytalemodding.benchmark.transfer.utils.BenchmarkVariant;
+
+/**
+ * {@link StorageUtil} helpers over slotted storages of increasing size.
+ * Every operation runs in an aborted transaction so that the storages stay in the same state between invocations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StorageUtilBenchmark {
+    private static final BenchmarkVariant STONE = BenchmarkVariant.of("stone");
+
+    @Param({"9", "100", "1000", "10000", "100000"})
+    public int slots;
+
+    /** {@code combined} uses a {@link dev.hytalemodding.api.transfer.v1.storage.base.CombinedSlottedStorage}, {@code indexed} an {@link dev.hytalemodding.api.transfer.v1.storage.base.IndexedSlottedStorage},
+     * {@code array} an {@link dev.hytalemodding.api.transfer.v1.storage.base.ArraySlottedStorage},
+     * {@code offheap} an {@link dev.hytalemodding.api.transfer.v1.storage.base.OffHeapSlottedStorage},
+     * {@code paletted} a {@link dev.hytalemodding.api.transfer.v1.storage.base.PalettedSlottedStorage}. */
+    @Param({"combined", "indexed", "array", "offheap", "paletted"})
+    public String layout;
+
+    private SlottedStorage<BenchmarkVariant> source;
+    private SlottedStorage<BenchmarkVariant> target;
+
+    @Setup
+    public void setup() {
+        // The source has a stack in every 8th slot, the target is half full so that stacking has to skip a lot of slots.
+        if (layout.equals("indexed")) {
+            source = BenchmarkStorage.indexed(slots, 64, STONE, 64, 8);
+            target = BenchmarkStorage.indexed(slots, 64, STONE, 64, 2);
+        } else if (layout.equals("array")) {
+            source = BenchmarkStorage.array(slots, 64, STONE, 64, 8);
+            target = BenchmarkStorage.array(slots, 64, STONE, 64, 2);
+        } else if (layout.equals("offheap")) {
+            source = BenchmarkStorage.offHeap(slots, 64, STONE, 64, 8);
+            target = BenchmarkStorage.offHeap(slots, 64, STONE, 64, 2);
+        } else if (layout.equals("paletted")) {
+            source = BenchmarkStorage.paletted(slots, 64, STONE, 64, 8);
+            target = BenchmarkStorage.paletted(slots, 64, STONE, 64, 2);
+        } else {
+            source = BenchmarkStorage.slotted(slots, 64, STONE, 64, 8);
+            target = BenchmarkStorage.slotted(slots, 64, STONE, 64, 2);
+        }
+    }
+
+    @Benchmark
+    public long move() {
+        try (Transaction transaction = Transaction.openOuter()) {
+            return StorageUtil.move(source, target, variant -> true, 256, transaction);
+        }
+    }
+
+    @Benchmark
+    public long insertStacking() {
+        try (Transaction transaction = Transaction.openOuter()) {
+            return StorageUtil.insertStacking(target.getSlots(), STONE, 256, transaction);
+        }
+    }
+
+    @Benchmark
+    public long tryInsertStacking() {
+        try (Transaction transaction = Transaction.openOuter()) {
+            return StorageUtil.tryInsertStacking(target, STONE, 256, transaction);
+        }
+    }
+
+    @Benchmark
+    public ResourceAmount<BenchmarkVariant> extractAny() {
+        try (Transaction transaction = Transaction.openOuter()) {
+            return StorageUtil.extractAny(source, 256, transaction);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2025 Shai List and contributors
+ * Licensed under the MIT license. See LICENSE file in the project root for details.
+ */
+
+package dev.hytalemodding.benchmark.transfer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dev.hytalemodding.api.transfer.v1.transaction.Transaction;
+import dev.hytalemodding.api.transfer.v1.transaction.types.TransactionalValue;
+import dev.hytalemodding.impl.transfer.transaction.TransactionManagerImpl;
+
+/**
+ * Cost of opening and closing a stack of transactions, with and without a participant touched at every depth.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionBenchmark {
+    @Param({"1", "2", "4", "8", "16"})
+    public int depth;
+
+    @Param({"false", "true"})
+    public boolean journal;
+
+    private TransactionalValue<Integer> value;
+
+    @Setup
+    public void setup() {
+        TransactionManagerImpl.MANAGERS.get().setJournaling(journal);
+        value = new TransactionalValue<>(0);
+    }
+
+    @Benchmark
+    public void openCommit() {
+        try (Transaction outer = Transaction.openOuter()) {
+            commitNested(outer, 1, false);
+            outer.commit();
+        }
+    }
+
+    @Benchmark
+    public void openAbort() {
+        try (Transaction outer = Transaction.openOuter()) {
+            abortNested(outer, 1, false);
+        }
+    }
+
+    @Benchmark
+    public void openCommitWithParticipant() {
+        try (Transaction outer = Transaction.openOuter()) {
+            value.assignValue(0, outer);
+            commitNested(outer, 1, true);
+            outer.commit();
+        }
+    }
+
+    @Benchmark
+    public void openAbortWithParticipant() {
+        try (Transaction outer = Transaction.openOuter()) {
+            value.assignValue(0, outer);
+            abortNested(outer, 1, true);
+        }
+    }
+
+    private void commitNested(Transaction parent, int currentDepth, boolean touch) {
+        if (currentDepth >= depth) return;
+
+        try (Transaction nested = parent.openNested()) {
+            if (touch) value.assignValue(currentDepth, nested);
+            commitNested(nested, currentDepth + 1, touch);
+            nested.commit();
+        }
+    }
+
+    private void abortNested(Transaction parent, int currentDepth, boolean touch) {
+        if (currentDepth >= depth) return;
+
+        try (Transaction nested = parent.openNested()) {
+            if (touch) value.assignValue(currentDepth, nested);
+            abortNested(nested, currentDepth + 1, touch);
+        }
+    }
+}
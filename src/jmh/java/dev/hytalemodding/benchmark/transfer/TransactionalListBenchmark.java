@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2025 Shai List and contributors
+ * Licensed under the MIT license. See LICENSE file in the project root for details.
+ */
+
+package dev.hytalemodding.benchmark.transfer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dev.hytalemodding.api.transfer.v1.transaction.Transaction;
+import dev.hytalemodding.api.transfer.v1.transaction.types.JournaledTransactionalList;
+import dev.hytalemodding.api.transfer.v1.transaction.types.TransactionalList;
+
+/**
+ * Mutation of a {@link TransactionalList} or a {@link JournaledTransactionalList} at every level of a stack of nested transactions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionalListBenchmark {
+    @Param({"1", "4", "16"})
+    public int depth;
+
+    @Param({"16", "1024", "65536"})
+    public int size;
+
+    /** {@code copy} uses {@link TransactionalList}, {@code journal} uses {@link JournaledTransactionalList}. */
+    @Param({"copy", "journal"})
+    public String strategy;
+
+    private TransactionalList<Integer> list;
+    private JournaledTransactionalList<Integer> journaledList;
+
+    @Setup
+    public void setup() {
+        List<Integer> values = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            values.add(i);
+        }
+
+        if (strategy.equals("journal")) {
+            journaledList = new JournaledTransactionalList<>(values);
+        } else {
+            list = new TransactionalList<>(values);
+        }
+    }
+
+    @Benchmark
+    public int addCommitNestedAbortOuter() {
+        try (Transaction outer = Transaction.openOuter()) {
+            mutateNested(outer, 1);
+            return journaledList != null ? journaledList.getValue().size() : list.getValue().size();
+        }
+    }
+
+    private void mutateNested(Transaction parent, int currentDepth) {
+        if (journaledList != null) {
+            journaledList.add(currentDepth, parent);
+            journaledList.set(0, currentDepth, parent);
+        } else {
+            list.add(currentDepth, parent);
+            list.set(0, currentDepth, parent);
+        }
+
+        if (currentDepth >= depth) return;
+
+        try (Transaction nested = parent.openNested()) {
+            mutateNested(nested, currentDepth + 1);
+            nested.commit();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2025 Shai List and contributors
+ * Licensed under the MIT license. See LICENSE file in the project root for details.
+ */
+
+package dev.hytalemodding.benchmark.transfer;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dev.hytalemodding.api.transfer.v1.storage.TransferNetwork;
+import dev.hytalemodding.api.transfer.v1.transaction.Transaction;
+import dev.hytalemodding.benchmark.transfer.utils.BenchmarkStorage;
+import dev.hytalemodding.benchmark.transfer.utils.BenchmarkVariant;
+
+/**
+ * {@link TransferNetwork} transfers over random pipe networks of increasing size.
+ * A tenth of the nodes are full sources, a tenth are empty sinks and the rest are junctions,
+ * each node having a few edges to random other nodes.
+ * Every transfer runs in an aborted transaction so that the storages stay in the same state between invocations,
+ * which makes {@code transfer} measure a network in a steady state.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransferNetworkBenchmark {
+    private static final BenchmarkVariant STONE = BenchmarkVariant.of("stone");
+    private static final int EDGES_PER_NODE = 3;
+
+    @Param({"1000", "10000", "100000"})
+    public int nodes;
+
+    private TransferNetwork<BenchmarkVariant> network;
+    private int[] edges;
+    private final Random random = new Random(0);
+
+    @Setup
+    public void setup() {
+        network = new TransferNetwork<>();
+        int sources = nodes / 10;
+        int sinks = nodes / 10;
+
+        try (Transaction transaction = Transaction.openOuter()) {
+            for (int i = 0; i < sources; i++) {
+                BenchmarkStorage source = new BenchmarkStorage(64);
+                source.insert(STONE, 64, transaction);
+                network.addSource(source);
+            }
+
+            transaction.commit();
+        }
+
+        for (int i = 0; i < sinks; i++) {
+            network.addSink(new BenchmarkStorage(64));
+        }
+
+        for (int i = sources + sinks; i < nodes; i++) {
+            network.addJunction();
+        }
+
+        Random graphRandom = new Random(42);
+        edges = new int[nodes * EDGES_PER_NODE];
+
+        for (int i = 0; i < edges.length; i++) {
+            edges[i] = network.addEdge(i / EDGES_PER_NODE, graphRandom.nextInt(nodes), 1 + graphRandom.nextInt(16));
+        }
+    }
+
+    @Benchmark
+    public long transfer() {
+        try (Transaction transaction = Transaction.openOuter()) {
+            return network.transfer(STONE, Long.MAX_VALUE, transaction);
+        }
+    }
+
+    /**
+     * Change the throughput of one edge before every transfer, so that the previous flow has to be repaired.
+     */
+    @Benchmark
+    public long transferWithChangedEdge() {
+        network.setMaxFlow(edges[random.nextInt(edges.length)], random.nextInt(17));
+
+        try (Transaction transaction = Transaction.openOuter()) {
+            return network.transfer(STONE, Long.MAX_VALUE, transaction);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2025 Shai List and contributors
+ * Licensed under the MIT license. See LICENSE file in the project root for details.
+ */
+
+package dev.hytalemodding.benchmark.transfer.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import dev.hytalemodding.api.transfer.v1.storage.base.ArraySlottedStorage;
+import dev.hytalemodding.api.transfer.v1.storage.base.CombinedSlottedStorage;
+import dev.hytalemodding.api.transfer.v1.storage.base.IndexedSlottedStorage;
+import dev.hytalemodding.api.transfer.v1.storage.base.OffHeapSlottedStorage;
+import dev.hytalemodding.api.transfer.v1.storage.base.PalettedSlottedStorage;
+import dev.hytalemodding.api.transfer.v1.storage.base.SingleVariantStorage;
+
+/**
+ * A fixed capacity {@link SingleVariantStorage} used by the benchmarks.
+ */
+public class BenchmarkStorage extends SingleVariantStorage<BenchmarkVariant> {
+    private final long capacity;
+
+    public BenchmarkStorage(long capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Create a slotted storage made of {@code slotCount} slots of the given capacity,
+     * where every {@code stride}-th slot is pre-filled with {@code amount} of {@code variant}.
+     */
+    public static CombinedSlottedStorage<BenchmarkVariant, BenchmarkStorage> slotted(int slotCount, long capacity, BenchmarkVariant variant, long amount, int stride) {
+        List<BenchmarkStorage> slots = new ArrayList<>(slotCount);
+
+        for (int i = 0; i < slotCount; i++) {
+            BenchmarkStorage slot = new BenchmarkStorage(capacity);
+
+            if (stride > 0 && i % stride == 0) {
+                slot.variant = variant;
+                slot.amount = amount;
+            }
+
+            slots.add(slot);
+        }
+
+        return new CombinedSlottedStorage<>(slots);
+    }
+
+    /**
+     * Same as {@link #slotted}, but backed by an {@link IndexedSlottedStorage}.
+     */
+    public static IndexedSlottedStorage<BenchmarkVariant> indexed(int slotCount, long capacity, BenchmarkVariant variant, long amount, int stride) {
+        IndexedSlottedStorage<BenchmarkVariant> storage = new IndexedSlottedStorage<>(slotCount) {
+            @Override
+            protected BenchmarkVariant getBlankVariant() {
+                return BenchmarkVariant.blank();
+            }
+
+            @Override
+            protected long getCapacity(int slot, BenchmarkVariant variant) {
+                return capacity;
+            }
+        };
+
+        for (int i = 0; stride > 0 && i < slotCount; i += stride) {
+            storage.set(i, variant, amount);
+        }
+
+        return storage;
+    }
+
+    /**
+     * Same as {@link #slotted}, but backed by an {@link ArraySlottedStorage}.
+     */
+    public static ArraySlottedStorage<BenchmarkVariant> array(int slotCount, long capacity, BenchmarkVariant variant, long amount, int stride) {
+        ArraySlottedStorage<BenchmarkVariant> storage = new ArraySlottedStorage<>(slotCount) {
+            @Override
+            protected BenchmarkVariant getBlankVariant() {
+                return BenchmarkVariant.blank();
+            }
+
+            @Override
+            protected long getCapacity(int slot, BenchmarkVariant variant) {
+                return capacity;
+            }
+        };
+
+        for (int i = 0; stride > 0 && i < slotCount; i += stride) {
+            storage.set(i, variant, amount);
+        }
+
+        return storage;
+    }
+
+    /**
+     * Same as {@link #slotted}, but backed by an {@link OffHeapSlottedStorage}. The storage is never closed.
+     */
+    public static OffHeapSlottedStorage<BenchmarkVariant> offHeap(int slotCount, long capacity, BenchmarkVariant variant, long amount, int stride) {
+        OffHeapSlottedStorage<BenchmarkVariant> storage = new OffHeapSlottedStorage<>(slotCount) {
+            @Override
+            protected BenchmarkVariant getBlankVariant() {
+                return BenchmarkVariant.blank();
+            }
+
+            @Override
+            protected long getCapacity(int slot, BenchmarkVariant variant) {
+                return capacity;
+            }
+        };
+
+        for (int i = 0; stride > 0 && i < slotCount; i += stride) {
+            storage.set(i, variant, amount);
+        }
+
+        return storage;
+    }
+
+    /**
+     * Same as {@link #slotted}, but backed by a {@link PalettedSlottedStorage}.
+     */
+    public static PalettedSlottedStorage<BenchmarkVariant> paletted(int slotCount, long capacity, BenchmarkVariant variant, long amount, int stride) {
+        PalettedSlottedStorage<BenchmarkVariant> storage = new PalettedSlottedStorage<>(slotCount) {
+            @Override
+            protected BenchmarkVariant getBlankVariant() {
+                return BenchmarkVariant.blank();
+            }
+
+            @Override
+            protected long getCapacity(int slot, BenchmarkVariant variant) {
+                return capacity;
+            }
+        };
+
+        for (int i = 0; stride > 0 && i < slotCount; i += stride) {
+            storage.set(i, variant, amount);
+        }
+
+        return storage;
+    }
+
+    @Override
+    protected BenchmarkVariant getBlankVariant() {
+        return BenchmarkVariant.blank();
+    }
+
+    @Override
+    protected long getCapacity(BenchmarkVariant variant) {
+        return capacity;
+    }
+}
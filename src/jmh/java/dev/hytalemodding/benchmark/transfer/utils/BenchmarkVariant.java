@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2025 Shai List and contributors
+ * Licensed under the MIT license. See LICENSE file in the project root for details.
+ */
+
+package dev.hytalemodding.benchmark.transfer.utils;
+
+import java.util.Objects;
+
+import org.jetbrains.annotations.Nullable;
+
+import dev.hytalemodding.api.transfer.v1.storage.TransferVariant;
+
+/**
+ * A minimal string-backed transfer variant used by the benchmarks.
+ */
+public final class BenchmarkVariant implements TransferVariant<@Nullable String> {
+    private static final BenchmarkVariant BLANK = new BenchmarkVariant(null);
+
+    private final @Nullable String string;
+    private final int hashCode;
+
+    private BenchmarkVariant(@Nullable String string) {
+        this.string = string;
+        this.hashCode = Objects.hashCode(string);
+    }
+
+    public static BenchmarkVariant blank() {
+        return BLANK;
+    }
+
+    public static BenchmarkVariant of(String string) {
+        return new BenchmarkVariant(string);
+    }
+
+    @Override
+    public boolean isBlank() {
+        return string == null;
+    }
+
+    @Override
+    public @Nullable String getObject() {
+        return string;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof BenchmarkVariant other)) return false;
+
+        return hashCode == other.hashCode && Objects.equals(string, other.string);
+    }
+
+    @Override
+    public String toString() {
+        return "BenchmarkVariant{string=" + string + '}';
+    }
+}
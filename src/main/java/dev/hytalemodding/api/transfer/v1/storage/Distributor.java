@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) 2025 Shai List and contributors
+ * Licensed under the MIT license. See LICENSE file in the project root for details.
+ */
+
+package dev.hytalemodding.api.transfer.v1.storage;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+import org.jetbrains.annotations.Nullable;
+
+import dev.hytalemodding.api.transfer.v1.transaction.Transaction;
+import dev.hytalemodding.api.transfer.v1.transaction.TransactionContext;
+
+/**
+ * Moves resources from one source storage into many target storages, splitting each resource between the targets.
+ *
+ * <p>Distributing a source with one {@link StorageUtil#move} per target scans the source once per target,
+ * and the first targets always get served first. {@link #distribute} instead visits the source once,
+ * and splits the extractable amount of every resource between the targets according to the {@link Mode}:
+ * <ul>
+ *     <li>{@link Mode#ROUND_ROBIN} gives every target the same amount, as far as their space allows.
+ *     The units that cannot be split evenly go to the next targets in turn, starting where the previous distribution stopped.</li>
+ *     <li>{@link Mode#PROPORTIONAL} splits the amount proportionally to the space of each target for the resource.</li>
+ *     <li>{@link Mode#PRIORITY} fills the targets by decreasing {@linkplain #setPriority priority},
+ *     and only queries the targets that are needed.</li>
+ * </ul>
+ * The space of the targets is queried with {@linkplain Storage#probeInsert probes} when they can answer, or simulations otherwise.
+ * The space depends on the resource, so {@link Mode#ROUND_ROBIN} and {@link Mode#PROPORTIONAL} query every target once per resource,
+ * and only the split itself is done in {@code O(k log N)} for {@code k} filled targets out of {@code N}.
+ * Only {@link Mode#PRIORITY} can skip querying targets, which makes it the cheapest mode for many targets.
+ * All the insertions and extractions of a distribution are part of a single nested transaction,
+ * and each resource is applied in its own nested transaction, rolled back if the source does not give back what the targets accepted.
+ *
+ * <p>This class is not thread-safe.
+ *
+ * @param <T> The type of the distributed resources.
+ */
+public final class Distributor<T> {
+    /**
+     * How a resource is split between the targets.
+     */
+    public enum Mode {
+        /**
+         * Give every target the same amount, as far as their space allows.
+         */
+        ROUND_ROBIN,
+        /**
+         * Give every target an amount proportional to its space for the resource.
+         */
+        PROPORTIONAL,
+        /**
+         * Fill the targets by decreasing priority, then by increasing index.
+         */
+        PRIORITY
+    }
+
+    private final Storage<T>[] targets;
+    private final Mode mode;
+    private final int[] priorities;
+    // Targets sorted by decreasing priority, or null if it must be recomputed.
+    private int @Nullable [] priorityOrder = null;
+    // Per-target scratch arrays, reused between distributions.
+    private final long[] space;
+    private final long[] shares;
+    // Binary min-heap of target indices keyed by their space.
+    private final int[] heap;
+    private int heapSize = 0;
+    // First target to receive the units that cannot be split evenly in round-robin mode.
+    private int nextTarget = 0;
+
+    /**
+     * Create a distributor into the passed targets.
+     *
+     * @param targets The target storages. The list is copied.
+     * @param mode How each resource is split between the targets.
+     */
+    @SuppressWarnings("unchecked")
+    public Distributor(List<? extends Storage<T>> targets, Mode mode) {
+        this.targets = targets.toArray(Storage[]::new);
+        this.mode = Objects.requireNonNull(mode, "Mode may not be null.");
+        this.priorities = new int[this.targets.length];
+        this.space = new long[this.targets.length];
+        this.shares = new long[this.targets.length];
+        this.heap = new int[this.targets.length];
+
+        for (Storage<T> target : this.targets) {
+            Objects.requireNonNull(target, "Target storage may not be null.");
+        }
+    }
+
+    /**
+     * Set the priority of a target, used in {@link Mode#PRIORITY} mode. Targets have a priority of {@code 0} by default.
+     *
+     * @param target The index of the target in the list passed to the constructor.
+     * @param priority The new priority. Targets with a higher priority are filled first.
+     */
+    public void setPriority(int target, int priority) {
+        Objects.checkIndex(target, targets.length);
+        priorities[target] = priority;
+        priorityOrder = null;
+    }
+
+    /**
+     * Move resources from the source storage into the targets, matching the passed filter,
+     * and return the amount that was successfully transferred.
+     *
+     * @param from The source storage. May be null.
+     * @param filter The filter for transferred resources, as defined by {@link StorageUtil#move}.
+     * @param maxAmount The maximum amount that will be transferred in total.
+     * @param transaction The transaction this transfer is part of, or {@code null} if a transaction should be opened just for this transfer.
+     * @return The total amount of resources that was successfully transferred.
+     * @throws IllegalStateException If no transaction is passed and a transaction is already active on the current thread.
+     */
+    public long distribute(@Nullable Storage<T> from, Predicate<T> filter, long maxAmount, @Nullable TransactionContext transaction) {
+        Objects.requireNonNull(filter, "Filter may not be null");
+        StoragePreconditions.notNegative(maxAmount);
+        if (from == null || targets.length == 0) return 0;
+
+        long totalMoved = 0;
+
+        try (Transaction distributeTransaction = Transaction.openNested(transaction);
+             StorageCursor<T> cursor = from.cursor()) {
+            while (totalMoved < maxAmount && cursor.advance()) {
+                T resource = cursor.getResource();
+                if (!filter.test(resource)) continue;
+
+                long available = cursor.probeExtract(resource, maxAmount - totalMoved);
+
+                if (available == Storage.UNKNOWN_AMOUNT) {
+                    try (Transaction simulateTransaction = Transaction.openSimulation(distributeTransaction)) {
+                        available = cursor.extract(resource, maxAmount - totalMoved, simulateTransaction);
+                    }
+                }
+
+                if (available == 0) continue;
+
+                switch (mode) {
+                    case ROUND_ROBIN -> splitEvenly(resource, available, distributeTransaction);
+                    case PROPORTIONAL -> splitProportionally(resource, available, distributeTransaction);
+                    case PRIORITY -> splitByPriority(resource, available, distributeTransaction);
+                }
+
+                try (Transaction transferTransaction = distributeTransaction.openNested()) {
+                    long accepted = 0;
+
+                    for (int i = 0; i < targets.length; i++) {
+                        if (shares[i] > 0) {
+                            accepted += targets[i].insert(resource, shares[i], transferTransaction);
+                        }
+                    }
+
+                    // extract it, or rollback if the amounts don't match
+                    if (cursor.extract(resource, accepted, transferTransaction) == accepted) {
+                        totalMoved += accepted;
+                        transferTransaction.commit();
+                    }
+                }
+            }
+
+            distributeTransaction.commit();
+        }
+
+        return totalMoved;
+    }
+
+    /**
+     * Split the amount evenly between the targets, by repeatedly filling the target with the least space
+     * while it cannot take an even share of what is left.
+     */
+    private void splitEvenly(T resource, long available, TransactionContext transaction) {
+        heapSize = 0;
+
+        for (int i = 0; i < targets.length; i++) {
+            shares[i] = 0;
+            space[i] = StorageUtil.simulateInsert(targets[i], resource, available, transaction);
+
+            if (space[i] > 0) {
+                heapPush(i);
+            }
+        }
+
+        long remaining = available;
+
+        while (heapSize > 0 && space[heap[0]] <= remaining / heapSize) {
+            int target = heapPop();
+            shares[target] = space[target];
+            remaining -= space[target];
+        }
+
+        if (heapSize == 0) return;
+
+        // Every target left in the heap has more space than an even share.
+        long share = remaining / heapSize;
+        long extra = remaining % heapSize;
+
+        for (int i = 0; i < heapSize; i++) {
+            shares[heap[i]] = share;
+        }
+
+        for (int i = 0; extra > 0; i++) {
+            int target = (nextTarget + i) % targets.length;
+
+            if (space[target] > share && shares[target] == share) {
+                shares[target]++;
+                extra--;
+                nextTarget = target + 1;
+            }
+        }
+
+        nextTarget %= targets.length;
+    }
+
+    /**
+     * Split the amount proportionally to the space of the targets, handing the units lost to rounding
+     * to the targets with the most space left.
+     */
+    private void splitProportionally(T resource, long available, TransactionContext transaction) {
+        long totalSpace = 0;
+
+        for (int i = 0; i < targets.length; i++) {
+            space[i] = StorageUtil.simulateInsert(targets[i], resource, Long.MAX_VALUE, transaction);
+            totalSpace = saturatedAdd(totalSpace, space[i]);
+        }
+
+        if (totalSpace <= available) {
+            System.arraycopy(space, 0, shares, 0, targets.length);
+            return;
+        }
+
+        long remaining = available;
+        double ratio = (double) available / totalSpace;
+
+        for (int i = 0; i < targets.length; i++) {
+            shares[i] = Math.min(remaining, Math.min(space[i], (long) (space[i] * ratio)));
+            remaining -= shares[i];
+        }
+
+        // Use the space left after the proportional shares as keys, negated to turn the min-heap into a max-heap.
+        heapSize = 0;
+
+        for (int i = 0; i < targets.length; i++) {
+            space[i] = shares[i] - space[i];
+
+            if (space[i] < 0) {
+                heapPush(i);
+            }
+        }
+
+        while (remaining > 0 && heapSize > 0) {
+            int target = heapPop();
+            long given = Math.min(Math.min(-space[target], remaining), Math.max(1, remaining / (heapSize + 1)));
+            shares[target] += given;
+            remaining -= given;
+            space[target] += given;
+
+            if (space[target] < 0) {
+                heapPush(target);
+            }
+        }
+    }
+
+    /**
+     * Fill the targets by decreasing priority, stopping as soon as the whole amount is placed.
+     */
+    private void splitByPriority(T resource, long available, TransactionContext transaction) {
+        int[] order = priorityOrder;
+
+        if (order == null) {
+            order = priorityOrder = sortByPriority();
+        }
+
+        Arrays.fill(shares, 0);
+        long remaining = available;
+
+        for (int i = 0; i < order.length && remaining > 0; i++) {
+            int target = order[i];
+            shares[target] = StorageUtil.simulateInsert(targets[target], resource, remaining, transaction);
+            remaining -= shares[target];
+        }
+    }
+
+    private int[] sortByPriority() {
+        // The sort is stable, so targets with the same priority keep their order.
+        return IntStream.range(0, targets.length)
+                .boxed()
+                .sorted(Comparator.comparingInt(target -> -priorities[target]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private void heapPush(int target) {
+        int index = heapSize++;
+
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (space[heap[parent]] <= space[target]) break;
+
+            heap[index] = heap[parent];
+            index = parent;
+        }
+
+        heap[index] = target;
+    }
+
+    private int heapPop() {
+        int top = heap[0];
+        int last = heap[--heapSize];
+        int index = 0;
+
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && space[heap[child + 1]] < space[heap[child]]) child++;
+            if (space[last] <= space[heap[child]]) break;
+
+            heap[index] = heap[child];
+            index = child;
+        }
+
+        heap[index] = last;
+        return top;
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+}
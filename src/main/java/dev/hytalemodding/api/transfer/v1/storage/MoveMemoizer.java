@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2025 Shai List and contributors
+ * Licensed under the MIT license. See LICENSE file in the project root for details.
+ */
+
+package dev.hytalemodding.api.transfer.v1.storage;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+import org.jetbrains.annotations.Nullable;
+
+import dev.hytalemodding.api.transfer.v1.transaction.TransactionContext;
+
+/**
+ * Remembers the {@link StorageUtil#move} calls that moved nothing, to skip them until one of the storages changes.
+ *
+ * <p>Pipes and similar transport usually try the same move every tick, and most of these attempts move nothing
+ * because the source is empty or the target is full. {@link #move} performs the same transfer as {@link StorageUtil#move},
+ * but when a move of the same storages with the same filter and maximum amount moved nothing, and neither storage
+ * has changed its {@linkplain Storage#getVersion version} since, it returns {@code 0} without opening a transaction
+ * or scanning the storages.
+ *
+ * <p>Attempts are matched by the identity of the storages and of the filter, so the filter instance should be reused across calls.
+ * Storages that use the default {@link Storage#getVersion} implementation are never skipped,
+ * and storages whose insertion or extraction rules depend on outside state must change their version when that state changes,
+ * or the memoizer must be {@linkplain #clear cleared}.
+ * Moves that are part of a transaction are never skipped, since versions may not be queried during a transaction.
+ *
+ * <p>The number of remembered attempts is bounded, and the least recently used attempts are forgotten first.
+ * This class is not thread-safe.
+ */
+public final class MoveMemoizer {
+    private final Map<Attempt, long[]> zeroMoves;
+    // Reused to look attempts up without allocating.
+    private final Attempt lookup = new Attempt();
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * Create a memoizer remembering up to the passed number of attempts.
+     *
+     * @param maxAttempts The maximum number of attempts that moved nothing to remember. Must be positive.
+     */
+    public MoveMemoizer(int maxAttempts) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("Memoizer must remember at least one attempt, got " + maxAttempts + ".");
+        }
+
+        this.zeroMoves = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Attempt, long[]> eldest) {
+                return size() > maxAttempts;
+            }
+        };
+    }
+
+    /**
+     * Move resources between two storages like {@link StorageUtil#move},
+     * skipping the move if the same attempt moved nothing and neither storage changed since.
+     *
+     * @param from The source storage. May be null.
+     * @param to The target storage. May be null.
+     * @param filter The filter for transferred resources, as defined by {@link StorageUtil#move}.
+     * @param maxAmount The maximum amount that will be transferred.
+     * @param transaction The transaction this transfer is part of, or {@code null} if a transaction should be opened just for this transfer.
+     * @param <T> The type of resources to move.
+     * @return The total amount of resources that was successfully transferred.
+     * @throws IllegalStateException If no transaction is passed and a transaction is already active on the current thread.
+     */
+    public <T> long move(@Nullable Storage<T> from, @Nullable Storage<T> to, Predicate<T> filter, long maxAmount, @Nullable TransactionContext transaction) {
+        Objects.requireNonNull(filter, "Filter may not be null");
+
+        if (from == null || to == null || transaction != null) {
+            misses++;
+            return StorageUtil.move(from, to, filter, maxAmount, transaction);
+        }
+
+        long fromVersion = from.getVersion();
+        long toVersion = to.getVersion();
+        long[] versions = zeroMoves.get(lookup.set(from, to, filter, maxAmount));
+        lookup.set(null, null, null, 0);
+
+        if (versions != null && versions[0] == fromVersion && versions[1] == toVersion) {
+            hits++;
+            return 0;
+        }
+
+        misses++;
+        long moved = StorageUtil.move(from, to, filter, maxAmount, null);
+
+        // Only remember the attempt if it did not change the storages, so that the versions describe the state that was tried.
+        if (moved == 0 && from.getVersion() == fromVersion && to.getVersion() == toVersion) {
+            if (versions == null) {
+                zeroMoves.put(new Attempt().set(from, to, filter, maxAmount), new long[] { fromVersion, toVersion });
+            } else {
+                versions[0] = fromVersion;
+                versions[1] = toVersion;
+            }
+        } else if (versions != null) {
+            zeroMoves.remove(lookup.set(from, to, filter, maxAmount));
+            lookup.set(null, null, null, 0);
+        }
+
+        return moved;
+    }
+
+    /**
+     * Forget every remembered attempt, for example after the rules of one of the storages changed.
+     */
+    public void clear() {
+        zeroMoves.clear();
+    }
+
+    /**
+     * Return the number of moves that were skipped.
+     *
+     * @return The number of {@link #move} calls that returned {@code 0} without moving.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Return the number of moves that were performed.
+     *
+     * @return The number of {@link #move} calls that delegated to {@link StorageUtil#move}.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Reset the hit and miss counters to zero.
+     */
+    public void resetCounters() {
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * A move attempt, compared by the identity of its storages and filter.
+     */
+    private static final class Attempt {
+        @Nullable Object from;
+        @Nullable Object to;
+        @Nullable Object filter;
+        long maxAmount;
+
+        Attempt set(@Nullable Object from, @Nullable Object to, @Nullable Object filter, long maxAmount) {
+            this.from = from;
+            this.to = to;
+            this.filter = filter;
+            this.maxAmount = maxAmount;
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Attempt other && from == other.from && to == other.to && filter == other.filter && maxAmount == other.maxAmount;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = System.identityHashCode(from);
+            hash = 31 * hash + System.identityHashCode(to);
+            hash = 31 * hash + System.identityHashCode(filter);
+            return 31 * hash + Long.hashCode(maxAmount);
+        }
+    }
+}
@@ -20,6 +20,7 @@
 package dev.hytalemodding.api.transfer.v1.storage;
 
 import java.util.List;
+import java.util.Spliterator;
 
 import org.jetbrains.annotations.UnmodifiableView;
 
@@ -67,4 +68,17 @@ public interface SlottedStorage<T> extends Storage<T> {
     default List<SingleSlotStorage<T>> getSlots() {
         return TransferApiImpl.makeListView(this);
     }
+
+    /**
+     * Return a spliterator over all the slots of this storage, in order.
+     *
+     * <p>The spliterator knows its exact size and splits by slot range, so that {@link #viewStream parallel streams}
+     * divide the slots evenly between threads.
+     *
+     * @return A sized spliterator over the slots of this storage.
+     */
+    @Override
+    default Spliterator<StorageView<T>> spliterator() {
+        return TransferApiImpl.makeSlotSpliterator(this);
+    }
 }
@@ -20,11 +20,14 @@
 package dev.hytalemodding.api.transfer.v1.storage;
 
 import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import com.google.common.collect.Iterators;
 
 import dev.hytalemodding.api.transfer.v1.storage.base.CombinedStorage;
 import dev.hytalemodding.api.transfer.v1.storage.base.ExtractionOnlyStorage;
+import dev.hytalemodding.api.transfer.v1.storage.base.FilteringStorage;
 import dev.hytalemodding.api.transfer.v1.storage.base.InsertionOnlyStorage;
 import dev.hytalemodding.api.transfer.v1.storage.base.SingleVariantStorage;
 import dev.hytalemodding.api.transfer.v1.transaction.Transaction;
@@ -42,7 +45,7 @@ import org.jetbrains.annotations.NotNull;
  *     <li>{@link #supportsInsertion} and {@link #supportsExtraction} can be used to tell if insertion and extraction
  *     functionality are possibly supported by this storage.</li>
  *     <li>{@link #insert} and {@link #extract} can be used to insert or extract resources from this storage.</li>
- *     <li>{@link #iterator} can be used to inspect the contents of this storage.</li>
+ *     <li>{@link #iterator} can be used to inspect the contents of this storage, and {@link #cursor} to visit them without allocating.</li>
  *     <li>{@link #getVersion()} can be used to quickly check if a storage has changed, without having to rescan its contents.</li>
  * </ul>
  *
@@ -66,6 +69,11 @@ import org.jetbrains.annotations.NotNull;
  * @see Transaction
  */
 public interface Storage<T> extends Iterable<StorageView<T>> {
+    /**
+     * Returned by the probe functions, such as {@link #probeInsert}, when the storage cannot answer without a transaction.
+     */
+    long UNKNOWN_AMOUNT = -1;
+
     /**
      * Return an empty storage.
      *
@@ -99,6 +107,22 @@ public interface Storage<T> extends Iterable<StorageView<T>> {
      */
     long insert(T resource, long maxAmount, @NotNull TransactionContext transaction);
 
+    /**
+     * Return how much of a resource {@link #insert} would accept right now, without modifying any state and without a transaction.
+     *
+     * <p>The returned amount must be exactly the amount that {@link #insert} would return if it were called instead,
+     * in a transaction nested in the current one if there is any.
+     * Storages that cannot answer exactly return {@link #UNKNOWN_AMOUNT}, and callers then fall back to
+     * {@linkplain StorageUtil#simulateInsert simulating the insertion}, which the helpers of {@link StorageUtil} do automatically.
+     *
+     * @param resource The resource to insert. May not be blank.
+     * @param maxAmount The maximum amount of resource to insert. May not be negative.
+     * @return The amount that would be inserted, or {@link #UNKNOWN_AMOUNT} if it is not known.
+     */
+    default long probeInsert(T resource, long maxAmount) {
+        return UNKNOWN_AMOUNT;
+    }
+
     /**
      * Return whether extraction may be supported by this storage.
      *
@@ -121,6 +145,19 @@ public interface Storage<T> extends Iterable<StorageView<T>> {
      */
     long extract(T resource, long maxAmount, @NotNull TransactionContext transaction);
 
+    /**
+     * Return how much of a resource {@link #extract} would return right now, without modifying any state and without a transaction.
+     *
+     * <p>The same rules as {@link #probeInsert} apply.
+     *
+     * @param resource The resource to extract. May not be blank.
+     * @param maxAmount The maximum amount of resource to extract. May not be negative.
+     * @return The amount that would be extracted, or {@link #UNKNOWN_AMOUNT} if it is not known.
+     */
+    default long probeExtract(T resource, long maxAmount) {
+        return UNKNOWN_AMOUNT;
+    }
+
     /**
      * Iterate through the contents of this storage.
      * Every visited {@link StorageView} represents a stored resource and an amount.
@@ -176,7 +213,48 @@ public interface Storage<T> extends Iterable<StorageView<T>> {
     default Iterable<StorageView<T>> nonEmptyViews() {
         return this::nonEmptyIterator;
     }
-    
+
+    /**
+     * Return a stream over the {@linkplain #nonEmptyIterator() non-empty views} of this storage, for read-only aggregation
+     * such as summing the stored amounts.
+     *
+     * <pre>{@code
+     * long total = storage.viewStream(true).mapToLong(StorageView::getAmount).sum();
+     * }</pre>
+     *
+     * <p>The stream is built from {@link #spliterator()}. {@link SlottedStorage} and {@link CombinedStorage} provide sized
+     * spliterators that split by slot range and by part, which parallel streams use to divide the work.
+     *
+     * <p><b>The stream is only safe to use outside of transactions, and the storage must not be modified until it is consumed.</b>
+     * Views of the stream must not be extracted from, in particular not from other threads.
+     *
+     * @param parallel True for a parallel stream, false for a sequential stream.
+     * @return A stream over the non-empty views of this storage.
+     * @throws IllegalStateException If a transaction is open on the current thread.
+     */
+    default Stream<StorageView<T>> viewStream(boolean parallel) {
+        if (Transaction.isOpen()) {
+            throw new IllegalStateException("viewStream() may not be called during a transaction.");
+        }
+
+        return StreamSupport.stream(spliterator(), parallel).filter(view -> view.getAmount() > 0 && !view.isResourceBlank());
+    }
+
+    /**
+     * Return a {@link StorageCursor} over the same views as {@link #nonEmptyIterator()}.
+     *
+     * <p>Cursors let callers such as {@link StorageUtil#move} visit the contents of a storage without allocating
+     * an iterator and a view per element. The cursor should be closed once the iteration is done,
+     * which allows the storage to return the same cursor from the next call.
+     *
+     * <p>This function should only be overridden if the storage can read and extract from its contents directly.
+     * Otherwise, the default implementation simply adapts {@link #nonEmptyIterator()}.
+     *
+     * @return A cursor before the first non-empty view of this storage.
+     */
+    default StorageCursor<T> cursor() {
+        return TransferApiImpl.iteratorCursor(this);
+    }
 
 
     /**
@@ -207,6 +285,10 @@ public interface Storage<T> extends Iterable<StorageView<T>> {
      * <p>It is not valid to call this during a transaction,
      * and implementations are encouraged to throw an exception if that happens.
      *
+     * <p>The default implementation returns a new value on every call, so callers can never skip work.
+     * The base implementations ({@link SingleVariantStorage}, {@link CombinedStorage}, {@link FilteringStorage}
+     * and storages built on {@link dev.hytalemodding.api.transfer.v1.transaction.base.SnapshotParticipant}) track a real per-instance version.
+     *
      * @return The version identifier; changes whenever the storage may have changed.
      */
     default long getVersion() {
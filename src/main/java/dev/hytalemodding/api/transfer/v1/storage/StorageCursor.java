@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2025 Shai List and contributors
+ * Licensed under the MIT license. See LICENSE file in the project root for details.
+ */
+
+package dev.hytalemodding.api.transfer.v1.storage;
+
+import dev.hytalemodding.api.transfer.v1.transaction.TransactionContext;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A reusable position over the non-empty contents of a {@link Storage}, returned by {@link Storage#cursor}.
+ *
+ * <p>A cursor visits the same views as {@link Storage#nonEmptyIterator}, but instead of returning a {@link StorageView}
+ * for every element, the current position is read and extracted from through the cursor itself.
+ * This lets storages iterate their contents without allocating an iterator and a view per element:
+ * <pre>{@code
+ * try (StorageCursor<T> cursor = storage.cursor()) {
+ *     while (cursor.advance()) {
+ *         T resource = cursor.getResource();
+ *         long extracted = cursor.extract(resource, cursor.getAmount(), transaction);
+ *     }
+ * }
+ * }</pre>
+ *
+ * <p>The guarantees of {@link Storage#iterator} apply: {@link Storage#insert} and {@link Storage#extract} may be called
+ * during iteration, extractions are visible to the cursor, and insertions are not required to be.
+ * A cursor belongs to the thread that obtained it, and must not be used anymore after it is {@linkplain #close closed},
+ * since storages may hand it out again.
+ *
+ * @param <T> The type of the stored resources.
+ */
+public interface StorageCursor<T> extends AutoCloseable {
+    /**
+     * Move to the next non-empty position of the storage.
+     *
+     * @return {@code true} if the cursor is now on a non-empty position, {@code false} if the end of the storage was reached.
+     */
+    boolean advance();
+
+    /**
+     * Return the resource at the current position.
+     *
+     * @return The resource at the current position. It may be blank if the position was emptied since the last {@link #advance}.
+     * @throws IllegalStateException If the cursor is not on a position.
+     */
+    T getResource();
+
+    /**
+     * Return the amount of resource at the current position.
+     *
+     * @return The amount of {@link #getResource} at the current position.
+     * @throws IllegalStateException If the cursor is not on a position.
+     */
+    long getAmount();
+
+    /**
+     * Return the capacity of the current position for the stored resource.
+     *
+     * @return The capacity of the current position, as defined by {@link StorageView#getCapacity}.
+     * @throws IllegalStateException If the cursor is not on a position.
+     */
+    long getCapacity();
+
+    /**
+     * Try to extract a resource from the current position, like {@link StorageView#extract}.
+     *
+     * @param resource The resource to extract. May not be blank.
+     * @param maxAmount The maximum amount to extract. May not be negative.
+     * @param transaction The transaction this operation is part of.
+     * @return The amount that was extracted.
+     * @throws IllegalStateException If the cursor is not on a position.
+     */
+    long extract(T resource, long maxAmount, @NotNull TransactionContext transaction);
+
+    /**
+     * Return how much of a resource {@link #extract} would return at the current position, like {@link Storage#probeExtract}.
+     *
+     * @param resource The resource to extract. May not be blank.
+     * @param maxAmount The maximum amount to extract. May not be negative.
+     * @return The amount that would be extracted, or {@link Storage#UNKNOWN_AMOUNT} if it is not known.
+     * @throws IllegalStateException If the cursor is not on a position.
+     */
+    default long probeExtract(T resource, long maxAmount) {
+        return Storage.UNKNOWN_AMOUNT;
+    }
+
+    /**
+     * Move the cursor back before the first position, so that the storage can be iterated again.
+     */
+    void reset();
+
+    /**
+     * Release this cursor, allowing the storage to reuse it for a later {@link Storage#cursor} call.
+     */
+    @Override
+    default void close() {
+    }
+}
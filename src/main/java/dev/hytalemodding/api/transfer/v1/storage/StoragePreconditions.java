@@ -61,6 +61,22 @@ public final class StoragePreconditions {
         notNegative(amount);
     }
 
+    /**
+     * Check that the passed amount is not negative, and that it is zero if the passed transfer variant is blank.
+     * This is the condition for the contents of a slot, which may be empty.
+     *
+     * @param variant The transfer variant to check. May be blank.
+     * @param amount The amount to check.
+     * @throws IllegalArgumentException If the amount is negative, or positive for a blank variant.
+     */
+    public static void notNegativeEmptyIfBlank(TransferVariant<?> variant, long amount) {
+        notNegative(amount);
+
+        if (amount != 0 && variant.isBlank()) {
+            throw new IllegalArgumentException("Amount must be zero for a blank transfer variant, but it is: " + amount);
+        }
+    }
+
     private StoragePreconditions() {
     }
 }
@@ -26,6 +26,7 @@ import java.util.function.Predicate;
 import org.jetbrains.annotations.NotNull;
 import org.jspecify.annotations.Nullable;
 
+import dev.hytalemodding.api.transfer.v1.storage.base.IndexedSlottedStorage;
 import dev.hytalemodding.api.transfer.v1.storage.base.ResourceAmount;
 import dev.hytalemodding.api.transfer.v1.storage.base.SingleSlotStorage;
 import dev.hytalemodding.api.transfer.v1.transaction.Transaction;
@@ -81,22 +82,105 @@ public final class StorageUtil {
         Objects.requireNonNull(filter, "Filter may not be null");
         if (from == null || to == null) return 0;
 
+        try {
+            long moved = moveInOneTransaction(from, to, filter, maxAmount, transaction);
+            return moved != STEP_MISMATCH ? moved : moveStepwise(from, to, filter, maxAmount, transaction);
+        } catch (Exception e) {
+//            TODO: Crash Reporting
+//            CrashReport report = CrashReport.forThrowable(e, "Moving resources between storages");
+//            report.addCategory("Move details")
+//                    .setDetail("Input storage", from::toString)
+//                    .setDetail("Output storage", to::toString)
+//                    .setDetail("Filter", filter::toString)
+//                    .setDetail("Max amount", maxAmount)
+//                    .setDetail("Transaction", transaction);
+//            throw new ReportedException(report);
+            throw e;
+        }
+    }
+
+    /**
+     * Returned by {@link #moveInOneTransaction} when a step did not go as expected.
+     */
+    private static final long STEP_MISMATCH = -1;
+
+    /**
+     * Same steps as {@link #moveStepwise}, applied directly in a single nested transaction
+     * instead of a simulation and a transfer transaction per source view.
+     *
+     * <p>This only reduces the number of transactions: it does not plan ahead, and the target is still asked to
+     * {@linkplain Storage#insert insert} once per source view, so it may be scanned once per view as well.
+     * The amount of every step comes from the source without opening a transaction when the source can
+     * {@linkplain StorageCursor#probeExtract probe} it. Each step is validated by checking that the source gives back exactly the amount the target accepted:
+     * this is the only case where the stepwise algorithm would have rolled a step back, which a single transaction cannot do,
+     * so everything is aborted and {@link #STEP_MISMATCH} is returned to let the caller move stepwise instead.
+     * Otherwise, both algorithms perform the same operations in the same order.
+     * A mismatch is paid for by running the steps before it twice, including the filter tests and the insertions into the target.
+     */
+    private static <T> long moveInOneTransaction(Storage<T> from, Storage<T> to, Predicate<T> filter, long maxAmount, @Nullable TransactionContext transaction) {
+        long totalMoved = 0;
+
+        try (Transaction moveTransaction = Transaction.openNested(transaction);
+             StorageCursor<T> cursor = from.cursor()) {
+            while (cursor.advance()) {
+                T resource = cursor.getResource();
+                if (!filter.test(resource)) continue;
+
+                long maxExtracted = cursor.probeExtract(resource, maxAmount - totalMoved);
+
+                if (maxExtracted == Storage.UNKNOWN_AMOUNT) {
+                    try (Transaction simulateTransaction = Transaction.openSimulation(moveTransaction)) {
+                        maxExtracted = cursor.extract(resource, maxAmount - totalMoved, simulateTransaction);
+                    }
+                }
+
+                long accepted = to.insert(resource, maxExtracted, moveTransaction);
+
+                if (cursor.extract(resource, accepted, moveTransaction) != accepted) {
+                    // The stepwise move would roll this step back alone, which a single transaction cannot do.
+                    return STEP_MISMATCH;
+                }
+
+                totalMoved += accepted;
+
+                if (maxAmount == totalMoved) {
+                    break;
+                }
+            }
+
+            moveTransaction.commit();
+        }
+
+        return totalMoved;
+    }
+
+    /**
+     * Move resources one source view at a time, checking each transfer in its own nested transaction.
+     */
+    private static <T> long moveStepwise(Storage<T> from, Storage<T> to, Predicate<T> filter, long maxAmount, @Nullable TransactionContext transaction) {
         long totalMoved = 0;
 
-        try (Transaction iterationTransaction = Transaction.openNested(transaction)) {
-            for (StorageView<T> view : from.nonEmptyViews()) {
-                T resource = view.getResource();
+        try (Transaction iterationTransaction = Transaction.openNested(transaction);
+             StorageCursor<T> cursor = from.cursor()) {
+            while (cursor.advance()) {
+                T resource = cursor.getResource();
                 if (!filter.test(resource)) continue;
 
                 // check how much can be extracted
-                long maxExtracted = simulateExtract(view, resource, maxAmount - totalMoved, iterationTransaction);
+                long maxExtracted = cursor.probeExtract(resource, maxAmount - totalMoved);
+
+                if (maxExtracted == Storage.UNKNOWN_AMOUNT) {
+                    try (Transaction simulateTransaction = Transaction.openSimulation(iterationTransaction)) {
+                        maxExtracted = cursor.extract(resource, maxAmount - totalMoved, simulateTransaction);
+                    }
+                }
 
                 try (Transaction transferTransaction = iterationTransaction.openNested()) {
                     // check how much can be inserted
                     long accepted = to.insert(resource, maxExtracted, transferTransaction);
 
                     // extract it, or rollback if the amounts don't match
-                    if (view.extract(resource, accepted, transferTransaction) == accepted) {
+                    if (cursor.extract(resource, accepted, transferTransaction) == accepted) {
                         totalMoved += accepted;
                         transferTransaction.commit();
                     }
@@ -110,17 +194,6 @@ public final class StorageUtil {
             }
 
             iterationTransaction.commit();
-        } catch (Exception e) {
-//            TODO: Crash Reporting
-//            CrashReport report = CrashReport.forThrowable(e, "Moving resources between storages");
-//            report.addCategory("Move details")
-//                    .setDetail("Input storage", from::toString)
-//                    .setDetail("Output storage", to::toString)
-//                    .setDetail("Filter", filter::toString)
-//                    .setDetail("Max amount", maxAmount)
-//                    .setDetail("Transaction", transaction);
-//            throw new ReportedException(report);
-            throw e;
         }
 
         return totalMoved;
@@ -129,6 +202,7 @@ public final class StorageUtil {
     /**
      * Convenient helper to simulate an insertion, i.e. get the result of {@link Storage#insert} without modifying any state.
      * The passed transaction may be null if a new transaction should be opened for the simulation.
+     * {@link Storage#probeInsert} is tried first, and no transaction is opened if it gives an answer.
      *
      * @param storage The storage to query. May be null.
      * @param resource The resource to simulate insertion for.
@@ -139,7 +213,10 @@ public final class StorageUtil {
      * @see Storage#insert
      */
     public static <T> long simulateInsert(Storage<T> storage, T resource, long maxAmount, @Nullable TransactionContext transaction) {
-        try (Transaction simulateTransaction = Transaction.openNested(transaction)) {
+        long probed = storage.probeInsert(resource, maxAmount);
+        if (probed != Storage.UNKNOWN_AMOUNT) return probed;
+
+        try (Transaction simulateTransaction = Transaction.openSimulation(transaction)) {
             return storage.insert(resource, maxAmount, simulateTransaction);
         }
     }
@@ -147,6 +224,7 @@ public final class StorageUtil {
     /**
      * Convenient helper to simulate an extraction, i.e. get the result of {@link Storage#extract} without modifying any state.
      * The passed transaction may be null if a new transaction should be opened for the simulation.
+     * {@link Storage#probeExtract} is tried first, and no transaction is opened if it gives an answer.
      *
      * @param storage The storage to query. May be null.
      * @param resource The resource to simulate extraction for.
@@ -157,7 +235,10 @@ public final class StorageUtil {
      * @see Storage#extract
      */
     public static <T> long simulateExtract(Storage<T> storage, T resource, long maxAmount, @Nullable TransactionContext transaction) {
-        try (Transaction simulateTransaction = Transaction.openNested(transaction)) {
+        long probed = storage.probeExtract(resource, maxAmount);
+        if (probed != Storage.UNKNOWN_AMOUNT) return probed;
+
+        try (Transaction simulateTransaction = Transaction.openSimulation(transaction)) {
             return storage.extract(resource, maxAmount, simulateTransaction);
         }
     }
@@ -165,6 +246,7 @@ public final class StorageUtil {
     /**
      * Convenient helper to simulate an extraction from a {@link StorageView}, i.e. get the result of extract without modifying any state.
      * The passed transaction may be null if a new transaction should be opened for the simulation.
+     * If the view is a {@link SingleSlotStorage}, {@link Storage#probeExtract} is tried first, and no transaction is opened if it gives an answer.
      *
      * @param storageView The storage view to query. May not be null.
      * @param resource The resource to simulate extraction for.
@@ -175,7 +257,13 @@ public final class StorageUtil {
      * @see StorageView#extract
      */
     public static <T> long simulateExtract(StorageView<T> storageView, T resource, long maxAmount, @Nullable TransactionContext transaction) {
-        try (Transaction simulateTransaction = Transaction.openNested(transaction)) {
+        // A single slot storage is its own view, so its extraction probe applies to the view.
+        if (storageView instanceof SingleSlotStorage<T> slot) {
+            long probed = slot.probeExtract(resource, maxAmount);
+            if (probed != Storage.UNKNOWN_AMOUNT) return probed;
+        }
+
+        try (Transaction simulateTransaction = Transaction.openSimulation(transaction)) {
             return storageView.extract(resource, maxAmount, simulateTransaction);
         }
     }
@@ -194,7 +282,10 @@ public final class StorageUtil {
      */
     // Object & is used to have a different erasure than the other overloads.
     public static <T, S extends Object & Storage<T> & StorageView<T>> long simulateExtract(S storage, T resource, long maxAmount, @Nullable TransactionContext transaction) {
-        try (Transaction simulateTransaction = Transaction.openNested(transaction)) {
+        long probed = storage.probeExtract(resource, maxAmount);
+        if (probed != Storage.UNKNOWN_AMOUNT) return probed;
+
+        try (Transaction simulateTransaction = Transaction.openSimulation(transaction)) {
             return storage.extract(resource, maxAmount, simulateTransaction);
         }
     }
@@ -213,10 +304,10 @@ public final class StorageUtil {
 
         if (storage == null) return null;
 
-        try {
-            for (StorageView<T> view : storage.nonEmptyViews()) {
-                T resource = view.getResource();
-                long amount = view.extract(resource, maxAmount, transaction);
+        try (StorageCursor<T> cursor = storage.cursor()) {
+            while (cursor.advance()) {
+                T resource = cursor.getResource();
+                long amount = cursor.extract(resource, maxAmount, transaction);
                 if (amount > 0) return new ResourceAmount<>(resource, amount);
             }
         } catch (Exception e) {
@@ -237,6 +328,9 @@ public final class StorageUtil {
      * Try to insert up to some amount of a resource into a list of storage slots, trying to "stack" first,
      * i.e. prioritizing slots that already contain the resource.
      *
+     * <p>If the slots come from {@link IndexedSlottedStorage#getSlots}, the index of that storage is used
+     * instead of scanning every slot.
+     *
      * @param slots The list of slots to try inserting into.
      * @param resource The resource to insert.
      * @param maxAmount The maximum amount to insert.
@@ -247,6 +341,12 @@ public final class StorageUtil {
      */
     public static <T> long insertStacking(List<? extends SingleSlotStorage<T>> slots, T resource, long maxAmount, @NotNull TransactionContext transaction) {
         StoragePreconditions.notNegative(maxAmount);
+        Storage<T> indexedStorage = IndexedSlottedStorage.ownerOf(slots);
+
+        if (indexedStorage != null) {
+            return indexedStorage.insert(resource, maxAmount, transaction);
+        }
+
         long amount = 0;
 
         try {
@@ -336,9 +436,13 @@ public final class StorageUtil {
         Objects.requireNonNull(filter, "Filter may not be null");
         if (storage == null) return null;
 
-        for (StorageView<T> view : storage.nonEmptyViews()) {
-            if (filter.test(view.getResource())) {
-                return view.getResource();
+        try (StorageCursor<T> cursor = storage.cursor()) {
+            while (cursor.advance()) {
+                T resource = cursor.getResource();
+
+                if (filter.test(resource)) {
+                    return resource;
+                }
             }
         }
 
@@ -372,13 +476,22 @@ public final class StorageUtil {
         Objects.requireNonNull(filter, "Filter may not be null");
         if (storage == null) return null;
 
-        try (Transaction nested = Transaction.openNested(transaction)) {
-            for (StorageView<T> view : storage.nonEmptyViews()) {
+        try (StorageCursor<T> cursor = storage.cursor()) {
+            while (cursor.advance()) {
                 // Extract below could change the resource, so we have to query it before extracting.
-                T resource = view.getResource();
+                T resource = cursor.getResource();
+                if (!filter.test(resource)) continue;
+
+                long extractable = cursor.probeExtract(resource, Long.MAX_VALUE);
+
+                if (extractable == Storage.UNKNOWN_AMOUNT) {
+                    try (Transaction nested = Transaction.openSimulation(transaction)) {
+                        // Will abort the extraction.
+                        extractable = cursor.extract(resource, Long.MAX_VALUE, nested);
+                    }
+                }
 
-                if (filter.test(resource) && view.extract(resource, Long.MAX_VALUE, nested) > 0) {
-                    // Will abort the extraction.
+                if (extractable > 0) {
                     return resource;
                 }
             }
@@ -0,0 +1,628 @@
+/*
+ * Copyright (c) 2025 Shai List and contributors
+ * Licensed under the MIT license. See LICENSE file in the project root for details.
+ */
+
+package dev.hytalemodding.api.transfer.v1.storage;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.jetbrains.annotations.Nullable;
+
+import dev.hytalemodding.api.transfer.v1.transaction.Transaction;
+import dev.hytalemodding.api.transfer.v1.transaction.TransactionContext;
+
+/**
+ * A graph of storages connected by edges with a limited throughput, such as a pipe network,
+ * that moves the maximum possible amount of a resource from its sources to its sinks at once.
+ *
+ * <p>Nodes are either {@linkplain #addSource sources}, which resources are extracted from,
+ * {@linkplain #addSink sinks}, which resources are inserted into, or {@linkplain #addJunction junctions},
+ * which only forward resources. A storage that is both a source and a sink is added twice.
+ * {@linkplain #addEdge Edges} are directed, and limit the amount that flows through them in a single {@link #transfer}.
+ *
+ * <p>{@link #transfer} computes a maximum flow from the sources to the sinks, where each source can give at most
+ * the amount it can extract and each sink can take at most the amount it can insert, and applies it in one transaction.
+ * The flow is solved with Dinic's algorithm over primitive arrays, with the edges of each node stored next to each other.
+ * It starts from the flow of the previous transfer, reduced where the amounts or capacities decreased,
+ * so that a network in a steady state needs few augmentations per transfer and keeps sending resources along the same paths.
+ * If no amount or capacity changed since the previous transfer reached the maximum flow, the flow is reused as is.
+ *
+ * <p>The same storage may back several sources or several sinks, for example a tank reachable through two pipes.
+ * The amount of each node is queried independently, so such a storage is counted once per node and the flow can announce more than it can give or take.
+ * When a storage takes or gives less than its flow, the flow is cut back along its paths to what the storage really did,
+ * so resources only ever move between connected nodes, and the next transfer looks for another route for the rest.
+ * Networks that transfer every tick should still give each storage at most one source node and one sink node, to avoid these corrections.
+ *
+ * <p>This class is not thread-safe.
+ *
+ * @param <T> The type of the transferred resources.
+ */
+public final class TransferNetwork<T> {
+    // The super source is connected to every source, and every sink is connected to the super sink.
+    private static final int SOURCE = 0;
+    private static final int SINK = 1;
+    private static final int FIRST_NODE = 2;
+
+    // Storages of the nodes, null for junctions.
+    private Object[] storages = new Object[16];
+    private int nodeCount = FIRST_NODE;
+    // Edges in the order they were added, including the edges from the super source and to the super sink.
+    private int[] edgeFrom = new int[16];
+    private int[] edgeTo = new int[16];
+    private long[] edgeMaxFlow = new long[16];
+    private int edgeCount = 0;
+    // Edges connecting the super source to each source, and each sink to the super sink.
+    private int[] sourceEdges = new int[8];
+    private int sourceCount = 0;
+    private int[] sinkEdges = new int[8];
+    private int sinkCount = 0;
+
+    // Residual graph, rebuilt when edges are added. Each edge has a forward slot and a reverse slot,
+    // and the slots leaving a node are contiguous, between nodeStart[node] and nodeStart[node + 1].
+    private int builtEdges = 0;
+    private int builtNodes = 0;
+    private int[] nodeStart = new int[1];
+    private int[] slotTarget = new int[0];
+    private int[] slotReverse = new int[0];
+    private long[] slotCapacity = new long[0];
+    // The flow of a reverse slot is always the opposite of the flow of its forward slot.
+    private long[] slotFlow = new long[0];
+    private int[] edgeSlot = new int[0];
+    // Whether the flow is known to be maximal for the current capacities.
+    private boolean maximal = false;
+
+    // Scratch arrays for the solver.
+    private int[] level = new int[0];
+    private int[] currentSlot = new int[0];
+    private int[] queue = new int[0];
+    private int[] path = new int[0];
+    private int[] visited = new int[0];
+    private int visitStamp = 0;
+
+    /**
+     * Create an empty network.
+     */
+    public TransferNetwork() {
+    }
+
+    /**
+     * Add a node that resources are extracted from.
+     *
+     * @param storage The storage of the node.
+     * @return The index of the new node.
+     */
+    public int addSource(Storage<T> storage) {
+        int node = addNode(Objects.requireNonNull(storage, "Storage may not be null."));
+        sourceEdges = append(sourceEdges, sourceCount++, addEdgeUnchecked(SOURCE, node, 0));
+        return node - FIRST_NODE;
+    }
+
+    /**
+     * Add a node that resources are inserted into.
+     *
+     * @param storage The storage of the node.
+     * @return The index of the new node.
+     */
+    public int addSink(Storage<T> storage) {
+        int node = addNode(Objects.requireNonNull(storage, "Storage may not be null."));
+        sinkEdges = append(sinkEdges, sinkCount++, addEdgeUnchecked(node, SINK, 0));
+        return node - FIRST_NODE;
+    }
+
+    /**
+     * Add a node that only forwards resources between edges.
+     *
+     * @return The index of the new node.
+     */
+    public int addJunction() {
+        return addNode(null) - FIRST_NODE;
+    }
+
+    /**
+     * Add a directed edge between two nodes.
+     *
+     * @param from The node resources flow out of.
+     * @param to The node resources flow into.
+     * @param maxFlow The maximum amount that may flow through this edge in a single {@link #transfer}.
+     * @return The index of the new edge.
+     */
+    public int addEdge(int from, int to, long maxFlow) {
+        Objects.checkIndex(from, getNodeCount());
+        Objects.checkIndex(to, getNodeCount());
+        StoragePreconditions.notNegative(maxFlow);
+        return addEdgeUnchecked(from + FIRST_NODE, to + FIRST_NODE, maxFlow);
+    }
+
+    /**
+     * Change the maximum flow of an edge, taking effect at the next {@link #transfer}.
+     *
+     * @param edge The index of the edge, as returned by {@link #addEdge}.
+     * @param maxFlow The maximum amount that may flow through this edge in a single {@link #transfer}.
+     */
+    public void setMaxFlow(int edge, long maxFlow) {
+        StoragePreconditions.notNegative(maxFlow);
+        checkEdge(edge);
+
+        if (edgeMaxFlow[edge] != maxFlow) {
+            edgeMaxFlow[edge] = maxFlow;
+            maximal = false;
+
+            if (edge < builtEdges) {
+                slotCapacity[edgeSlot[edge]] = maxFlow;
+            }
+        }
+    }
+
+    /**
+     * Return the amount that flowed through an edge during the last {@link #transfer}.
+     *
+     * @param edge The index of the edge, as returned by {@link #addEdge}.
+     * @return The amount that flowed through the edge.
+     */
+    public long getFlow(int edge) {
+        checkEdge(edge);
+        return edge < builtEdges ? slotFlow[edgeSlot[edge]] : 0;
+    }
+
+    /**
+     * Return the number of nodes in this network.
+     *
+     * @return The number of sources, sinks and junctions.
+     */
+    public int getNodeCount() {
+        return nodeCount - FIRST_NODE;
+    }
+
+    /**
+     * Move as much of a resource as possible from the sources to the sinks, respecting the maximum flow of every edge.
+     *
+     * @param resource The resource to transfer. May not be blank.
+     * @param maxAmount The maximum amount that will be transferred in total.
+     * @param transaction The transaction this transfer is part of, or {@code null} if a transaction should be opened just for this transfer.
+     * @return The total amount of resources that was successfully transferred.
+     * @throws IllegalStateException If no transaction is passed and a transaction is already active on the current thread.
+     */
+    @SuppressWarnings("unchecked")
+    public long transfer(T resource, long maxAmount, @Nullable TransactionContext transaction) {
+        StoragePreconditions.notNegative(maxAmount);
+
+        if (builtEdges != edgeCount || builtNodes != nodeCount) {
+            rebuild();
+        }
+
+        try (Transaction transferTransaction = Transaction.openNested(transaction)) {
+            for (int i = 0; i < sourceCount; i++) {
+                Storage<T> storage = (Storage<T>) storages[edgeTo[sourceEdges[i]]];
+                setSlotCapacity(edgeSlot[sourceEdges[i]], StorageUtil.simulateExtract(storage, resource, Long.MAX_VALUE, transferTransaction));
+            }
+
+            for (int i = 0; i < sinkCount; i++) {
+                Storage<T> storage = (Storage<T>) storages[edgeFrom[sinkEdges[i]]];
+                setSlotCapacity(edgeSlot[sinkEdges[i]], StorageUtil.simulateInsert(storage, resource, Long.MAX_VALUE, transferTransaction));
+            }
+
+            long total = repairFlow(maxAmount);
+
+            if (total < maxAmount && !maximal) {
+                total += augment(maxAmount - total);
+            }
+
+            if (total == 0) return 0;
+
+            // Insert first, then extract what the sinks accepted. Each correction cuts the flow of at least one source,
+            // and a source that gives what it announced keeps its flow, so this converges after a few attempts.
+            for (int attempt = 0; attempt <= sourceCount; attempt++) {
+                try (Transaction applyTransaction = transferTransaction.openNested()) {
+                    long accepted = insertFlow(resource, applyTransaction);
+                    if (accepted < 0) break;
+
+                    int shortSources = extractFlow(resource, applyTransaction);
+                    if (shortSources < 0) break;
+
+                    if (shortSources == 0) {
+                        applyTransaction.commit();
+                        transferTransaction.commit();
+                        return accepted;
+                    }
+
+                    // The sinks were filled with the flow of the sources that fell short, so try again with the cut flow.
+                }
+            }
+
+            clearFlow();
+            return 0;
+        }
+    }
+
+    /**
+     * Insert the flow of every sink, and cut the flow of the sinks that accepted less back to what they accepted.
+     * The other sinks are not affected by the cuts, so the inserted amounts match the flow afterwards.
+     *
+     * @return The amount that was accepted, or {@code -1} if the flow could not be cut.
+     */
+    @SuppressWarnings("unchecked")
+    private long insertFlow(T resource, TransactionContext transaction) {
+        long accepted = 0;
+
+        for (int i = 0; i < sinkCount; i++) {
+            int slot = edgeSlot[sinkEdges[i]];
+            long amount = slotFlow[slot];
+
+            if (amount > 0) {
+                Storage<T> storage = (Storage<T>) storages[edgeFrom[sinkEdges[i]]];
+                long inserted = storage.insert(resource, amount, transaction);
+                if (inserted < amount && !cutFlow(slot, amount - inserted)) return -1;
+
+                accepted += inserted;
+            }
+        }
+
+        return accepted;
+    }
+
+    /**
+     * Extract the flow of every source, and cut the flow of the sources that gave less back to what they gave.
+     *
+     * @return The number of sources that gave less than their flow, or {@code -1} if the flow could not be cut.
+     */
+    @SuppressWarnings("unchecked")
+    private int extractFlow(T resource, TransactionContext transaction) {
+        int shortSources = 0;
+
+        for (int i = 0; i < sourceCount; i++) {
+            int slot = edgeSlot[sourceEdges[i]];
+            long amount = slotFlow[slot];
+
+            if (amount > 0) {
+                Storage<T> storage = (Storage<T>) storages[edgeTo[sourceEdges[i]]];
+                long extracted = storage.extract(resource, amount, transaction);
+
+                if (extracted < amount) {
+                    if (!cutFlow(slot, amount - extracted)) return -1;
+
+                    shortSources++;
+                }
+            }
+        }
+
+        return shortSources;
+    }
+
+    /**
+     * Remove some flow from the edge of a source or sink, along the paths that carry it.
+     */
+    private boolean cutFlow(int slot, long amount) {
+        maximal = false;
+        return removeFlow(slot, amount);
+    }
+
+    private void setSlotCapacity(int slot, long capacity) {
+        if (slotCapacity[slot] != capacity) {
+            slotCapacity[slot] = capacity;
+            maximal = false;
+        }
+    }
+
+    /**
+     * Make the flow of the previous transfer valid for the current capacities and maximum amount,
+     * and return its value.
+     */
+    private long repairFlow(long maxAmount) {
+        for (int edge = 0; edge < edgeCount; edge++) {
+            int slot = edgeSlot[edge];
+            long excess = slotFlow[slot] - slotCapacity[slot];
+
+            if (excess > 0 && !removeFlow(slot, excess)) {
+                clearFlow();
+                return 0;
+            }
+        }
+
+        long total = 0;
+
+        for (int i = 0; i < sourceCount; i++) {
+            total += slotFlow[edgeSlot[sourceEdges[i]]];
+        }
+
+        for (int i = 0; i < sourceCount && total > maxAmount; i++) {
+            int slot = edgeSlot[sourceEdges[i]];
+            long excess = Math.min(slotFlow[slot], total - maxAmount);
+
+            if (excess > 0) {
+                if (!removeFlow(slot, excess)) {
+                    clearFlow();
+                    return 0;
+                }
+
+                total -= excess;
+                maximal = false;
+            }
+        }
+
+        return total;
+    }
+
+    /**
+     * Remove some flow from a forward slot, along with the flow that brings it from the super source and takes it to the super sink.
+     *
+     * @return {@code false} if the flow could not be followed, which only happens if it was not a valid flow.
+     */
+    private boolean removeFlow(int slot, long amount) {
+        addFlow(slot, -amount);
+        return cancelPaths(slotTarget[slotReverse[slot]], SOURCE, amount, false) && cancelPaths(slotTarget[slot], SINK, amount, true);
+    }
+
+    /**
+     * Remove an amount of flow along paths of positive flow between a node and the super source or the super sink.
+     */
+    private boolean cancelPaths(int node, int end, long amount, boolean forward) {
+        while (amount > 0 && node != end) {
+            int length = findFlowPath(node, end, forward);
+            if (length < 0) return false;
+
+            long cancelled = amount;
+
+            for (int i = 0; i < length; i++) {
+                cancelled = Math.min(cancelled, slotFlow[path[i]]);
+            }
+
+            for (int i = 0; i < length; i++) {
+                addFlow(path[i], -cancelled);
+            }
+
+            amount -= cancelled;
+        }
+
+        return true;
+    }
+
+    /**
+     * Find a path of forward slots with a positive flow from the start node to the end node,
+     * following the flow if {@code forward} is true or going against it otherwise.
+     *
+     * @return The number of slots of the path stored in {@link #path}, or {@code -1} if there is no such path.
+     */
+    private int findFlowPath(int start, int end, boolean forward) {
+        int stamp = ++visitStamp;
+        int depth = 0;
+        int node = start;
+        visited[start] = stamp;
+        currentSlot[start] = nodeStart[start];
+
+        while (node != end) {
+            int slot = currentSlot[node];
+
+            if (slot == nodeStart[node + 1]) {
+                // Dead end, go back to the previous node of the path.
+                if (depth == 0) return -1;
+
+                int previous = path[--depth];
+                node = forward ? slotTarget[slotReverse[previous]] : slotTarget[previous];
+                currentSlot[node]++;
+                continue;
+            }
+
+            // Forward slots carry a positive flow, and the reverse slots of the edges entering the node a negative one.
+            int next = slotTarget[slot];
+
+            if ((forward ? slotFlow[slot] > 0 : slotFlow[slot] < 0) && visited[next] != stamp) {
+                visited[next] = stamp;
+                currentSlot[next] = nodeStart[next];
+                path[depth++] = forward ? slot : slotReverse[slot];
+                node = next;
+            } else {
+                currentSlot[node]++;
+            }
+        }
+
+        return depth;
+    }
+
+    /**
+     * Augment the flow with Dinic's algorithm, by at most the passed amount, and return the amount that was added.
+     */
+    private long augment(long limit) {
+        long total = 0;
+
+        while (total < limit) {
+            if (!buildLevels()) {
+                maximal = true;
+                break;
+            }
+
+            System.arraycopy(nodeStart, 0, currentSlot, 0, nodeCount);
+            long pushed;
+
+            while (total < limit && (pushed = pushBlockingPath(limit - total)) > 0) {
+                total += pushed;
+            }
+        }
+
+        return total;
+    }
+
+    /**
+     * Compute the distance of every node from the super source in the residual graph.
+     *
+     * @return Whether the super sink can be reached.
+     */
+    private boolean buildLevels() {
+        Arrays.fill(level, 0, nodeCount, -1);
+        int head = 0;
+        int tail = 0;
+        level[SOURCE] = 0;
+        queue[tail++] = SOURCE;
+
+        while (head < tail) {
+            int node = queue[head++];
+            int nextLevel = level[node] + 1;
+
+            for (int slot = nodeStart[node], end = nodeStart[node + 1]; slot < end; slot++) {
+                int next = slotTarget[slot];
+
+                if (level[next] < 0 && slotCapacity[slot] > slotFlow[slot]) {
+                    level[next] = nextLevel;
+                    if (next == SINK) return true;
+
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Find one path from the super source to the super sink in the level graph and push as much as possible along it.
+     * Dead ends are removed from the level graph, so that each call resumes where the previous one stopped.
+     *
+     * @return The amount that was pushed, or {@code 0} if the level graph is exhausted.
+     */
+    private long pushBlockingPath(long limit) {
+        int depth = 0;
+        int node = SOURCE;
+
+        while (node != SINK) {
+            int slot = currentSlot[node];
+
+            if (slot == nodeStart[node + 1]) {
+                if (depth == 0) return 0;
+
+                level[node] = -1;
+                int previous = path[--depth];
+                node = slotTarget[slotReverse[previous]];
+                currentSlot[node]++;
+                continue;
+            }
+
+            int next = slotTarget[slot];
+
+            // The super sink may have been reached before the other nodes of its level were visited.
+            if ((level[next] == level[node] + 1 || next == SINK && level[node] >= 0) && slotCapacity[slot] > slotFlow[slot]) {
+                path[depth++] = slot;
+                node = next;
+            } else {
+                currentSlot[node]++;
+            }
+        }
+
+        long pushed = limit;
+
+        for (int i = 0; i < depth; i++) {
+            pushed = Math.min(pushed, slotCapacity[path[i]] - slotFlow[path[i]]);
+        }
+
+        for (int i = 0; i < depth; i++) {
+            addFlow(path[i], pushed);
+        }
+
+        return pushed;
+    }
+
+    private void addFlow(int slot, long amount) {
+        slotFlow[slot] += amount;
+        slotFlow[slotReverse[slot]] -= amount;
+    }
+
+    private void clearFlow() {
+        Arrays.fill(slotFlow, 0);
+        maximal = false;
+    }
+
+    /**
+     * Lay the edges out by node, keeping the flow of the edges that were already built.
+     */
+    private void rebuild() {
+        int slotCount = 2 * edgeCount;
+        int[] start = new int[nodeCount + 1];
+
+        for (int edge = 0; edge < edgeCount; edge++) {
+            start[edgeFrom[edge] + 1]++;
+            start[edgeTo[edge] + 1]++;
+        }
+
+        for (int node = 0; node < nodeCount; node++) {
+            start[node + 1] += start[node];
+        }
+
+        int[] position = Arrays.copyOf(start, nodeCount);
+        int[] target = new int[slotCount];
+        int[] reverse = new int[slotCount];
+        long[] capacity = new long[slotCount];
+        long[] flow = new long[slotCount];
+        int[] slots = new int[edgeCount];
+
+        for (int edge = 0; edge < edgeCount; edge++) {
+            int forward = position[edgeFrom[edge]]++;
+            int backward = position[edgeTo[edge]]++;
+            target[forward] = edgeTo[edge];
+            target[backward] = edgeFrom[edge];
+            reverse[forward] = backward;
+            reverse[backward] = forward;
+            // The capacity of the edges to and from the super nodes is set by each transfer.
+            capacity[forward] = edge < builtEdges ? slotCapacity[edgeSlot[edge]] : edgeMaxFlow[edge];
+            flow[forward] = edge < builtEdges ? slotFlow[edgeSlot[edge]] : 0;
+            flow[backward] = -flow[forward];
+            slots[edge] = forward;
+        }
+
+        nodeStart = start;
+        slotTarget = target;
+        slotReverse = reverse;
+        slotCapacity = capacity;
+        slotFlow = flow;
+        edgeSlot = slots;
+        builtEdges = edgeCount;
+        builtNodes = nodeCount;
+        maximal = false;
+
+        if (level.length < nodeCount) {
+            level = new int[nodeCount];
+            currentSlot = new int[nodeCount];
+            queue = new int[nodeCount];
+            path = new int[nodeCount];
+            visited = new int[nodeCount];
+            visitStamp = 0;
+        }
+    }
+
+    private int addNode(@Nullable Storage<T> storage) {
+        if (nodeCount == storages.length) {
+            storages = Arrays.copyOf(storages, nodeCount * 2);
+        }
+
+        storages[nodeCount] = storage;
+        return nodeCount++;
+    }
+
+    private int addEdgeUnchecked(int from, int to, long maxFlow) {
+        if (edgeCount == edgeFrom.length) {
+            edgeFrom = Arrays.copyOf(edgeFrom, edgeCount * 2);
+            edgeTo = Arrays.copyOf(edgeTo, edgeCount * 2);
+            edgeMaxFlow = Arrays.copyOf(edgeMaxFlow, edgeCount * 2);
+        }
+
+        edgeFrom[edgeCount] = from;
+        edgeTo[edgeCount] = to;
+        edgeMaxFlow[edgeCount] = maxFlow;
+        return edgeCount++;
+    }
+
+    private void checkEdge(int edge) {
+        // Edges connecting the super source and the super sink are not visible.
+        if (edge < 0 || edge >= edgeCount || edgeFrom[edge] == SOURCE || edgeTo[edge] == SINK) {
+            throw new IndexOutOfBoundsException("Invalid edge index: " + edge);
+        }
+    }
+
+    private static int[] append(int[] array, int index, int value) {
+        if (index == array.length) {
+            array = Arrays.copyOf(array, index * 2);
+        }
+
+        array[index] = value;
+        return array;
+    }
+}
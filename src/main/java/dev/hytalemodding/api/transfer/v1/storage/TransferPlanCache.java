@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2025 Shai List and contributors
+ * Licensed under the MIT license. See LICENSE file in the project root for details.
+ */
+
+package dev.hytalemodding.api.transfer.v1.storage;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+import org.jetbrains.annotations.Nullable;
+
+import dev.hytalemodding.api.transfer.v1.transaction.Transaction;
+import dev.hytalemodding.api.transfer.v1.transaction.TransactionContext;
+
+/**
+ * Repeats the same {@link StorageUtil#move} between two slotted storages, replaying the slot-level outcome of the last move
+ * instead of scanning the storages again.
+ *
+ * <p>Machines often move the same resources between the same storages every tick, for example from an output slot to a chest,
+ * and each {@link StorageUtil#move} makes the same decisions again. After a move that transferred the full maximum amount,
+ * this cache records how much of which resource left each source slot and entered each target slot,
+ * together with the {@linkplain Storage#getVersion versions} of both storages.
+ * As long as neither storage has changed since, the next {@link #move} applies the same slot changes directly.
+ * The replay is validated by checking that every slot accepts or gives back exactly the recorded amount;
+ * if one does not, the replay is rolled back and a normal move is performed instead.
+ *
+ * <p>Replaying is equivalent to a normal move for storages whose choice of slots only depends on their contents,
+ * which is the case for the base storages. Recording a move costs an additional pass over the slots of both storages,
+ * so this cache is meant for connections that keep repeating the same move.
+ * Moves that are part of a transaction are never replayed, since versions may not be queried during a transaction.
+ *
+ * <p>This class is not thread-safe.
+ *
+ * @param <T> The type of the moved resources.
+ */
+public final class TransferPlanCache<T> {
+    private static final long[] NO_AMOUNTS = new long[0];
+    private static final Object[] NO_RESOURCES = new Object[0];
+    private static final int[] NO_SLOTS = new int[0];
+
+    private final SlottedStorage<T> from;
+    private final SlottedStorage<T> to;
+    private final Predicate<T> filter;
+    private final long maxAmount;
+    // Contents of the slots of both storages before a recorded move, reused between recordings.
+    private Object[] fromResources = NO_RESOURCES;
+    private long[] fromAmounts = NO_AMOUNTS;
+    private Object[] toResources = NO_RESOURCES;
+    private long[] toAmounts = NO_AMOUNTS;
+    // Recorded plan: the source steps come first, followed by the target steps.
+    private int[] stepSlots = NO_SLOTS;
+    private Object[] stepResources = NO_RESOURCES;
+    private long[] stepAmounts = NO_AMOUNTS;
+    private int sourceSteps = 0;
+    private int stepCount = 0;
+    private boolean planned = false;
+    private long fromVersion;
+    private long toVersion;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * Create a cache for moves between the passed storages.
+     *
+     * @param from The source storage.
+     * @param to The target storage. May not be the source storage.
+     * @param filter The filter for transferred resources, as defined by {@link StorageUtil#move}.
+     * @param maxAmount The maximum amount that will be transferred by each move.
+     */
+    public TransferPlanCache(SlottedStorage<T> from, SlottedStorage<T> to, Predicate<T> filter, long maxAmount) {
+        StoragePreconditions.notNegative(maxAmount);
+
+        if (from == to) {
+            throw new IllegalArgumentException("Source and target storage may not be the same.");
+        }
+
+        this.from = Objects.requireNonNull(from, "Source storage may not be null.");
+        this.to = Objects.requireNonNull(to, "Target storage may not be null.");
+        this.filter = Objects.requireNonNull(filter, "Filter may not be null");
+        this.maxAmount = maxAmount;
+    }
+
+    /**
+     * Move resources from the source to the target storage like {@link StorageUtil#move},
+     * replaying the last move if neither storage changed since.
+     *
+     * @param transaction The transaction this transfer is part of, or {@code null} if a transaction should be opened just for this transfer.
+     * @return The total amount of resources that was successfully transferred.
+     * @throws IllegalStateException If no transaction is passed and a transaction is already active on the current thread.
+     */
+    public long move(@Nullable TransactionContext transaction) {
+        if (transaction != null) {
+            misses++;
+            return StorageUtil.move(from, to, filter, maxAmount, transaction);
+        }
+
+        if (planned && from.getVersion() == fromVersion && to.getVersion() == toVersion && replay()) {
+            hits++;
+            fromVersion = from.getVersion();
+            toVersion = to.getVersion();
+            return maxAmount;
+        }
+
+        misses++;
+        return moveAndRecord();
+    }
+
+    /**
+     * Forget the recorded plan, for example after the rules of one of the storages changed.
+     */
+    public void invalidate() {
+        planned = false;
+    }
+
+    /**
+     * Return the number of moves that were replayed.
+     *
+     * @return The number of {@link #move} calls that applied the recorded plan.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Return the number of moves that were performed normally.
+     *
+     * @return The number of {@link #move} calls that delegated to {@link StorageUtil#move}.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Apply the recorded plan in its own transaction, and return whether every slot matched the plan.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean replay() {
+        int fromSlotCount = from.getSlotCount();
+        int toSlotCount = to.getSlotCount();
+
+        try (Transaction transaction = Transaction.openOuter()) {
+            // Insert first, like the normal move does.
+            for (int i = sourceSteps; i < stepCount; i++) {
+                if (stepSlots[i] >= toSlotCount) return false;
+
+                T resource = (T) stepResources[i];
+                if (to.getSlot(stepSlots[i]).insert(resource, stepAmounts[i], transaction) != stepAmounts[i]) return false;
+            }
+
+            for (int i = 0; i < sourceSteps; i++) {
+                if (stepSlots[i] >= fromSlotCount) return false;
+
+                T resource = (T) stepResources[i];
+                if (from.getSlot(stepSlots[i]).extract(resource, stepAmounts[i], transaction) != stepAmounts[i]) return false;
+            }
+
+            transaction.commit();
+            return true;
+        }
+    }
+
+    private long moveAndRecord() {
+        int fromSlotCount = from.getSlotCount();
+        int toSlotCount = to.getSlotCount();
+
+        if (fromResources.length < fromSlotCount) {
+            fromResources = new Object[fromSlotCount];
+            fromAmounts = new long[fromSlotCount];
+        }
+
+        if (toResources.length < toSlotCount) {
+            toResources = new Object[toSlotCount];
+            toAmounts = new long[toSlotCount];
+        }
+
+        capture(from, fromSlotCount, fromResources, fromAmounts);
+        capture(to, toSlotCount, toResources, toAmounts);
+
+        long moved = StorageUtil.move(from, to, filter, maxAmount, null);
+
+        // A move that stopped before the maximum amount depends on slots that it did not change, so it is not recorded.
+        planned = moved == maxAmount && moved > 0
+                && fromSlotCount == from.getSlotCount() && toSlotCount == to.getSlotCount()
+                && recordPlan(fromSlotCount, toSlotCount);
+
+        if (planned) {
+            fromVersion = from.getVersion();
+            toVersion = to.getVersion();
+        }
+
+        // Don't keep the resources alive until the next recording.
+        Arrays.fill(fromResources, 0, fromSlotCount, null);
+        Arrays.fill(toResources, 0, toSlotCount, null);
+        return moved;
+    }
+
+    private boolean recordPlan(int fromSlotCount, int toSlotCount) {
+        stepCount = 0;
+
+        for (int slot = 0; slot < fromSlotCount; slot++) {
+            StorageView<T> view = from.getSlot(slot);
+            long amount = view.getAmount();
+            long before = fromAmounts[slot];
+
+            if (amount != before) {
+                // Source slots may only lose resources they already contained.
+                if (amount > before || amount > 0 && !view.getResource().equals(fromResources[slot])) return false;
+
+                addStep(slot, fromResources[slot], before - amount);
+            }
+        }
+
+        sourceSteps = stepCount;
+
+        for (int slot = 0; slot < toSlotCount; slot++) {
+            StorageView<T> view = to.getSlot(slot);
+            long amount = view.getAmount();
+            long before = toAmounts[slot];
+
+            if (amount != before) {
+                // Target slots may only gain resources they already contained, or fill up if they were empty.
+                if (amount < before || before > 0 && !view.getResource().equals(toResources[slot])) return false;
+
+                addStep(slot, view.getResource(), amount - before);
+            }
+        }
+
+        return sourceSteps > 0 && stepCount > sourceSteps;
+    }
+
+    private void addStep(int slot, Object resource, long amount) {
+        if (stepCount == stepSlots.length) {
+            int length = Math.max(4, stepCount * 2);
+            stepSlots = Arrays.copyOf(stepSlots, length);
+            stepResources = Arrays.copyOf(stepResources, length);
+            stepAmounts = Arrays.copyOf(stepAmounts, length);
+        }
+
+        stepSlots[stepCount] = slot;
+        stepResources[stepCount] = resource;
+        stepAmounts[stepCount] = amount;
+        stepCount++;
+    }
+
+    private static void capture(SlottedStorage<?> storage, int slotCount, Object[] resources, long[] amounts) {
+        for (int slot = 0; slot < slotCount; slot++) {
+            StorageView<?> view = storage.getSlot(slot);
+            resources[slot] = view.getResource();
+            amounts[slot] = view.getAmount();
+        }
+    }
+}
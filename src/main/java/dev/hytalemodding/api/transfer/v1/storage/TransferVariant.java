@@ -26,6 +26,7 @@ package dev.hytalemodding.api.transfer.v1.storage;
  * but note that a {@link Storage} is not necessarily bound to {@code TransferVariant}. Its generic parameter can be any immutable object.
  *
  * <p><b>Transfer variants must always be compared with {@code equals}, never by reference!</b>
+ * The only exception are the canonical instances returned by the same {@link VariantInterner}.
  * {@code hashCode} is guaranteed to be correct and constant time independently of the size of the components.
  *
  * @param <O> The type of the immutable object instance, for example {@code Item} or {@code Fluid}.
@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2025 Shai List and contributors
+ * Licensed under the MIT license. See LICENSE file in the project root for details.
+ */
+
+package dev.hytalemodding.api.transfer.v1.storage;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A registry of canonical variant instances, each associated with a dense {@code int} id.
+ *
+ * <p>{@link #intern} returns the same instance for all variants that are {@code equals} to each other,
+ * so interned variants obtained from the same interner may be compared by reference.
+ * Each interned variant is also assigned a small non-negative id through {@link #getId}, suitable as an array index or a bit index,
+ * and {@link #byId} maps it back to the variant.
+ *
+ * <p>Variants are only weakly referenced: once a canonical instance is no longer reachable, it is removed from the interner
+ * and its id may be reused by another variant. Ids must therefore only be kept for as long as the variant itself is kept.
+ *
+ * <p>This class is thread-safe. Lookups of already interned variants only take a shared lock.
+ *
+ * @param <T> The type of the interned variants.
+ */
+public final class VariantInterner<T extends TransferVariant<?>> {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReferenceQueue<T> queue = new ReferenceQueue<>();
+    // Hash table of chained entries, the length is always a power of two.
+    private Entry<T>[] table = newTable(INITIAL_CAPACITY);
+    // Entry of each id, or null if the id is free.
+    private Entry<T>[] entriesById = newTable(INITIAL_CAPACITY);
+    // Stack of the ids that were released by collected variants.
+    private int[] freeIds = new int[16];
+    private int freeIdCount = 0;
+    private int nextId = 0;
+    private int size = 0;
+
+    /**
+     * Create an empty interner.
+     */
+    public VariantInterner() {
+    }
+
+    /**
+     * Return the canonical instance of the passed variant, registering the variant itself if no equal variant is interned yet.
+     *
+     * @param variant The variant to intern.
+     * @return The canonical instance, which is {@code equals} to the passed variant.
+     */
+    public T intern(T variant) {
+        while (true) {
+            T value = find(variant).get();
+
+            // The canonical instance may have been collected since it was found, in which case the variant is registered instead.
+            if (value != null) return value;
+        }
+    }
+
+    /**
+     * Return the id of the passed variant, interning it if necessary.
+     *
+     * @param variant The variant.
+     * @return The id of the variant, between {@code 0} (inclusive) and the maximum number of variants interned so far (exclusive).
+     */
+    public int getId(T variant) {
+        return find(variant).id;
+    }
+
+    /**
+     * Return the canonical variant with the passed id.
+     *
+     * @param id The id of the variant.
+     * @return The canonical variant with this id, or {@code null} if no variant currently has this id.
+     */
+    public @Nullable T byId(int id) {
+        lock.readLock().lock();
+
+        try {
+            if (id < 0 || id >= nextId) return null;
+
+            Entry<T> entry = entriesById[id];
+            return entry == null ? null : entry.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Return the number of variants that are currently interned.
+     * Variants that are no longer reachable may still be counted until the interner is next modified.
+     *
+     * @return The number of interned variants.
+     */
+    public int size() {
+        lock.readLock().lock();
+
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Return the found or created entry. Its value was reachable during the lookup, but may be collected afterwards.
+     */
+    private Entry<T> find(T variant) {
+        Objects.requireNonNull(variant, "Variant may not be null.");
+        int hash = spread(variant.hashCode());
+
+        lock.readLock().lock();
+
+        try {
+            Entry<T> existing = lookup(variant, hash);
+            if (existing != null) return existing;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+
+        try {
+            expungeCollected();
+
+            // Another thread may have interned an equal variant in the meantime.
+            Entry<T> existing = lookup(variant, hash);
+            if (existing != null) return existing;
+
+            int id = freeIdCount > 0 ? freeIds[--freeIdCount] : nextId++;
+
+            if (size + 1 > table.length - (table.length >>> 2)) {
+                resize();
+            }
+
+            int bucket = hash & (table.length - 1);
+            Entry<T> entry = new Entry<>(variant, queue, hash, id, table[bucket]);
+            table[bucket] = entry;
+
+            if (id >= entriesById.length) {
+                entriesById = Arrays.copyOf(entriesById, entriesById.length * 2);
+            }
+
+            entriesById[id] = entry;
+            size++;
+            return entry;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private @Nullable Entry<T> lookup(T variant, int hash) {
+        for (Entry<T> entry = table[hash & (table.length - 1)]; entry != null; entry = entry.next) {
+            if (entry.hash == hash) {
+                T value = entry.get();
+
+                if (value != null && (value == variant || value.equals(variant))) {
+                    return entry;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Remove the entries of collected variants and release their ids. Must be called with the write lock held.
+     */
+    @SuppressWarnings("unchecked")
+    private void expungeCollected() {
+        Object reference;
+
+        while ((reference = queue.poll()) != null) {
+            Entry<T> collected = (Entry<T>) reference;
+            int bucket = collected.hash & (table.length - 1);
+            Entry<T> previous = null;
+
+            for (Entry<T> entry = table[bucket]; entry != null; previous = entry, entry = entry.next) {
+                if (entry == collected) {
+                    if (previous == null) {
+                        table[bucket] = entry.next;
+                    } else {
+                        previous.next = entry.next;
+                    }
+
+                    entriesById[entry.id] = null;
+
+                    if (freeIdCount == freeIds.length) {
+                        freeIds = Arrays.copyOf(freeIds, freeIdCount * 2);
+                    }
+
+                    freeIds[freeIdCount++] = entry.id;
+                    size--;
+                    break;
+                }
+            }
+        }
+    }
+
+    private void resize() {
+        Entry<T>[] newTable = newTable(table.length * 2);
+
+        for (Entry<T> head : table) {
+            Entry<T> entry = head;
+
+            while (entry != null) {
+                Entry<T> next = entry.next;
+                int bucket = entry.hash & (newTable.length - 1);
+                entry.next = newTable[bucket];
+                newTable[bucket] = entry;
+                entry = next;
+            }
+        }
+
+        table = newTable;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Entry<T>[] newTable(int length) {
+        return (Entry<T>[]) new Entry<?>[length];
+    }
+
+    private static final class Entry<T> extends WeakReference<T> {
+        // The hash is kept so that the entry can still be found after its variant is collected.
+        final int hash;
+        final int id;
+        @Nullable Entry<T> next;
+
+        Entry(T value, ReferenceQueue<T> queue, int hash, int id, @Nullable Entry<T> next) {
+            super(value, queue);
+            this.hash = hash;
+            this.id = id;
+            this.next = next;
+        }
+    }
+}
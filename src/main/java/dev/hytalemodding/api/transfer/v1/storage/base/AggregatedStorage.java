@@ -0,0 +1,568 @@
+/*
+ * Copyright (c) 2025 Shai List and contributors
+ * Licensed under the MIT license. See LICENSE file in the project root for details.
+ */
+
+package dev.hytalemodding.api.transfer.v1.storage.base;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import dev.hytalemodding.api.transfer.v1.storage.Storage;
+import dev.hytalemodding.api.transfer.v1.storage.StorageCursor;
+import dev.hytalemodding.api.transfer.v1.storage.StoragePreconditions;
+import dev.hytalemodding.api.transfer.v1.storage.StorageView;
+import dev.hytalemodding.api.transfer.v1.storage.TransferVariant;
+import dev.hytalemodding.api.transfer.v1.transaction.Transaction;
+import dev.hytalemodding.api.transfer.v1.transaction.TransactionContext;
+import dev.hytalemodding.api.transfer.v1.transaction.base.LongSnapshotParticipant;
+import dev.hytalemodding.impl.transfer.TransferApiImpl;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A {@link Storage} that holds any number of different variants, each with its own amount, such as a network drive.
+ * Amounts are kept in an open-addressing hash map from variant to {@code long}, so {@link #insert}, {@link #extract}
+ * and {@link #getAmount} take constant time regardless of the number of stored variants.
+ *
+ * <p>The storage is limited by a total capacity shared by all variants, and by a {@linkplain #getCapacity per-variant capacity}.
+ * Changes are recorded in a single change log that takes part in transactions, instead of one snapshot participant per variant.
+ *
+ * <p>Iteration returns a view for each stored variant. Views are created lazily and look their variant up in the map,
+ * so they stay valid when the storage is modified. Variants whose amount drops to zero are only removed from the map once no
+ * transaction is modifying the storage anymore.
+ *
+ * @param <T> The transfer variant type handled by this storage.
+ */
+public abstract class AggregatedStorage<T extends TransferVariant<?>> implements Storage<T> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final long totalCapacity;
+    private final ChangeLog changeLog = new ChangeLog();
+    // Open-addressing table with linear probing. Entries are never removed in place, only when the table is rebuilt,
+    // so iterators can keep walking an older table.
+    private Object[] keys = new Object[INITIAL_CAPACITY];
+    private long[] amounts = new long[INITIAL_CAPACITY];
+    // Number of used entries in the table, including entries with a zero amount.
+    private int entryCount = 0;
+    // Number of entries with a zero amount.
+    private int zeroCount = 0;
+    private long totalAmount = 0;
+
+    // Whether a subclass overrides extract, in which case the cursor probes cannot predict its result.
+    private static final ClassValue<Boolean> OVERRIDES_EXTRACT = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return TransferApiImpl.overridesMethod(type, AggregatedStorage.class, "extract", TransferVariant.class, long.class, TransactionContext.class);
+        }
+    };
+    private static final VarHandle CACHED_CURSOR = TransferApiImpl.findVarHandle(MethodHandles.lookup(), "cachedCursor", AggregatedStorage.VariantCursor.class);
+    // The last closed cursor, reused by the next cursor() call.
+    private @Nullable VariantCursor cachedCursor = null;
+    private final boolean exactExtractProbes = !OVERRIDES_EXTRACT.get(getClass());
+
+    /**
+     * Create an empty storage.
+     *
+     * @param totalCapacity The maximum total amount of all stored variants. Must be non-negative.
+     */
+    protected AggregatedStorage(long totalCapacity) {
+        StoragePreconditions.notNegative(totalCapacity);
+        this.totalCapacity = totalCapacity;
+    }
+
+    /**
+     * Return the blank variant.
+     *
+     * @return The blank transfer variant for this storage type.
+     */
+    protected abstract T getBlankVariant();
+
+    /**
+     * Return the maximum amount of the passed variant that this storage may hold, independently of the total capacity.
+     *
+     * @param variant The non-blank variant for which capacity is queried.
+     * @return The maximum amount of the variant.
+     */
+    protected abstract long getCapacity(T variant);
+
+    /**
+     * Return whether the passed non-blank variant can be inserted into this storage.
+     *
+     * @param variant The variant to test.
+     * @return {@code true} if the passed non-blank variant can be inserted, {@code false} otherwise.
+     */
+    protected boolean canInsert(T variant) {
+        return true;
+    }
+
+    /**
+     * Return whether the passed non-blank variant can be extracted from this storage.
+     *
+     * @param variant The variant to test.
+     * @return {@code true} if the passed non-blank variant can be extracted, {@code false} otherwise.
+     */
+    protected boolean canExtract(T variant) {
+        return true;
+    }
+
+    /**
+     * Called after an outer transaction that modified this storage succeeded,
+     * to perform irreversible actions such as {@code markDirty()} or neighbor updates.
+     */
+    protected void onFinalCommit() {
+    }
+
+    /**
+     * Return the maximum total amount of all stored variants.
+     *
+     * @return The total capacity of this storage.
+     */
+    public long getTotalCapacity() {
+        return totalCapacity;
+    }
+
+    /**
+     * Return the total amount of all stored variants.
+     *
+     * @return The sum of the amounts of all variants.
+     */
+    public long getTotalAmount() {
+        return totalAmount;
+    }
+
+    /**
+     * Return the stored amount of a variant.
+     *
+     * @param variant The variant.
+     * @return The stored amount of the variant, or {@code 0} if it is not stored.
+     */
+    public long getAmount(T variant) {
+        int slot = find(keys, variant);
+        return slot < 0 ? 0 : amounts[slot];
+    }
+
+    /**
+     * Directly replace the stored amount of a variant, outside of any transaction.
+     * The total and per-variant capacities are not checked.
+     *
+     * @param variant The non-blank variant.
+     * @param amount The new amount of the variant.
+     * @throws IllegalStateException If a transaction is open on this thread.
+     */
+    public void set(T variant, long amount) {
+        if (Transaction.isOpen()) {
+            throw new IllegalStateException("set() may not be called during a transaction.");
+        }
+
+        StoragePreconditions.notBlankNotNegative(variant, amount);
+        setAmount(variant, amount);
+        changeLog.incrementVersion();
+        compactIfNeeded();
+    }
+
+    @Override
+    public long insert(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+        StoragePreconditions.notBlankNotNegative(resource, maxAmount);
+
+        if (!canInsert(resource)) return 0;
+
+        int slot = find(keys, resource);
+        long current = slot < 0 ? 0 : amounts[slot];
+        long inserted = Math.min(maxAmount, Math.min(getCapacity(resource) - current, totalCapacity - totalAmount));
+
+        if (inserted > 0) {
+            changeLog.record(resource, current, transaction);
+
+            if (slot < 0) {
+                setAmount(resource, inserted);
+            } else {
+                setAmountAt(slot, current + inserted);
+            }
+
+            return inserted;
+        }
+
+        return 0;
+    }
+
+    @Override
+    public long extract(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+        StoragePreconditions.notBlankNotNegative(resource, maxAmount);
+
+        if (!canExtract(resource)) return 0;
+
+        int slot = find(keys, resource);
+        if (slot < 0) return 0;
+
+        long current = amounts[slot];
+        long extracted = Math.min(maxAmount, current);
+
+        if (extracted > 0) {
+            changeLog.record(resource, current, transaction);
+            setAmountAt(slot, current - extracted);
+            return extracted;
+        }
+
+        return 0;
+    }
+
+    @Override
+    public @NotNull Iterator<StorageView<T>> iterator() {
+        return new ViewIterator();
+    }
+
+    @Override
+    public StorageCursor<T> cursor() {
+        @SuppressWarnings("unchecked")
+        VariantCursor cursor = (VariantCursor) CACHED_CURSOR.getAndSet(this, null);
+
+        if (cursor == null) {
+            cursor = new VariantCursor();
+        }
+
+        cursor.open = true;
+        cursor.reset();
+        return cursor;
+    }
+
+    @Override
+    public long getVersion() {
+        return changeLog.getVersion();
+    }
+
+    @Override
+    public String toString() {
+        return "AggregatedStorage[" + (entryCount - zeroCount) + " variants, " + totalAmount + "/" + totalCapacity + "]";
+    }
+
+    private void setAmount(T variant, long amount) {
+        int slot = find(keys, variant);
+
+        if (slot < 0) {
+            if (amount == 0) return;
+
+            if ((entryCount + 1) * 4 > keys.length * 3) {
+                // Zero entries may still be referenced by the change log, so they are only dropped when it is empty.
+                rebuild(changeLog.isEmpty());
+                slot = find(keys, variant);
+            }
+
+            slot = -slot - 1;
+
+            keys[slot] = variant;
+            amounts[slot] = amount;
+            entryCount++;
+            totalAmount += amount;
+            return;
+        }
+
+        setAmountAt(slot, amount);
+    }
+
+    private void setAmountAt(int slot, long amount) {
+        long previous = amounts[slot];
+        if (previous == 0) zeroCount--;
+        if (amount == 0) zeroCount++;
+        amounts[slot] = amount;
+        totalAmount += amount - previous;
+    }
+
+    /**
+     * Return the slot of the variant, or {@code -(free slot) - 1} if it is not in the table.
+     */
+    private static int find(Object[] keys, Object variant) {
+        int mask = keys.length - 1;
+        int slot = spread(variant.hashCode()) & mask;
+
+        while (true) {
+            Object key = keys[slot];
+
+            if (key == null) return -slot - 1;
+            if (key == variant || key.equals(variant)) return slot;
+
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static int spread(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Rebuild the table into new arrays, optionally dropping the entries with a zero amount.
+     */
+    private void rebuild(boolean dropZeros) {
+        int liveCount = dropZeros ? entryCount - zeroCount : entryCount;
+        int newLength = INITIAL_CAPACITY;
+
+        // Keep the load factor at most 1/2 after the rebuild, so that it is not immediately rebuilt again.
+        while (newLength < liveCount * 2 + 2) {
+            newLength <<= 1;
+        }
+
+        Object[] newKeys = new Object[newLength];
+        long[] newAmounts = new long[newLength];
+
+        for (int i = 0; i < keys.length; i++) {
+            Object key = keys[i];
+            if (key == null || dropZeros && amounts[i] == 0) continue;
+
+            int slot = -find(newKeys, key) - 1;
+            newKeys[slot] = key;
+            newAmounts[slot] = amounts[i];
+        }
+
+        keys = newKeys;
+        amounts = newAmounts;
+        entryCount = liveCount;
+        if (dropZeros) zeroCount = 0;
+    }
+
+    private void compactIfNeeded() {
+        // Only compact if a significant fraction of the entries is empty, to amortize the cost of the rebuild.
+        if (zeroCount > 0 && zeroCount * 4 >= entryCount) {
+            rebuild(true);
+        }
+    }
+
+    /**
+     * The change log records the previous amount of each variant before it is modified.
+     * Its snapshots are positions in the log, so rolling back a transaction replays the log backwards down to its snapshot.
+     */
+    private final class ChangeLog extends LongSnapshotParticipant {
+        private Object[] logKeys = new Object[16];
+        private long[] logAmounts = new long[16];
+        private int logSize = 0;
+
+        void record(T variant, long previousAmount, TransactionContext transaction) {
+            updateSnapshots(transaction);
+
+            if (logSize == logKeys.length) {
+                logKeys = Arrays.copyOf(logKeys, logSize * 2);
+                logAmounts = Arrays.copyOf(logAmounts, logSize * 2);
+            }
+
+            logKeys[logSize] = variant;
+            logAmounts[logSize] = previousAmount;
+            logSize++;
+        }
+
+        boolean isEmpty() {
+            return logSize == 0;
+        }
+
+        @Override
+        protected long createSnapshot() {
+            return logSize;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void readSnapshot(long snapshot) {
+            for (int i = logSize - 1; i >= snapshot; i--) {
+                setAmount((T) logKeys[i], logAmounts[i]);
+                logKeys[i] = null;
+            }
+
+            logSize = (int) snapshot;
+
+            if (logSize == 0) {
+                compactIfNeeded();
+            }
+        }
+
+        @Override
+        public void afterOuterClose(Transaction.Result result) {
+            // The outer transaction committed, so the log will never be replayed.
+            Arrays.fill(logKeys, 0, logSize, null);
+            logSize = 0;
+            compactIfNeeded();
+            super.afterOuterClose(result);
+        }
+
+        @Override
+        protected void onFinalCommit() {
+            AggregatedStorage.this.onFinalCommit();
+        }
+    }
+
+    /**
+     * Iterates over the entries of the table that was current when the iterator was created,
+     * skipping the entries that have a zero amount when they are reached.
+     */
+    private final class ViewIterator implements Iterator<StorageView<T>> {
+        final Object[] iteratedKeys = keys;
+        int nextSlot = -1;
+
+        ViewIterator() {
+            advance();
+        }
+
+        private void advance() {
+            do {
+                nextSlot++;
+            } while (nextSlot < iteratedKeys.length && (iteratedKeys[nextSlot] == null || !isStored(nextSlot)));
+        }
+
+        @SuppressWarnings("unchecked")
+        private boolean isStored(int slot) {
+            // The table may have been rebuilt since the iterator was created.
+            return iteratedKeys == keys ? amounts[slot] > 0 : getAmount((T) iteratedKeys[slot]) > 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextSlot < iteratedKeys.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public StorageView<T> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            StorageView<T> view = new VariantView((T) iteratedKeys[nextSlot]);
+            advance();
+            return view;
+        }
+    }
+
+    /**
+     * Cursor over the entries of the table that was current when the cursor was reset, like {@link ViewIterator}.
+     */
+    private final class VariantCursor implements StorageCursor<T> {
+        boolean open = false;
+        Object[] iteratedKeys = keys;
+        // Index of the current entry, or -1 if the cursor is not on an entry.
+        int current = -1;
+        int searchFrom = 0;
+
+        @SuppressWarnings("unchecked")
+        private T variant() {
+            if (current < 0) {
+                throw TransferApiImpl.notOnPosition();
+            }
+
+            return (T) iteratedKeys[current];
+        }
+
+        @Override
+        public boolean advance() {
+            while (searchFrom < iteratedKeys.length && (iteratedKeys[searchFrom] == null || amountAt(searchFrom) == 0)) {
+                searchFrom++;
+            }
+
+            current = searchFrom < iteratedKeys.length ? searchFrom++ : -1;
+            return current >= 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        private long amountAt(int slot) {
+            // The table may have been rebuilt since the cursor was reset.
+            return iteratedKeys == keys ? amounts[slot] : AggregatedStorage.this.getAmount((T) iteratedKeys[slot]);
+        }
+
+        @Override
+        public T getResource() {
+            T variant = variant();
+            return amountAt(current) == 0 ? getBlankVariant() : variant;
+        }
+
+        @Override
+        public long getAmount() {
+            variant();
+            return amountAt(current);
+        }
+
+        @Override
+        public long getCapacity() {
+            T variant = variant();
+            return Math.min(AggregatedStorage.this.getCapacity(variant), amountAt(current) + totalCapacity - totalAmount);
+        }
+
+        @Override
+        public long extract(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+            StoragePreconditions.notBlankNotNegative(resource, maxAmount);
+
+            if (!resource.equals(variant())) return 0;
+
+            return AggregatedStorage.this.extract(resource, maxAmount, transaction);
+        }
+
+        @Override
+        public long probeExtract(T resource, long maxAmount) {
+            StoragePreconditions.notBlankNotNegative(resource, maxAmount);
+            if (!exactExtractProbes) return UNKNOWN_AMOUNT;
+
+            if (!resource.equals(variant()) || !canExtract(resource)) return 0;
+
+            return Math.min(maxAmount, amountAt(current));
+        }
+
+        @Override
+        public void reset() {
+            iteratedKeys = keys;
+            current = -1;
+            searchFrom = 0;
+        }
+
+        @Override
+        public void close() {
+            if (open) {
+                open = false;
+                CACHED_CURSOR.setRelease(AggregatedStorage.this, this);
+            }
+        }
+    }
+
+    /**
+     * A view of a single variant of the storage.
+     */
+    private final class VariantView implements StorageView<T> {
+        final T variant;
+
+        VariantView(T variant) {
+            this.variant = variant;
+        }
+
+        @Override
+        public long extract(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+            StoragePreconditions.notBlankNotNegative(resource, maxAmount);
+
+            if (!resource.equals(variant)) return 0;
+
+            return AggregatedStorage.this.extract(resource, maxAmount, transaction);
+        }
+
+        @Override
+        public boolean isResourceBlank() {
+            return getAmount() == 0;
+        }
+
+        @Override
+        public T getResource() {
+            return getAmount() == 0 ? getBlankVariant() : variant;
+        }
+
+        @Override
+        public long getAmount() {
+            return AggregatedStorage.this.getAmount(variant);
+        }
+
+        @Override
+        public long getCapacity() {
+            return Math.min(AggregatedStorage.this.getCapacity(variant), getAmount() + totalCapacity - totalAmount);
+        }
+
+        @Override
+        public @NotNull StorageView<T> getUnderlyingView() {
+            return this;
+        }
+    }
+}
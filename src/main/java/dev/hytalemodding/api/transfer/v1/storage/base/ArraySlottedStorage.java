@@ -0,0 +1,542 @@
+/*
+ * Copyright (c) 2025 Shai List and contributors
+ * Licensed under the MIT license. See LICENSE file in the project root for details.
+ */
+
+package dev.hytalemodding.api.transfer.v1.storage.base;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import dev.hytalemodding.api.transfer.v1.storage.SlottedStorage;
+import dev.hytalemodding.api.transfer.v1.storage.StorageCursor;
+import dev.hytalemodding.api.transfer.v1.storage.StoragePreconditions;
+import dev.hytalemodding.api.transfer.v1.storage.StorageView;
+import dev.hytalemodding.api.transfer.v1.storage.TransferVariant;
+import dev.hytalemodding.api.transfer.v1.transaction.Transaction;
+import dev.hytalemodding.api.transfer.v1.transaction.TransactionContext;
+import dev.hytalemodding.api.transfer.v1.transaction.base.LongSnapshotParticipant;
+import dev.hytalemodding.impl.transfer.TransferApiImpl;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A {@link SlottedStorage} whose slots are stored as two parallel arrays, one of variants and one of amounts,
+ * instead of one {@link SingleVariantStorage} per slot.
+ *
+ * <p>The whole storage takes part in transactions as a single participant, which journals the previous contents of each slot
+ * it modifies. Opening and closing transactions therefore costs the same no matter how many slots the storage has.
+ * The slots returned by {@link #getSlot} are lightweight views that read and write the arrays.
+ *
+ * <p>The arrays can be {@linkplain #ArraySlottedStorage(TransferVariant[], long[]) passed in} to wrap existing state without copying it.
+ * Code that writes to the arrays directly must do so outside of transactions, and call {@link #incrementVersion} afterwards.
+ *
+ * @param <T> The transfer variant type handled by this storage.
+ */
+public abstract class ArraySlottedStorage<T extends TransferVariant<?>> implements SlottedStorage<T> {
+    /**
+     * The variant of each slot. May be a blank variant when the slot is empty.
+     */
+    protected final T[] variants;
+    /**
+     * The amount of each slot.
+     */
+    protected final long[] amounts;
+    private final Journal journal = new Journal();
+
+    // Whether a subclass overrides extract from a slot, in which case the cursor probes cannot predict its result.
+    private static final ClassValue<Boolean> OVERRIDES_EXTRACT = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return TransferApiImpl.overridesMethod(type, ArraySlottedStorage.class, "extract", int.class, TransferVariant.class, long.class, TransactionContext.class);
+        }
+    };
+    private static final VarHandle CACHED_CURSOR = TransferApiImpl.findVarHandle(MethodHandles.lookup(), "cachedCursor", ArraySlottedStorage.SlotCursor.class);
+    // The last closed cursor, reused by the next cursor() call.
+    private @Nullable SlotCursor cachedCursor = null;
+    private final boolean exactExtractProbes = !OVERRIDES_EXTRACT.get(getClass());
+    // Created lazily, so that storages which are only accessed in bulk do not allocate views.
+    private SlotView[] views;
+
+    /**
+     * Create a new storage with the given number of blank slots.
+     *
+     * @param slotCount The number of slots. Must be non-negative.
+     */
+    @SuppressWarnings("unchecked")
+    protected ArraySlottedStorage(int slotCount) {
+        StoragePreconditions.notNegative(slotCount);
+        this.variants = (T[]) new TransferVariant<?>[slotCount];
+        this.amounts = new long[slotCount];
+        Arrays.fill(variants, getBlankVariant());
+    }
+
+    /**
+     * Create a new storage backed by the passed arrays, which are used directly and not copied.
+     * Slots with a zero amount must hold a blank variant.
+     *
+     * @param variants The variant of each slot.
+     * @param amounts The amount of each slot, must have the same length as {@code variants}.
+     * @throws IllegalArgumentException If the arrays have different lengths.
+     */
+    protected ArraySlottedStorage(T[] variants, long[] amounts) {
+        if (variants.length != amounts.length) {
+            throw new IllegalArgumentException("Variant and amount arrays must have the same length, got " + variants.length + " and " + amounts.length + ".");
+        }
+
+        this.variants = variants;
+        this.amounts = amounts;
+    }
+
+    /**
+     * Return the blank variant.
+     *
+     * @return The blank transfer variant for this storage type.
+     */
+    protected abstract T getBlankVariant();
+
+    /**
+     * Return the maximum capacity of a slot for the passed transfer variant.
+     * If the passed variant is blank, an estimate should be returned.
+     *
+     * @param slot The index of the slot.
+     * @param variant The variant for which capacity is queried. May be blank.
+     * @return The maximum capacity of the slot for the passed variant.
+     */
+    protected abstract long getCapacity(int slot, T variant);
+
+    /**
+     * Return whether the passed non-blank variant can be inserted into a slot.
+     *
+     * @param slot The index of the slot.
+     * @param variant The variant to test.
+     * @return {@code true} if the variant can be inserted into the slot.
+     */
+    protected boolean canInsert(int slot, T variant) {
+        return true;
+    }
+
+    /**
+     * Return whether the passed non-blank variant can be extracted from a slot.
+     *
+     * @param slot The index of the slot.
+     * @param variant The variant to test.
+     * @return {@code true} if the variant can be extracted from the slot.
+     */
+    protected boolean canExtract(int slot, T variant) {
+        return true;
+    }
+
+    /**
+     * Called once for each modified slot after an outer transaction that modified this storage succeeded,
+     * to perform irreversible actions such as {@code markDirty()}.
+     *
+     * @param slot The index of the modified slot.
+     */
+    protected void onFinalCommit(int slot) {
+    }
+
+    /**
+     * Directly replace the contents of a slot, outside of any transaction.
+     *
+     * @param slot The index of the slot.
+     * @param variant The new variant, may be blank.
+     * @param amount The new amount, must be zero if the variant is blank.
+     * @throws IllegalStateException If a transaction is open on this thread.
+     * @throws IllegalArgumentException If the amount is negative, or positive for a blank variant.
+     */
+    public void set(int slot, T variant, long amount) {
+        if (Transaction.isOpen()) {
+            throw new IllegalStateException("set() may not be called during a transaction.");
+        }
+
+        StoragePreconditions.notNegativeEmptyIfBlank(variant, amount);
+        variants[slot] = amount == 0 ? getBlankVariant() : variant;
+        amounts[slot] = amount;
+        journal.incrementVersion();
+    }
+
+    /**
+     * Increase the version of this storage. Must be called after the arrays were modified directly.
+     */
+    public void incrementVersion() {
+        journal.incrementVersion();
+    }
+
+    /**
+     * Insert into a single slot.
+     *
+     * @param slot The index of the slot.
+     * @param resource The resource to insert. May not be blank.
+     * @param maxAmount The maximum amount to insert. May not be negative.
+     * @param transaction The transaction this operation is part of.
+     * @return A nonnegative integer not greater than maxAmount: the amount that was inserted.
+     */
+    public long insert(int slot, T resource, long maxAmount, @NotNull TransactionContext transaction) {
+        StoragePreconditions.notBlankNotNegative(resource, maxAmount);
+        return insertUnchecked(slot, resource, maxAmount, transaction);
+    }
+
+    /**
+     * Extract from a single slot.
+     *
+     * @param slot The index of the slot.
+     * @param resource The resource to extract. May not be blank.
+     * @param maxAmount The maximum amount to extract. May not be negative.
+     * @param transaction The transaction this operation is part of.
+     * @return A nonnegative integer not greater than maxAmount: the amount that was extracted.
+     */
+    public long extract(int slot, T resource, long maxAmount, @NotNull TransactionContext transaction) {
+        StoragePreconditions.notBlankNotNegative(resource, maxAmount);
+        return extractUnchecked(slot, resource, maxAmount, transaction);
+    }
+
+    @Override
+    public long insert(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+        StoragePreconditions.notBlankNotNegative(resource, maxAmount);
+        long amount = 0;
+
+        for (int i = 0; i < variants.length && amount < maxAmount; i++) {
+            amount += insertUnchecked(i, resource, maxAmount - amount, transaction);
+        }
+
+        return amount;
+    }
+
+    @Override
+    public long extract(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+        StoragePreconditions.notBlankNotNegative(resource, maxAmount);
+        long amount = 0;
+
+        for (int i = 0; i < variants.length && amount < maxAmount; i++) {
+            amount += extractUnchecked(i, resource, maxAmount - amount, transaction);
+        }
+
+        return amount;
+    }
+
+    private long insertUnchecked(int slot, T resource, long maxAmount, TransactionContext transaction) {
+        T variant = variants[slot];
+        boolean blank = variant.isBlank();
+
+        if ((resource == variant || blank || resource.equals(variant)) && canInsert(slot, resource)) {
+            long inserted = Math.min(maxAmount, getCapacity(slot, resource) - amounts[slot]);
+
+            if (inserted > 0) {
+                journal.record(slot, transaction);
+
+                if (blank) {
+                    variants[slot] = resource;
+                    amounts[slot] = inserted;
+                } else {
+                    amounts[slot] += inserted;
+                }
+
+                return inserted;
+            }
+        }
+
+        return 0;
+    }
+
+    private long extractUnchecked(int slot, T resource, long maxAmount, TransactionContext transaction) {
+        T variant = variants[slot];
+
+        if ((resource == variant || !variant.isBlank() && resource.equals(variant)) && canExtract(slot, resource)) {
+            long extracted = Math.min(maxAmount, amounts[slot]);
+
+            if (extracted > 0) {
+                journal.record(slot, transaction);
+                amounts[slot] -= extracted;
+
+                if (amounts[slot] == 0) {
+                    variants[slot] = getBlankVariant();
+                }
+
+                return extracted;
+            }
+        }
+
+        return 0;
+    }
+
+    @Override
+    public int getSlotCount() {
+        return variants.length;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public SingleSlotStorage<T> getSlot(int slot) {
+        if (views == null) {
+            views = (SlotView[]) new ArraySlottedStorage<?>.SlotView[variants.length];
+        }
+
+        SlotView view = views[slot];
+
+        if (view == null) {
+            view = views[slot] = new SlotView(slot);
+        }
+
+        return view;
+    }
+
+    @Override
+    public @NotNull Iterator<StorageView<T>> iterator() {
+        return new SlotIterator(false);
+    }
+
+    @Override
+    public Iterator<StorageView<T>> nonEmptyIterator() {
+        return new SlotIterator(true);
+    }
+
+    @Override
+    public StorageCursor<T> cursor() {
+        @SuppressWarnings("unchecked")
+        SlotCursor cursor = (SlotCursor) CACHED_CURSOR.getAndSet(this, null);
+
+        if (cursor == null) {
+            cursor = new SlotCursor();
+        }
+
+        cursor.open = true;
+        cursor.reset();
+        return cursor;
+    }
+
+    @Override
+    public long getVersion() {
+        return journal.getVersion();
+    }
+
+    @Override
+    public String toString() {
+        return "ArraySlottedStorage[" + variants.length + " slots]";
+    }
+
+    /**
+     * Records the previous contents of every modified slot. Snapshots are positions in the journal,
+     * so rolling back a transaction restores the slots in reverse order down to its snapshot.
+     */
+    private final class Journal extends LongSnapshotParticipant {
+        private int[] slots = new int[16];
+        private Object[] oldVariants = new Object[16];
+        private long[] oldAmounts = new long[16];
+        private int size = 0;
+
+        void record(int slot, TransactionContext transaction) {
+            updateSnapshots(transaction);
+
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+                oldVariants = Arrays.copyOf(oldVariants, size * 2);
+                oldAmounts = Arrays.copyOf(oldAmounts, size * 2);
+            }
+
+            slots[size] = slot;
+            oldVariants[size] = variants[slot];
+            oldAmounts[size] = amounts[slot];
+            size++;
+        }
+
+        @Override
+        protected long createSnapshot() {
+            return size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void readSnapshot(long snapshot) {
+            for (int i = size - 1; i >= snapshot; i--) {
+                variants[slots[i]] = (T) oldVariants[i];
+                amounts[slots[i]] = oldAmounts[i];
+                oldVariants[i] = null;
+            }
+
+            size = (int) snapshot;
+        }
+
+        @Override
+        public void afterOuterClose(Transaction.Result result) {
+            // The outer transaction committed, so drop the journal and notify each modified slot once.
+            // The slots are copied first since onFinalCommit may start new transactions.
+            int[] committedSlots = Arrays.copyOf(slots, size);
+            Arrays.fill(oldVariants, 0, size, null);
+            size = 0;
+            super.afterOuterClose(result);
+            Arrays.sort(committedSlots);
+
+            for (int i = 0; i < committedSlots.length; i++) {
+                if (i == 0 || committedSlots[i] != committedSlots[i - 1]) {
+                    ArraySlottedStorage.this.onFinalCommit(committedSlots[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * A view of a single slot, reading and writing the arrays of the storage.
+     */
+    private final class SlotView implements SingleSlotStorage<T> {
+        private final int slot;
+
+        private SlotView(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public long insert(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+            return ArraySlottedStorage.this.insert(slot, resource, maxAmount, transaction);
+        }
+
+        @Override
+        public long extract(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+            return ArraySlottedStorage.this.extract(slot, resource, maxAmount, transaction);
+        }
+
+        @Override
+        public boolean isResourceBlank() {
+            return variants[slot].isBlank();
+        }
+
+        @Override
+        public T getResource() {
+            return variants[slot];
+        }
+
+        @Override
+        public long getAmount() {
+            return amounts[slot];
+        }
+
+        @Override
+        public long getCapacity() {
+            return ArraySlottedStorage.this.getCapacity(slot, variants[slot]);
+        }
+
+        @Override
+        public long getVersion() {
+            // Any change to the slot changes the version of the storage, which is enough for change detection.
+            return ArraySlottedStorage.this.getVersion();
+        }
+
+        @Override
+        public String toString() {
+            return "ArraySlottedStorage.Slot[" + slot + ": " + amounts[slot] + " " + variants[slot] + "]";
+        }
+    }
+
+    /**
+     * Cursor over the non-empty slots, reading the arrays directly.
+     */
+    private final class SlotCursor implements StorageCursor<T> {
+        boolean open = false;
+        // Index of the current slot, or -1 if the cursor is not on a slot.
+        private int current = -1;
+        private int searchFrom = 0;
+
+        private int current() {
+            if (current < 0) {
+                throw TransferApiImpl.notOnPosition();
+            }
+
+            return current;
+        }
+
+        @Override
+        public boolean advance() {
+            while (searchFrom < variants.length && amounts[searchFrom] == 0) {
+                searchFrom++;
+            }
+
+            current = searchFrom < variants.length ? searchFrom++ : -1;
+            return current >= 0;
+        }
+
+        @Override
+        public T getResource() {
+            return variants[current()];
+        }
+
+        @Override
+        public long getAmount() {
+            return amounts[current()];
+        }
+
+        @Override
+        public long getCapacity() {
+            int slot = current();
+            return ArraySlottedStorage.this.getCapacity(slot, getResource());
+        }
+
+        @Override
+        public long extract(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+            return ArraySlottedStorage.this.extract(current(), resource, maxAmount, transaction);
+        }
+
+        @Override
+        public long probeExtract(T resource, long maxAmount) {
+            StoragePreconditions.notBlankNotNegative(resource, maxAmount);
+            if (!exactExtractProbes) return UNKNOWN_AMOUNT;
+
+            int slot = current();
+            T variant = variants[slot];
+
+            if ((resource == variant || !variant.isBlank() && resource.equals(variant)) && canExtract(slot, resource)) {
+                return Math.min(maxAmount, amounts[slot]);
+            }
+
+            return 0;
+        }
+
+        @Override
+        public void reset() {
+            current = -1;
+            searchFrom = 0;
+        }
+
+        @Override
+        public void close() {
+            if (open) {
+                open = false;
+                CACHED_CURSOR.setRelease(ArraySlottedStorage.this, this);
+            }
+        }
+    }
+
+    private final class SlotIterator implements Iterator<StorageView<T>> {
+        private final boolean nonEmpty;
+        private int next = -1;
+
+        SlotIterator(boolean nonEmpty) {
+            this.nonEmpty = nonEmpty;
+            advance();
+        }
+
+        private void advance() {
+            do {
+                next++;
+            } while (nonEmpty && next < variants.length && amounts[next] == 0);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < variants.length;
+        }
+
+        @Override
+        public StorageView<T> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            StorageView<T> view = getSlot(next);
+            advance();
+            return view;
+        }
+    }
+}
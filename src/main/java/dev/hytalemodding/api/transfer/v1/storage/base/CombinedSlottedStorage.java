@@ -19,20 +19,38 @@
 
 package dev.hytalemodding.api.transfer.v1.storage.base;
 
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
 import java.util.StringJoiner;
 
 import dev.hytalemodding.api.transfer.v1.storage.SlottedStorage;
 import dev.hytalemodding.api.transfer.v1.storage.Storage;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.UnmodifiableView;
 
 /**
  * A {@link Storage} wrapping multiple slotted storages.
  * Same as {@link CombinedStorage}, but for {@link SlottedStorage}s.
  *
+ * <p>The offset of each part is cached in a prefix-sum table, so {@link #getSlotCount} is constant-time and {@link #getSlot}
+ * is a binary search over the parts. The table is rebuilt automatically when {@link #parts} is replaced or changes size,
+ * or when the part containing a requested slot was replaced or changed its slot count.
+ * Other changes are not detected, so {@link #invalidateSlotOffsets} must be called after a part changed its slot count.
+ *
  * @param <T> The type of the stored resources.
  * @param <S> The class of every part. {@code ? extends Storage<T>} can be used if the parts are of different types.
  */
 public class CombinedSlottedStorage<T, S extends SlottedStorage<T>> extends CombinedStorage<T, S> implements SlottedStorage<T> {
+	// Cached layout: slotOffsets[i] is the first slot of part i, and slotOffsets[parts.size()] is the slot count.
+	private List<S> offsetList = null;
+	private Object[] offsetParts = new Object[0];
+	private int[] slotOffsets = new int[1];
+	private final List<SingleSlotStorage<T>> slotList = new SlotList();
+
 	/**
 	 * Create a combined slotted storage that delegates to multiple parts.
 	 *
@@ -42,30 +60,92 @@ public class CombinedSlottedStorage<T, S extends SlottedStorage<T>> extends Comb
 		super(parts);
 	}
 
-	@Override
-	public int getSlotCount() {
-		int count = 0;
+	/**
+	 * Discard the cached slot offsets of the parts, and change the {@linkplain #getVersion version}.
+	 * Must be called if a part changed its slot count, and should be called if {@link #parts} was modified in place.
+	 */
+	public void invalidateSlotOffsets() {
+		offsetList = null;
+		partsChanged();
+	}
+
+	private int[] slotOffsets() {
+		if (offsetList != parts || offsetParts.length != parts.size()) {
+			rebuildSlotOffsets();
+		}
+
+		return slotOffsets;
+	}
+
+	private void rebuildSlotOffsets() {
+		int size = parts.size();
+		Object[] newParts = new Object[size];
+		int[] newOffsets = new int[size + 1];
+		int i = 0;
 
 		for (S part : parts) {
-			count += part.getSlotCount();
+			newParts[i] = part;
+			newOffsets[i + 1] = newOffsets[i] + part.getSlotCount();
+			i++;
 		}
 
-		return count;
+		offsetParts = newParts;
+		slotOffsets = newOffsets;
+		offsetList = parts;
+	}
+
+	// Index of the part containing the slot, for a slot within bounds.
+	private static int findPart(int[] offsets, int slot) {
+		int index = Arrays.binarySearch(offsets, 0, offsets.length - 1, slot);
+
+		if (index < 0) {
+			return -index - 2;
+		}
+
+		// Skip parts without slots, which share their offset with the next part.
+		while (offsets[index + 1] == slot) {
+			index++;
+		}
+
+		return index;
 	}
 
 	@Override
+	public int getSlotCount() {
+		int[] offsets = slotOffsets();
+		return offsets[offsets.length - 1];
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
 	public SingleSlotStorage<T> getSlot(int slot) {
-		int updatedSlot = slot;
+		int[] offsets = slotOffsets();
+
+		if (slot >= 0 && slot < offsets[offsets.length - 1]) {
+			int partIndex = findPart(offsets, slot);
+			S part = (S) offsetParts[partIndex];
 
-		for (SlottedStorage<T> part : parts) {
-			if (updatedSlot < part.getSlotCount()) {
-				return part.getSlot(updatedSlot);
+			// Cheap check that the found part is still in place with the same size, the layout is rebuilt otherwise.
+			if ((!(parts instanceof RandomAccess) || part == parts.get(partIndex)) && part.getSlotCount() == offsets[partIndex + 1] - offsets[partIndex]) {
+				return part.getSlot(slot - offsets[partIndex]);
 			}
+		}
 
-			updatedSlot -= part.getSlotCount();
+		rebuildSlotOffsets();
+		offsets = slotOffsets;
+
+		if (slot < 0 || slot >= offsets[offsets.length - 1]) {
+			throw new IndexOutOfBoundsException("Slot " + slot + " is out of bounds. This storage has size " + offsets[offsets.length - 1]);
 		}
 
-		throw new IndexOutOfBoundsException("Slot " + slot + " is out of bounds. This storage has size " + getSlotCount());
+		int partIndex = findPart(offsets, slot);
+		return ((S) offsetParts[partIndex]).getSlot(slot - offsets[partIndex]);
+	}
+
+	@Override
+	@UnmodifiableView
+	public List<SingleSlotStorage<T>> getSlots() {
+		return slotList;
 	}
 
 	@Override
@@ -78,4 +158,49 @@ public class CombinedSlottedStorage<T, S extends SlottedStorage<T>> extends Comb
 
 		return "CombinedSlottedStorage[" + partNames + "]";
 	}
+
+	/**
+	 * The list returned by {@link #getSlots}, which iterates over the slot lists of the parts directly.
+	 */
+	private class SlotList extends AbstractList<SingleSlotStorage<T>> implements RandomAccess {
+		@Override
+		public SingleSlotStorage<T> get(int index) {
+			return getSlot(index);
+		}
+
+		@Override
+		public int size() {
+			return getSlotCount();
+		}
+
+		@Override
+		public @NotNull Iterator<SingleSlotStorage<T>> iterator() {
+			return new Iterator<>() {
+				final Iterator<S> partIterator = parts.iterator();
+				Iterator<SingleSlotStorage<T>> slotIterator = null;
+
+				@Override
+				public boolean hasNext() {
+					while (slotIterator == null || !slotIterator.hasNext()) {
+						if (!partIterator.hasNext()) {
+							return false;
+						}
+
+						slotIterator = partIterator.next().getSlots().iterator();
+					}
+
+					return true;
+				}
+
+				@Override
+				public SingleSlotStorage<T> next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+
+					return slotIterator.next();
+				}
+			};
+		}
+	}
 }
@@ -19,22 +19,50 @@
 
 package dev.hytalemodding.api.transfer.v1.storage.base;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.StringJoiner;
+import java.util.function.Consumer;
 
+import dev.hytalemodding.api.transfer.v1.storage.SlottedStorage;
 import dev.hytalemodding.api.transfer.v1.storage.Storage;
+import dev.hytalemodding.api.transfer.v1.storage.StorageCursor;
 import dev.hytalemodding.api.transfer.v1.storage.StoragePreconditions;
 import dev.hytalemodding.api.transfer.v1.storage.StorageView;
+import dev.hytalemodding.api.transfer.v1.transaction.Transaction;
 import dev.hytalemodding.api.transfer.v1.transaction.TransactionContext;
+import dev.hytalemodding.impl.transfer.TransferApiImpl;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * A {@link Storage} wrapping multiple storages.
  *
  * <p>The storages passed to {@linkplain CombinedStorage#CombinedStorage the constructor} will be iterated in order.
  *
+ * <p>{@link #getVersion} is derived from the versions and identities of the parts without caching anything, so it may be queried from any thread.
+ * It changes whenever a part changes or {@link #parts} is modified or replaced, and whenever {@link #invalidateRoutingCache} is called.
+ *
+ * <p>When {@linkplain #CombinedStorage(List, boolean) routing} is enabled, the storage remembers for each resource which parts
+ * last accepted or provided it, and offers the resource to these parts first before scanning the other parts in order.
+ * This only changes the order in which parts are visited: the full scan still happens whenever the remembered parts are not
+ * enough, so no transfer that would succeed without routing can fail with it. Which parts end up receiving or providing the
+ * resource may differ from a plain in-order scan, so routing should only be enabled when the order of the parts does not matter.
+ * The results of {@link #supportsInsertion} and {@link #supportsExtraction} are cached as well.
+ * Outside of transactions, the storage checks the identity and the {@linkplain #getVersion version} of every part before using the caches:
+ * the cached capabilities are reset when a part changed, and all the caches are reset when a part was replaced.
+ * During a transaction, only replacing or resizing {@link #parts} is detected. {@link #invalidateRoutingCache} resets the caches explicitly,
+ * for example for parts whose capabilities change without changing their version.
+ *
  * @param <T> The type of the stored resources.
  * @param <S> The class of every part. {@code ? extends Storage<T>} can be used if the parts are of different types.
  */
@@ -44,17 +72,72 @@ public class CombinedStorage<T, S extends Storage<T>> implements Storage<T> {
 	 */
 	public List<S> parts;
 
+	private static final VarHandle PARTS_VERSION = TransferApiImpl.findVarHandle(MethodHandles.lookup(), "partsVersion", long.class);
+	// Bumped when the parts are known to have changed, added to the version computed from the parts.
+	private volatile long partsVersion = 0;
+
+	// Routing cache, null if routing is disabled.
+	private final @Nullable Router router;
+
+	// Whether a subclass overrides iterator() or nonEmptyIterator(), for example to hide some of its parts.
+	// The views are then only visited through these iterators, not by walking the parts.
+	private static final ClassValue<Boolean> OVERRIDES_ITERATOR = new ClassValue<>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			return TransferApiImpl.overridesMethod(type, CombinedStorage.class, "iterator")
+					|| TransferApiImpl.overridesMethod(type, CombinedStorage.class, "nonEmptyIterator");
+		}
+	};
+
+	private static final VarHandle CACHED_CURSOR = TransferApiImpl.findVarHandle(MethodHandles.lookup(), "cachedCursor", CombinedStorage.CombinedCursor.class);
+	// The last closed cursor, reused by the next cursor() call.
+	private @Nullable CombinedCursor cachedCursor = null;
+
 	/**
 	 * Create a combined storage delegating to the provided parts.
 	 *
 	 * @param parts The list of parts backing this combined storage.
 	 */
 	public CombinedStorage(List<S> parts) {
+		this(parts, false);
+	}
+
+	/**
+	 * Create a combined storage delegating to the provided parts, optionally routing resources to the parts that last handled them.
+	 *
+	 * @param parts The list of parts backing this combined storage.
+	 * @param routing True to enable the routing cache, see the class documentation.
+	 */
+	public CombinedStorage(List<S> parts, boolean routing) {
 		this.parts = parts;
+		this.router = routing ? new Router() : null;
+	}
+
+	/**
+	 * Discard all cached routes and capabilities, and change the {@linkplain #getVersion version}.
+	 */
+	public void invalidateRoutingCache() {
+		partsChanged();
+
+		if (router != null) {
+			router.clear();
+		}
 	}
 
 	@Override
 	public boolean supportsInsertion() {
+		if (router != null && router.validate()) {
+			if (router.supportsInsertion == null) {
+				router.supportsInsertion = scanSupportsInsertion();
+			}
+
+			return router.supportsInsertion;
+		}
+
+		return scanSupportsInsertion();
+	}
+
+	private boolean scanSupportsInsertion() {
 		for (S part : parts) {
 			if (part.supportsInsertion()) {
 				return true;
@@ -67,6 +150,11 @@ public class CombinedStorage<T, S extends Storage<T>> implements Storage<T> {
 	@Override
 	public long insert(T resource, long maxAmount, @NotNull TransactionContext transaction) {
 		StoragePreconditions.notNegative(maxAmount);
+
+		if (router != null && router.validate()) {
+			return router.transfer(router.insertRoutes, resource, maxAmount, transaction, true);
+		}
+
 		long amount = 0;
 
 		for (S part : parts) {
@@ -77,8 +165,31 @@ public class CombinedStorage<T, S extends Storage<T>> implements Storage<T> {
 		return amount;
 	}
 
+	@Override
+	public long probeInsert(T resource, long maxAmount) {
+		StoragePreconditions.notNegative(maxAmount);
+
+		if (router != null && router.validate()) {
+			return router.probe(router.insertRoutes, resource, maxAmount, true);
+		}
+
+		return probeParts(null, resource, maxAmount, 0, true);
+	}
+
 	@Override
 	public boolean supportsExtraction() {
+		if (router != null && router.validate()) {
+			if (router.supportsExtraction == null) {
+				router.supportsExtraction = scanSupportsExtraction();
+			}
+
+			return router.supportsExtraction;
+		}
+
+		return scanSupportsExtraction();
+	}
+
+	private boolean scanSupportsExtraction() {
 		for (S part : parts) {
 			if (part.supportsExtraction()) {
 				return true;
@@ -91,6 +202,11 @@ public class CombinedStorage<T, S extends Storage<T>> implements Storage<T> {
 	@Override
 	public long extract(T resource, long maxAmount, @NotNull TransactionContext transaction) {
 		StoragePreconditions.notNegative(maxAmount);
+
+		if (router != null && router.validate()) {
+			return router.transfer(router.extractRoutes, resource, maxAmount, transaction, false);
+		}
+
 		long amount = 0;
 
 		for (S part : parts) {
@@ -101,9 +217,128 @@ public class CombinedStorage<T, S extends Storage<T>> implements Storage<T> {
 		return amount;
 	}
 
+	@Override
+	public long probeExtract(T resource, long maxAmount) {
+		StoragePreconditions.notNegative(maxAmount);
+
+		if (router != null && router.validate()) {
+			return router.probe(router.extractRoutes, resource, maxAmount, false);
+		}
+
+		return probeParts(null, resource, maxAmount, 0, false);
+	}
+
+	/**
+	 * Probe the parts in order, in the same way {@link #insert} and {@link #extract} visit them, skipping the parts of a route.
+	 * Return {@link #UNKNOWN_AMOUNT} as soon as one part cannot answer.
+	 */
+	private long probeParts(int @Nullable [] skippedRoute, T resource, long maxAmount, long amount, boolean insert) {
+		int routeIndex = 0;
+		int partIndex = 0;
+
+		for (S part : parts) {
+			if (amount >= maxAmount) break;
+
+			if (skippedRoute != null && routeIndex < skippedRoute.length && skippedRoute[routeIndex] == partIndex) {
+				routeIndex++;
+			} else {
+				long probed = insert ? part.probeInsert(resource, maxAmount - amount) : part.probeExtract(resource, maxAmount - amount);
+				if (probed == UNKNOWN_AMOUNT) return UNKNOWN_AMOUNT;
+				amount += probed;
+			}
+
+			partIndex++;
+		}
+
+		return amount;
+	}
+
 	@Override
 	public @NotNull Iterator<StorageView<T>> iterator() {
-		return new CombinedIterator();
+		return new CombinedIterator(false);
+	}
+
+	@Override
+	public Iterator<StorageView<T>> nonEmptyIterator() {
+		if (OVERRIDES_ITERATOR.get(getClass())) {
+			return Storage.super.nonEmptyIterator();
+		}
+
+		// Delegate to the parts, which may skip their empty views faster than filtering them one by one.
+		return new CombinedIterator(true);
+	}
+
+	/**
+	 * Return a spliterator over the views of the parts, in order, that splits by part.
+	 * Once a single part is left, splitting continues within that part.
+	 *
+	 * <p>If every part is a {@link SlottedStorage}, the spliterator knows its exact size.
+	 * If the list of parts is not {@link RandomAccess}, or a subclass overrides {@link #iterator},
+	 * the spliterator follows {@link #iterator} and cannot be split.
+	 *
+	 * @return A spliterator over the views of the parts.
+	 */
+	@Override
+	public Spliterator<StorageView<T>> spliterator() {
+		List<S> parts = this.parts;
+
+		if (!(parts instanceof RandomAccess) || OVERRIDES_ITERATOR.get(getClass())) {
+			return Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL);
+		}
+
+		boolean sized = true;
+
+		for (S part : parts) {
+			if (!(part instanceof SlottedStorage)) {
+				sized = false;
+				break;
+			}
+		}
+
+		return new CombinedSpliterator(parts, 0, parts.size(), sized);
+	}
+
+	@Override
+	public StorageCursor<T> cursor() {
+		if (OVERRIDES_ITERATOR.get(getClass())) {
+			return TransferApiImpl.iteratorCursor(this);
+		}
+
+		@SuppressWarnings("unchecked")
+		CombinedCursor cursor = (CombinedCursor) CACHED_CURSOR.getAndSet(this, null);
+
+		if (cursor == null) {
+			cursor = new CombinedCursor();
+		}
+
+		cursor.open = true;
+		cursor.reset();
+		return cursor;
+	}
+
+	@Override
+	public long getVersion() {
+		if (Transaction.isOpen()) {
+			throw new IllegalStateException("getVersion() may not be called during a transaction.");
+		}
+
+		// Part versions only ever move forward, so their sum changes whenever one of them does.
+		// Versions of different parts may not be compared, so the identities of the parts and their positions are mixed in,
+		// which changes the version when the list of parts is modified or replaced.
+		long version = partsVersion;
+		long identities = 0;
+
+		for (S part : parts) {
+			version += part.getVersion();
+			identities = 31 * identities + TransferApiImpl.identityVersion(part);
+		}
+
+		return version + identities;
+	}
+
+	// Change the version, for changes to the parts that are signalled explicitly.
+	void partsChanged() {
+		PARTS_VERSION.getAndAdd(this, 1L);
 	}
 
 	@Override
@@ -117,15 +352,170 @@ public class CombinedStorage<T, S extends Storage<T>> implements Storage<T> {
 		return "CombinedStorage[" + partNames + "]";
 	}
 
+	/**
+	 * Remembers, for each resource, the sorted indices of the parts that last accepted or provided it.
+	 */
+	private class Router {
+		// Bound on the number of remembered resources, the cache is simply cleared when it grows larger.
+		private static final int MAX_ROUTES = 4096;
+		private static final int[] NO_PARTS = new int[0];
+
+		final Map<T, int[]> insertRoutes = new HashMap<>();
+		final Map<T, int[]> extractRoutes = new HashMap<>();
+		@Nullable Boolean supportsInsertion;
+		@Nullable Boolean supportsExtraction;
+		// The list of parts the cache was built for, with the identity and version of each part.
+		@Nullable List<S> routedParts;
+		int routedSize;
+		Object[] partIdentities = new Object[0];
+		long[] partVersions = new long[0];
+		// Scratch buffer for the parts that handled the resource during a transfer.
+		int[] handled = new int[8];
+
+		void clear() {
+			insertRoutes.clear();
+			extractRoutes.clear();
+			supportsInsertion = null;
+			supportsExtraction = null;
+		}
+
+		/**
+		 * Reset the cache if the parts changed. Returns false if routing cannot be used with the current list of parts.
+		 */
+		boolean validate() {
+			List<S> parts = CombinedStorage.this.parts;
+			int size = parts.size();
+
+			if (routedParts != parts || routedSize != size) {
+				clear();
+				routedParts = parts;
+				routedSize = size;
+				partIdentities = new Object[size];
+				partVersions = new long[size];
+			}
+
+			// Versions may only be queried outside of transactions.
+			if (!Transaction.isOpen()) {
+				int i = 0;
+
+				for (S part : parts) {
+					long version = part.getVersion();
+
+					if (partIdentities[i] != part) {
+						// The routes refer to parts by index, so they are only valid for the same parts.
+						clear();
+						partIdentities[i] = part;
+					} else if (partVersions[i] != version) {
+						supportsInsertion = null;
+						supportsExtraction = null;
+					}
+
+					partVersions[i] = version;
+					i++;
+				}
+			}
+
+			// Part indices are only cheap to look up in random access lists.
+			return parts instanceof RandomAccess;
+		}
+
+		long transfer(Map<T, int[]> routes, T resource, long maxAmount, TransactionContext transaction, boolean insert) {
+			int[] route = routes.getOrDefault(resource, NO_PARTS);
+			int handledCount = 0;
+			long amount = 0;
+			int visited = 0;
+
+			// Offer the resource to the remembered parts first.
+			for (; visited < route.length && amount < maxAmount; visited++) {
+				int partIndex = route[visited];
+				long transferred = transferPart(partIndex, resource, maxAmount - amount, transaction, insert);
+
+				if (transferred > 0) {
+					amount += transferred;
+					handledCount = addHandled(handledCount, partIndex);
+				}
+			}
+
+			// Parts of the route that were not visited are kept.
+			for (int i = visited; i < route.length; i++) {
+				handledCount = addHandled(handledCount, route[i]);
+			}
+
+			// Fall back to a scan of the other parts.
+			if (amount < maxAmount) {
+				int routeIndex = 0;
+
+				for (int partIndex = 0; partIndex < routedSize && amount < maxAmount; partIndex++) {
+					if (routeIndex < route.length && route[routeIndex] == partIndex) {
+						routeIndex++;
+						continue;
+					}
+
+					long transferred = transferPart(partIndex, resource, maxAmount - amount, transaction, insert);
+
+					if (transferred > 0) {
+						amount += transferred;
+						handledCount = addHandled(handledCount, partIndex);
+					}
+				}
+			}
+
+			if (handledCount != route.length || !Arrays.equals(handled, 0, handledCount, route, 0, route.length)) {
+				if (routes.size() >= MAX_ROUTES) {
+					routes.clear();
+				}
+
+				int[] newRoute = Arrays.copyOf(handled, handledCount);
+				Arrays.sort(newRoute);
+				routes.put(resource, newRoute);
+			}
+
+			return amount;
+		}
+
+		/**
+		 * Same visiting order as {@link #transfer}, but probing the parts and leaving the routes unchanged.
+		 */
+		long probe(Map<T, int[]> routes, T resource, long maxAmount, boolean insert) {
+			int[] route = routes.getOrDefault(resource, NO_PARTS);
+			long amount = 0;
+
+			for (int i = 0; i < route.length && amount < maxAmount; i++) {
+				S part = parts.get(route[i]);
+				long probed = insert ? part.probeInsert(resource, maxAmount - amount) : part.probeExtract(resource, maxAmount - amount);
+				if (probed == UNKNOWN_AMOUNT) return UNKNOWN_AMOUNT;
+				amount += probed;
+			}
+
+			return probeParts(route, resource, maxAmount, amount, insert);
+		}
+
+		private long transferPart(int partIndex, T resource, long maxAmount, TransactionContext transaction, boolean insert) {
+			S part = parts.get(partIndex);
+			return insert ? part.insert(resource, maxAmount, transaction) : part.extract(resource, maxAmount, transaction);
+		}
+
+		private int addHandled(int count, int partIndex) {
+			if (count == handled.length) {
+				handled = Arrays.copyOf(handled, count * 2);
+			}
+
+			handled[count] = partIndex;
+			return count + 1;
+		}
+	}
+
 	/**
 	 * The combined iterator for multiple storages.
 	 */
 	private class CombinedIterator implements Iterator<StorageView<T>> {
 		final Iterator<S> partIterator = parts.iterator();
+		final boolean nonEmpty;
 		// Always holds the next StorageView<T>, except during next() while the iterator is being advanced.
 		Iterator<? extends StorageView<T>> currentPartIterator = null;
 
-		CombinedIterator() {
+		CombinedIterator(boolean nonEmpty) {
+			this.nonEmpty = nonEmpty;
 			advanceCurrentPartIterator();
 		}
 
@@ -152,7 +542,8 @@ public class CombinedStorage<T, S extends Storage<T>> implements Storage<T> {
 
 		private void advanceCurrentPartIterator() {
 			while (partIterator.hasNext()) {
-				this.currentPartIterator = partIterator.next().iterator();
+				S part = partIterator.next();
+				this.currentPartIterator = nonEmpty ? part.nonEmptyIterator() : part.iterator();
 
 				if (this.currentPartIterator.hasNext()) {
 					break;
@@ -160,4 +551,242 @@ public class CombinedStorage<T, S extends Storage<T>> implements Storage<T> {
 			}
 		}
 	}
+
+	/**
+	 * Spliterator over a range of parts. The size of the remaining parts is the sum of their slot counts if they are all
+	 * slotted, and the number of parts otherwise.
+	 */
+	private class CombinedSpliterator implements Spliterator<StorageView<T>> {
+		final List<S> splitParts;
+		final boolean sized;
+		int nextPart;
+		final int endPart;
+		// Estimated size of the parts from nextPart to endPart, excluding the current part.
+		long remainingSize;
+		@Nullable Spliterator<StorageView<T>> current = null;
+
+		CombinedSpliterator(List<S> splitParts, int nextPart, int endPart, boolean sized) {
+			this.splitParts = splitParts;
+			this.nextPart = nextPart;
+			this.endPart = endPart;
+			this.sized = sized;
+			this.remainingSize = sizeOf(nextPart, endPart);
+		}
+
+		private long sizeOf(int from, int to) {
+			if (!sized) {
+				return to - from;
+			}
+
+			long size = 0;
+
+			for (int i = from; i < to; i++) {
+				size += ((SlottedStorage<?>) splitParts.get(i)).getSlotCount();
+			}
+
+			return size;
+		}
+
+		private boolean openNextPart() {
+			if (nextPart >= endPart) {
+				return false;
+			}
+
+			S part = splitParts.get(nextPart++);
+			current = part.spliterator();
+
+			if (sized) {
+				int slotCount = ((SlottedStorage<?>) part).getSlotCount();
+				remainingSize -= slotCount;
+
+				if (!current.hasCharacteristics(SIZED)) {
+					// The size of every part must be exact for this spliterator to be sized.
+					current = Spliterators.spliterator(part.iterator(), slotCount, ORDERED | NONNULL);
+				}
+			} else {
+				remainingSize--;
+			}
+
+			return true;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super StorageView<T>> action) {
+			do {
+				if (current != null && current.tryAdvance(action)) {
+					return true;
+				}
+			} while (openNextPart());
+
+			return false;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super StorageView<T>> action) {
+			do {
+				if (current != null) {
+					current.forEachRemaining(action);
+				}
+			} while (openNextPart());
+		}
+
+		@Override
+		public @Nullable Spliterator<StorageView<T>> trySplit() {
+			if (endPart - nextPart >= 2) {
+				// Hand out the first half of the parts that were not started yet.
+				int mid = (nextPart + endPart) >>> 1;
+				CombinedSpliterator prefix = new CombinedSpliterator(splitParts, nextPart, mid, sized);
+				nextPart = mid;
+				remainingSize -= prefix.remainingSize;
+
+				if (current == null) {
+					return prefix;
+				}
+
+				// The current part must come first, so it moves to the prefix.
+				prefix.current = current;
+				current = null;
+				return prefix;
+			}
+
+			if (current == null && !openNextPart()) {
+				return null;
+			}
+
+			return current.trySplit();
+		}
+
+		@Override
+		public long estimateSize() {
+			long size = remainingSize + (current == null ? 0 : current.estimateSize());
+			return size < 0 ? Long.MAX_VALUE : size;
+		}
+
+		@Override
+		public int characteristics() {
+			return sized ? ORDERED | SIZED | SUBSIZED | NONNULL : ORDERED | NONNULL;
+		}
+	}
+
+	/**
+	 * The combined cursor for multiple storages. Single slot parts are visited directly, other parts through their own cursor.
+	 */
+	private class CombinedCursor implements StorageCursor<T> {
+		boolean open = false;
+		List<S> iteratedParts = List.of();
+		// Only used if the parts are not random access.
+		@Nullable Iterator<S> partIterator = null;
+		int partIndex = -1;
+		// At most one of the two is non-null, and it holds the current position.
+		@Nullable SingleSlotStorage<T> currentView = null;
+		@Nullable StorageCursor<T> partCursor = null;
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public boolean advance() {
+			currentView = null;
+
+			while (true) {
+				if (partCursor != null) {
+					if (partCursor.advance()) {
+						return true;
+					}
+
+					partCursor.close();
+					partCursor = null;
+				}
+
+				S part = nextPart();
+
+				if (part == null) {
+					return false;
+				} else if (part instanceof SingleSlotStorage<?> slot) {
+					SingleSlotStorage<T> view = (SingleSlotStorage<T>) slot;
+
+					if (view.getAmount() > 0 && !view.isResourceBlank()) {
+						currentView = view;
+						return true;
+					}
+				} else {
+					partCursor = part.cursor();
+				}
+			}
+		}
+
+		private @Nullable S nextPart() {
+			if (iteratedParts instanceof RandomAccess) {
+				if (partIndex + 1 < iteratedParts.size()) {
+					return iteratedParts.get(++partIndex);
+				}
+			} else {
+				if (partIterator == null) {
+					partIterator = iteratedParts.iterator();
+				}
+
+				if (partIterator.hasNext()) {
+					return partIterator.next();
+				}
+			}
+
+			return null;
+		}
+
+		@Override
+		public T getResource() {
+			if (currentView != null) return currentView.getResource();
+			if (partCursor != null) return partCursor.getResource();
+			throw TransferApiImpl.notOnPosition();
+		}
+
+		@Override
+		public long getAmount() {
+			if (currentView != null) return currentView.getAmount();
+			if (partCursor != null) return partCursor.getAmount();
+			throw TransferApiImpl.notOnPosition();
+		}
+
+		@Override
+		public long getCapacity() {
+			if (currentView != null) return currentView.getCapacity();
+			if (partCursor != null) return partCursor.getCapacity();
+			throw TransferApiImpl.notOnPosition();
+		}
+
+		@Override
+		public long extract(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+			if (currentView != null) return currentView.extract(resource, maxAmount, transaction);
+			if (partCursor != null) return partCursor.extract(resource, maxAmount, transaction);
+			throw TransferApiImpl.notOnPosition();
+		}
+
+		@Override
+		public long probeExtract(T resource, long maxAmount) {
+			if (currentView != null) return currentView.probeExtract(resource, maxAmount);
+			if (partCursor != null) return partCursor.probeExtract(resource, maxAmount);
+			throw TransferApiImpl.notOnPosition();
+		}
+
+		@Override
+		public void reset() {
+			if (partCursor != null) {
+				partCursor.close();
+				partCursor = null;
+			}
+
+			currentView = null;
+			iteratedParts = parts;
+			partIterator = null;
+			partIndex = -1;
+		}
+
+		@Override
+		public void close() {
+			if (open) {
+				reset();
+				iteratedParts = List.of();
+				open = false;
+				CACHED_CURSOR.setRelease(CombinedStorage.this, this);
+			}
+		}
+	}
 }
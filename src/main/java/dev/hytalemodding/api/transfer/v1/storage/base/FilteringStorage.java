@@ -19,15 +19,21 @@
 
 package dev.hytalemodding.api.transfer.v1.storage.base;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.Iterator;
 import java.util.function.Supplier;
 
 import com.google.common.collect.Iterators;
 
 import dev.hytalemodding.api.transfer.v1.storage.Storage;
+import dev.hytalemodding.api.transfer.v1.storage.StorageCursor;
 import dev.hytalemodding.api.transfer.v1.storage.StorageView;
+import dev.hytalemodding.api.transfer.v1.transaction.Transaction;
 import dev.hytalemodding.api.transfer.v1.transaction.TransactionContext;
+import dev.hytalemodding.impl.transfer.TransferApiImpl;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * A base {@link Storage} implementation that delegates every call to another storage,
@@ -144,6 +150,19 @@ public abstract class FilteringStorage<T> implements Storage<T> {
 	 */
 	protected final Supplier<Storage<T>> backingStorage;
 
+	// Whether a subclass overrides iterator() or nonEmptyIterator(), in which case the cursor must follow them.
+	private static final ClassValue<Boolean> OVERRIDES_ITERATOR = new ClassValue<>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			return TransferApiImpl.overridesMethod(type, FilteringStorage.class, "iterator")
+					|| TransferApiImpl.overridesMethod(type, FilteringStorage.class, "nonEmptyIterator");
+		}
+	};
+
+	private static final VarHandle CACHED_CURSOR = TransferApiImpl.findVarHandle(MethodHandles.lookup(), "cachedCursor", FilteringStorage.FilteringCursor.class);
+	// The last closed cursor, reused by the next cursor() call.
+	private @Nullable FilteringCursor cachedCursor = null;
+
 	/**
 	 * Create a new filtering storage, with a fixed backing storage.
 	 *
@@ -198,6 +217,15 @@ public abstract class FilteringStorage<T> implements Storage<T> {
 		}
 	}
 
+	@Override
+	public long probeInsert(T resource, long maxAmount) {
+		if (canInsert(resource)) {
+			return backingStorage.get().probeInsert(resource, maxAmount);
+		} else {
+			return 0;
+		}
+	}
+
 	@Override
 	public boolean supportsExtraction() {
 		return backingStorage.get().supportsExtraction();
@@ -212,14 +240,47 @@ public abstract class FilteringStorage<T> implements Storage<T> {
 		}
 	}
 
+	@Override
+	public long probeExtract(T resource, long maxAmount) {
+		if (canExtract(resource)) {
+			return backingStorage.get().probeExtract(resource, maxAmount);
+		} else {
+			return 0;
+		}
+	}
+
 	@Override
 	public @NotNull Iterator<StorageView<T>> iterator() {
 		return Iterators.transform(backingStorage.get().iterator(), FilteringStorageView::new);
 	}
 
+	@Override
+	public StorageCursor<T> cursor() {
+		if (OVERRIDES_ITERATOR.get(getClass())) {
+			return TransferApiImpl.iteratorCursor(this);
+		}
+
+		@SuppressWarnings("unchecked")
+		FilteringCursor cursor = (FilteringCursor) CACHED_CURSOR.getAndSet(this, null);
+
+		if (cursor == null) {
+			cursor = new FilteringCursor();
+		}
+
+		cursor.backingCursor = backingStorage.get().cursor();
+		return cursor;
+	}
+
 	@Override
 	public long getVersion() {
-		return backingStorage.get().getVersion();
+		if (Transaction.isOpen()) {
+			throw new IllegalStateException("getVersion() may not be called during a transaction.");
+		}
+
+		// Stateless so that it may be queried from any thread. The identity of the backing storage changes the version
+		// when the supplier returns another instance, since versions of different storages may not be compared.
+		Storage<T> backing = backingStorage.get();
+		return backing.getVersion() + TransferApiImpl.identityVersion(backing);
 	}
 
 	@Override
@@ -271,4 +332,76 @@ public abstract class FilteringStorage<T> implements Storage<T> {
 			return backingView.getUnderlyingView();
 		}
 	}
+
+	/**
+	 * Cursor over the backing storage that checks extractions with {@link #canExtract}, like {@link FilteringStorageView}.
+	 */
+	private class FilteringCursor implements StorageCursor<T> {
+		// Null while the cursor is closed.
+		private @Nullable StorageCursor<T> backingCursor;
+
+		private StorageCursor<T> backingCursor() {
+			if (backingCursor == null) {
+				throw new IllegalStateException("The cursor was closed.");
+			}
+
+			return backingCursor;
+		}
+
+		@Override
+		public boolean advance() {
+			return backingCursor().advance();
+		}
+
+		@Override
+		public T getResource() {
+			return backingCursor().getResource();
+		}
+
+		@Override
+		public long getAmount() {
+			return backingCursor().getAmount();
+		}
+
+		@Override
+		public long getCapacity() {
+			return backingCursor().getCapacity();
+		}
+
+		@Override
+		public long extract(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+			StorageCursor<T> backing = backingCursor();
+
+			if (canExtract(resource)) {
+				return backing.extract(resource, maxAmount, transaction);
+			} else {
+				return 0;
+			}
+		}
+
+		@Override
+		public long probeExtract(T resource, long maxAmount) {
+			StorageCursor<T> backing = backingCursor();
+
+			if (canExtract(resource)) {
+				return backing.probeExtract(resource, maxAmount);
+			} else {
+				return 0;
+			}
+		}
+
+		@Override
+		public void reset() {
+			backingCursor().reset();
+		}
+
+		@Override
+		public void close() {
+			if (backingCursor != null) {
+				backingCursor.close();
+				backingCursor = null;
+				CACHED_CURSOR.setRelease(FilteringStorage.this, this);
+			}
+		}
+	}
 }
@@ -33,12 +33,14 @@ public abstract class FixedVariantStorage<T extends TransferVariant<?>> extends
 
     @Override
     protected boolean canInsert(T variant) {
-        return getAllowedVariant().equals(variant);
+        T allowedVariant = getAllowedVariant();
+        return allowedVariant == variant || allowedVariant.equals(variant);
     }
 
     @Override
     protected boolean canExtract(T variant) {
-        return getAllowedVariant().equals(variant);
+        T allowedVariant = getAllowedVariant();
+        return allowedVariant == variant || allowedVariant.equals(variant);
     }
 
     /**
@@ -0,0 +1,573 @@
+/*
+ * Copyright (c) 2025 Shai List and contributors
+ * Licensed under the MIT license. See LICENSE file in the project root for details.
+ */
+
+package dev.hytalemodding.api.transfer.v1.storage.base;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+import dev.hytalemodding.api.transfer.v1.storage.SlottedStorage;
+import dev.hytalemodding.api.transfer.v1.storage.Storage;
+import dev.hytalemodding.api.transfer.v1.storage.StorageCursor;
+import dev.hytalemodding.api.transfer.v1.storage.StoragePreconditions;
+import dev.hytalemodding.api.transfer.v1.storage.StorageUtil;
+import dev.hytalemodding.api.transfer.v1.storage.StorageView;
+import dev.hytalemodding.api.transfer.v1.storage.TransferVariant;
+import dev.hytalemodding.api.transfer.v1.transaction.Transaction;
+import dev.hytalemodding.api.transfer.v1.transaction.TransactionContext;
+import dev.hytalemodding.api.transfer.v1.transaction.base.LongSnapshotParticipant;
+import dev.hytalemodding.api.transfer.v1.transaction.types.TransactionalBitSet;
+import dev.hytalemodding.impl.transfer.TransferApiImpl;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.UnmodifiableView;
+
+/**
+ * A {@link SlottedStorage} made of {@link SingleVariantStorage} slots, that keeps an index from each stored variant to the slots
+ * holding it. This makes {@linkplain #insertStacking stacking insertion} and {@link #extract} proportional to the number of
+ * slots holding the resource, instead of the total number of slots, which matters for storages with thousands of slots.
+ *
+ * <p>The index is a superset: it may contain slots that do not hold the variant anymore, which are skipped and pruned once the
+ * outer transaction is closed. Each variant also has a hint of the first slot that may still accept more of it, so repeated
+ * insertions do not walk over full slots. Hints take part in transactions, so they stay valid when a transaction is aborted.
+ *
+ * <p>A {@link TransactionalBitSet} additionally tracks which slots are occupied, so that {@link #nonEmptyIterator} and the search
+ * for blank slots skip 64 slots at a time. Sparse storages are therefore iterated in time proportional to their contents.
+ *
+ * <p>{@link StorageUtil#insertStacking} and {@link StorageUtil#tryInsertStacking} automatically use the index,
+ * and {@link #insert} always performs stacking insertion.
+ * The slots must only be modified through the storage API or {@link #set}, never by writing their fields directly.
+ *
+ * @param <T> The transfer variant type handled by this storage.
+ */
+public abstract class IndexedSlottedStorage<T extends TransferVariant<?>> implements SlottedStorage<T> {
+    private final Slot[] slots;
+    // Set bits are the non-blank slots.
+    private final TransactionalBitSet occupied;
+    private final SlotList slotList = new SlotList();
+    private final Map<T, IndexEntry> index = new HashMap<>();
+    // (slot, variant) pairs whose index bit may be stale, checked once the outer transaction is closed.
+    private final List<Object> pendingPrunes = new ArrayList<>();
+    private final Transaction.OuterCloseCallback pruneCallback = result -> prune();
+    private long version = 0;
+
+    private static final VarHandle CACHED_CURSOR = TransferApiImpl.findVarHandle(MethodHandles.lookup(), "cachedCursor", IndexedSlottedStorage.SlotCursor.class);
+    // The last closed cursor, reused by the next cursor() call.
+    private @Nullable SlotCursor cachedCursor = null;
+
+    /**
+     * Create a new indexed storage with the given number of empty slots.
+     *
+     * @param slotCount The number of slots. Must be non-negative.
+     */
+    @SuppressWarnings("unchecked")
+    protected IndexedSlottedStorage(int slotCount) {
+        StoragePreconditions.notNegative(slotCount);
+        slots = (Slot[]) new IndexedSlottedStorage<?>.Slot[slotCount];
+        occupied = new TransactionalBitSet(slotCount);
+
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new Slot(i);
+        }
+    }
+
+    /**
+     * Return the blank variant.
+     *
+     * @return The blank transfer variant for this storage type.
+     */
+    protected abstract T getBlankVariant();
+
+    /**
+     * Return the maximum capacity of a slot for the passed transfer variant.
+     * If the passed variant is blank, an estimate should be returned.
+     *
+     * @param slot The index of the slot.
+     * @param variant The variant for which capacity is queried. May be blank.
+     * @return The maximum capacity of the slot for the passed variant.
+     */
+    protected abstract long getCapacity(int slot, T variant);
+
+    /**
+     * Return whether the passed non-blank variant can be inserted into a slot.
+     *
+     * @param slot The index of the slot.
+     * @param variant The variant to test.
+     * @return {@code true} if the variant can be inserted into the slot.
+     */
+    protected boolean canInsert(int slot, T variant) {
+        return true;
+    }
+
+    /**
+     * Return whether the passed non-blank variant can be extracted from a slot.
+     *
+     * @param slot The index of the slot.
+     * @param variant The variant to test.
+     * @return {@code true} if the variant can be extracted from the slot.
+     */
+    protected boolean canExtract(int slot, T variant) {
+        return true;
+    }
+
+    /**
+     * Called after an outer transaction that modified a slot succeeded,
+     * to perform irreversible actions such as {@code markDirty()}.
+     *
+     * @param slot The index of the modified slot.
+     */
+    protected void onFinalCommit(int slot) {
+    }
+
+    /**
+     * Directly replace the contents of a slot, outside of any transaction.
+     *
+     * @param slot The index of the slot.
+     * @param variant The new variant, may be blank.
+     * @param amount The new amount, must be zero if the variant is blank.
+     * @throws IllegalStateException If a transaction is open on this thread.
+     */
+    public void set(int slot, T variant, long amount) {
+        if (Transaction.isOpen()) {
+            throw new IllegalStateException("set() may not be called during a transaction.");
+        }
+
+        StoragePreconditions.notNegative(amount);
+        Slot target = slots[slot];
+        T previous = target.variant;
+        target.variant = amount == 0 ? getBlankVariant() : variant;
+        target.amount = amount;
+        target.incrementVersion();
+        occupied.set(slot, amount != 0);
+        version++;
+
+        if (!previous.isBlank()) {
+            pendingPrunes.add(slot);
+            pendingPrunes.add(previous);
+        }
+
+        if (!target.variant.isBlank()) {
+            indexSlot(slot, target.variant);
+        }
+
+        prune();
+    }
+
+    /**
+     * Insert a resource, filling the slots that already contain it first, then the blank slots in order.
+     * This is equivalent to {@link StorageUtil#insertStacking} over {@link #getSlots}, but only visits the slots that contain the resource.
+     *
+     * @param resource The resource to insert. May not be blank.
+     * @param maxAmount The maximum amount to insert. May not be negative.
+     * @param transaction The transaction this operation is part of.
+     * @return A nonnegative integer not greater than maxAmount: the amount that was inserted.
+     */
+    public long insertStacking(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+        StoragePreconditions.notBlankNotNegative(resource, maxAmount);
+        long amount = 0;
+        IndexEntry entry = index.get(resource);
+
+        if (entry != null) {
+            BitSet bits = entry.slots;
+            int start = entry.hint;
+            // The first visited slot that may still accept more of the resource.
+            int newHint = -1;
+            int i = bits.nextSetBit(start);
+
+            for (; i >= 0; i = bits.nextSetBit(i + 1)) {
+                Slot slot = slots[i];
+
+                // Stale index bit, blank slots are only filled after all the slots containing the resource.
+                if (slot.isResourceBlank()) continue;
+
+                amount += slot.insert(resource, maxAmount - amount, transaction);
+
+                if (newHint < 0 && slot.mayAccept(resource)) {
+                    newHint = i;
+                }
+
+                if (amount == maxAmount) break;
+            }
+
+            if (newHint < 0) {
+                newHint = i < 0 ? bits.length() : i + 1;
+            }
+
+            if (newHint > entry.hint) {
+                // Moving a hint forward relies on the insertions above, so it must be restored if they are rolled back.
+                entry.updateSnapshots(transaction);
+                entry.hint = newHint;
+            }
+
+            if (amount == maxAmount) return amount;
+        }
+
+        for (int i = occupied.nextClearBit(0); i >= 0; i = occupied.nextClearBit(i + 1)) {
+            amount += slots[i].insert(resource, maxAmount - amount, transaction);
+            if (amount == maxAmount) break;
+        }
+
+        return amount;
+    }
+
+    @Override
+    public long insert(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+        return insertStacking(resource, maxAmount, transaction);
+    }
+
+    @Override
+    public long extract(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+        StoragePreconditions.notBlankNotNegative(resource, maxAmount);
+        IndexEntry entry = index.get(resource);
+        long amount = 0;
+
+        if (entry != null) {
+            BitSet bits = entry.slots;
+
+            for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+                amount += slots[i].extract(resource, maxAmount - amount, transaction);
+                if (amount == maxAmount) break;
+            }
+        }
+
+        return amount;
+    }
+
+    @Override
+    public int getSlotCount() {
+        return slots.length;
+    }
+
+    @Override
+    public SingleSlotStorage<T> getSlot(int slot) {
+        return slots[slot];
+    }
+
+    @Override
+    @UnmodifiableView
+    public List<SingleSlotStorage<T>> getSlots() {
+        return slotList;
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public @NotNull Iterator<StorageView<T>> iterator() {
+        return (Iterator) slotList.iterator();
+    }
+
+    @Override
+    public Iterator<StorageView<T>> nonEmptyIterator() {
+        return new NonEmptyIterator();
+    }
+
+    @Override
+    public StorageCursor<T> cursor() {
+        @SuppressWarnings("unchecked")
+        SlotCursor cursor = (SlotCursor) CACHED_CURSOR.getAndSet(this, null);
+
+        if (cursor == null) {
+            cursor = new SlotCursor();
+        }
+
+        cursor.open = true;
+        cursor.reset();
+        return cursor;
+    }
+
+    @Override
+    public long getVersion() {
+        if (Transaction.isOpen()) {
+            throw new IllegalStateException("getVersion() may not be called during a transaction.");
+        }
+
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return "IndexedSlottedStorage[" + slots.length + " slots, " + index.size() + " indexed variants]";
+    }
+
+    private void indexSlot(int slot, T variant) {
+        IndexEntry entry = index.computeIfAbsent(variant, v -> new IndexEntry());
+        entry.slots.set(slot);
+
+        // A slot below the hint can accept the variant again, so the hint must move back. Lowering a hint is always safe.
+        if (slot < entry.hint) {
+            entry.hint = slot;
+        }
+    }
+
+    private void schedulePrune(int slot, T variant, TransactionContext transaction) {
+        if (pendingPrunes.isEmpty()) {
+            transaction.addOuterCloseCallback(pruneCallback);
+        }
+
+        pendingPrunes.add(slot);
+        pendingPrunes.add(variant);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void prune() {
+        for (int i = 0; i < pendingPrunes.size(); i += 2) {
+            int slot = (Integer) pendingPrunes.get(i);
+            T variant = (T) pendingPrunes.get(i + 1);
+
+            if (!slots[slot].variant.equals(variant)) {
+                IndexEntry entry = index.get(variant);
+
+                if (entry != null) {
+                    entry.slots.clear(slot);
+
+                    if (entry.slots.isEmpty()) {
+                        index.remove(variant);
+                    }
+                }
+            }
+        }
+
+        pendingPrunes.clear();
+    }
+
+    private static final class IndexEntry extends LongSnapshotParticipant {
+        final BitSet slots = new BitSet();
+        // Every slot of the variant below the hint cannot accept more of it.
+        int hint = 0;
+
+        @Override
+        protected long createSnapshot() {
+            return hint;
+        }
+
+        @Override
+        protected void readSnapshot(long snapshot) {
+            // The restored hint is valid for the restored slots, and the hint may have been lowered since, which is always safe.
+            hint = Math.min(hint, (int) snapshot);
+        }
+    }
+
+    private final class Slot extends SingleVariantStorage<T> {
+        private final int index;
+
+        private Slot(int index) {
+            this.index = index;
+        }
+
+        @Override
+        protected T getBlankVariant() {
+            return IndexedSlottedStorage.this.getBlankVariant();
+        }
+
+        @Override
+        protected long getCapacity(T variant) {
+            return IndexedSlottedStorage.this.getCapacity(index, variant);
+        }
+
+        @Override
+        protected boolean canInsert(T variant) {
+            return IndexedSlottedStorage.this.canInsert(index, variant);
+        }
+
+        @Override
+        protected boolean canExtract(T variant) {
+            return IndexedSlottedStorage.this.canExtract(index, variant);
+        }
+
+        boolean mayAccept(T resource) {
+            return variant.equals(resource) && amount < getCapacity(resource) && canInsert(resource);
+        }
+
+        @Override
+        public long insert(T insertedVariant, long maxAmount, @NotNull TransactionContext transaction) {
+            boolean wasBlank = variant.isBlank();
+            long inserted = super.insert(insertedVariant, maxAmount, transaction);
+
+            if (inserted > 0 && wasBlank) {
+                occupied.set(index, true, transaction);
+                indexSlot(index, insertedVariant);
+                // The bit is stale if the transaction is aborted.
+                schedulePrune(index, insertedVariant, transaction);
+            }
+
+            return inserted;
+        }
+
+        // insert and extract only maintain the index, so the amounts can still be predicted.
+        @Override
+        public long probeInsert(T insertedVariant, long maxAmount) {
+            StoragePreconditions.notBlankNotNegative(insertedVariant, maxAmount);
+            return insertableAmount(insertedVariant, maxAmount);
+        }
+
+        @Override
+        public long probeExtract(T extractedVariant, long maxAmount) {
+            StoragePreconditions.notBlankNotNegative(extractedVariant, maxAmount);
+            return extractableAmount(extractedVariant, maxAmount);
+        }
+
+        @Override
+        public long extract(T extractedVariant, long maxAmount, @NotNull TransactionContext transaction) {
+            long extracted = super.extract(extractedVariant, maxAmount, transaction);
+
+            if (extracted > 0) {
+                IndexEntry entry = IndexedSlottedStorage.this.index.get(extractedVariant);
+
+                // The slot can accept the variant again, so the hint must move back.
+                if (entry != null && index < entry.hint) {
+                    entry.hint = index;
+                }
+
+                if (variant.isBlank()) {
+                    occupied.set(index, false, transaction);
+                    schedulePrune(index, extractedVariant, transaction);
+                }
+            }
+
+            return extracted;
+        }
+
+        @Override
+        protected void onFinalCommit() {
+            version++;
+            IndexedSlottedStorage.this.onFinalCommit(index);
+        }
+
+        @Override
+        public String toString() {
+            return "IndexedSlottedStorage.Slot[" + index + ": " + amount + " " + variant + "]";
+        }
+    }
+
+    private final class NonEmptyIterator implements Iterator<StorageView<T>> {
+        // Index of the last returned slot, the next slot is searched lazily so that changes during iteration are seen.
+        private int current = -1;
+        private int next = -2;
+
+        @Override
+        public boolean hasNext() {
+            if (next == -2) {
+                next = occupied.nextSetBit(current + 1);
+            }
+
+            return next >= 0;
+        }
+
+        @Override
+        public StorageView<T> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            current = next;
+            next = -2;
+            return slots[current];
+        }
+    }
+
+    /**
+     * Cursor over the occupied slots, reading the fields of the slots directly.
+     */
+    private final class SlotCursor implements StorageCursor<T> {
+        boolean open = false;
+        // Index of the current slot, or -1 if the cursor is not on a slot.
+        private int current = -1;
+        private int searchFrom = 0;
+
+        private Slot current() {
+            if (current < 0) {
+                throw TransferApiImpl.notOnPosition();
+            }
+
+            return slots[current];
+        }
+
+        @Override
+        public boolean advance() {
+            current = occupied.nextSetBit(searchFrom);
+            searchFrom = current < 0 ? slots.length : current + 1;
+            return current >= 0;
+        }
+
+        @Override
+        public T getResource() {
+            return current().variant;
+        }
+
+        @Override
+        public long getAmount() {
+            return current().amount;
+        }
+
+        @Override
+        public long getCapacity() {
+            return current().getCapacity();
+        }
+
+        @Override
+        public long extract(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+            return current().extract(resource, maxAmount, transaction);
+        }
+
+        @Override
+        public long probeExtract(T resource, long maxAmount) {
+            return current().probeExtract(resource, maxAmount);
+        }
+
+        @Override
+        public void reset() {
+            current = -1;
+            searchFrom = 0;
+        }
+
+        @Override
+        public void close() {
+            if (open) {
+                open = false;
+                CACHED_CURSOR.setRelease(IndexedSlottedStorage.this, this);
+            }
+        }
+    }
+
+    /**
+     * The list returned by {@link #getSlots}, recognized by {@link StorageUtil#insertStacking} to use the index.
+     */
+    private final class SlotList extends AbstractList<SingleSlotStorage<T>> implements RandomAccess {
+        IndexedSlottedStorage<T> owner() {
+            return IndexedSlottedStorage.this;
+        }
+
+        @Override
+        public SingleSlotStorage<T> get(int index) {
+            return slots[index];
+        }
+
+        @Override
+        public int size() {
+            return slots.length;
+        }
+    }
+
+    /**
+     * Return the storage owning a slot list, if the list was returned by {@link #getSlots} of an indexed storage.
+     * Inserting into the returned storage performs indexed stacking insertion into the slots.
+     *
+     * @param slots The slot list.
+     * @param <T> The resource type.
+     * @return The owning indexed storage, or {@code null} if the list does not belong to one.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static <T> @Nullable Storage<T> ownerOf(List<? extends SingleSlotStorage<T>> slots) {
+        return slots instanceof IndexedSlottedStorage.SlotList slotList ? (Storage<T>) slotList.owner() : null;
+    }
+}
@@ -23,8 +23,10 @@ import java.util.Collections;
 import java.util.Iterator;
 
 import dev.hytalemodding.api.transfer.v1.storage.Storage;
+import dev.hytalemodding.api.transfer.v1.storage.StorageCursor;
 import dev.hytalemodding.api.transfer.v1.storage.StorageView;
 import dev.hytalemodding.api.transfer.v1.transaction.TransactionContext;
+import dev.hytalemodding.impl.transfer.TransferApiImpl;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -47,4 +49,10 @@ public interface InsertionOnlyStorage<T> extends Storage<T> {
 	default @NotNull Iterator<StorageView<T>> iterator() {
 		return Collections.emptyIterator();
 	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	default StorageCursor<T> cursor() {
+		return TransferApiImpl.EMPTY_CURSOR;
+	}
 }
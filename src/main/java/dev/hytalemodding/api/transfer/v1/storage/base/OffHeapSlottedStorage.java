@@ -0,0 +1,685 @@
+/*
+ * Copyright (c) 2025 Shai List and contributors
+ * Licensed under the MIT license. See LICENSE file in the project root for details.
+ */
+
+package dev.hytalemodding.api.transfer.v1.storage.base;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+import dev.hytalemodding.api.transfer.v1.storage.SlottedStorage;
+import dev.hytalemodding.api.transfer.v1.storage.StorageCursor;
+import dev.hytalemodding.api.transfer.v1.storage.StoragePreconditions;
+import dev.hytalemodding.api.transfer.v1.storage.StorageView;
+import dev.hytalemodding.api.transfer.v1.storage.TransferVariant;
+import dev.hytalemodding.api.transfer.v1.transaction.Transaction;
+import dev.hytalemodding.api.transfer.v1.transaction.TransactionContext;
+import dev.hytalemodding.api.transfer.v1.transaction.base.LongSnapshotParticipant;
+import dev.hytalemodding.impl.transfer.TransferApiImpl;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A {@link SlottedStorage} whose slots are stored off-heap, for storages with millions of slots.
+ *
+ * <p>Each slot is an {@code int} variant id and a {@code long} amount in native memory, so the heap usage of the storage does not
+ * depend on its number of slots. Ids are local to the storage and map to variants through a small on-heap table, with id
+ * {@code 0} always being the blank variant. Ids that are no longer used by any slot are reused once no transaction is modifying the storage.
+ *
+ * <p>Like {@link ArraySlottedStorage}, the storage takes part in transactions as a single participant that journals the previous
+ * contents of the slots it modifies, so the cost of a transaction only depends on the number of touched slots.
+ * The slots returned by {@link #getSlot} are views that are created on demand and compare equal if they refer to the same slot.
+ *
+ * <p>The slots live in direct {@link ByteBuffer}s, so the storage works on every Java version supported by this library
+ * and holds at most {@code Integer.MAX_VALUE / 8} slots. The native memory is freed by the garbage collector once the storage is unreachable;
+ * {@link #close} drops it early, after which the storage may not be used anymore.
+ *
+ * @param <T> The transfer variant type handled by this storage.
+ */
+public abstract class OffHeapSlottedStorage<T extends TransferVariant<?>> implements SlottedStorage<T>, AutoCloseable {
+    private static final int BLANK_ID = 0;
+
+    private final int slotCount;
+    // Replaced by empty buffers when the storage is closed, so that any further access fails.
+    private IntBuffer ids;
+    private LongBuffer amounts;
+    private boolean closed = false;
+    private final Journal journal = new Journal();
+
+    // Whether a subclass overrides extract from a slot, in which case the cursor probes cannot predict its result.
+    private static final ClassValue<Boolean> OVERRIDES_EXTRACT = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return TransferApiImpl.overridesMethod(type, OffHeapSlottedStorage.class, "extract", int.class, TransferVariant.class, long.class, TransactionContext.class);
+        }
+    };
+    private static final VarHandle CACHED_CURSOR = TransferApiImpl.findVarHandle(MethodHandles.lookup(), "cachedCursor", OffHeapSlottedStorage.SlotCursor.class);
+    // The last closed cursor, reused by the next cursor() call.
+    private @Nullable SlotCursor cachedCursor = null;
+    private final boolean exactExtractProbes = !OVERRIDES_EXTRACT.get(getClass());
+    // Variant of each id, and number of slots using each id. Entry 0 is the blank variant.
+    private Object[] variantsById;
+    private int[] useCounts = new int[16];
+    private final Map<T, Integer> idsByVariant = new HashMap<>();
+    private int nextId = 1;
+    // Ids that may be reused, and ids whose use count dropped to zero while the journal could still reference them.
+    private int[] freeIds = new int[16];
+    private int freeIdCount = 0;
+    private int[] unusedIds = new int[16];
+    private int unusedIdCount = 0;
+
+    /**
+     * Create a new storage with the given number of blank slots.
+     *
+     * @param slotCount The number of slots. Must be non-negative.
+     * @throws IllegalArgumentException If there are more than {@code Integer.MAX_VALUE / 8} slots.
+     */
+    protected OffHeapSlottedStorage(int slotCount) {
+        StoragePreconditions.notNegative(slotCount);
+
+        if (slotCount > Integer.MAX_VALUE / Long.BYTES) {
+            throw new IllegalArgumentException("Slot count exceeds the maximum of " + Integer.MAX_VALUE / Long.BYTES + ": " + slotCount);
+        }
+
+        this.slotCount = slotCount;
+        // Direct buffers are zeroed on allocation, so every slot starts blank.
+        this.ids = ByteBuffer.allocateDirect(slotCount * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+        this.amounts = ByteBuffer.allocateDirect(slotCount * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+        this.variantsById = new Object[16];
+        this.variantsById[BLANK_ID] = getBlankVariant();
+    }
+
+    /**
+     * Return the blank variant.
+     *
+     * @return The blank transfer variant for this storage type.
+     */
+    protected abstract T getBlankVariant();
+
+    /**
+     * Return the maximum capacity of a slot for the passed transfer variant.
+     * If the passed variant is blank, an estimate should be returned.
+     *
+     * @param slot The index of the slot.
+     * @param variant The variant for which capacity is queried. May be blank.
+     * @return The maximum capacity of the slot for the passed variant.
+     */
+    protected abstract long getCapacity(int slot, T variant);
+
+    /**
+     * Return whether the passed non-blank variant can be inserted into a slot.
+     *
+     * @param slot The index of the slot.
+     * @param variant The variant to test.
+     * @return {@code true} if the variant can be inserted into the slot.
+     */
+    protected boolean canInsert(int slot, T variant) {
+        return true;
+    }
+
+    /**
+     * Return whether the passed non-blank variant can be extracted from a slot.
+     *
+     * @param slot The index of the slot.
+     * @param variant The variant to test.
+     * @return {@code true} if the variant can be extracted from the slot.
+     */
+    protected boolean canExtract(int slot, T variant) {
+        return true;
+    }
+
+    /**
+     * Called once for each modified slot after an outer transaction that modified this storage succeeded,
+     * to perform irreversible actions such as {@code markDirty()}.
+     *
+     * @param slot The index of the modified slot.
+     */
+    protected void onFinalCommit(int slot) {
+    }
+
+    /**
+     * Directly replace the contents of a slot, outside of any transaction.
+     *
+     * @param slot The index of the slot.
+     * @param variant The new variant, may be blank.
+     * @param amount The new amount, must be zero if the variant is blank.
+     * @throws IllegalStateException If a transaction is open on this thread.
+     * @throws IllegalArgumentException If the amount is negative, or positive for a blank variant.
+     */
+    public void set(int slot, T variant, long amount) {
+        if (Transaction.isOpen()) {
+            throw new IllegalStateException("set() may not be called during a transaction.");
+        }
+
+        StoragePreconditions.notNegativeEmptyIfBlank(variant, amount);
+        Objects.checkIndex(slot, slotCount);
+        writeSlot(slot, amount == 0 ? BLANK_ID : acquireId(variant), amount);
+        journal.incrementVersion();
+        releaseUnusedIds();
+    }
+
+    /**
+     * Return the stored variant of a slot.
+     *
+     * @param slot The index of the slot.
+     * @return The variant of the slot, blank if the slot is empty.
+     */
+    @SuppressWarnings("unchecked")
+    public T getResource(int slot) {
+        return (T) variantsById[idAt(slot)];
+    }
+
+    /**
+     * Return the stored amount of a slot.
+     *
+     * @param slot The index of the slot.
+     * @return The amount of the slot.
+     */
+    public long getAmount(int slot) {
+        return amountAt(slot);
+    }
+
+    /**
+     * Insert into a single slot.
+     *
+     * @param slot The index of the slot.
+     * @param resource The resource to insert. May not be blank.
+     * @param maxAmount The maximum amount to insert. May not be negative.
+     * @param transaction The transaction this operation is part of.
+     * @return A nonnegative integer not greater than maxAmount: the amount that was inserted.
+     */
+    public long insert(int slot, T resource, long maxAmount, @NotNull TransactionContext transaction) {
+        StoragePreconditions.notBlankNotNegative(resource, maxAmount);
+        Objects.checkIndex(slot, slotCount);
+        return insertUnchecked(slot, resource, maxAmount, transaction);
+    }
+
+    /**
+     * Extract from a single slot.
+     *
+     * @param slot The index of the slot.
+     * @param resource The resource to extract. May not be blank.
+     * @param maxAmount The maximum amount to extract. May not be negative.
+     * @param transaction The transaction this operation is part of.
+     * @return A nonnegative integer not greater than maxAmount: the amount that was extracted.
+     */
+    public long extract(int slot, T resource, long maxAmount, @NotNull TransactionContext transaction) {
+        StoragePreconditions.notBlankNotNegative(resource, maxAmount);
+        Objects.checkIndex(slot, slotCount);
+        return extractUnchecked(slot, resource, maxAmount, transaction);
+    }
+
+    @Override
+    public long insert(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+        StoragePreconditions.notBlankNotNegative(resource, maxAmount);
+        long amount = 0;
+
+        for (int i = 0; i < slotCount && amount < maxAmount; i++) {
+            amount += insertUnchecked(i, resource, maxAmount - amount, transaction);
+        }
+
+        return amount;
+    }
+
+    @Override
+    public long extract(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+        StoragePreconditions.notBlankNotNegative(resource, maxAmount);
+        Integer id = idsByVariant.get(resource);
+        long amount = 0;
+
+        // A variant without an id is not stored in any slot.
+        if (id == null) return 0;
+
+        for (int i = 0; i < slotCount && amount < maxAmount; i++) {
+            if (idAt(i) == id) {
+                amount += extractUnchecked(i, resource, maxAmount - amount, transaction);
+            }
+        }
+
+        return amount;
+    }
+
+    private long insertUnchecked(int slot, T resource, long maxAmount, TransactionContext transaction) {
+        int id = idAt(slot);
+        @SuppressWarnings("unchecked")
+        T variant = (T) variantsById[id];
+        boolean blank = id == BLANK_ID;
+
+        if ((blank || resource == variant || resource.equals(variant)) && canInsert(slot, resource)) {
+            long amount = amountAt(slot);
+            long inserted = Math.min(maxAmount, getCapacity(slot, resource) - amount);
+
+            if (inserted > 0) {
+                journal.record(slot, id, amount, transaction);
+                writeSlot(slot, blank ? acquireId(resource) : id, amount + inserted);
+                return inserted;
+            }
+        }
+
+        return 0;
+    }
+
+    private long extractUnchecked(int slot, T resource, long maxAmount, TransactionContext transaction) {
+        int id = idAt(slot);
+        if (id == BLANK_ID) return 0;
+
+        @SuppressWarnings("unchecked")
+        T variant = (T) variantsById[id];
+
+        if ((resource == variant || resource.equals(variant)) && canExtract(slot, resource)) {
+            long amount = amountAt(slot);
+            long extracted = Math.min(maxAmount, amount);
+
+            if (extracted > 0) {
+                journal.record(slot, id, amount, transaction);
+                long newAmount = amount - extracted;
+                writeSlot(slot, newAmount == 0 ? BLANK_ID : id, newAmount);
+                return extracted;
+            }
+        }
+
+        return 0;
+    }
+
+    private int idAt(int slot) {
+        return ids.get(slot);
+    }
+
+    private long amountAt(int slot) {
+        return amounts.get(slot);
+    }
+
+    /**
+     * Write a slot, keeping the use counts of the ids up to date.
+     */
+    private void writeSlot(int slot, int id, long amount) {
+        int previousId = idAt(slot);
+
+        if (previousId != id) {
+            if (previousId != BLANK_ID && --useCounts[previousId] == 0) {
+                unusedIds = push(unusedIds, unusedIdCount++, previousId);
+            }
+
+            if (id != BLANK_ID) {
+                useCounts[id]++;
+            }
+
+            ids.put(slot, id);
+        }
+
+        amounts.put(slot, amount);
+    }
+
+    /**
+     * Return the id of a non-blank variant, assigning a new id if it does not have one yet.
+     */
+    private int acquireId(T variant) {
+        Integer existing = idsByVariant.get(variant);
+        if (existing != null) return existing;
+
+        int id;
+
+        if (freeIdCount > 0) {
+            id = freeIds[--freeIdCount];
+        } else {
+            id = nextId++;
+
+            if (id == variantsById.length) {
+                variantsById = Arrays.copyOf(variantsById, id * 2);
+                useCounts = Arrays.copyOf(useCounts, id * 2);
+            }
+        }
+
+        variantsById[id] = variant;
+        idsByVariant.put(variant, id);
+        return id;
+    }
+
+    /**
+     * Make the ids that are not used by any slot available again. Must only be called when the journal is empty,
+     * since the journal may still reference these ids.
+     */
+    @SuppressWarnings("unchecked")
+    private void releaseUnusedIds() {
+        for (int i = 0; i < unusedIdCount; i++) {
+            int id = unusedIds[i];
+
+            // The id may have been used again since its use count dropped to zero.
+            if (useCounts[id] == 0 && variantsById[id] != null) {
+                idsByVariant.remove((T) variantsById[id]);
+                variantsById[id] = null;
+                freeIds = push(freeIds, freeIdCount++, id);
+            }
+        }
+
+        unusedIdCount = 0;
+    }
+
+    private static int[] push(int[] array, int index, int value) {
+        if (index == array.length) {
+            array = Arrays.copyOf(array, index * 2);
+        }
+
+        array[index] = value;
+        return array;
+    }
+
+    @Override
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    @Override
+    public SingleSlotStorage<T> getSlot(int slot) {
+        Objects.checkIndex(slot, slotCount);
+        return new SlotView(slot);
+    }
+
+    @Override
+    public @NotNull Iterator<StorageView<T>> iterator() {
+        return new SlotIterator(false);
+    }
+
+    @Override
+    public Iterator<StorageView<T>> nonEmptyIterator() {
+        return new SlotIterator(true);
+    }
+
+    @Override
+    public StorageCursor<T> cursor() {
+        @SuppressWarnings("unchecked")
+        SlotCursor cursor = (SlotCursor) CACHED_CURSOR.getAndSet(this, null);
+
+        if (cursor == null) {
+            cursor = new SlotCursor();
+        }
+
+        cursor.open = true;
+        cursor.reset();
+        return cursor;
+    }
+
+    @Override
+    public long getVersion() {
+        return journal.getVersion();
+    }
+
+    /**
+     * Drop the native memory of this storage, so that it can be freed before the storage itself is unreachable.
+     * The storage may not be used anymore afterwards.
+     *
+     * @throws IllegalStateException If the storage is already closed, or if a transaction is open on this thread.
+     */
+    @Override
+    public void close() {
+        if (Transaction.isOpen()) {
+            throw new IllegalStateException("close() may not be called during a transaction.");
+        }
+
+        if (closed) {
+            throw new IllegalStateException("The storage is already closed.");
+        }
+
+        closed = true;
+        ids = IntBuffer.allocate(0);
+        amounts = LongBuffer.allocate(0);
+    }
+
+    @Override
+    public String toString() {
+        return "OffHeapSlottedStorage[" + slotCount + " slots, " + idsByVariant.size() + " variant ids]";
+    }
+
+    /**
+     * Records the previous id and amount of every modified slot. Snapshots are positions in the journal,
+     * so rolling back a transaction restores the slots in reverse order down to its snapshot.
+     */
+    private final class Journal extends LongSnapshotParticipant {
+        private int[] slots = new int[16];
+        private int[] oldIds = new int[16];
+        private long[] oldAmounts = new long[16];
+        private int size = 0;
+
+        void record(int slot, int oldId, long oldAmount, TransactionContext transaction) {
+            updateSnapshots(transaction);
+
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+                oldIds = Arrays.copyOf(oldIds, size * 2);
+                oldAmounts = Arrays.copyOf(oldAmounts, size * 2);
+            }
+
+            slots[size] = slot;
+            oldIds[size] = oldId;
+            oldAmounts[size] = oldAmount;
+            size++;
+        }
+
+        @Override
+        protected long createSnapshot() {
+            return size;
+        }
+
+        @Override
+        protected void readSnapshot(long snapshot) {
+            for (int i = size - 1; i >= snapshot; i--) {
+                writeSlot(slots[i], oldIds[i], oldAmounts[i]);
+            }
+
+            size = (int) snapshot;
+
+            if (size == 0) {
+                releaseUnusedIds();
+            }
+        }
+
+        @Override
+        public void afterOuterClose(Transaction.Result result) {
+            // The outer transaction committed, so drop the journal and notify each modified slot once.
+            // The slots are copied first since onFinalCommit may start new transactions.
+            int[] committedSlots = Arrays.copyOf(slots, size);
+            size = 0;
+            releaseUnusedIds();
+            super.afterOuterClose(result);
+            Arrays.sort(committedSlots);
+
+            for (int i = 0; i < committedSlots.length; i++) {
+                if (i == 0 || committedSlots[i] != committedSlots[i - 1]) {
+                    OffHeapSlottedStorage.this.onFinalCommit(committedSlots[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * A view of a single slot, reading and writing the native memory of the storage.
+     */
+    private final class SlotView implements SingleSlotStorage<T> {
+        private final int slot;
+
+        private SlotView(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public long insert(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+            StoragePreconditions.notBlankNotNegative(resource, maxAmount);
+            return insertUnchecked(slot, resource, maxAmount, transaction);
+        }
+
+        @Override
+        public long extract(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+            StoragePreconditions.notBlankNotNegative(resource, maxAmount);
+            return extractUnchecked(slot, resource, maxAmount, transaction);
+        }
+
+        @Override
+        public boolean isResourceBlank() {
+            return idAt(slot) == BLANK_ID;
+        }
+
+        @Override
+        public T getResource() {
+            return OffHeapSlottedStorage.this.getResource(slot);
+        }
+
+        @Override
+        public long getAmount() {
+            return amountAt(slot);
+        }
+
+        @Override
+        public long getCapacity() {
+            return OffHeapSlottedStorage.this.getCapacity(slot, getResource());
+        }
+
+        @Override
+        public long getVersion() {
+            // Any change to the slot changes the version of the storage, which is enough for change detection.
+            return OffHeapSlottedStorage.this.getVersion();
+        }
+
+        private OffHeapSlottedStorage<T> owner() {
+            return OffHeapSlottedStorage.this;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof OffHeapSlottedStorage<?>.SlotView other && other.owner() == owner() && other.slot == slot;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(owner()) * 31 + slot;
+        }
+
+        @Override
+        public String toString() {
+            return "OffHeapSlottedStorage.Slot[" + slot + ": " + getAmount() + " " + getResource() + "]";
+        }
+    }
+
+    /**
+     * Cursor over the non-empty slots, reading the memory segments directly.
+     */
+    private final class SlotCursor implements StorageCursor<T> {
+        boolean open = false;
+        // Index of the current slot, or -1 if the cursor is not on a slot.
+        private int current = -1;
+        private int searchFrom = 0;
+
+        private int current() {
+            if (current < 0) {
+                throw TransferApiImpl.notOnPosition();
+            }
+
+            return current;
+        }
+
+        @Override
+        public boolean advance() {
+            while (searchFrom < slotCount && idAt(searchFrom) == BLANK_ID) {
+                searchFrom++;
+            }
+
+            current = searchFrom < slotCount ? searchFrom++ : -1;
+            return current >= 0;
+        }
+
+        @Override
+        public T getResource() {
+            return OffHeapSlottedStorage.this.getResource(current());
+        }
+
+        @Override
+        public long getAmount() {
+            return amountAt(current());
+        }
+
+        @Override
+        public long getCapacity() {
+            int slot = current();
+            return OffHeapSlottedStorage.this.getCapacity(slot, getResource());
+        }
+
+        @Override
+        public long extract(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+            return OffHeapSlottedStorage.this.extract(current(), resource, maxAmount, transaction);
+        }
+
+        @Override
+        public long probeExtract(T resource, long maxAmount) {
+            StoragePreconditions.notBlankNotNegative(resource, maxAmount);
+            if (!exactExtractProbes) return UNKNOWN_AMOUNT;
+
+            int slot = current();
+            int id = idAt(slot);
+            if (id == BLANK_ID) return 0;
+
+            Object variant = variantsById[id];
+
+            if ((resource == variant || resource.equals(variant)) && canExtract(slot, resource)) {
+                return Math.min(maxAmount, amountAt(slot));
+            }
+
+            return 0;
+        }
+
+        @Override
+        public void reset() {
+            current = -1;
+            searchFrom = 0;
+        }
+
+        @Override
+        public void close() {
+            if (open) {
+                open = false;
+                CACHED_CURSOR.setRelease(OffHeapSlottedStorage.this, this);
+            }
+        }
+    }
+
+    private final class SlotIterator implements Iterator<StorageView<T>> {
+        private final boolean nonEmpty;
+        private int next = -1;
+
+        SlotIterator(boolean nonEmpty) {
+            this.nonEmpty = nonEmpty;
+            advance();
+        }
+
+        private void advance() {
+            do {
+                next++;
+            } while (nonEmpty && next < slotCount && idAt(next) == BLANK_ID);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < slotCount;
+        }
+
+        @Override
+        public StorageView<T> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            StorageView<T> view = new SlotView(next);
+            advance();
+            return view;
+        }
+    }
+}
@@ -0,0 +1,753 @@
+/*
+ * Copyright (c) 2025 Shai List and contributors
+ * Licensed under the MIT license. See LICENSE file in the project root for details.
+ */
+
+package dev.hytalemodding.api.transfer.v1.storage.base;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+import dev.hytalemodding.api.transfer.v1.storage.SlottedStorage;
+import dev.hytalemodding.api.transfer.v1.storage.StorageCursor;
+import dev.hytalemodding.api.transfer.v1.storage.StoragePreconditions;
+import dev.hytalemodding.api.transfer.v1.storage.StorageView;
+import dev.hytalemodding.api.transfer.v1.storage.TransferVariant;
+import dev.hytalemodding.api.transfer.v1.transaction.Transaction;
+import dev.hytalemodding.api.transfer.v1.transaction.TransactionContext;
+import dev.hytalemodding.api.transfer.v1.transaction.base.LongSnapshotParticipant;
+import dev.hytalemodding.impl.transfer.TransferApiImpl;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A {@link SlottedStorage} for storages with many slots but few distinct variants, such as a buffer full of a single block.
+ *
+ * <p>Like the block palettes of chunks, each slot stores an index into a small per-storage palette of variants, bit-packed with
+ * just enough bits to address the palette. Amounts are bit-packed as well, with just enough bits for the largest amount stored so far.
+ * A storage with 4 variants and amounts up to 64 thus only needs 9 bits per slot. The palette and both widths grow transparently
+ * when needed, and go back to their previous state when the transaction that grew them is aborted.
+ *
+ * <p>Palette entries are not removed when the last slot holding them is emptied, which keeps indices stable during transactions.
+ * {@link #compact} can be called outside transactions to drop unused entries and shrink both widths.
+ *
+ * <p>Like {@link ArraySlottedStorage}, the storage takes part in transactions as a single participant that journals the previous
+ * contents of the slots it modifies. The slots returned by {@link #getSlot} are views that are created on demand
+ * and compare equal if they refer to the same slot.
+ *
+ * @param <T> The transfer variant type handled by this storage.
+ */
+public abstract class PalettedSlottedStorage<T extends TransferVariant<?>> implements SlottedStorage<T> {
+    private static final int BLANK_INDEX = 0;
+
+    private final int slotCount;
+    private final Journal journal = new Journal();
+
+    // Whether a subclass overrides extract from a slot, in which case the cursor probes cannot predict its result.
+    private static final ClassValue<Boolean> OVERRIDES_EXTRACT = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return TransferApiImpl.overridesMethod(type, PalettedSlottedStorage.class, "extract", int.class, TransferVariant.class, long.class, TransactionContext.class);
+        }
+    };
+    private static final VarHandle CACHED_CURSOR = TransferApiImpl.findVarHandle(MethodHandles.lookup(), "cachedCursor", PalettedSlottedStorage.SlotCursor.class);
+    // The last closed cursor, reused by the next cursor() call.
+    private @Nullable SlotCursor cachedCursor = null;
+    private final boolean exactExtractProbes = !OVERRIDES_EXTRACT.get(getClass());
+    // Palette of variants, entry 0 is the blank variant.
+    private Object[] palette = new Object[4];
+    private int paletteSize = 1;
+    private final Map<T, Integer> paletteIndices = new HashMap<>();
+    private PackedArray indices;
+    private PackedArray amounts;
+
+    /**
+     * Create a new storage with the given number of blank slots.
+     *
+     * @param slotCount The number of slots. Must be non-negative.
+     */
+    protected PalettedSlottedStorage(int slotCount) {
+        StoragePreconditions.notNegative(slotCount);
+        this.slotCount = slotCount;
+        this.palette[BLANK_INDEX] = getBlankVariant();
+        this.indices = new PackedArray(slotCount, 1);
+        this.amounts = new PackedArray(slotCount, 1);
+    }
+
+    /**
+     * Return the blank variant.
+     *
+     * @return The blank transfer variant for this storage type.
+     */
+    protected abstract T getBlankVariant();
+
+    /**
+     * Return the maximum capacity of a slot for the passed transfer variant.
+     * If the passed variant is blank, an estimate should be returned.
+     *
+     * @param slot The index of the slot.
+     * @param variant The variant for which capacity is queried. May be blank.
+     * @return The maximum capacity of the slot for the passed variant.
+     */
+    protected abstract long getCapacity(int slot, T variant);
+
+    /**
+     * Return whether the passed non-blank variant can be inserted into a slot.
+     *
+     * @param slot The index of the slot.
+     * @param variant The variant to test.
+     * @return {@code true} if the variant can be inserted into the slot.
+     */
+    protected boolean canInsert(int slot, T variant) {
+        return true;
+    }
+
+    /**
+     * Return whether the passed non-blank variant can be extracted from a slot.
+     *
+     * @param slot The index of the slot.
+     * @param variant The variant to test.
+     * @return {@code true} if the variant can be extracted from the slot.
+     */
+    protected boolean canExtract(int slot, T variant) {
+        return true;
+    }
+
+    /**
+     * Called once for each modified slot after an outer transaction that modified this storage succeeded,
+     * to perform irreversible actions such as {@code markDirty()}.
+     *
+     * @param slot The index of the modified slot.
+     */
+    protected void onFinalCommit(int slot) {
+    }
+
+    /**
+     * Directly replace the contents of a slot, outside of any transaction.
+     *
+     * @param slot The index of the slot.
+     * @param variant The new variant, may be blank.
+     * @param amount The new amount, must be zero if the variant is blank.
+     * @throws IllegalStateException If a transaction is open on this thread.
+     * @throws IllegalArgumentException If the amount is negative, or positive for a blank variant.
+     */
+    public void set(int slot, T variant, long amount) {
+        if (Transaction.isOpen()) {
+            throw new IllegalStateException("set() may not be called during a transaction.");
+        }
+
+        StoragePreconditions.notNegativeEmptyIfBlank(variant, amount);
+        Objects.checkIndex(slot, slotCount);
+        int index = amount == 0 ? BLANK_INDEX : paletteIndex(variant, null);
+        ensureAmountWidth(amount, null);
+        indices.set(slot, index);
+        amounts.set(slot, amount);
+        journal.incrementVersion();
+    }
+
+    /**
+     * Drop the palette entries that are not used by any slot, and shrink the packed arrays to the smallest widths that fit.
+     *
+     * @throws IllegalStateException If a transaction is open on this thread.
+     */
+    public void compact() {
+        if (Transaction.isOpen()) {
+            throw new IllegalStateException("compact() may not be called during a transaction.");
+        }
+
+        int[] remap = new int[paletteSize];
+        long maxAmount = 0;
+
+        for (int i = 0; i < slotCount; i++) {
+            remap[indices.get(i)] = 1;
+            maxAmount = Math.max(maxAmount, amounts.getLong(i));
+        }
+
+        // The blank variant always keeps index 0.
+        remap[BLANK_INDEX] = BLANK_INDEX;
+        Object[] newPalette = new Object[palette.length];
+        newPalette[BLANK_INDEX] = palette[BLANK_INDEX];
+        int newSize = 1;
+        paletteIndices.clear();
+
+        for (int index = 1; index < paletteSize; index++) {
+            if (remap[index] != 0) {
+                remap[index] = newSize;
+                newPalette[newSize] = palette[index];
+                paletteIndices.put(variantAt(index), newSize);
+                newSize++;
+            }
+        }
+
+        PackedArray newIndices = new PackedArray(slotCount, bitsFor(newSize - 1));
+
+        for (int i = 0; i < slotCount; i++) {
+            newIndices.set(i, remap[indices.get(i)]);
+        }
+
+        palette = newPalette;
+        paletteSize = newSize;
+        indices = newIndices;
+        amounts = amounts.resize(bitsFor(maxAmount));
+    }
+
+    /**
+     * Return the number of variants in the palette, including the blank variant and unused entries.
+     *
+     * @return The size of the palette.
+     */
+    public int getPaletteSize() {
+        return paletteSize;
+    }
+
+    /**
+     * Return the number of bits used by each slot, which is the sum of the palette index width and of the amount width.
+     *
+     * @return The number of bits per slot.
+     */
+    public int getBitsPerSlot() {
+        return indices.bits + amounts.bits;
+    }
+
+    /**
+     * Insert into a single slot.
+     *
+     * @param slot The index of the slot.
+     * @param resource The resource to insert. May not be blank.
+     * @param maxAmount The maximum amount to insert. May not be negative.
+     * @param transaction The transaction this operation is part of.
+     * @return A nonnegative integer not greater than maxAmount: the amount that was inserted.
+     */
+    public long insert(int slot, T resource, long maxAmount, @NotNull TransactionContext transaction) {
+        StoragePreconditions.notBlankNotNegative(resource, maxAmount);
+        Objects.checkIndex(slot, slotCount);
+        return insertUnchecked(slot, resource, maxAmount, transaction);
+    }
+
+    /**
+     * Extract from a single slot.
+     *
+     * @param slot The index of the slot.
+     * @param resource The resource to extract. May not be blank.
+     * @param maxAmount The maximum amount to extract. May not be negative.
+     * @param transaction The transaction this operation is part of.
+     * @return A nonnegative integer not greater than maxAmount: the amount that was extracted.
+     */
+    public long extract(int slot, T resource, long maxAmount, @NotNull TransactionContext transaction) {
+        StoragePreconditions.notBlankNotNegative(resource, maxAmount);
+        Objects.checkIndex(slot, slotCount);
+        return extractUnchecked(slot, resource, maxAmount, transaction);
+    }
+
+    @Override
+    public long insert(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+        StoragePreconditions.notBlankNotNegative(resource, maxAmount);
+        long amount = 0;
+
+        for (int i = 0; i < slotCount && amount < maxAmount; i++) {
+            amount += insertUnchecked(i, resource, maxAmount - amount, transaction);
+        }
+
+        return amount;
+    }
+
+    @Override
+    public long extract(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+        StoragePreconditions.notBlankNotNegative(resource, maxAmount);
+        Integer index = paletteIndices.get(resource);
+        long amount = 0;
+
+        // A variant that is not in the palette is not stored in any slot.
+        if (index == null) return 0;
+
+        for (int i = 0; i < slotCount && amount < maxAmount; i++) {
+            if (indices.get(i) == index) {
+                amount += extractUnchecked(i, resource, maxAmount - amount, transaction);
+            }
+        }
+
+        return amount;
+    }
+
+    private long insertUnchecked(int slot, T resource, long maxAmount, TransactionContext transaction) {
+        int index = indices.get(slot);
+        T variant = variantAt(index);
+        boolean blank = index == BLANK_INDEX;
+
+        if ((blank || resource == variant || resource.equals(variant)) && canInsert(slot, resource)) {
+            long amount = amounts.getLong(slot);
+            long inserted = Math.min(maxAmount, getCapacity(slot, resource) - amount);
+
+            if (inserted > 0) {
+                // Grow the palette and the widths before recording the slot, so that the slot is restored before they are shrunk.
+                int newIndex = blank ? paletteIndex(resource, transaction) : index;
+                ensureAmountWidth(amount + inserted, transaction);
+                journal.recordSlot(slot, index, amount, transaction);
+                indices.set(slot, newIndex);
+                amounts.set(slot, amount + inserted);
+                return inserted;
+            }
+        }
+
+        return 0;
+    }
+
+    private long extractUnchecked(int slot, T resource, long maxAmount, TransactionContext transaction) {
+        int index = indices.get(slot);
+        if (index == BLANK_INDEX) return 0;
+
+        T variant = variantAt(index);
+
+        if ((resource == variant || resource.equals(variant)) && canExtract(slot, resource)) {
+            long amount = amounts.getLong(slot);
+            long extracted = Math.min(maxAmount, amount);
+
+            if (extracted > 0) {
+                journal.recordSlot(slot, index, amount, transaction);
+                long newAmount = amount - extracted;
+                indices.set(slot, newAmount == 0 ? BLANK_INDEX : index);
+                amounts.set(slot, newAmount);
+                return extracted;
+            }
+        }
+
+        return 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T variantAt(int index) {
+        return (T) palette[index];
+    }
+
+    /**
+     * Return the palette index of a non-blank variant, adding it to the palette and widening the indices if needed.
+     *
+     * @param transaction The transaction to journal the changes in, or {@code null} if no transaction is open.
+     */
+    private int paletteIndex(T variant, @Nullable TransactionContext transaction) {
+        Integer existing = paletteIndices.get(variant);
+        if (existing != null) return existing;
+
+        int index = paletteSize;
+
+        if (transaction != null) {
+            journal.record(Journal.OP_PALETTE_ADD, 0, 0, 0, transaction);
+        }
+
+        if (index == palette.length) {
+            palette = Arrays.copyOf(palette, index * 2);
+        }
+
+        palette[index] = variant;
+        paletteSize++;
+        paletteIndices.put(variant, index);
+
+        int bits = bitsFor(index);
+
+        if (bits > indices.bits) {
+            if (transaction != null) {
+                journal.record(Journal.OP_RESIZE_INDICES, 0, indices.bits, 0, transaction);
+            }
+
+            indices = indices.resize(bits);
+        }
+
+        return index;
+    }
+
+    /**
+     * Widen the amounts if needed so that the passed amount fits.
+     *
+     * @param transaction The transaction to journal the change in, or {@code null} if no transaction is open.
+     */
+    private void ensureAmountWidth(long amount, @Nullable TransactionContext transaction) {
+        int bits = bitsFor(amount);
+
+        if (bits > amounts.bits) {
+            if (transaction != null) {
+                journal.record(Journal.OP_RESIZE_AMOUNTS, 0, amounts.bits, 0, transaction);
+            }
+
+            amounts = amounts.resize(bits);
+        }
+    }
+
+    private static int bitsFor(long value) {
+        return Math.max(1, 64 - Long.numberOfLeadingZeros(value));
+    }
+
+    @Override
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    @Override
+    public SingleSlotStorage<T> getSlot(int slot) {
+        Objects.checkIndex(slot, slotCount);
+        return new SlotView(slot);
+    }
+
+    @Override
+    public @NotNull Iterator<StorageView<T>> iterator() {
+        return new SlotIterator(false);
+    }
+
+    @Override
+    public Iterator<StorageView<T>> nonEmptyIterator() {
+        return new SlotIterator(true);
+    }
+
+    @Override
+    public StorageCursor<T> cursor() {
+        @SuppressWarnings("unchecked")
+        SlotCursor cursor = (SlotCursor) CACHED_CURSOR.getAndSet(this, null);
+
+        if (cursor == null) {
+            cursor = new SlotCursor();
+        }
+
+        cursor.open = true;
+        cursor.reset();
+        return cursor;
+    }
+
+    @Override
+    public long getVersion() {
+        return journal.getVersion();
+    }
+
+    @Override
+    public String toString() {
+        return "PalettedSlottedStorage[" + slotCount + " slots, " + paletteSize + " palette entries, " + getBitsPerSlot() + " bits per slot]";
+    }
+
+    /**
+     * Fixed-width unsigned values packed into longs. Values never straddle two longs, which wastes a few bits per long
+     * for some widths but keeps reads and writes to a single long.
+     */
+    private static final class PackedArray {
+        final int size;
+        final int bits;
+        final int valuesPerWord;
+        final long mask;
+        final long[] words;
+
+        PackedArray(int size, int bits) {
+            this.size = size;
+            this.bits = bits;
+            this.valuesPerWord = 64 / bits;
+            this.mask = bits == 64 ? -1L : (1L << bits) - 1;
+            this.words = new long[(size + valuesPerWord - 1) / valuesPerWord];
+        }
+
+        long getLong(int i) {
+            int shift = (i % valuesPerWord) * bits;
+            return (words[i / valuesPerWord] >>> shift) & mask;
+        }
+
+        int get(int i) {
+            return (int) getLong(i);
+        }
+
+        void set(int i, long value) {
+            int word = i / valuesPerWord;
+            int shift = (i % valuesPerWord) * bits;
+            words[word] = (words[word] & ~(mask << shift)) | ((value & mask) << shift);
+        }
+
+        /**
+         * Return a copy of this array with another width. All values must fit in the new width.
+         */
+        PackedArray resize(int newBits) {
+            if (newBits == bits) return this;
+
+            PackedArray resized = new PackedArray(size, newBits);
+
+            for (int i = 0; i < size; i++) {
+                resized.set(i, getLong(i));
+            }
+
+            return resized;
+        }
+    }
+
+    /**
+     * Journal of slot changes, palette additions and width changes. Snapshots are positions in the journal,
+     * so rolling back a transaction undoes the changes in reverse order down to its snapshot.
+     */
+    private final class Journal extends LongSnapshotParticipant {
+        static final byte OP_SLOT = 0;
+        static final byte OP_PALETTE_ADD = 1;
+        static final byte OP_RESIZE_INDICES = 2;
+        static final byte OP_RESIZE_AMOUNTS = 3;
+
+        private byte[] ops = new byte[16];
+        // The slot for OP_SLOT.
+        private int[] slots = new int[16];
+        // The previous palette index for OP_SLOT, the previous width for resizes.
+        private int[] oldInts = new int[16];
+        // The previous amount for OP_SLOT.
+        private long[] oldAmounts = new long[16];
+        private int size = 0;
+
+        void recordSlot(int slot, int oldIndex, long oldAmount, TransactionContext transaction) {
+            record(OP_SLOT, slot, oldIndex, oldAmount, transaction);
+        }
+
+        void record(byte op, int slot, int oldInt, long oldAmount, TransactionContext transaction) {
+            updateSnapshots(transaction);
+
+            if (size == ops.length) {
+                ops = Arrays.copyOf(ops, size * 2);
+                slots = Arrays.copyOf(slots, size * 2);
+                oldInts = Arrays.copyOf(oldInts, size * 2);
+                oldAmounts = Arrays.copyOf(oldAmounts, size * 2);
+            }
+
+            ops[size] = op;
+            slots[size] = slot;
+            oldInts[size] = oldInt;
+            oldAmounts[size] = oldAmount;
+            size++;
+        }
+
+        @Override
+        protected long createSnapshot() {
+            return size;
+        }
+
+        @Override
+        protected void readSnapshot(long snapshot) {
+            for (int i = size - 1; i >= snapshot; i--) {
+                switch (ops[i]) {
+                    case OP_SLOT -> {
+                        indices.set(slots[i], oldInts[i]);
+                        amounts.set(slots[i], oldAmounts[i]);
+                    }
+                    case OP_PALETTE_ADD -> {
+                        // Palette additions are undone in reverse order, so the added variant is always the last entry.
+                        paletteSize--;
+                        paletteIndices.remove(variantAt(paletteSize));
+                        palette[paletteSize] = null;
+                    }
+                    case OP_RESIZE_INDICES -> indices = indices.resize(oldInts[i]);
+                    case OP_RESIZE_AMOUNTS -> amounts = amounts.resize(oldInts[i]);
+                    default -> throw new IllegalStateException("Unknown journal operation " + ops[i]);
+                }
+            }
+
+            size = (int) snapshot;
+        }
+
+        @Override
+        public void afterOuterClose(Transaction.Result result) {
+            // The outer transaction committed, so drop the journal and notify each modified slot once.
+            // The slots are copied first since onFinalCommit may start new transactions.
+            int[] committedSlots = new int[size];
+            int committedCount = 0;
+
+            for (int i = 0; i < size; i++) {
+                if (ops[i] == OP_SLOT) {
+                    committedSlots[committedCount++] = slots[i];
+                }
+            }
+
+            size = 0;
+            super.afterOuterClose(result);
+            Arrays.sort(committedSlots, 0, committedCount);
+
+            for (int i = 0; i < committedCount; i++) {
+                if (i == 0 || committedSlots[i] != committedSlots[i - 1]) {
+                    PalettedSlottedStorage.this.onFinalCommit(committedSlots[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * A view of a single slot, reading and writing the packed arrays of the storage.
+     */
+    private final class SlotView implements SingleSlotStorage<T> {
+        private final int slot;
+
+        private SlotView(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public long insert(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+            StoragePreconditions.notBlankNotNegative(resource, maxAmount);
+            return insertUnchecked(slot, resource, maxAmount, transaction);
+        }
+
+        @Override
+        public long extract(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+            StoragePreconditions.notBlankNotNegative(resource, maxAmount);
+            return extractUnchecked(slot, resource, maxAmount, transaction);
+        }
+
+        @Override
+        public boolean isResourceBlank() {
+            return indices.get(slot) == BLANK_INDEX;
+        }
+
+        @Override
+        public T getResource() {
+            return variantAt(indices.get(slot));
+        }
+
+        @Override
+        public long getAmount() {
+            return amounts.getLong(slot);
+        }
+
+        @Override
+        public long getCapacity() {
+            return PalettedSlottedStorage.this.getCapacity(slot, getResource());
+        }
+
+        @Override
+        public long getVersion() {
+            // Any change to the slot changes the version of the storage, which is enough for change detection.
+            return PalettedSlottedStorage.this.getVersion();
+        }
+
+        private PalettedSlottedStorage<T> owner() {
+            return PalettedSlottedStorage.this;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof PalettedSlottedStorage<?>.SlotView other && other.owner() == owner() && other.slot == slot;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(owner()) * 31 + slot;
+        }
+
+        @Override
+        public String toString() {
+            return "PalettedSlottedStorage.Slot[" + slot + ": " + getAmount() + " " + getResource() + "]";
+        }
+    }
+
+    /**
+     * Cursor over the non-empty slots, reading the packed arrays directly.
+     */
+    private final class SlotCursor implements StorageCursor<T> {
+        boolean open = false;
+        // Index of the current slot, or -1 if the cursor is not on a slot.
+        private int current = -1;
+        private int searchFrom = 0;
+
+        private int current() {
+            if (current < 0) {
+                throw TransferApiImpl.notOnPosition();
+            }
+
+            return current;
+        }
+
+        @Override
+        public boolean advance() {
+            while (searchFrom < slotCount && indices.get(searchFrom) == BLANK_INDEX) {
+                searchFrom++;
+            }
+
+            current = searchFrom < slotCount ? searchFrom++ : -1;
+            return current >= 0;
+        }
+
+        @Override
+        public T getResource() {
+            return variantAt(indices.get(current()));
+        }
+
+        @Override
+        public long getAmount() {
+            return amounts.getLong(current());
+        }
+
+        @Override
+        public long getCapacity() {
+            int slot = current();
+            return PalettedSlottedStorage.this.getCapacity(slot, getResource());
+        }
+
+        @Override
+        public long extract(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+            return PalettedSlottedStorage.this.extract(current(), resource, maxAmount, transaction);
+        }
+
+        @Override
+        public long probeExtract(T resource, long maxAmount) {
+            StoragePreconditions.notBlankNotNegative(resource, maxAmount);
+            if (!exactExtractProbes) return UNKNOWN_AMOUNT;
+
+            int slot = current();
+            int index = indices.get(slot);
+            if (index == BLANK_INDEX) return 0;
+
+            T variant = variantAt(index);
+
+            if ((resource == variant || resource.equals(variant)) && canExtract(slot, resource)) {
+                return Math.min(maxAmount, amounts.getLong(slot));
+            }
+
+            return 0;
+        }
+
+        @Override
+        public void reset() {
+            current = -1;
+            searchFrom = 0;
+        }
+
+        @Override
+        public void close() {
+            if (open) {
+                open = false;
+                CACHED_CURSOR.setRelease(PalettedSlottedStorage.this, this);
+            }
+        }
+    }
+
+    private final class SlotIterator implements Iterator<StorageView<T>> {
+        private final boolean nonEmpty;
+        private int next = -1;
+
+        SlotIterator(boolean nonEmpty) {
+            this.nonEmpty = nonEmpty;
+            advance();
+        }
+
+        private void advance() {
+            do {
+                next++;
+            } while (nonEmpty && next < slotCount && indices.get(next) == BLANK_INDEX);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < slotCount;
+        }
+
+        @Override
+        public StorageView<T> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            StorageView<T> view = new SlotView(next);
+            advance();
+            return view;
+        }
+    }
+}
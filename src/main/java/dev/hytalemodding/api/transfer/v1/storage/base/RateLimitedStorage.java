@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2025 Shai List and contributors
+ * Licensed under the MIT license. See LICENSE file in the project root for details.
+ */
+
+package dev.hytalemodding.api.transfer.v1.storage.base;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.function.LongSupplier;
+
+import com.google.common.collect.Iterators;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import dev.hytalemodding.api.transfer.v1.storage.Storage;
+import dev.hytalemodding.api.transfer.v1.storage.StorageCursor;
+import dev.hytalemodding.api.transfer.v1.storage.StoragePreconditions;
+import dev.hytalemodding.api.transfer.v1.storage.StorageView;
+import dev.hytalemodding.api.transfer.v1.transaction.TransactionContext;
+import dev.hytalemodding.api.transfer.v1.transaction.types.TransactionalLong;
+import dev.hytalemodding.impl.transfer.TransferApiImpl;
+
+/**
+ * A {@link Storage} wrapper that limits how much may be inserted into and extracted from another storage per tick,
+ * for example an import bus that moves at most 64 items per tick.
+ *
+ * <p>Insertion and extraction each draw from their own token bucket: every inserted or extracted unit consumes a token,
+ * and operations are capped to the tokens that are left. Each bucket gains a fixed number of tokens per tick,
+ * up to a maximum that allows bursts after idle ticks. Ticks are read from a clock, usually shared by all the limited storages of a world,
+ * and buckets are refilled lazily when they are used, so idle storages cost nothing.
+ *
+ * <p>Tokens are consumed in the transaction of the operation, so an aborted transaction refunds them.
+ * Extractions through {@linkplain #iterator views} and {@linkplain #cursor cursors} consume tokens as well,
+ * and {@linkplain #probeInsert probes} are capped to the available tokens, so a storage without tokens reports that it accepts nothing
+ * and callers such as {@link dev.hytalemodding.api.transfer.v1.storage.StorageUtil#move} can skip it without simulating.
+ * The {@linkplain #getVersion version} changes when the available tokens change, so that memoized moves are retried once tokens are available again.
+ *
+ * @param <T> The type of the stored resources.
+ */
+public class RateLimitedStorage<T> implements Storage<T> {
+    private static final VarHandle CACHED_CURSOR = TransferApiImpl.findVarHandle(MethodHandles.lookup(), "cachedCursor", RateLimitedStorage.RateLimitedCursor.class);
+
+    /**
+     * The wrapped storage.
+     */
+    protected final Storage<T> backingStorage;
+    private final LongSupplier clock;
+    private final TokenBucket insertTokens;
+    private final TokenBucket extractTokens;
+    // The last closed cursor, reused by the next cursor() call.
+    private @Nullable RateLimitedCursor cachedCursor = null;
+
+    // State seen by the last getVersion() call.
+    private long lastBackingVersion;
+    private long lastInsertTokens = -1;
+    private long lastExtractTokens = -1;
+    private long version = 0;
+
+    /**
+     * Create a storage that allows at most the passed amounts per tick, without bursts.
+     *
+     * @param backingStorage The storage to wrap.
+     * @param clock The source of the current tick, which must never decrease.
+     * @param insertPerTick The amount that may be inserted per tick.
+     * @param extractPerTick The amount that may be extracted per tick.
+     */
+    public RateLimitedStorage(Storage<T> backingStorage, LongSupplier clock, long insertPerTick, long extractPerTick) {
+        this(backingStorage, clock, insertPerTick, insertPerTick, extractPerTick, extractPerTick);
+    }
+
+    /**
+     * Create a storage whose token buckets can accumulate tokens over several ticks.
+     *
+     * @param backingStorage The storage to wrap.
+     * @param clock The source of the current tick, which must never decrease.
+     * @param insertPerTick The amount of insertion tokens gained per tick.
+     * @param maxInsertTokens The maximum amount of insertion tokens, which is also the initial amount.
+     * @param extractPerTick The amount of extraction tokens gained per tick.
+     * @param maxExtractTokens The maximum amount of extraction tokens, which is also the initial amount.
+     */
+    public RateLimitedStorage(Storage<T> backingStorage, LongSupplier clock, long insertPerTick, long maxInsertTokens, long extractPerTick, long maxExtractTokens) {
+        this.backingStorage = Objects.requireNonNull(backingStorage, "Backing storage may not be null.");
+        this.clock = Objects.requireNonNull(clock, "Clock may not be null.");
+        long tick = clock.getAsLong();
+        this.insertTokens = new TokenBucket(insertPerTick, maxInsertTokens, tick);
+        this.extractTokens = new TokenBucket(extractPerTick, maxExtractTokens, tick);
+    }
+
+    /**
+     * Return the amount that may currently be inserted, before the backing storage is asked.
+     *
+     * @return The available insertion tokens.
+     */
+    public long getInsertTokens() {
+        return insertTokens.available(clock.getAsLong());
+    }
+
+    /**
+     * Return the amount that may currently be extracted, before the backing storage is asked.
+     *
+     * @return The available extraction tokens.
+     */
+    public long getExtractTokens() {
+        return extractTokens.available(clock.getAsLong());
+    }
+
+    @Override
+    public boolean supportsInsertion() {
+        return insertTokens.maxTokens > 0 && backingStorage.supportsInsertion();
+    }
+
+    @Override
+    public long insert(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+        StoragePreconditions.notNegative(maxAmount);
+        long tick = clock.getAsLong();
+        long allowed = Math.min(maxAmount, insertTokens.available(tick));
+        if (allowed == 0) return 0;
+
+        long inserted = backingStorage.insert(resource, allowed, transaction);
+        insertTokens.consume(inserted, tick, transaction);
+        return inserted;
+    }
+
+    @Override
+    public long probeInsert(T resource, long maxAmount) {
+        long allowed = Math.min(maxAmount, getInsertTokens());
+        return allowed == 0 ? 0 : backingStorage.probeInsert(resource, allowed);
+    }
+
+    @Override
+    public boolean supportsExtraction() {
+        return extractTokens.maxTokens > 0 && backingStorage.supportsExtraction();
+    }
+
+    @Override
+    public long extract(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+        StoragePreconditions.notNegative(maxAmount);
+        long tick = clock.getAsLong();
+        long allowed = Math.min(maxAmount, extractTokens.available(tick));
+        if (allowed == 0) return 0;
+
+        long extracted = backingStorage.extract(resource, allowed, transaction);
+        extractTokens.consume(extracted, tick, transaction);
+        return extracted;
+    }
+
+    @Override
+    public long probeExtract(T resource, long maxAmount) {
+        long allowed = Math.min(maxAmount, getExtractTokens());
+        return allowed == 0 ? 0 : backingStorage.probeExtract(resource, allowed);
+    }
+
+    @Override
+    public @NotNull Iterator<StorageView<T>> iterator() {
+        return Iterators.transform(backingStorage.iterator(), RateLimitedStorageView::new);
+    }
+
+    @Override
+    public StorageCursor<T> cursor() {
+        @SuppressWarnings("unchecked")
+        RateLimitedCursor cursor = (RateLimitedCursor) CACHED_CURSOR.getAndSet(this, null);
+
+        if (cursor == null) {
+            cursor = new RateLimitedCursor();
+        }
+
+        cursor.backingCursor = backingStorage.cursor();
+        return cursor;
+    }
+
+    @Override
+    public long getVersion() {
+        long backingVersion = backingStorage.getVersion();
+        long tick = clock.getAsLong();
+        long insert = insertTokens.available(tick);
+        long extract = extractTokens.available(tick);
+
+        if (backingVersion != lastBackingVersion || insert != lastInsertTokens || extract != lastExtractTokens) {
+            lastBackingVersion = backingVersion;
+            lastInsertTokens = insert;
+            lastExtractTokens = extract;
+            version++;
+        }
+
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimitedStorage[" + backingStorage + "]";
+    }
+
+    /**
+     * A token bucket whose state is transactional, so that consumed tokens and refills are rolled back with the transaction.
+     */
+    private static final class TokenBucket {
+        private final long perTick;
+        private final long maxTokens;
+        private final TransactionalLong tokens;
+        // Tick at which tokens was last refilled.
+        private final TransactionalLong lastTick;
+
+        private TokenBucket(long perTick, long maxTokens, long tick) {
+            StoragePreconditions.notNegative(perTick);
+            StoragePreconditions.notNegative(maxTokens);
+            this.perTick = perTick;
+            this.maxTokens = maxTokens;
+            this.tokens = new TransactionalLong(maxTokens);
+            this.lastTick = new TransactionalLong(tick);
+        }
+
+        /**
+         * Return the tokens available at the passed tick, without refilling the bucket.
+         */
+        private long available(long tick) {
+            long current = tokens.getValue();
+            long elapsed = tick - lastTick.getValue();
+            if (elapsed <= 0 || perTick == 0 || current >= maxTokens) return current;
+
+            // Avoid overflowing when many ticks have passed.
+            long ticksToFill = (maxTokens - current + perTick - 1) / perTick;
+            return elapsed >= ticksToFill ? maxTokens : current + elapsed * perTick;
+        }
+
+        private void consume(long amount, long tick, TransactionContext transaction) {
+            if (amount == 0) return;
+
+            tokens.assignValue(available(tick) - amount, transaction);
+
+            if (lastTick.getValue() != tick) {
+                lastTick.assignValue(tick, transaction);
+            }
+        }
+    }
+
+    /**
+     * Consumes extraction tokens when extracting through views of the backing storage.
+     */
+    private class RateLimitedStorageView implements StorageView<T> {
+        private final StorageView<T> backingView;
+
+        private RateLimitedStorageView(StorageView<T> backingView) {
+            this.backingView = backingView;
+        }
+
+        @Override
+        public long extract(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+            StoragePreconditions.notNegative(maxAmount);
+            long tick = clock.getAsLong();
+            long allowed = Math.min(maxAmount, extractTokens.available(tick));
+            if (allowed == 0) return 0;
+
+            long extracted = backingView.extract(resource, allowed, transaction);
+            extractTokens.consume(extracted, tick, transaction);
+            return extracted;
+        }
+
+        @Override
+        public boolean isResourceBlank() {
+            return backingView.isResourceBlank();
+        }
+
+        @Override
+        public T getResource() {
+            return backingView.getResource();
+        }
+
+        @Override
+        public long getAmount() {
+            return backingView.getAmount();
+        }
+
+        @Override
+        public long getCapacity() {
+            return backingView.getCapacity();
+        }
+
+        @Override
+        public StorageView<T> getUnderlyingView() {
+            return backingView.getUnderlyingView();
+        }
+    }
+
+    /**
+     * Cursor over the backing storage that consumes extraction tokens, like {@link RateLimitedStorageView}.
+     */
+    private class RateLimitedCursor implements StorageCursor<T> {
+        // Null while the cursor is closed.
+        private @Nullable StorageCursor<T> backingCursor;
+
+        private StorageCursor<T> backingCursor() {
+            if (backingCursor == null) {
+                throw new IllegalStateException("The cursor was closed.");
+            }
+
+            return backingCursor;
+        }
+
+        @Override
+        public boolean advance() {
+            return backingCursor().advance();
+        }
+
+        @Override
+        public T getResource() {
+            return backingCursor().getResource();
+        }
+
+        @Override
+        public long getAmount() {
+            return backingCursor().getAmount();
+        }
+
+        @Override
+        public long getCapacity() {
+            return backingCursor().getCapacity();
+        }
+
+        @Override
+        public long extract(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+            StorageCursor<T> backing = backingCursor();
+            StoragePreconditions.notNegative(maxAmount);
+            long tick = clock.getAsLong();
+            long allowed = Math.min(maxAmount, extractTokens.available(tick));
+            if (allowed == 0) return 0;
+
+            long extracted = backing.extract(resource, allowed, transaction);
+            extractTokens.consume(extracted, tick, transaction);
+            return extracted;
+        }
+
+        @Override
+        public long probeExtract(T resource, long maxAmount) {
+            StorageCursor<T> backing = backingCursor();
+            long allowed = Math.min(maxAmount, getExtractTokens());
+            return allowed == 0 ? 0 : backing.probeExtract(resource, allowed);
+        }
+
+        @Override
+        public void reset() {
+            backingCursor().reset();
+        }
+
+        @Override
+        public void close() {
+            if (backingCursor != null) {
+                backingCursor.close();
+                backingCursor = null;
+                CACHED_CURSOR.setRelease(RateLimitedStorage.this, this);
+            }
+        }
+    }
+}
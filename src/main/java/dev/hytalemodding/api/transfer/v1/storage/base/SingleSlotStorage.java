@@ -22,6 +22,7 @@ package dev.hytalemodding.api.transfer.v1.storage.base;
 import java.util.Iterator;
 
 import dev.hytalemodding.api.transfer.v1.storage.SlottedStorage;
+import dev.hytalemodding.api.transfer.v1.storage.StorageCursor;
 import dev.hytalemodding.api.transfer.v1.storage.StorageView;
 import dev.hytalemodding.impl.transfer.TransferApiImpl;
 import org.jetbrains.annotations.NotNull;
@@ -38,6 +39,11 @@ public interface SingleSlotStorage<T> extends SlottedStorage<T>, StorageView<T>
 		return TransferApiImpl.singletonIterator(this);
 	}
 
+	@Override
+	default StorageCursor<T> cursor() {
+		return TransferApiImpl.viewCursor(this);
+	}
+
 	@Override
 	default int getSlotCount() {
 		return 1;
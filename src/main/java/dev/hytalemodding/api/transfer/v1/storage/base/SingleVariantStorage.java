@@ -19,11 +19,18 @@
 
 package dev.hytalemodding.api.transfer.v1.storage.base;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+import dev.hytalemodding.api.transfer.v1.storage.StorageCursor;
 import dev.hytalemodding.api.transfer.v1.storage.StoragePreconditions;
 import dev.hytalemodding.api.transfer.v1.storage.TransferVariant;
+import dev.hytalemodding.api.transfer.v1.transaction.Transaction;
 import dev.hytalemodding.api.transfer.v1.transaction.TransactionContext;
 import dev.hytalemodding.api.transfer.v1.transaction.base.SnapshotParticipant;
+import dev.hytalemodding.impl.transfer.TransferApiImpl;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * A storage that can store a single transfer variant at any given time.
@@ -35,8 +42,37 @@ import org.jetbrains.annotations.NotNull;
  * <p>{@link #canInsert} and {@link #canExtract} can be used for more precise control over which variants may be inserted or extracted.
  * If one of these two functions is overridden to always return false, implementors may also wish to override
  * {@link #supportsInsertion} and/or {@link #supportsExtraction}.
+ *
+ * <p>Snapshots store the variant as their object part and the amount as their long part rather than in {@link ResourceAmount} objects,
+ * so modifying the storage inside a transaction does not allocate once the snapshot arrays of {@link SnapshotParticipant} are sized.
+ * The deprecated {@link #createSnapshot()} and {@link #readSnapshot(ResourceAmount)} are therefore not called.
+ * Subclasses that save additional state override {@link #createSnapshotObject}, {@link #createSnapshotLong},
+ * {@link #readSnapshot(Object, long)} and {@link #releaseSnapshot(Object, long)} instead,
+ * or keep that state in a separate participant such as a {@link dev.hytalemodding.api.transfer.v1.transaction.types.TransactionalLong}.
+ *
+ * <p>{@link #probeInsert} and {@link #probeExtract} answer exactly without a transaction, unless the runtime class
+ * overrides {@link #insert} or {@link #extract} respectively, in which case they return {@link #UNKNOWN_AMOUNT} and callers simulate instead.
+ * Subclasses whose overrides do not change the transferred amounts may override the probes as well to keep them exact.
+ *
+ * <p>{@link #getVersion} changes when a transaction modifying this storage is committed,
+ * and when {@link #variant} or {@link #amount} were written directly since the previous call.
+ * Subclasses whose insertion or extraction rules change without changing these fields must call {@link #incrementVersion}.
  */
 public abstract class SingleVariantStorage<T extends TransferVariant<?>> extends SnapshotParticipant<ResourceAmount<T>> implements SingleSlotStorage<T> {
+	// Whether a subclass overrides insert or extract, in which case the probes cannot predict their result.
+	private static final ClassValue<Boolean> OVERRIDES_INSERT = new ClassValue<>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			return TransferApiImpl.overridesMethod(type, SingleVariantStorage.class, "insert", TransferVariant.class, long.class, TransactionContext.class);
+		}
+	};
+	private static final ClassValue<Boolean> OVERRIDES_EXTRACT = new ClassValue<>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			return TransferApiImpl.overridesMethod(type, SingleVariantStorage.class, "extract", TransferVariant.class, long.class, TransactionContext.class);
+		}
+	};
+
 	/**
 	 * The currently stored variant. May be a blank variant when empty.
 	 */
@@ -47,6 +83,15 @@ public abstract class SingleVariantStorage<T extends TransferVariant<?>> extends
 	 */
 	public long amount;
 
+	private static final VarHandle CACHED_CURSOR = TransferApiImpl.findVarHandle(MethodHandles.lookup(), "cachedCursor", StorageCursor.class);
+	// The last closed cursor, reused by the next cursor() call.
+	private @Nullable StorageCursor<T> cachedCursor = null;
+	// Variant and amount seen by the last getVersion() call, to detect direct writes to the fields.
+	private @Nullable Object versionVariant = null;
+	private long versionAmount = 0;
+	private final boolean exactInsertProbes = !OVERRIDES_INSERT.get(getClass());
+	private final boolean exactExtractProbes = !OVERRIDES_EXTRACT.get(getClass());
+
 	/**
 	 * Initializes the storage to a blank variant with zero amount.
 	 */
@@ -94,22 +139,35 @@ public abstract class SingleVariantStorage<T extends TransferVariant<?>> extends
 	@Override
 	public long insert(T insertedVariant, long maxAmount, @NotNull TransactionContext transaction) {
 		StoragePreconditions.notBlankNotNegative(insertedVariant, maxAmount);
+		long insertedAmount = insertableAmount(insertedVariant, maxAmount);
 
-		if ((variant.isBlank() || insertedVariant.equals(variant)) && canInsert(insertedVariant)) {
-			long insertedAmount = Math.min(maxAmount, getCapacity(insertedVariant) - amount);
+		if (insertedAmount > 0) {
+			updateSnapshots(transaction);
 
-			if (insertedAmount > 0) {
-				updateSnapshots(transaction);
+			if (variant.isBlank()) {
+				variant = insertedVariant;
+				amount = insertedAmount;
+			} else {
+				amount += insertedAmount;
+			}
 
-				if (variant.isBlank()) {
-					variant = insertedVariant;
-					amount = insertedAmount;
-				} else {
-					amount += insertedAmount;
-				}
+			return insertedAmount;
+		}
 
-				return insertedAmount;
-			}
+		return 0;
+	}
+
+	@Override
+	public long probeInsert(T insertedVariant, long maxAmount) {
+		StoragePreconditions.notBlankNotNegative(insertedVariant, maxAmount);
+		return exactInsertProbes ? insertableAmount(insertedVariant, maxAmount) : UNKNOWN_AMOUNT;
+	}
+
+	// The amount that this class's insert would insert, also used by subclasses whose insert override does not change it.
+	long insertableAmount(T insertedVariant, long maxAmount) {
+		// Reference comparison first, which is enough for variants from a VariantInterner.
+		if ((insertedVariant == variant || variant.isBlank() || insertedVariant.equals(variant)) && canInsert(insertedVariant)) {
+			return Math.max(0, Math.min(maxAmount, getCapacity(insertedVariant) - amount));
 		}
 
 		return 0;
@@ -118,20 +176,32 @@ public abstract class SingleVariantStorage<T extends TransferVariant<?>> extends
 	@Override
 	public long extract(T extractedVariant, long maxAmount, @NotNull TransactionContext transaction) {
 		StoragePreconditions.notBlankNotNegative(extractedVariant, maxAmount);
+		long extractedAmount = extractableAmount(extractedVariant, maxAmount);
 
-		if (!variant.isBlank() && extractedVariant.equals(variant) && canExtract(extractedVariant)) {
-			long extractedAmount = Math.min(maxAmount, amount);
+		if (extractedAmount > 0) {
+			updateSnapshots(transaction);
+			amount -= extractedAmount;
 
-			if (extractedAmount > 0) {
-				updateSnapshots(transaction);
-				amount -= extractedAmount;
+			if (amount == 0) {
+				variant = getBlankVariant();
+			}
 
-				if (amount == 0) {
-					variant = getBlankVariant();
-				}
+			return extractedAmount;
+		}
 
-				return extractedAmount;
-			}
+		return 0;
+	}
+
+	@Override
+	public long probeExtract(T extractedVariant, long maxAmount) {
+		StoragePreconditions.notBlankNotNegative(extractedVariant, maxAmount);
+		return exactExtractProbes ? extractableAmount(extractedVariant, maxAmount) : UNKNOWN_AMOUNT;
+	}
+
+	// The amount that this class's extract would extract, also used by subclasses whose extract override does not change it.
+	long extractableAmount(T extractedVariant, long maxAmount) {
+		if ((extractedVariant == variant || !variant.isBlank() && extractedVariant.equals(variant)) && canExtract(extractedVariant)) {
+			return Math.min(maxAmount, amount);
 		}
 
 		return 0;
@@ -157,17 +227,75 @@ public abstract class SingleVariantStorage<T extends TransferVariant<?>> extends
 		return getCapacity(variant);
 	}
 
+	@Override
+	public StorageCursor<T> cursor() {
+		return TransferApiImpl.viewCursor(this, CACHED_CURSOR);
+	}
+
+	/**
+	 * Return a snapshot of the current variant and amount.
+	 *
+	 * @return A snapshot of the current state of this storage.
+	 * @deprecated Snapshots of this storage are created by {@link #createSnapshotObject} and {@link #createSnapshotLong},
+	 * so this method is not called.
+	 */
+	@Deprecated
 	@Override
 	protected @NotNull ResourceAmount<T> createSnapshot() {
 		return new ResourceAmount<>(variant, amount);
 	}
 
+	/**
+	 * Roll back to a state previously created by {@link #createSnapshot}.
+	 *
+	 * @param snapshot The snapshot previously created by {@link #createSnapshot()}.
+	 * @deprecated Snapshots of this storage are read by {@link #readSnapshot(Object, long)}, so this method is not called.
+	 */
+	@Deprecated
 	@Override
 	protected void readSnapshot(@NotNull ResourceAmount<T> snapshot) {
 		variant = snapshot.resource();
 		amount = snapshot.amount();
 	}
 
+	@Override
+	protected @NotNull Object createSnapshotObject() {
+		return variant;
+	}
+
+	@Override
+	protected long createSnapshotLong() {
+		return amount;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	protected void readSnapshot(@NotNull Object snapshot, long longSnapshot) {
+		variant = (T) snapshot;
+		amount = longSnapshot;
+	}
+
+	@Override
+	protected void releaseSnapshot(Object snapshot, long longSnapshot) {
+		// The snapshot is the variant itself, so there is nothing to release.
+	}
+
+	@Override
+	public long getVersion() {
+		if (Transaction.isOpen()) {
+			throw new IllegalStateException("getVersion() may not be called during a transaction.");
+		}
+
+		// The fields are public, so writes that bypass transactions are only noticed here.
+		if (variant != versionVariant || amount != versionAmount) {
+			versionVariant = variant;
+			versionAmount = amount;
+			incrementVersion();
+		}
+
+		return super.getVersion();
+	}
+
 	@Override
 	public String toString() {
 		return "SingleVariantStorage[%d %s]".formatted(amount, variant);
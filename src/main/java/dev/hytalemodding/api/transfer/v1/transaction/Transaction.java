@@ -117,6 +117,24 @@ public interface Transaction extends AutoCloseable, TransactionContext {
 		return maybeParent == null ? openOuter() : maybeParent.openNested();
 	}
 
+	/**
+	 * Open a simulation: a transaction that is guaranteed to be aborted, used to query the result of operations without applying them.
+	 * The simulation is nested in {@code maybeParent} if it is non-null, or is an outer transaction if {@code maybeParent} is null.
+	 *
+	 * <p>Transactions opened from a simulation with {@link #openNested} are simulations too, and may be committed into it.
+	 * The simulation itself can never be committed.
+	 * Participants can check {@link TransactionContext#isSimulation} to know that their changes will be reverted.
+	 * Snapshots taken inside a simulation are recorded in a single undo log, which is replayed when the simulation is closed,
+	 * instead of registering close callbacks on every transaction.
+	 *
+	 * @param maybeParent The parent transaction context, or {@code null} to open an outer simulation.
+	 * @return A new simulation {@link Transaction}.
+	 * @throws IllegalStateException If {@code maybeParent} is null and a transaction is already active on the current thread.
+	 */
+	static Transaction openSimulation(@Nullable TransactionContext maybeParent) {
+		return TransactionManagerImpl.MANAGERS.get().openSimulation(maybeParent);
+	}
+
 	/**
 	 * Retrieve the currently open transaction, or null if there is none.
 	 *
@@ -155,6 +173,7 @@ public interface Transaction extends AutoCloseable, TransactionContext {
 	 * @throws IllegalStateException If this function is not called on the thread this transaction was opened in.
 	 * @throws IllegalStateException If this transaction is not the current transaction.
 	 * @throws IllegalStateException If this transaction was closed.
+	 * @throws IllegalStateException If this transaction was opened with {@link #openSimulation}.
 	 */
 	void commit();
 
@@ -47,6 +47,20 @@ public interface TransactionContext {
 	 */
 	int nestingDepth();
 
+	/**
+	 * Return whether this transaction is part of a {@linkplain Transaction#openSimulation simulation}.
+	 * The changes made as part of a simulation are always reverted, so participants may skip work that only matters
+	 * for committed changes.
+	 *
+	 * <p>The default implementation returns false, so that implementations which do not support simulations need not override it.
+	 *
+	 * @return True if this transaction or one of its parents was opened with {@link Transaction#openSimulation}.
+	 * @throws IllegalStateException If this function is not called on the thread this transaction was opened in.
+	 */
+	default boolean isSimulation() {
+		return false;
+	}
+
 	/**
 	 * Return the transaction with the specific nesting depth.
 	 *
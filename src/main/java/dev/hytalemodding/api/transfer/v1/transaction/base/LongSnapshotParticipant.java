@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2025 Shai List and contributors
+ * Licensed under the MIT license. See LICENSE file in the project root for details.
+ */
+
+package dev.hytalemodding.api.transfer.v1.transaction.base;
+
+import java.util.Arrays;
+
+import dev.hytalemodding.api.transfer.v1.transaction.Transaction;
+import dev.hytalemodding.api.transfer.v1.transaction.TransactionContext;
+import dev.hytalemodding.impl.transfer.transaction.TransactionManagerImpl;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A variant of {@link SnapshotParticipant} for participants whose state fits in a single {@code long}.
+ * Snapshots are stored per nesting depth in a {@code long[]}, so saving and restoring state never allocates.
+ *
+ * <p>Subclasses use it exactly like {@link SnapshotParticipant}: call {@link #updateSnapshots} right before the state is modified,
+ * and implement {@link #createSnapshot} and {@link #readSnapshot} to save and restore the state.
+ * Versions are tracked the same way as well, see {@link #getVersion}.
+ */
+public abstract class LongSnapshotParticipant implements Transaction.CloseCallback, Transaction.OuterCloseCallback {
+    private static final long[] NO_SNAPSHOTS = new long[0];
+    private static final boolean[] NO_FLAGS = new boolean[0];
+
+    // Snapshot for each nesting depth, only valid if the matching flag is set.
+    private long[] snapshots = NO_SNAPSHOTS;
+    private boolean[] hasSnapshot = NO_FLAGS;
+    // Mark of the transaction we last recorded a journal entry for, see SnapshotParticipant.
+    private long journalMark = TransactionManagerImpl.NO_JOURNAL;
+    private long version = 0;
+
+    /**
+     * Protected no-arg constructor to satisfy doclint requirements for default constructors.
+     */
+    protected LongSnapshotParticipant() {
+    }
+
+    /**
+     * Return the current state of this participant, encoded as a {@code long}.
+     *
+     * @return A snapshot of the current state of this participant.
+     */
+    protected abstract long createSnapshot();
+
+    /**
+     * Roll back to a state previously created by {@link #createSnapshot}.
+     *
+     * @param snapshot The snapshot previously created by {@link #createSnapshot()}.
+     */
+    protected abstract void readSnapshot(long snapshot);
+
+    /**
+     * Called after an outer transaction succeeded,
+     * to perform irreversible actions such as {@code markDirty()} or neighbor updates.
+     */
+    protected void onFinalCommit() {
+    }
+
+    /**
+     * Return the number of committed changes of this participant, to allow for fast change detection.
+     * Increases after every outer transaction that modified this participant, and on every call to {@link #incrementVersion}.
+     *
+     * @return The current version of this participant.
+     * @throws IllegalStateException If a transaction is open on this thread.
+     */
+    public long getVersion() {
+        if (Transaction.isOpen()) {
+            throw new IllegalStateException("getVersion() may not be called during a transaction.");
+        }
+
+        return version;
+    }
+
+    /**
+     * Increase the version of this participant. Should be called after the state was changed outside a transaction.
+     */
+    public void incrementVersion() {
+        version++;
+    }
+
+    /**
+     * Update the stored snapshots so that the changes happening as part of the passed transaction can be correctly
+     * committed or rolled back.
+     * This function should be called every time the participant is about to change its internal state as part of a transaction.
+     *
+     * @param transaction The transaction during which the state will change.
+     */
+    public void updateSnapshots(@NotNull TransactionContext transaction) {
+        long mark = TransactionManagerImpl.getJournalMark(transaction);
+
+        if (mark != TransactionManagerImpl.NO_JOURNAL) {
+            if (journalMark != mark) {
+                TransactionManagerImpl.record(transaction, JOURNAL_HANDLER, this, null, createSnapshot());
+                journalMark = mark;
+            }
+
+            return;
+        }
+
+        int depth = transaction.nestingDepth();
+
+        if (depth >= hasSnapshot.length) {
+            int newLength = Math.max(4, Integer.highestOneBit(depth) << 1);
+            snapshots = Arrays.copyOf(snapshots, newLength);
+            hasSnapshot = Arrays.copyOf(hasSnapshot, newLength);
+        }
+
+        if (!hasSnapshot[depth]) {
+            snapshots[depth] = createSnapshot();
+            hasSnapshot[depth] = true;
+            transaction.addCloseCallback(this);
+        }
+    }
+
+    @Override
+    public void onClose(@NotNull TransactionContext transaction, Transaction.Result result) {
+        int depth = transaction.nestingDepth();
+        long snapshot = snapshots[depth];
+        hasSnapshot[depth] = false;
+
+        if (result.wasAborted()) {
+            readSnapshot(snapshot);
+        } else if (depth > 0) {
+            if (!hasSnapshot[depth - 1]) {
+                // No snapshot yet, so move the snapshot one nesting level up.
+                snapshots[depth - 1] = snapshot;
+                hasSnapshot[depth - 1] = true;
+                transaction.getOpenTransaction(depth - 1).addCloseCallback(this);
+            }
+        } else {
+            transaction.addOuterCloseCallback(this);
+        }
+    }
+
+    @Override
+    public void afterOuterClose(Transaction.Result result) {
+        // The result is guaranteed to be COMMITTED,
+        // as this is only scheduled during onClose() when the outer transaction is successful.
+        version++;
+        onFinalCommit();
+    }
+
+    private static final TransactionManagerImpl.JournalHandler<LongSnapshotParticipant> JOURNAL_HANDLER = new TransactionManagerImpl.JournalHandler<>() {
+        @Override
+        public void undo(LongSnapshotParticipant participant, Object snapshot, long longSnapshot) {
+            participant.readSnapshot(longSnapshot);
+        }
+
+        @Override
+        public void commit(LongSnapshotParticipant participant, Object snapshot, long longSnapshot, TransactionContext transaction) {
+            if (participant.journalMark != TransactionManagerImpl.NO_JOURNAL) {
+                participant.journalMark = TransactionManagerImpl.NO_JOURNAL;
+                transaction.addOuterCloseCallback(participant);
+            }
+        }
+    };
+}
@@ -19,12 +19,12 @@
 
 package dev.hytalemodding.api.transfer.v1.transaction.base;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Objects;
 
 import dev.hytalemodding.api.transfer.v1.transaction.Transaction;
 import dev.hytalemodding.api.transfer.v1.transaction.TransactionContext;
+import dev.hytalemodding.impl.transfer.transaction.TransactionManagerImpl;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -54,6 +54,19 @@ import org.jetbrains.annotations.NotNull;
  * is retained. {@link #releaseSnapshot} will be called because the snapshot is not necessary anymore,
  * and {@link #onFinalCommit} will be called after the transaction is closed.
  *
+ * <p>Every participant also keeps a version counter, incremented right before {@link #onFinalCommit}.
+ * {@link #getVersion} can therefore directly implement {@link dev.hytalemodding.api.transfer.v1.storage.Storage#getVersion}
+ * for storages that extend this class, as long as they call {@link #incrementVersion} after any change made outside a transaction.
+ *
+ * <p>If the transaction manager of the current thread uses an undo log, snapshots are recorded in that log instead of being
+ * stored per nesting depth in this participant. The contract for subclasses is exactly the same.
+ *
+ * <p>Each snapshot is stored as an object and a {@code long}, which by default are the object returned by {@link #createSnapshot} and zero.
+ * Participants whose state is an object and a {@code long}, such as a variant and an amount, can override
+ * {@link #createSnapshotObject}, {@link #createSnapshotLong}, {@link #readSnapshot(Object, long)} and {@link #releaseSnapshot(Object, long)}
+ * to store that state directly, so that modifying them in a transaction does not allocate a snapshot object.
+ * {@link #createSnapshot}, {@link #readSnapshot(Object)} and {@link #releaseSnapshot(Object)} are then not called by this class.
+ *
  * @param <T> The objects that this participant uses to save its state snapshots.
  */
 public abstract class SnapshotParticipant<T> implements Transaction.CloseCallback, Transaction.OuterCloseCallback {
@@ -62,7 +75,15 @@ public abstract class SnapshotParticipant<T> implements Transaction.CloseCallbac
 	 */
 	protected SnapshotParticipant() {
 	}
-	private final List<T> snapshots = new ArrayList<>();
+	private static final Object[] NO_SNAPSHOTS = new Object[0];
+	private static final long[] NO_LONG_SNAPSHOTS = new long[0];
+
+	// Snapshot for each nesting depth, null if there is no snapshot at that depth, and the long part of each snapshot.
+	private Object[] snapshots = NO_SNAPSHOTS;
+	private long[] longSnapshots = NO_LONG_SNAPSHOTS;
+	// Mark of the transaction we last recorded a journal entry for, or NO_JOURNAL once our final commit is scheduled.
+	private long journalMark = TransactionManagerImpl.NO_JOURNAL;
+	private long version = 0;
 
 	/**
 	 * Return a clone of the current state of this participant. In practice, the pattern that needs to be implemented in
@@ -99,6 +120,50 @@ public abstract class SnapshotParticipant<T> implements Transaction.CloseCallbac
 	protected void releaseSnapshot(T snapshot) {
 	}
 
+	/**
+	 * Return the object part of a snapshot of the current state, stored together with {@link #createSnapshotLong}.
+	 * The default implementation returns {@link #createSnapshot()}.
+	 *
+	 * @return A non-null object that represents the current state of this participant, together with the long part.
+	 */
+	protected @NotNull Object createSnapshotObject() {
+		return createSnapshot();
+	}
+
+	/**
+	 * Return the {@code long} part of a snapshot of the current state, stored together with {@link #createSnapshotObject}.
+	 * The default implementation returns zero.
+	 *
+	 * @return The long part of the current state of this participant.
+	 */
+	protected long createSnapshotLong() {
+		return 0;
+	}
+
+	/**
+	 * Roll back to a state previously created by {@link #createSnapshotObject} and {@link #createSnapshotLong}.
+	 * The default implementation passes the object part to {@link #readSnapshot(Object)}.
+	 *
+	 * @param snapshot The object part of the snapshot.
+	 * @param longSnapshot The long part of the snapshot.
+	 */
+	@SuppressWarnings("unchecked")
+	protected void readSnapshot(@NotNull Object snapshot, long longSnapshot) {
+		readSnapshot((T) snapshot);
+	}
+
+	/**
+	 * Signals that a snapshot created by {@link #createSnapshotObject} and {@link #createSnapshotLong} will not be used anymore.
+	 * The default implementation passes the object part to {@link #releaseSnapshot(Object)}.
+	 *
+	 * @param snapshot The object part of the snapshot.
+	 * @param longSnapshot The long part of the snapshot.
+	 */
+	@SuppressWarnings("unchecked")
+	protected void releaseSnapshot(Object snapshot, long longSnapshot) {
+		releaseSnapshot((T) snapshot);
+	}
+
 	/**
 	 * Called after an outer transaction succeeded,
 	 * to perform irreversible actions such as {@code markDirty()} or neighbor updates.
@@ -106,6 +171,28 @@ public abstract class SnapshotParticipant<T> implements Transaction.CloseCallbac
 	protected void onFinalCommit() {
 	}
 
+	/**
+	 * Return the number of committed changes of this participant, to allow for fast change detection.
+	 * Increases after every outer transaction that modified this participant, and on every call to {@link #incrementVersion}.
+	 *
+	 * @return The current version of this participant.
+	 * @throws IllegalStateException If a transaction is open on this thread.
+	 */
+	public long getVersion() {
+		if (Transaction.isOpen()) {
+			throw new IllegalStateException("getVersion() may not be called during a transaction.");
+		}
+
+		return version;
+	}
+
+	/**
+	 * Increase the version of this participant. Should be called after the state was changed outside a transaction.
+	 */
+	public void incrementVersion() {
+		version++;
+	}
+
 	/**
 	 * Update the stored snapshots so that the changes happening as part of the passed transaction can be correctly
 	 * committed or rolled back.
@@ -114,17 +201,37 @@ public abstract class SnapshotParticipant<T> implements Transaction.CloseCallbac
 	 * @param transaction The transaction during which the state will change.
 	 */
 	public void updateSnapshots(@NotNull TransactionContext transaction) {
+		long mark = TransactionManagerImpl.getJournalMark(transaction);
+
+		if (mark != TransactionManagerImpl.NO_JOURNAL) {
+			// Only record one entry per transaction, the undo log takes care of nesting.
+			if (journalMark != mark) {
+				Object snapshot = createSnapshotObject();
+				Objects.requireNonNull(snapshot, "Snapshot may not be null!");
+
+				TransactionManagerImpl.record(transaction, JOURNAL_HANDLER, this, snapshot, createSnapshotLong());
+				journalMark = mark;
+			}
+
+			return;
+		}
+
+		int depth = transaction.nestingDepth();
+
 		// Make sure we have enough storage for snapshots
-		while (snapshots.size() <= transaction.nestingDepth()) {
-			snapshots.add(null);
+		if (depth >= snapshots.length) {
+			int newLength = Math.max(4, Integer.highestOneBit(depth) << 1);
+			snapshots = Arrays.copyOf(snapshots, newLength);
+			longSnapshots = Arrays.copyOf(longSnapshots, newLength);
 		}
 
 		// If the snapshot is null, we need to create it, and we need to register a callback.
-		if (snapshots.get(transaction.nestingDepth()) == null) {
-			T snapshot = createSnapshot();
+		if (snapshots[depth] == null) {
+			Object snapshot = createSnapshotObject();
 			Objects.requireNonNull(snapshot, "Snapshot may not be null!");
 
-			snapshots.set(transaction.nestingDepth(), snapshot);
+			snapshots[depth] = snapshot;
+			longSnapshots[depth] = createSnapshotLong();
 			transaction.addCloseCallback(this);
 		}
 	}
@@ -132,32 +239,57 @@ public abstract class SnapshotParticipant<T> implements Transaction.CloseCallbac
 	@Override
 	public void onClose(@NotNull TransactionContext transaction, Transaction.Result result) {
 		// Get and remove the relevant snapshot.
-		T snapshot = snapshots.set(transaction.nestingDepth(), null);
+		int depth = transaction.nestingDepth();
+		Object snapshot = snapshots[depth];
+		long longSnapshot = longSnapshots[depth];
+		snapshots[depth] = null;
 
 		if (result.wasAborted()) {
 			// If the transaction was aborted, we just revert to the state of the snapshot.
-			readSnapshot(snapshot);
-			releaseSnapshot(snapshot);
-		} else if (transaction.nestingDepth() > 0) {
-			if (snapshots.get(transaction.nestingDepth() - 1) == null) {
+			readSnapshot(snapshot, longSnapshot);
+			releaseSnapshot(snapshot, longSnapshot);
+		} else if (depth > 0) {
+			if (snapshots[depth - 1] == null) {
 				// No snapshot yet, so move the snapshot one nesting level up.
-				snapshots.set(transaction.nestingDepth() - 1, snapshot);
+				snapshots[depth - 1] = snapshot;
+				longSnapshots[depth - 1] = longSnapshot;
 				// This is the first snapshot at this level: we need to call addCloseCallback.
-				transaction.getOpenTransaction(transaction.nestingDepth() - 1).addCloseCallback(this);
+				transaction.getOpenTransaction(depth - 1).addCloseCallback(this);
 			} else {
 				// There is already an older snapshot at the nesting level above, just release the newer one.
-				releaseSnapshot(snapshot);
+				releaseSnapshot(snapshot, longSnapshot);
 			}
 		} else {
-			releaseSnapshot(snapshot);
+			releaseSnapshot(snapshot, longSnapshot);
 			transaction.addOuterCloseCallback(this);
 		}
 	}
 
+	@SuppressWarnings("rawtypes")
+	private static final TransactionManagerImpl.JournalHandler<SnapshotParticipant> JOURNAL_HANDLER = new TransactionManagerImpl.JournalHandler<>() {
+		@Override
+		public void undo(SnapshotParticipant participant, Object snapshot, long longSnapshot) {
+			participant.readSnapshot(snapshot, longSnapshot);
+			participant.releaseSnapshot(snapshot, longSnapshot);
+		}
+
+		@Override
+		public void commit(SnapshotParticipant participant, Object snapshot, long longSnapshot, TransactionContext transaction) {
+			participant.releaseSnapshot(snapshot, longSnapshot);
+
+			// The participant may have multiple entries, but onFinalCommit must only run once.
+			if (participant.journalMark != TransactionManagerImpl.NO_JOURNAL) {
+				participant.journalMark = TransactionManagerImpl.NO_JOURNAL;
+				transaction.addOuterCloseCallback(participant);
+			}
+		}
+	};
+
 	@Override
 	public void afterOuterClose(Transaction.Result result) {
 		// The result is guaranteed to be COMMITTED,
 		// as this is only scheduled during onClose() when the outer transaction is successful.
+		version++;
 		onFinalCommit();
 	}
 }
@@ -0,0 +1,272 @@
+package dev.hytalemodding.api.transfer.v1.transaction.types;
+
+import dev.hytalemodding.api.transfer.v1.transaction.Transaction;
+import dev.hytalemodding.api.transfer.v1.transaction.TransactionContext;
+import dev.hytalemodding.api.transfer.v1.transaction.base.LongSnapshotParticipant;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Helper class that implements a transactional {@link List} with rollback cost proportional to the number of operations.
+ *
+ * <p>Unlike {@link TransactionalList}, which copies the whole list the first time it is modified at each nesting depth,
+ * every modifying method records its inverse operation in a journal, and aborting a transaction replays the journal backwards.
+ * This makes small changes to large lists cheap, at the cost of a small overhead per operation.
+ * {@link #clear}, {@link #removeAll} and {@link #retainAll} still record a copy of the list, since they may touch every element.
+ *
+ * <p>The list returned by {@link #getValue()} must not be modified directly.
+ * @param <T> The type of the list's elements.
+ */
+public class JournaledTransactionalList<T> extends LongSnapshotParticipant {
+    private static final byte OP_REMOVE_AT = 0;
+    private static final byte OP_INSERT_AT = 1;
+    private static final byte OP_SET_AT = 2;
+    private static final byte OP_REMOVE_RANGE = 3;
+    private static final byte OP_RESTORE = 4;
+
+    /** The current list stored by this transactional list. */
+    protected final @NotNull List<T> value;
+
+    // Inverse operations, undone from the end. Each entry is (op, index, count, payload).
+    private byte[] ops = new byte[8];
+    private int[] indices = new int[8];
+    private int[] counts = new int[8];
+    private Object[] payloads = new Object[8];
+    private int journalSize = 0;
+
+    /**
+     * Create a new journaled transactional list with the given starting value.
+     *
+     * @param startingValue Initial backing list.
+     */
+    public JournaledTransactionalList(@NotNull List<T> startingValue) {
+        this.value = startingValue;
+    }
+
+    /**
+     * Fetches the current list.
+     * @return The current list, which must not be modified directly.
+     */
+    public @NotNull List<T> getValue() {
+        return this.value;
+    }
+
+    @Override
+    protected long createSnapshot() {
+        // The snapshot is simply the position in the journal.
+        return journalSize;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void readSnapshot(long snapshot) {
+        for (int i = journalSize - 1; i >= snapshot; i--) {
+            int index = indices[i];
+
+            switch (ops[i]) {
+                case OP_REMOVE_AT -> value.remove(index);
+                case OP_INSERT_AT -> value.add(index, (T) payloads[i]);
+                case OP_SET_AT -> value.set(index, (T) payloads[i]);
+                case OP_REMOVE_RANGE -> value.subList(index, index + counts[i]).clear();
+                case OP_RESTORE -> {
+                    value.clear();
+                    value.addAll((List<T>) payloads[i]);
+                }
+                default -> throw new IllegalStateException("Unknown journal operation " + ops[i]);
+            }
+
+            payloads[i] = null;
+        }
+
+        journalSize = (int) snapshot;
+    }
+
+    @Override
+    public void afterOuterClose(Transaction.Result result) {
+        // The outer transaction committed, so the journal will never be replayed.
+        Arrays.fill(payloads, 0, journalSize, null);
+        journalSize = 0;
+        super.afterOuterClose(result);
+    }
+
+    private void record(byte op, int index, int count, Object payload) {
+        if (journalSize == ops.length) {
+            int newLength = ops.length * 2;
+            ops = Arrays.copyOf(ops, newLength);
+            indices = Arrays.copyOf(indices, newLength);
+            counts = Arrays.copyOf(counts, newLength);
+            payloads = Arrays.copyOf(payloads, newLength);
+        }
+
+        ops[journalSize] = op;
+        indices[journalSize] = index;
+        counts[journalSize] = count;
+        payloads[journalSize] = payload;
+        journalSize++;
+    }
+
+    /**
+     * Add an element using the provided transaction.
+     *
+     * @param t The element to add.
+     * @param transaction The transaction to use.
+     * @return true if the list changed as a result of the call.
+     */
+    public boolean add(T t, @NotNull TransactionContext transaction) {
+        updateSnapshots(transaction);
+        int index = value.size();
+
+        if (value.add(t)) {
+            record(OP_REMOVE_AT, index, 1, null);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Insert the specified element at the specified position using the provided transaction.
+     *
+     * @param index index at which the element is to be inserted
+     * @param element element to insert
+     * @param transaction transaction to use
+     */
+    public void add(int index, T element, @NotNull TransactionContext transaction) {
+        updateSnapshots(transaction);
+        value.add(index, element);
+        record(OP_REMOVE_AT, index, 1, null);
+    }
+
+    /**
+     * Remove an element using the provided transaction.
+     *
+     * @param o element to be removed
+     * @param transaction the transaction to use
+     * @return true if the list contained the specified element
+     */
+    public boolean remove(T o, @NotNull TransactionContext transaction) {
+        int index = value.indexOf(o);
+
+        if (index < 0) {
+            return false;
+        }
+
+        remove(index, transaction);
+        return true;
+    }
+
+    /**
+     * Remove the element at the specified position using the provided transaction.
+     *
+     * @param index index of the element to remove
+     * @param transaction transaction to use
+     * @return the element previously at the specified position
+     */
+    public T remove(int index, @NotNull TransactionContext transaction) {
+        updateSnapshots(transaction);
+        T removed = value.remove(index);
+        record(OP_INSERT_AT, index, 1, removed);
+        return removed;
+    }
+
+    /**
+     * Replace the element at the specified position with the given element using the provided transaction.
+     *
+     * @param index index of the element to replace
+     * @param element element to set
+     * @param transaction transaction to use
+     * @return the element previously at the specified position
+     */
+    public T set(int index, T element, @NotNull TransactionContext transaction) {
+        updateSnapshots(transaction);
+        T previous = value.set(index, element);
+        record(OP_SET_AT, index, 1, previous);
+        return previous;
+    }
+
+    /**
+     * Add all elements from the collection using the provided transaction.
+     *
+     * @param c collection to add
+     * @param transaction transaction to use
+     * @return true if the list changed as a result
+     */
+    public boolean addAll(@NotNull Collection<? extends T> c, @NotNull TransactionContext transaction) {
+        return addAll(value.size(), c, transaction);
+    }
+
+    /**
+     * Add all elements at the given index using the provided transaction.
+     *
+     * @param index insertion index
+     * @param c collection to add
+     * @param transaction transaction to use
+     * @return true if the list changed as a result
+     */
+    public boolean addAll(int index, @NotNull Collection<? extends T> c, @NotNull TransactionContext transaction) {
+        updateSnapshots(transaction);
+        int oldSize = value.size();
+
+        if (value.addAll(index, c)) {
+            record(OP_REMOVE_RANGE, index, value.size() - oldSize, null);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Remove all elements in the collection using the provided transaction.
+     *
+     * @param c collection to remove
+     * @param transaction transaction to use
+     * @return true if the list changed as a result
+     */
+    public boolean removeAll(@NotNull Collection<? extends T> c, @NotNull TransactionContext transaction) {
+        updateSnapshots(transaction);
+        List<T> copy = new ArrayList<>(value);
+
+        if (value.removeAll(c)) {
+            record(OP_RESTORE, 0, copy.size(), copy);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Retain only the elements in the specified collection, using the provided transaction.
+     *
+     * @param c collection to retain
+     * @param transaction transaction to use
+     * @return true if the list changed as a result
+     */
+    public boolean retainAll(@NotNull Collection<? extends T> c, @NotNull TransactionContext transaction) {
+        updateSnapshots(transaction);
+        List<T> copy = new ArrayList<>(value);
+
+        if (value.retainAll(c)) {
+            record(OP_RESTORE, 0, copy.size(), copy);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Clear the list using the provided transaction.
+     *
+     * @param transaction transaction to use
+     */
+    public void clear(@NotNull TransactionContext transaction) {
+        if (value.isEmpty()) {
+            return;
+        }
+
+        updateSnapshots(transaction);
+        List<T> copy = new ArrayList<>(value);
+        value.clear();
+        record(OP_RESTORE, 0, copy.size(), copy);
+    }
+}
@@ -0,0 +1,202 @@
+package dev.hytalemodding.api.transfer.v1.transaction.types;
+
+import dev.hytalemodding.api.transfer.v1.transaction.Transaction;
+import dev.hytalemodding.api.transfer.v1.transaction.TransactionContext;
+import dev.hytalemodding.api.transfer.v1.transaction.base.LongSnapshotParticipant;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Helper class that implements a transactional fixed-size bit set, stored in {@code long} words.
+ * Every modification records the previous value of the modified word, and aborting a transaction replays these records backwards,
+ * so rollback cost is proportional to the number of modified words rather than the size of the set.
+ *
+ * <p>{@link #nextSetBit} and {@link #nextClearBit} skip 64 bits at a time, which makes them suitable to track occupied slots.
+ */
+public class TransactionalBitSet extends LongSnapshotParticipant {
+    private final int size;
+    private final long[] words;
+    // Journal of (word index, previous word) pairs, undone from the end.
+    private int[] journalIndices = new int[8];
+    private long[] journalWords = new long[8];
+    private int journalSize = 0;
+
+    /**
+     * Create a new transactional bit set with all bits cleared.
+     *
+     * @param size The number of bits. Must be non-negative.
+     */
+    public TransactionalBitSet(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size may not be negative: " + size);
+        }
+
+        this.size = size;
+        this.words = new long[(size + 63) >>> 6];
+    }
+
+    /**
+     * Return the number of bits in this set.
+     * @return The size of the set.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return the value of a bit.
+     *
+     * @param index The index of the bit.
+     * @return The value of the bit.
+     */
+    public boolean get(int index) {
+        Objects.checkIndex(index, size);
+        return (words[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Set the value of a bit using the provided transaction.
+     *
+     * @param index The index of the bit.
+     * @param value The new value of the bit.
+     * @param transaction The transaction to use.
+     */
+    public void set(int index, boolean value, @NotNull TransactionContext transaction) {
+        Objects.checkIndex(index, size);
+        int wordIndex = index >>> 6;
+        long word = words[wordIndex];
+        long newWord = value ? word | (1L << index) : word & ~(1L << index);
+
+        if (newWord != word) {
+            updateSnapshots(transaction);
+            record(wordIndex, word);
+            words[wordIndex] = newWord;
+        }
+    }
+
+    /**
+     * Set the value of a bit outside a transaction.
+     *
+     * @param index The index of the bit.
+     * @param value The new value of the bit.
+     * @throws IllegalStateException If a transaction is open on this thread.
+     */
+    public void set(int index, boolean value) {
+        if (Transaction.isOpen()) {
+            throw new IllegalStateException("set() without a transaction may not be called during a transaction.");
+        }
+
+        Objects.checkIndex(index, size);
+
+        if (value) {
+            words[index >>> 6] |= 1L << index;
+        } else {
+            words[index >>> 6] &= ~(1L << index);
+        }
+    }
+
+    /**
+     * Return the index of the first set bit at or after the given index.
+     *
+     * @param fromIndex The index to start from, inclusive.
+     * @return The index of the next set bit, or {@code -1} if there is none.
+     */
+    public int nextSetBit(int fromIndex) {
+        if (fromIndex >= size) {
+            return -1;
+        }
+
+        int wordIndex = fromIndex >>> 6;
+        long word = words[wordIndex] & (-1L << fromIndex);
+
+        while (true) {
+            if (word != 0) {
+                int index = (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+                return index < size ? index : -1;
+            }
+
+            if (++wordIndex == words.length) {
+                return -1;
+            }
+
+            word = words[wordIndex];
+        }
+    }
+
+    /**
+     * Return the index of the first cleared bit at or after the given index.
+     *
+     * @param fromIndex The index to start from, inclusive.
+     * @return The index of the next cleared bit, or {@code -1} if there is none.
+     */
+    public int nextClearBit(int fromIndex) {
+        if (fromIndex >= size) {
+            return -1;
+        }
+
+        int wordIndex = fromIndex >>> 6;
+        long word = ~words[wordIndex] & (-1L << fromIndex);
+
+        while (true) {
+            if (word != 0) {
+                int index = (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+                return index < size ? index : -1;
+            }
+
+            if (++wordIndex == words.length) {
+                return -1;
+            }
+
+            word = ~words[wordIndex];
+        }
+    }
+
+    /**
+     * Return the number of set bits.
+     * @return The number of set bits.
+     */
+    public int cardinality() {
+        int count = 0;
+
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+
+        return count;
+    }
+
+    private void record(int wordIndex, long previousWord) {
+        if (journalSize == journalIndices.length) {
+            journalIndices = Arrays.copyOf(journalIndices, journalSize * 2);
+            journalWords = Arrays.copyOf(journalWords, journalSize * 2);
+        }
+
+        journalIndices[journalSize] = wordIndex;
+        journalWords[journalSize] = previousWord;
+        journalSize++;
+    }
+
+    @Override
+    protected long createSnapshot() {
+        // The snapshot is simply the position in the journal.
+        return journalSize;
+    }
+
+    @Override
+    protected void readSnapshot(long snapshot) {
+        for (int i = journalSize - 1; i >= snapshot; i--) {
+            words[journalIndices[i]] = journalWords[i];
+        }
+
+        journalSize = (int) snapshot;
+    }
+
+    @Override
+    public void afterOuterClose(Transaction.Result result) {
+        // The outer transaction committed, so the journal will never be replayed.
+        journalSize = 0;
+        super.afterOuterClose(result);
+    }
+}
@@ -0,0 +1,51 @@
+package dev.hytalemodding.api.transfer.v1.transaction.types;
+
+import dev.hytalemodding.api.transfer.v1.transaction.TransactionContext;
+import dev.hytalemodding.api.transfer.v1.transaction.base.LongSnapshotParticipant;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Helper class that implements a transactional {@code boolean}, without boxing.
+ * Same as {@link TransactionalValue}, but for primitive values.
+ */
+public class TransactionalBoolean extends LongSnapshotParticipant {
+    /** The current value stored by this transactional value. */
+    protected boolean value;
+
+    /**
+     * Create a new transactional boolean with the provided starting value.
+     *
+     * @param startingValue The initial stored value.
+     */
+    public TransactionalBoolean(boolean startingValue) {
+        this.value = startingValue;
+    }
+
+    /**
+     * Fetches the current stored value.
+     * @return The current value.
+     */
+    public boolean getValue() {
+        return this.value;
+    }
+
+    /**
+     * Stores a new value using the given transaction.
+     * @param newValue The new value to store.
+     * @param transaction Transaction to use.
+     */
+    public void assignValue(boolean newValue, @NotNull TransactionContext transaction) {
+        updateSnapshots(transaction);
+        value = newValue;
+    }
+
+    @Override
+    protected long createSnapshot() {
+        return value ? 1 : 0;
+    }
+
+    @Override
+    protected void readSnapshot(long snapshot) {
+        value = snapshot != 0;
+    }
+}
@@ -0,0 +1,62 @@
+package dev.hytalemodding.api.transfer.v1.transaction.types;
+
+import dev.hytalemodding.api.transfer.v1.transaction.TransactionContext;
+import dev.hytalemodding.api.transfer.v1.transaction.base.LongSnapshotParticipant;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Helper class that implements a transactional {@code long}, without boxing.
+ * Same as {@link TransactionalValue}, but for primitive values.
+ */
+public class TransactionalLong extends LongSnapshotParticipant {
+    /** The current value stored by this transactional value. */
+    protected long value;
+
+    /**
+     * Create a new transactional long with the provided starting value.
+     *
+     * @param startingValue The initial stored value.
+     */
+    public TransactionalLong(long startingValue) {
+        this.value = startingValue;
+    }
+
+    /**
+     * Fetches the current stored value.
+     * @return The current value.
+     */
+    public long getValue() {
+        return this.value;
+    }
+
+    /**
+     * Stores a new value using the given transaction.
+     * @param newValue The new value to store.
+     * @param transaction Transaction to use.
+     */
+    public void assignValue(long newValue, @NotNull TransactionContext transaction) {
+        updateSnapshots(transaction);
+        value = newValue;
+    }
+
+    /**
+     * Adds to the stored value using the given transaction.
+     * @param delta The amount to add, may be negative.
+     * @param transaction Transaction to use.
+     * @return The new value.
+     */
+    public long addValue(long delta, @NotNull TransactionContext transaction) {
+        updateSnapshots(transaction);
+        return value += delta;
+    }
+
+    @Override
+    protected long createSnapshot() {
+        return value;
+    }
+
+    @Override
+    protected void readSnapshot(long snapshot) {
+        value = snapshot;
+    }
+}
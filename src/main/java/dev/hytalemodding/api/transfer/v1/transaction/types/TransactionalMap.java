@@ -0,0 +1,138 @@
+package dev.hytalemodding.api.transfer.v1.transaction.types;
+
+import dev.hytalemodding.api.transfer.v1.transaction.TransactionContext;
+import dev.hytalemodding.api.transfer.v1.transaction.base.SnapshotParticipant;
+import dev.hytalemodding.impl.transfer.util.PersistentHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+
+/**
+ * Helper class that implements a transactional {@link Map}.
+ * The map is stored as a persistent hash trie, so taking a snapshot only captures a reference,
+ * and each modification costs {@code O(log32 n)} regardless of how many transactions are open.
+ *
+ * <p>Null keys and null values are not supported.
+ * @param <K> The type of the map's keys.
+ * @param <V> The type of the map's values.
+ */
+public class TransactionalMap<K, V> extends SnapshotParticipant<Map<K, V>> {
+    /** The current map stored by this transactional map. */
+    protected @NotNull PersistentHashMap<K, V> value = PersistentHashMap.empty();
+
+    /**
+     * Create a new empty transactional map.
+     */
+    public TransactionalMap() {
+    }
+
+    /**
+     * Create a new transactional map containing the mappings of the given map.
+     *
+     * @param startingValue Initial mappings, copied into the transactional map.
+     */
+    public TransactionalMap(@NotNull Map<? extends K, ? extends V> startingValue) {
+        for (Map.Entry<? extends K, ? extends V> entry : startingValue.entrySet()) {
+            value = value.with(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Fetches the current mappings.
+     * The returned map is immutable and will not reflect later changes, so it can be kept as a cheap snapshot.
+     * @return The current mappings.
+     */
+    public @NotNull Map<K, V> getValue() {
+        return value;
+    }
+
+    /**
+     * Fetches the value mapped to the given key.
+     *
+     * @param key The key to look up.
+     * @return The mapped value, or {@code null} if there is none.
+     */
+    public @Nullable V get(Object key) {
+        return value.get(key);
+    }
+
+    /**
+     * Check whether the map contains the given key.
+     *
+     * @param key The key to look up.
+     * @return true if the key is mapped to a value.
+     */
+    public boolean containsKey(Object key) {
+        return value.containsKey(key);
+    }
+
+    /**
+     * Return the number of mappings.
+     * @return The size of the map.
+     */
+    public int size() {
+        return value.size();
+    }
+
+    /**
+     * Map a key to a value using the provided transaction.
+     *
+     * @param key The key, not null.
+     * @param newValue The value, not null.
+     * @param transaction The transaction to use.
+     * @return The previous value mapped to the key, or {@code null} if there was none.
+     */
+    public @Nullable V put(@NotNull K key, @NotNull V newValue, @NotNull TransactionContext transaction) {
+        V previous = value.get(key);
+        PersistentHashMap<K, V> updated = value.with(key, newValue);
+
+        if (updated != value) {
+            updateSnapshots(transaction);
+            value = updated;
+        }
+
+        return previous;
+    }
+
+    /**
+     * Remove the mapping for a key using the provided transaction.
+     *
+     * @param key The key to remove.
+     * @param transaction The transaction to use.
+     * @return The previous value mapped to the key, or {@code null} if there was none.
+     */
+    public @Nullable V remove(Object key, @NotNull TransactionContext transaction) {
+        V previous = value.get(key);
+
+        if (previous != null) {
+            updateSnapshots(transaction);
+            value = value.without(key);
+        }
+
+        return previous;
+    }
+
+    /**
+     * Remove all mappings using the provided transaction.
+     *
+     * @param transaction The transaction to use.
+     */
+    public void clear(@NotNull TransactionContext transaction) {
+        if (!value.isEmpty()) {
+            updateSnapshots(transaction);
+            value = PersistentHashMap.empty();
+        }
+    }
+
+    @Override
+    protected @NotNull Map<K, V> createSnapshot() {
+        // The map is immutable, so the snapshot is just the current reference.
+        return value;
+    }
+
+    @Override
+    protected void readSnapshot(@NotNull Map<K, V> snapshot) {
+        value = (PersistentHashMap<K, V>) snapshot;
+    }
+}
@@ -0,0 +1,127 @@
+package dev.hytalemodding.api.transfer.v1.transaction.types;
+
+import dev.hytalemodding.api.transfer.v1.transaction.TransactionContext;
+import dev.hytalemodding.api.transfer.v1.transaction.base.SnapshotParticipant;
+import dev.hytalemodding.impl.transfer.util.PersistentHashMap;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Helper class that implements a transactional {@link Set}.
+ * Same as {@link TransactionalMap}: snapshots only capture a reference, and each modification costs {@code O(log32 n)}.
+ *
+ * <p>Null elements are not supported.
+ * @param <T> The type of the set's elements.
+ */
+public class TransactionalSet<T> extends SnapshotParticipant<Map<T, Boolean>> {
+    /** The current elements, stored as the keys of a persistent map. */
+    protected @NotNull PersistentHashMap<T, Boolean> value = PersistentHashMap.empty();
+
+    /**
+     * Create a new empty transactional set.
+     */
+    public TransactionalSet() {
+    }
+
+    /**
+     * Create a new transactional set containing the given elements.
+     *
+     * @param startingValue Initial elements, copied into the transactional set.
+     */
+    public TransactionalSet(@NotNull Collection<? extends T> startingValue) {
+        for (T element : startingValue) {
+            value = value.with(element, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Fetches the current elements.
+     * The returned set is immutable and will not reflect later changes, so it can be kept as a cheap snapshot.
+     * @return The current elements.
+     */
+    public @NotNull Set<T> getValue() {
+        return value.keySet();
+    }
+
+    /**
+     * Check whether the set contains the given element.
+     *
+     * @param element The element to look up.
+     * @return true if the set contains the element.
+     */
+    public boolean contains(Object element) {
+        return value.containsKey(element);
+    }
+
+    /**
+     * Return the number of elements.
+     * @return The size of the set.
+     */
+    public int size() {
+        return value.size();
+    }
+
+    /**
+     * Add an element using the provided transaction.
+     *
+     * @param element The element to add, not null.
+     * @param transaction The transaction to use.
+     * @return true if the set changed as a result of the call.
+     */
+    public boolean add(@NotNull T element, @NotNull TransactionContext transaction) {
+        PersistentHashMap<T, Boolean> updated = value.with(element, Boolean.TRUE);
+
+        if (updated == value) {
+            return false;
+        }
+
+        updateSnapshots(transaction);
+        value = updated;
+        return true;
+    }
+
+    /**
+     * Remove an element using the provided transaction.
+     *
+     * @param element The element to remove.
+     * @param transaction The transaction to use.
+     * @return true if the set contained the element.
+     */
+    public boolean remove(Object element, @NotNull TransactionContext transaction) {
+        PersistentHashMap<T, Boolean> updated = value.without(element);
+
+        if (updated == value) {
+            return false;
+        }
+
+        updateSnapshots(transaction);
+        value = updated;
+        return true;
+    }
+
+    /**
+     * Remove all elements using the provided transaction.
+     *
+     * @param transaction The transaction to use.
+     */
+    public void clear(@NotNull TransactionContext transaction) {
+        if (!value.isEmpty()) {
+            updateSnapshots(transaction);
+            value = PersistentHashMap.empty();
+        }
+    }
+
+    @Override
+    protected @NotNull Map<T, Boolean> createSnapshot() {
+        // The map is immutable, so the snapshot is just the current reference.
+        return value;
+    }
+
+    @Override
+    protected void readSnapshot(@NotNull Map<T, Boolean> snapshot) {
+        value = (PersistentHashMap<T, Boolean>) snapshot;
+    }
+}
@@ -19,19 +19,26 @@
 
 package dev.hytalemodding.impl.transfer;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.AbstractList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Spliterator;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import dev.hytalemodding.api.transfer.v1.storage.SlottedStorage;
 import dev.hytalemodding.api.transfer.v1.storage.Storage;
+import dev.hytalemodding.api.transfer.v1.storage.StorageCursor;
 import dev.hytalemodding.api.transfer.v1.storage.StorageView;
 import dev.hytalemodding.api.transfer.v1.storage.base.SingleSlotStorage;
 import dev.hytalemodding.api.transfer.v1.transaction.TransactionContext;
@@ -87,9 +94,152 @@ public class TransferApiImpl {
         public String toString() {
             return "EmptyStorage";
         }
+
+        @Override
+        public StorageCursor cursor() {
+            return EMPTY_CURSOR;
+        }
+    };
+
+    /**
+     * Internal cursor that is never on a position, shared by storages without contents.
+     */
+    @SuppressWarnings("rawtypes")
+    public static final StorageCursor EMPTY_CURSOR = new StorageCursor() {
+        @Override
+        public boolean advance() {
+            return false;
+        }
+
+        @Override
+        public Object getResource() {
+            throw notOnPosition();
+        }
+
+        @Override
+        public long getAmount() {
+            throw notOnPosition();
+        }
+
+        @Override
+        public long getCapacity() {
+            throw notOnPosition();
+        }
+
+        @Override
+        public long extract(Object resource, long maxAmount, @NotNull TransactionContext transaction) {
+            throw notOnPosition();
+        }
+
+        @Override
+        public void reset() {
+        }
     };
 
-    
+    /**
+     * Return the exception thrown when a {@link StorageCursor} is read while it is not on a position.
+     *
+     * @return the exception to throw
+     */
+    public static IllegalStateException notOnPosition() {
+        return new IllegalStateException("The cursor is not on a position, call advance() first.");
+    }
+
+    /**
+     * Return a cursor over the {@linkplain Storage#nonEmptyIterator non-empty views} of a storage,
+     * for storages that do not provide their own cursor.
+     *
+     * @param storage the storage to iterate
+     * @param <T> the resource type
+     * @return a cursor backed by the iterator of the storage
+     */
+    public static <T> StorageCursor<T> iteratorCursor(Storage<T> storage) {
+        return new IteratorCursor<>(storage);
+    }
+
+    /**
+     * Return a cursor over a single view, that is visited if it is non-empty.
+     *
+     * @param view the view to visit
+     * @param <T> the resource type
+     * @return a cursor over the view
+     */
+    public static <T> StorageCursor<T> viewCursor(StorageView<T> view) {
+        return new ViewCursor<>(view, null);
+    }
+
+    /**
+     * Return a cursor over a single view like {@link #viewCursor(StorageView)}, reusing the cursor cached in a field of the view.
+     * The cursor is taken out of the field while it is open, and put back when it is closed.
+     *
+     * @param view the view to visit, which declares the field
+     * @param cache a handle to a {@link StorageCursor} field of the view, initially {@code null}
+     * @param <T> the resource type
+     * @return a cursor over the view
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> StorageCursor<T> viewCursor(StorageView<T> view, VarHandle cache) {
+        ViewCursor<T> cursor = (ViewCursor<T>) cache.getAndSet(view, null);
+
+        if (cursor == null) {
+            cursor = new ViewCursor<>(view, cache);
+        }
+
+        cursor.open = true;
+        cursor.state = 0;
+        return cursor;
+    }
+
+    /**
+     * Return a value derived from the identity of a storage, added to versions that are computed from the versions of other storages,
+     * so that the computed version changes when another storage is used even though versions of different storages may not be compared.
+     *
+     * @param storage the storage whose version is used
+     * @return a value that depends on the identity of the storage only
+     */
+    public static long identityVersion(Object storage) {
+        // Spread the 32-bit identity hash over the whole long, so that small version differences cannot cancel it out.
+        return System.identityHashCode(storage) * 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+     * Find a field of the class of a lookup, for storages that keep their last closed cursor in a field to reuse it.
+     *
+     * @param lookup the lookup of the class declaring the field
+     * @param name the name of the field
+     * @param type the type of the field
+     * @return a var handle for the field
+     */
+    public static VarHandle findVarHandle(MethodHandles.Lookup lookup, String name, Class<?> type) {
+        try {
+            return lookup.findVarHandle(lookup.lookupClass(), name, type);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Return whether a class overrides a method declared by one of its superclasses,
+     * for base classes that only take a fast path when their subclasses did not change the behavior it bypasses.
+     *
+     * @param type the runtime class to check
+     * @param base the superclass declaring the method, which is not checked itself
+     * @param name the name of the method
+     * @param parameterTypes the erased parameter types of the method
+     * @return whether a class between {@code type} and {@code base}, excluding {@code base}, declares the method
+     */
+    public static boolean overridesMethod(Class<?> type, Class<?> base, String name, Class<?>... parameterTypes) {
+        for (Class<?> current = type; current != base && current != null; current = current.getSuperclass()) {
+            try {
+                current.getDeclaredMethod(name, parameterTypes);
+                return true;
+            } catch (NoSuchMethodException ignored) {
+                // Not declared at this level, check the superclass.
+            }
+        }
+
+        return false;
+    }
 
     /**
      * Return an iterator that yields a single value.
@@ -127,17 +277,247 @@ public class TransferApiImpl {
      * @return a list view of the storage slots
      */
     public static <T> List<SingleSlotStorage<T>> makeListView(SlottedStorage<T> storage) {
-        return new AbstractList<>() {
-            @Override
-            public SingleSlotStorage<T> get(int index) {
-                return storage.getSlot(index);
+        return new SlotListView<>(storage);
+    }
+
+    /**
+     * Create a sized spliterator over the slots of a {@link SlottedStorage}, split by slot range.
+     *
+     * @param storage the slotted storage to iterate
+     * @param <T> the resource type
+     * @return a spliterator over all the slots of the storage
+     */
+    public static <T> Spliterator<StorageView<T>> makeSlotSpliterator(SlottedStorage<T> storage) {
+        return new SlotSpliterator<>(storage, 0, storage.getSlotCount());
+    }
+
+    /**
+     * Spliterator over a range of slots, reading the slot count once like {@link SlotListView}.
+     */
+    private static final class SlotSpliterator<T> implements Spliterator<StorageView<T>> {
+        private final SlottedStorage<T> storage;
+        private int next;
+        private final int end;
+
+        private SlotSpliterator(SlottedStorage<T> storage, int next, int end) {
+            this.storage = storage;
+            this.next = next;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super StorageView<T>> action) {
+            if (next >= end) {
+                return false;
             }
 
-            @Override
-            public int size() {
-                return storage.getSlotCount();
+            action.accept(storage.getSlot(next++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super StorageView<T>> action) {
+            for (; next < end; next++) {
+                action.accept(storage.getSlot(next));
             }
-        };
+        }
+
+        @Override
+        public @Nullable Spliterator<StorageView<T>> trySplit() {
+            int mid = (next + end) >>> 1;
+
+            if (mid <= next) {
+                return null;
+            }
+
+            Spliterator<StorageView<T>> prefix = new SlotSpliterator<>(storage, next, mid);
+            next = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - next;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+    }
+
+    /**
+     * Random access view over the slots of a storage. The iterator reads the slot count once,
+     * instead of calling {@link SlottedStorage#getSlotCount} for every element like {@link AbstractList} does.
+     */
+    private static final class SlotListView<T> extends AbstractList<SingleSlotStorage<T>> implements RandomAccess {
+        private final SlottedStorage<T> storage;
+
+        private SlotListView(SlottedStorage<T> storage) {
+            this.storage = storage;
+        }
+
+        @Override
+        public SingleSlotStorage<T> get(int index) {
+            return storage.getSlot(index);
+        }
+
+        @Override
+        public int size() {
+            return storage.getSlotCount();
+        }
+
+        @Override
+        public @NotNull Iterator<SingleSlotStorage<T>> iterator() {
+            int size = storage.getSlotCount();
+
+            return new Iterator<>() {
+                int next = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return next < size;
+                }
+
+                @Override
+                public SingleSlotStorage<T> next() {
+                    if (next >= size) {
+                        throw new NoSuchElementException();
+                    }
+
+                    return storage.getSlot(next++);
+                }
+            };
+        }
+    }
+
+    private static final class IteratorCursor<T> implements StorageCursor<T> {
+        private final Storage<T> storage;
+        private Iterator<StorageView<T>> iterator;
+        private @Nullable StorageView<T> current;
+
+        private IteratorCursor(Storage<T> storage) {
+            this.storage = storage;
+            this.iterator = storage.nonEmptyIterator();
+        }
+
+        private StorageView<T> current() {
+            if (current == null) {
+                throw notOnPosition();
+            }
+
+            return current;
+        }
+
+        @Override
+        public boolean advance() {
+            current = iterator.hasNext() ? iterator.next() : null;
+            return current != null;
+        }
+
+        @Override
+        public T getResource() {
+            return current().getResource();
+        }
+
+        @Override
+        public long getAmount() {
+            return current().getAmount();
+        }
+
+        @Override
+        public long getCapacity() {
+            return current().getCapacity();
+        }
+
+        @Override
+        public long extract(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+            return current().extract(resource, maxAmount, transaction);
+        }
+
+        @Override
+        public long probeExtract(T resource, long maxAmount) {
+            // A single slot storage is its own view, so its extraction probe applies to the view.
+            return current() instanceof SingleSlotStorage<T> slot ? slot.probeExtract(resource, maxAmount) : Storage.UNKNOWN_AMOUNT;
+        }
+
+        @Override
+        public void reset() {
+            iterator = storage.nonEmptyIterator();
+            current = null;
+        }
+    }
+
+    private static final class ViewCursor<T> implements StorageCursor<T> {
+        private final StorageView<T> view;
+        // Field of the view that the cursor is put back into when closed, or null if it is not cached.
+        private final @Nullable VarHandle cache;
+        private boolean open = false;
+        // 0 before the view, 1 on the view, 2 after the view.
+        private int state = 0;
+
+        private ViewCursor(StorageView<T> view, @Nullable VarHandle cache) {
+            this.view = view;
+            this.cache = cache;
+        }
+
+        private StorageView<T> current() {
+            if (state != 1) {
+                throw notOnPosition();
+            }
+
+            return view;
+        }
+
+        @Override
+        public boolean advance() {
+            if (state == 0 && view.getAmount() > 0 && !view.isResourceBlank()) {
+                state = 1;
+                return true;
+            }
+
+            state = 2;
+            return false;
+        }
+
+        @Override
+        public T getResource() {
+            return current().getResource();
+        }
+
+        @Override
+        public long getAmount() {
+            return current().getAmount();
+        }
+
+        @Override
+        public long getCapacity() {
+            return current().getCapacity();
+        }
+
+        @Override
+        public long extract(T resource, long maxAmount, @NotNull TransactionContext transaction) {
+            return current().extract(resource, maxAmount, transaction);
+        }
+
+        @Override
+        public long probeExtract(T resource, long maxAmount) {
+            // A single slot storage is its own view, so its extraction probe applies to the view.
+            return current() instanceof SingleSlotStorage<T> slot ? slot.probeExtract(resource, maxAmount) : Storage.UNKNOWN_AMOUNT;
+        }
+
+        @Override
+        public void reset() {
+            state = 0;
+        }
+
+        @Override
+        public void close() {
+            if (open) {
+                open = false;
+                cache.setRelease(view, this);
+            }
+        }
     }
 
     /**
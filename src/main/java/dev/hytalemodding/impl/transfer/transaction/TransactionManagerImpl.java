@@ -20,6 +20,8 @@
 package dev.hytalemodding.impl.transfer.transaction;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jspecify.annotations.Nullable;
 
@@ -31,21 +33,46 @@ import dev.hytalemodding.api.transfer.v1.transaction.TransactionContext;
  *
  * <p>Manages per-thread transaction stacks for the transfer API. This class is internal to the implementation
  * and not part of the public API surface.
+ *
+ * <p>Participants can either register close callbacks on every transaction they modify state in, or, when
+ * {@linkplain #setJournaling journaling} is enabled, record their snapshots in a single undo log owned by this manager.
+ * The undo log is a contiguous array of (handler, participant, snapshot) entries, and every transaction only remembers
+ * where its entries start: committing a nested transaction is then free because its entries simply become part of the parent,
+ * and aborting a transaction replays the tail of the log backwards.
+ * Journaling is disabled by default, and can be enabled for every thread with the {@value #JOURNAL_PROPERTY} system property.
+ * {@linkplain Transaction#openSimulation Simulations} always use the undo log, since they are always aborted.
  */
 public class TransactionManagerImpl {
 	/** Per-thread manager instance. */
 	public static final ThreadLocal<TransactionManagerImpl> MANAGERS = ThreadLocal.withInitial(TransactionManagerImpl::new);
+	/** System property that enables journaling by default for every new manager. */
+	public static final String JOURNAL_PROPERTY = "transfer-api.transaction.journal";
+	/** Journal mark returned by {@link #getJournalMark} when the transaction does not use the undo log. */
+	public static final long NO_JOURNAL = -1;
+
+	private static final AtomicInteger MANAGER_COUNT = new AtomicInteger();
+	// Transaction ids are only compared for equality, so we reserve the upper bits for the manager to keep them unique across threads.
+	private static final int MANAGER_ID_SHIFT = 40;
 
 	/**
 	 * Create a new transaction manager for the current thread.
 	 */
 	public TransactionManagerImpl() {
+		nextTransactionId = (long) MANAGER_COUNT.getAndIncrement() << MANAGER_ID_SHIFT;
 	}
 
 	private final Thread thread = Thread.currentThread();
 	private final ArrayList<TransactionImpl> stack = new ArrayList<>();
 	private final ArrayList<Transaction.OuterCloseCallback> outerCloseCallbacks = new ArrayList<>();
 	private int currentDepth = -1;
+	private long nextTransactionId;
+
+	private boolean journaling = Boolean.getBoolean(JOURNAL_PROPERTY);
+	// Undo log: JOURNAL_STRIDE objects (handler, participant, snapshot) and one long snapshot per entry.
+	private static final int JOURNAL_STRIDE = 3;
+	private Object[] journalObjects = new Object[16 * JOURNAL_STRIDE];
+	private long[] journalLongs = new long[16];
+	private int journalSize = 0;
 
 	/**
 	 * Check whether the current thread has an open transaction.
@@ -56,6 +83,78 @@ public class TransactionManagerImpl {
 		return currentDepth > -1;
 	}
 
+	/**
+	 * Check whether participants record their snapshots in the undo log of this manager.
+	 *
+	 * @return true if journaling is enabled for this thread.
+	 */
+	public boolean isJournaling() {
+		return journaling;
+	}
+
+	/**
+	 * Enable or disable the undo log for the transactions of this thread.
+	 *
+	 * @param journaling true to record participant snapshots in the undo log, false to use per-transaction close callbacks.
+	 * @throws IllegalStateException If a transaction is open on this thread.
+	 */
+	public void setJournaling(boolean journaling) {
+		validateCurrentThread();
+
+		if (isOpen()) {
+			throw new IllegalStateException("Journaling may not be toggled while a transaction is open.");
+		}
+
+		this.journaling = journaling;
+	}
+
+	/**
+	 * Return the mark that a participant should compare against the mark of its last journal entry
+	 * to know whether it already recorded a snapshot for the passed transaction.
+	 *
+	 * @param transaction The transaction that is about to be modified.
+	 * @return A mark unique to the passed transaction, or {@link #NO_JOURNAL} if the transaction does not use the undo log.
+	 */
+	public static long getJournalMark(TransactionContext transaction) {
+		if (transaction instanceof TransactionImpl impl && (impl.manager().journaling || impl.simulation)) {
+			return impl.id;
+		}
+
+		return NO_JOURNAL;
+	}
+
+	/**
+	 * Record a snapshot in the undo log of the passed transaction.
+	 * Should only be called if {@link #getJournalMark} did not return {@link #NO_JOURNAL}.
+	 *
+	 * @param transaction The transaction that is about to be modified. Must be the current transaction.
+	 * @param handler The handler that will restore or release the snapshot.
+	 * @param participant The participant the snapshot belongs to.
+	 * @param snapshot The object part of the snapshot, may be null for participants with primitive state.
+	 * @param longSnapshot The primitive part of the snapshot.
+	 * @param <P> The type of the participant.
+	 */
+	public static <P> void record(TransactionContext transaction, JournalHandler<P> handler, P participant, @Nullable Object snapshot, long longSnapshot) {
+		TransactionImpl impl = (TransactionImpl) transaction;
+		impl.validateCurrentTransaction();
+		impl.validateOpen();
+		impl.manager().append(handler, participant, snapshot, longSnapshot);
+	}
+
+	private void append(JournalHandler<?> handler, Object participant, @Nullable Object snapshot, long longSnapshot) {
+		if (journalSize == journalLongs.length) {
+			journalLongs = Arrays.copyOf(journalLongs, journalSize * 2);
+			journalObjects = Arrays.copyOf(journalObjects, journalSize * 2 * JOURNAL_STRIDE);
+		}
+
+		int base = journalSize * JOURNAL_STRIDE;
+		journalObjects[base] = handler;
+		journalObjects[base + 1] = participant;
+		journalObjects[base + 2] = snapshot;
+		journalLongs[journalSize] = longSnapshot;
+		journalSize++;
+	}
+
 	/**
 	 * Open a new outer transaction for this thread.
 	 *
@@ -66,7 +165,27 @@ public class TransactionManagerImpl {
 			throw new IllegalStateException("An outer transaction is already active on this thread.");
 		}
 
-		return open();
+		return open(false, false);
+	}
+
+	/**
+	 * Open a new simulation for this thread, nested in the passed transaction or outer if it is null.
+	 *
+	 * @param maybeParent The parent transaction context, or {@code null} to open an outer simulation.
+	 * @return A new simulation {@link Transaction}.
+	 */
+	public Transaction openSimulation(@Nullable TransactionContext maybeParent) {
+		if (maybeParent == null) {
+			if (isOpen()) {
+				throw new IllegalStateException("An outer transaction is already active on this thread.");
+			}
+		} else {
+			TransactionImpl parent = (TransactionImpl) maybeParent;
+			parent.validateCurrentTransaction();
+			parent.validateOpen();
+		}
+
+		return open(true, true);
 	}
 
 	/**
@@ -88,7 +207,7 @@ public class TransactionManagerImpl {
 	/**
 	 * Open a new transaction, outer or nested, without performing any state check.
 	 */
-	Transaction open() {
+	Transaction open(boolean simulation, boolean simulationRoot) {
 		currentDepth++;
 
 		if (stack.size() == currentDepth) {
@@ -97,6 +216,10 @@ public class TransactionManagerImpl {
 
 		TransactionImpl current = stack.get(currentDepth);
 		current.lifecycle = Transaction.Lifecycle.OPEN;
+		current.id = nextTransactionId++;
+		current.journalStart = journalSize;
+		current.simulation = simulation;
+		current.simulationRoot = simulationRoot;
 		return current;
 	}
 
@@ -123,15 +246,52 @@ public class TransactionManagerImpl {
 		}
 	}
 
+	/**
+	 * Restores or releases the snapshots that a participant recorded in the undo log.
+	 *
+	 * @param <P> The type of the participant.
+	 */
+	public interface JournalHandler<P> {
+		/**
+		 * Revert the participant to the recorded snapshot, after the transaction that recorded it was aborted.
+		 *
+		 * @param participant The participant that recorded the snapshot.
+		 * @param snapshot The object part of the snapshot.
+		 * @param longSnapshot The primitive part of the snapshot.
+		 */
+		void undo(P participant, @Nullable Object snapshot, long longSnapshot);
+
+		/**
+		 * Release the recorded snapshot, after the outer transaction was committed.
+		 * The participant may be passed multiple times if it recorded multiple snapshots,
+		 * and is responsible for only scheduling its final commit actions once.
+		 *
+		 * @param participant The participant that recorded the snapshot.
+		 * @param snapshot The object part of the snapshot.
+		 * @param longSnapshot The primitive part of the snapshot.
+		 * @param transaction The committed outer transaction, on which outer close callbacks may be registered.
+		 */
+		void commit(P participant, @Nullable Object snapshot, long longSnapshot, TransactionContext transaction);
+	}
+
 	private class TransactionImpl implements Transaction {
 		final int nestingDepth;
 		final ArrayList<CloseCallback> closeCallbacks = new ArrayList<>();
 		Lifecycle lifecycle = Lifecycle.NONE;
+		long id;
+		int journalStart;
+		// Whether this transaction is part of a simulation, and whether it was opened as the simulation itself.
+		boolean simulation;
+		boolean simulationRoot;
 
 		TransactionImpl(int nestingDepth) {
 			this.nestingDepth = nestingDepth;
 		}
 
+		TransactionManagerImpl manager() {
+			return TransactionManagerImpl.this;
+		}
+
 		void validateCurrentTransaction() {
 			validateCurrentThread();
 
@@ -145,7 +305,7 @@ public class TransactionManagerImpl {
 		}
 
 		// Validate that this transaction is open.
-		private void validateOpen() {
+		void validateOpen() {
 			if (lifecycle != Lifecycle.OPEN) {
 				throw new IllegalStateException("Transaction operation cannot be applied to a closed transaction.");
 			}
@@ -155,7 +315,7 @@ public class TransactionManagerImpl {
 		public Transaction openNested() {
 			validateCurrentTransaction();
 			validateOpen();
-			return open();
+			return open(simulation, false);
 		}
 
 		private void close(Result result) {
@@ -168,6 +328,12 @@ public class TransactionManagerImpl {
 			// That is why any callback has to run inside a try block.
 			RuntimeException closeException = null;
 
+			// Replay or release the entries of this transaction in the undo log.
+			// Committing a nested transaction leaves its entries in place: they now belong to the parent transaction.
+			if (result.wasAborted() || currentDepth == 0) {
+				closeException = closeJournal(result, closeException);
+			}
+
 			// Invoke callbacks in reverse order
 			for (int i = closeCallbacks.size()-1; i >= 0; i--) {
 				try {
@@ -212,6 +378,36 @@ public class TransactionManagerImpl {
 			}
 		}
 
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		private @Nullable RuntimeException closeJournal(Result result, @Nullable RuntimeException closeException) {
+			for (int i = journalSize - 1; i >= journalStart; i--) {
+				int base = i * JOURNAL_STRIDE;
+				JournalHandler handler = (JournalHandler) journalObjects[base];
+				Object participant = journalObjects[base + 1];
+				Object snapshot = journalObjects[base + 2];
+				journalObjects[base] = null;
+				journalObjects[base + 1] = null;
+				journalObjects[base + 2] = null;
+
+				try {
+					if (result.wasAborted()) {
+						handler.undo(participant, snapshot, journalLongs[i]);
+					} else {
+						handler.commit(participant, snapshot, journalLongs[i], this);
+					}
+				} catch (Exception exception) {
+					if (closeException == null) {
+						closeException = new RuntimeException("Encountered an exception while replaying the transaction journal.", exception);
+					} else {
+						closeException.addSuppressed(exception);
+					}
+				}
+			}
+
+			journalSize = journalStart;
+			return closeException;
+		}
+
 		@Override
 		public void abort() {
 			close(Result.ABORTED);
@@ -219,6 +415,10 @@ public class TransactionManagerImpl {
 
 		@Override
 		public void commit() {
+			if (simulationRoot) {
+				throw new IllegalStateException("A simulation may not be committed.");
+			}
+
 			close(Result.COMMITTED);
 		}
 
@@ -235,6 +435,12 @@ public class TransactionManagerImpl {
 			return nestingDepth;
 		}
 
+		@Override
+		public boolean isSimulation() {
+			validateCurrentThread();
+			return simulation;
+		}
+
 		@Override
 		public Transaction getOpenTransaction(int nestingDepth) {
 			validateCurrentThread();
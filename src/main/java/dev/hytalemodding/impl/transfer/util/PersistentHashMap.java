@@ -0,0 +1,382 @@
+/*
+ * Copyright (c) 2025 Shai List and contributors
+ * Licensed under the MIT license. See LICENSE file in the project root for details.
+ */
+
+package dev.hytalemodding.impl.transfer.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * An immutable hash map implemented as a hash array mapped trie.
+ * {@link #with} and {@link #without} return a new map sharing all untouched nodes with this one,
+ * so each update costs {@code O(log32 n)} and old versions stay valid forever.
+ *
+ * <p>Null keys and null values are not supported. The {@link Map} mutators throw {@link UnsupportedOperationException}.
+ *
+ * @param <K> The type of the keys.
+ * @param <V> The type of the values.
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    // 7 levels of bitmap nodes cover the 32 hash bits, plus one level of collision nodes.
+    private static final int MAX_DEPTH = 8;
+    private static final Object[] NO_ENTRIES = new Object[0];
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(new Node(0, NO_ENTRIES), 0);
+
+    private final Node root;
+    private final int size;
+    private @Nullable Set<Map.Entry<K, V>> entrySet;
+
+    private PersistentHashMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Return the empty map.
+     *
+     * @param <K> The type of the keys.
+     * @param <V> The type of the values.
+     * @return The shared empty map instance.
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Return a map with the passed mapping added or replaced.
+     *
+     * @param key The key, not null.
+     * @param value The value, not null.
+     * @return A new map, or this map if it already contained the exact mapping.
+     */
+    public PersistentHashMap<K, V> with(K key, V value) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+        boolean[] added = new boolean[1];
+        Node newRoot = root.put(key, value, hash(key), 0, added);
+
+        if (newRoot == root) {
+            return this;
+        }
+
+        return new PersistentHashMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * Return a map without the mapping for the passed key.
+     *
+     * @param key The key to remove.
+     * @return A new map, or this map if it did not contain the key.
+     */
+    public PersistentHashMap<K, V> without(Object key) {
+        if (key == null) {
+            return this;
+        }
+
+        Node newRoot = root.remove(key, hash(key), 0);
+
+        if (newRoot == root) {
+            return this;
+        } else if (newRoot == null) {
+            return empty();
+        }
+
+        return new PersistentHashMap<>(newRoot, size - 1);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public @Nullable V get(Object key) {
+        return key == null ? null : (V) root.find(key, hash(key), 0);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<>() {
+                @Override
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    return new EntryIterator<>(root);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+
+        return entrySet;
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int bitpos(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    /**
+     * A trie node, storing its entries as key/value pairs. A {@code null} key means the value is a child node.
+     * Bitmap nodes index their entries by 5 bits of the hash; collision nodes hold keys that share the full hash.
+     */
+    private static final class Node {
+        // For bitmap nodes, the bitmap of occupied slots.
+        final int bitmap;
+        final Object[] entries;
+        final boolean collision;
+        // For collision nodes, the hash shared by all keys.
+        final int collisionHash;
+
+        private Node(int bitmap, Object[] entries, boolean collision, int collisionHash) {
+            this.bitmap = bitmap;
+            this.entries = entries;
+            this.collision = collision;
+            this.collisionHash = collisionHash;
+        }
+
+        Node(int bitmap, Object[] entries) {
+            this(bitmap, entries, false, 0);
+        }
+
+        static Node collision(int hash, Object[] entries) {
+            return new Node(0, entries, true, hash);
+        }
+
+        @Nullable Object find(Object key, int hash, int shift) {
+            if (collision) {
+                int index = collisionIndex(key);
+                return index < 0 ? null : entries[index + 1];
+            }
+
+            int bit = bitpos(hash, shift);
+
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+
+            int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+            Object storedKey = entries[index];
+
+            if (storedKey == null) {
+                return ((Node) entries[index + 1]).find(key, hash, shift + BITS);
+            }
+
+            return key.equals(storedKey) ? entries[index + 1] : null;
+        }
+
+        Node put(Object key, Object value, int hash, int shift, boolean[] added) {
+            if (collision) {
+                if (hash == collisionHash) {
+                    int index = collisionIndex(key);
+
+                    if (index >= 0) {
+                        return entries[index + 1] == value ? this : collision(collisionHash, replace(entries, index + 1, value));
+                    }
+
+                    added[0] = true;
+                    Object[] newEntries = Arrays.copyOf(entries, entries.length + 2);
+                    newEntries[entries.length] = key;
+                    newEntries[entries.length + 1] = value;
+                    return collision(collisionHash, newEntries);
+                }
+
+                // Different hash, so push this collision node one level down.
+                return new Node(bitpos(collisionHash, shift), new Object[] { null, this }).put(key, value, hash, shift, added);
+            }
+
+            int bit = bitpos(hash, shift);
+            int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+
+            if ((bitmap & bit) == 0) {
+                added[0] = true;
+                Object[] newEntries = new Object[entries.length + 2];
+                System.arraycopy(entries, 0, newEntries, 0, index);
+                newEntries[index] = key;
+                newEntries[index + 1] = value;
+                System.arraycopy(entries, index, newEntries, index + 2, entries.length - index);
+                return new Node(bitmap | bit, newEntries);
+            }
+
+            Object storedKey = entries[index];
+            Object storedValue = entries[index + 1];
+
+            if (storedKey == null) {
+                Node child = (Node) storedValue;
+                Node newChild = child.put(key, value, hash, shift + BITS, added);
+                return newChild == child ? this : new Node(bitmap, replace(entries, index + 1, newChild));
+            }
+
+            if (key.equals(storedKey)) {
+                return storedValue == value ? this : new Node(bitmap, replace(entries, index + 1, value));
+            }
+
+            added[0] = true;
+            Node child = createChild(storedKey, storedValue, key, value, hash, shift + BITS);
+            Object[] newEntries = entries.clone();
+            newEntries[index] = null;
+            newEntries[index + 1] = child;
+            return new Node(bitmap, newEntries);
+        }
+
+        /**
+         * @return this node if the key was absent, null if the node became empty, or the updated node.
+         */
+        @Nullable Node remove(Object key, int hash, int shift) {
+            if (collision) {
+                int index = collisionIndex(key);
+
+                if (index < 0) {
+                    return this;
+                } else if (entries.length == 2) {
+                    return null;
+                }
+
+                return collision(collisionHash, removePair(entries, index));
+            }
+
+            int bit = bitpos(hash, shift);
+
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+
+            int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+            Object storedKey = entries[index];
+
+            if (storedKey == null) {
+                Node child = (Node) entries[index + 1];
+                Node newChild = child.remove(key, hash, shift + BITS);
+
+                if (newChild == child) {
+                    return this;
+                } else if (newChild != null) {
+                    return new Node(bitmap, replace(entries, index + 1, newChild));
+                }
+            } else if (!key.equals(storedKey)) {
+                return this;
+            }
+
+            if (bitmap == bit) {
+                return null;
+            }
+
+            return new Node(bitmap ^ bit, removePair(entries, index));
+        }
+
+        private int collisionIndex(Object key) {
+            for (int i = 0; i < entries.length; i += 2) {
+                if (key.equals(entries[i])) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        private static Node createChild(Object key1, Object value1, Object key2, Object value2, int hash2, int shift) {
+            int hash1 = hash(key1);
+
+            if (hash1 == hash2) {
+                return collision(hash1, new Object[] { key1, value1, key2, value2 });
+            }
+
+            boolean[] ignored = new boolean[1];
+            return new Node(0, NO_ENTRIES).put(key1, value1, hash1, shift, ignored).put(key2, value2, hash2, shift, ignored);
+        }
+
+        private static Object[] replace(Object[] entries, int index, Object value) {
+            Object[] newEntries = entries.clone();
+            newEntries[index] = value;
+            return newEntries;
+        }
+
+        private static Object[] removePair(Object[] entries, int index) {
+            Object[] newEntries = new Object[entries.length - 2];
+            System.arraycopy(entries, 0, newEntries, 0, index);
+            System.arraycopy(entries, index + 2, newEntries, index, entries.length - index - 2);
+            return newEntries;
+        }
+    }
+
+    private static final class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+        private final Object[][] stack = new Object[MAX_DEPTH][];
+        private final int[] positions = new int[MAX_DEPTH];
+        private int depth = 0;
+        private @Nullable Object nextKey;
+        private @Nullable Object nextValue;
+
+        EntryIterator(Node root) {
+            stack[0] = root.entries;
+            advance();
+        }
+
+        private void advance() {
+            nextKey = null;
+
+            while (depth >= 0) {
+                Object[] entries = stack[depth];
+                int position = positions[depth];
+
+                if (position >= entries.length) {
+                    stack[depth--] = null;
+                    continue;
+                }
+
+                positions[depth] = position + 2;
+
+                if (entries[position] == null) {
+                    depth++;
+                    stack[depth] = ((Node) entries[position + 1]).entries;
+                    positions[depth] = 0;
+                } else {
+                    nextKey = entries[position];
+                    nextValue = entries[position + 1];
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextKey != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Map.Entry<K, V> next() {
+            if (nextKey == null) {
+                throw new NoSuchElementException();
+            }
+
+            Map.Entry<K, V> entry = new SimpleImmutableEntry<>((K) nextKey, (V) nextValue);
+            advance();
+            return entry;
+        }
+    }
+}
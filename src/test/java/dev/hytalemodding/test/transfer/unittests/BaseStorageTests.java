@@ -19,24 +19,58 @@
 
 package dev.hytalemodding.test.transfer.unittests;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.BiConsumer;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 import dev.hytalemodding.api.transfer.v1.storage.base.FixedVariantStorage;
 import dev.hytalemodding.api.transfer.v1.storage.base.ResourceAmount;
 import dev.hytalemodding.test.transfer.unittests.utils.*;
 import dev.hytalemodding.test.transfer.unittests.utils.*;
+import org.jetbrains.annotations.Nullable;
 import org.junit.jupiter.api.Test;
 
+import dev.hytalemodding.api.transfer.v1.storage.Distributor;
+import dev.hytalemodding.api.transfer.v1.storage.MoveMemoizer;
 import dev.hytalemodding.api.transfer.v1.storage.Storage;
 import dev.hytalemodding.api.transfer.v1.storage.StorageUtil;
+import dev.hytalemodding.api.transfer.v1.storage.SlottedStorage;
+import dev.hytalemodding.api.transfer.v1.storage.StorageCursor;
 import dev.hytalemodding.api.transfer.v1.storage.StorageView;
+import dev.hytalemodding.api.transfer.v1.storage.TransferNetwork;
+import dev.hytalemodding.api.transfer.v1.storage.TransferPlanCache;
+import dev.hytalemodding.api.transfer.v1.storage.VariantInterner;
+import dev.hytalemodding.api.transfer.v1.transaction.Transaction;
+import dev.hytalemodding.api.transfer.v1.transaction.TransactionContext;
+import dev.hytalemodding.api.transfer.v1.transaction.base.SnapshotParticipant;
+import dev.hytalemodding.api.transfer.v1.storage.base.AggregatedStorage;
+import dev.hytalemodding.api.transfer.v1.storage.base.ArraySlottedStorage;
+import dev.hytalemodding.api.transfer.v1.storage.base.CombinedSlottedStorage;
+import dev.hytalemodding.api.transfer.v1.storage.base.CombinedStorage;
 import dev.hytalemodding.api.transfer.v1.storage.base.FilteringStorage;
+import dev.hytalemodding.api.transfer.v1.storage.base.IndexedSlottedStorage;
+import dev.hytalemodding.api.transfer.v1.storage.base.OffHeapSlottedStorage;
+import dev.hytalemodding.api.transfer.v1.storage.base.PalettedSlottedStorage;
+import dev.hytalemodding.api.transfer.v1.storage.base.RateLimitedStorage;
+import dev.hytalemodding.api.transfer.v1.storage.base.SingleSlotStorage;
 import dev.hytalemodding.api.transfer.v1.storage.base.SingleVariantStorage;
 
 import static dev.hytalemodding.test.transfer.unittests.utils.StringConstants.*;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class BaseStorageTests {
+    private static final long SLOT_CAPACITY = 4 * UNIT_BUCKET;
 
     @Test
     public void testSingleVariantStorage() {
@@ -90,6 +124,61 @@ public class BaseStorageTests {
         assertEquals(StringVariant.blank(), storage.variant);
     }
 
+    @Test
+    public void testSingleVariantStorageSnapshotHooks() {
+        // Subclasses may still save additional state through the snapshot hooks.
+        long[] extra = { 0 };
+        int[] released = { 0 };
+        SingleStringStorage storage = new SingleStringStorage() {
+            @Override
+            protected long getCapacity(StringVariant variant) {
+                return 10 * UNIT_BUCKET;
+            }
+
+            @Override
+            protected Object createSnapshotObject() {
+                return new ResourceAmount<>(variant, extra[0]);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            protected void readSnapshot(Object snapshot, long longSnapshot) {
+                ResourceAmount<StringVariant> state = (ResourceAmount<StringVariant>) snapshot;
+                variant = state.resource();
+                amount = longSnapshot;
+                extra[0] = state.amount();
+            }
+
+            @Override
+            protected void releaseSnapshot(Object snapshot, long longSnapshot) {
+                released[0]++;
+            }
+        };
+        assertInstanceOf(SnapshotParticipant.class, storage);
+
+        try (Transaction transaction = Transaction.openOuter()) {
+            assertEquals(UNIT_BUCKET, storage.insert(LAVA, UNIT_BUCKET, transaction));
+            extra[0] = 7;
+
+            try (Transaction nested = transaction.openNested()) {
+                assertEquals(UNIT_BUCKET, storage.insert(LAVA, UNIT_BUCKET, nested));
+                extra[0] = 8;
+                nested.commit();
+            }
+
+            assertEquals(2 * UNIT_BUCKET, storage.amount);
+        }
+
+        assertEquals(0, storage.amount);
+        assertEquals(StringVariant.blank(), storage.variant);
+        assertEquals(0, extra[0]);
+        assertEquals(2, released[0]);
+
+        TestStorageUtil.insert(storage, LAVA, UNIT_BUCKET);
+        assertEquals(UNIT_BUCKET, storage.amount);
+        assertEquals(3, released[0]);
+    }
+
 	@Test
 	public void testFilteringStorage() {
         SingleVariantStorage<StringVariant> storage = SingleStringStorage.withFixedCapacity(10L * UNIT_BUCKET);
@@ -185,4 +274,1395 @@ public class BaseStorageTests {
         // Extraction from a non-empty storage with the allowed variant should succeed.
         assertEquals(UNIT_BUCKET, TestStorageUtil.extract(storage, hello, UNIT_BUCKET));
     }
+
+    @Test
+    public void testVersions() {
+        SingleVariantStorage<StringVariant> first = SingleStringStorage.withFixedCapacity(10L * UNIT_BUCKET);
+        SingleVariantStorage<StringVariant> second = SingleStringStorage.withFixedCapacity(10L * UNIT_BUCKET);
+        List<SingleVariantStorage<StringVariant>> parts = new ArrayList<>(List.of(first, second));
+        CombinedStorage<StringVariant, SingleVariantStorage<StringVariant>> combined = new CombinedStorage<>(parts);
+        Storage<StringVariant> filtered = FilteringStorage.extractOnlyOf(combined);
+        StringVariant hello = StringVariant.of(StringConstants.HELLO);
+
+        long version = first.getVersion();
+        long combinedVersion = combined.getVersion();
+        long filteredVersion = filtered.getVersion();
+
+        // Querying the version or aborting a change should not change it.
+        assertEquals(version, first.getVersion());
+        assertEquals(combinedVersion, combined.getVersion());
+        assertEquals(filteredVersion, filtered.getVersion());
+        StorageUtil.simulateInsert(first, hello, UNIT_BUCKET, null);
+        assertEquals(version, first.getVersion());
+        assertEquals(combinedVersion, combined.getVersion());
+
+        // Committed changes should change the version of the storage and its wrappers.
+        assertEquals(UNIT_BUCKET, TestStorageUtil.insert(second, hello, UNIT_BUCKET));
+        assertEquals(version, first.getVersion());
+        assertNotEquals(combinedVersion, combined.getVersion());
+        assertNotEquals(filteredVersion, filtered.getVersion());
+
+        // Changing the parts should change the combined version, even if the part versions have the same sum.
+        combinedVersion = combined.getVersion();
+        parts.set(1, SingleStringStorage.withFixedCapacity(UNIT_BUCKET));
+        parts.get(1).incrementVersion();
+        assertNotEquals(combinedVersion, combined.getVersion());
+
+        // Writing the public fields directly should change the version too.
+        version = first.getVersion();
+        combinedVersion = combined.getVersion();
+        first.variant = hello;
+        first.amount = UNIT_BUCKET;
+        assertNotEquals(version, first.getVersion());
+        assertNotEquals(combinedVersion, combined.getVersion());
+        version = first.getVersion();
+        first.amount = 2 * UNIT_BUCKET;
+        assertNotEquals(version, first.getVersion());
+
+        // Explicit invalidation changes the combined version, and no version may be queried during a transaction.
+        combinedVersion = combined.getVersion();
+        combined.invalidateRoutingCache();
+        assertNotEquals(combinedVersion, combined.getVersion());
+
+        try (Transaction transaction = Transaction.openOuter()) {
+            assertThrows(IllegalStateException.class, combined::getVersion);
+            assertThrows(IllegalStateException.class, filtered::getVersion);
+        }
+    }
+
+    @Test
+    public void testIndexedSlottedStorageMatchesPlainSlots() {
+        assertMatchesPlainSlots(64, 4, 7, true, slotCount -> new IndexedSlottedStorage<>(slotCount) {
+            @Override
+            protected StringVariant getBlankVariant() {
+                return StringVariant.blank();
+            }
+
+            @Override
+            protected long getCapacity(int slot, StringVariant variant) {
+                return SLOT_CAPACITY;
+            }
+        }, (indexed, committed) -> { });
+    }
+
+    @Test
+    public void testCombinedSlottedStorageOffsets() {
+        List<SingleSlotStorage<StringVariant>> slots = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            slots.add(SingleStringStorage.withFixedCapacity(UNIT_BUCKET));
+        }
+
+        // Parts of different sizes, including empty parts.
+        List<SlottedStorage<StringVariant>> parts = new ArrayList<>();
+        parts.add(new CombinedSlottedStorage<>(new ArrayList<>(slots.subList(0, 3))));
+        parts.add(new CombinedSlottedStorage<>(new ArrayList<>()));
+        parts.add(slots.get(3));
+        parts.add(new CombinedSlottedStorage<>(new ArrayList<>()));
+        List<SingleSlotStorage<StringVariant>> lastPart = new ArrayList<>(slots.subList(4, 10));
+        parts.add(new CombinedSlottedStorage<>(lastPart));
+        CombinedSlottedStorage<StringVariant, SlottedStorage<StringVariant>> combined = new CombinedSlottedStorage<>(parts);
+
+        assertEquals(10, combined.getSlotCount());
+        assertEquals(slots, combined.getSlots());
+        assertEquals(slots, new ArrayList<>(combined.getSlots()));
+        assertThrows(IndexOutOfBoundsException.class, () -> combined.getSlot(10));
+        assertThrows(IndexOutOfBoundsException.class, () -> combined.getSlot(-1));
+
+        // Replacing a part in place is detected when one of its slots is requested.
+        SingleSlotStorage<StringVariant> extra = SingleStringStorage.withFixedCapacity(UNIT_BUCKET);
+        parts.set(2, new CombinedSlottedStorage<>(List.of(slots.get(3), extra)));
+        assertEquals(slots.get(3), combined.getSlot(3));
+        assertEquals(extra, combined.getSlot(4));
+        assertEquals(slots.get(4), combined.getSlot(5));
+        assertEquals(11, combined.getSlotCount());
+
+        // A part changing its slot count is detected when one of its slots is requested.
+        ((CombinedSlottedStorage<?, ?>) parts.get(0)).parts.remove(0);
+        assertEquals(slots.get(1), combined.getSlot(0));
+        assertEquals(10, combined.getSlotCount());
+        assertEquals(10, combined.getSlots().size());
+        assertEquals(combined.getSlots().size(), new ArrayList<>(combined.getSlots()).size());
+
+        // Otherwise, the count is cached until the offsets are invalidated.
+        lastPart.add(SingleStringStorage.withFixedCapacity(UNIT_BUCKET));
+        assertEquals(10, combined.getSlotCount());
+        combined.invalidateSlotOffsets();
+        assertEquals(11, combined.getSlots().size());
+        assertEquals(slots.get(9), combined.getSlot(9));
+
+        // Removing a part changes the size of the list, which is always detected.
+        parts.remove(0);
+        assertEquals(9, combined.getSlotCount());
+        assertEquals(slots.get(3), combined.getSlot(0));
+    }
+
+    @Test
+    public void testCombinedStorageRouting() {
+        List<SingleSlotStorage<StringVariant>> slots = new ArrayList<>();
+
+        for (int i = 0; i < 12; i++) {
+            slots.add(SingleStringStorage.withFixedCapacity(UNIT_BUCKET));
+        }
+
+        // Both storages share the same parts, so any transfer must move the same amount through either of them.
+        CombinedStorage<StringVariant, SingleSlotStorage<StringVariant>> plain = new CombinedStorage<>(slots);
+        CombinedStorage<StringVariant, SingleSlotStorage<StringVariant>> routed = new CombinedStorage<>(slots, true);
+        StringVariant[] resources = { LAVA, WATER, StringVariant.of(HELLO) };
+        Random random = new Random(11);
+
+        for (int round = 0; round < 500; round++) {
+            StringVariant resource = resources[random.nextInt(resources.length)];
+            long maxAmount = random.nextLong(3 * UNIT_BUCKET);
+            boolean insert = random.nextBoolean();
+            long expected;
+
+            try (Transaction transaction = Transaction.openOuter()) {
+                expected = insert ? plain.insert(resource, maxAmount, transaction) : plain.extract(resource, maxAmount, transaction);
+            }
+
+            try (Transaction transaction = Transaction.openOuter()) {
+                long actual = insert ? routed.insert(resource, maxAmount, transaction) : routed.extract(resource, maxAmount, transaction);
+                assertEquals(expected, actual);
+
+                if (random.nextInt(4) != 0) {
+                    transaction.commit();
+                }
+            }
+        }
+
+        // Capabilities are cached until the parts change.
+        assertTrue(routed.supportsInsertion());
+        routed.parts = new ArrayList<>();
+        assertFalse(routed.supportsInsertion());
+
+        try (Transaction transaction = Transaction.openOuter()) {
+            assertEquals(0, routed.insert(LAVA, UNIT_BUCKET, transaction));
+        }
+
+        // Replacing a part in place, or a part changing its version, is detected as well.
+        SingleStringStorage tank = SingleStringStorage.withFixedCapacity(UNIT_BUCKET);
+        List<Storage<StringVariant>> parts = new ArrayList<>(List.of(FilteringStorage.extractOnlyOf(tank)));
+        CombinedStorage<StringVariant, Storage<StringVariant>> routedParts = new CombinedStorage<>(parts, true);
+        assertFalse(routedParts.supportsInsertion());
+        parts.set(0, tank);
+        assertTrue(routedParts.supportsInsertion());
+
+        boolean[] locked = { false };
+        SingleStringStorage lockable = new SingleStringStorage() {
+            @Override
+            protected long getCapacity(StringVariant variant) {
+                return UNIT_BUCKET;
+            }
+
+            @Override
+            public boolean supportsInsertion() {
+                return !locked[0];
+            }
+        };
+        parts.set(0, lockable);
+        assertTrue(routedParts.supportsInsertion());
+        locked[0] = true;
+        lockable.incrementVersion();
+        assertFalse(routedParts.supportsInsertion());
+    }
+
+    @Test
+    public void testCombinedStorageIteratorOverride() {
+        // A machine that only exposes its output part, while insertion goes to its input part.
+        SingleStringStorage input = SingleStringStorage.withFixedCapacity(100);
+        SingleStringStorage output = SingleStringStorage.withFixedCapacity(100);
+        CombinedStorage<StringVariant, SingleStringStorage> machine = new CombinedStorage<>(List.of(input, output)) {
+            @Override
+            public Iterator<StorageView<StringVariant>> iterator() {
+                return output.iterator();
+            }
+        };
+        TestStorageUtil.insert(input, LAVA, 50);
+        TestStorageUtil.insert(output, LAVA, 7);
+
+        List<StorageView<StringVariant>> views = new ArrayList<>();
+        machine.nonEmptyIterator().forEachRemaining(views::add);
+        assertEquals(List.of(7L), views.stream().map(StorageView::getAmount).toList());
+        assertCursorMatches(machine, null);
+        assertEquals(List.of(7L), machine.viewStream(false).map(StorageView::getAmount).toList());
+
+        // Filtering storages that hide views must be respected by cursors as well.
+        Storage<StringVariant> filtered = new FilteringStorage<>(machine) {
+            @Override
+            public Iterator<StorageView<StringVariant>> iterator() {
+                return Collections.emptyIterator();
+            }
+        };
+        assertCursorMatches(filtered, null);
+        SingleStringStorage target = SingleStringStorage.withFixedCapacity(100);
+        assertEquals(0, StorageUtil.move(filtered, target, variant -> true, 100, null));
+
+        // Moving out of the machine only drains the output part.
+        assertEquals(7, StorageUtil.move(machine, target, variant -> true, 100, null));
+        assertEquals(50, input.getAmount());
+    }
+
+    @Test
+    public void testVariantInterner() {
+        VariantInterner<StringVariant> interner = new VariantInterner<>();
+        List<StringVariant> canonical = new ArrayList<>();
+
+        // Enough variants to resize the table, with equal but distinct instances.
+        for (int i = 0; i < 200; i++) {
+            StringVariant variant = StringVariant.of("variant" + i);
+            assertSame(variant, interner.intern(variant));
+            assertSame(variant, interner.intern(StringVariant.of("variant" + i)));
+            assertEquals(i, interner.getId(StringVariant.of("variant" + i)));
+            canonical.add(variant);
+        }
+
+        assertEquals(200, interner.size());
+
+        for (int i = 0; i < canonical.size(); i++) {
+            assertSame(canonical.get(i), interner.byId(i));
+        }
+
+        assertNull(interner.byId(-1));
+        assertNull(interner.byId(200));
+
+        // Interned variants take the reference fast path, and equal variants still match.
+        SingleStringStorage storage = SingleStringStorage.withFixedCapacity(UNIT_BUCKET);
+        StringVariant first = interner.intern(StringVariant.of(HELLO));
+        assertEquals(UNIT_BUCKET / 2, TestStorageUtil.insert(storage, first, UNIT_BUCKET / 2));
+        assertEquals(UNIT_BUCKET / 2, TestStorageUtil.insert(storage, interner.intern(StringVariant.of(HELLO)), UNIT_BUCKET));
+        assertEquals(UNIT_BUCKET, TestStorageUtil.extract(storage, StringVariant.of(HELLO), UNIT_BUCKET));
+    }
+
+    @Test
+    public void testAggregatedStorageMatchesMap() {
+        AggregatedStorage<StringVariant> storage = new AggregatedStorage<>(40 * UNIT_BUCKET) {
+            @Override
+            protected StringVariant getBlankVariant() {
+                return StringVariant.blank();
+            }
+
+            @Override
+            protected long getCapacity(StringVariant variant) {
+                return 4 * UNIT_BUCKET;
+            }
+        };
+        Map<StringVariant, Long> expected = new HashMap<>();
+        StringVariant[] variants = new StringVariant[50];
+
+        for (int i = 0; i < variants.length; i++) {
+            variants[i] = StringVariant.of("variant" + i);
+        }
+
+        Random random = new Random(3);
+
+        for (int round = 0; round < 300; round++) {
+            Map<StringVariant, Long> before = new HashMap<>(expected);
+
+            try (Transaction outer = Transaction.openOuter()) {
+                for (int depth = 0; depth < 3; depth++) {
+                    try (Transaction nested = outer.openNested()) {
+                        Map<StringVariant, Long> nestedBefore = new HashMap<>(expected);
+
+                        for (int op = 0; op < 10; op++) {
+                            StringVariant variant = variants[random.nextInt(variants.length)];
+                            long current = expected.getOrDefault(variant, 0L);
+                            long total = expected.values().stream().mapToLong(Long::longValue).sum();
+                            long maxAmount = random.nextLong(2 * UNIT_BUCKET);
+
+                            if (random.nextBoolean()) {
+                                long inserted = Math.min(maxAmount, Math.min(4 * UNIT_BUCKET - current, 40 * UNIT_BUCKET - total));
+                                assertEquals(inserted, storage.insert(variant, maxAmount, nested));
+                                expected.put(variant, current + inserted);
+                            } else {
+                                long extracted = Math.min(maxAmount, current);
+                                assertEquals(extracted, storage.extract(variant, maxAmount, nested));
+                                expected.put(variant, current - extracted);
+                            }
+                        }
+
+                        if (random.nextInt(3) == 0) {
+                            expected = nestedBefore;
+                        } else {
+                            nested.commit();
+                        }
+                    }
+                }
+
+                if (random.nextInt(4) == 0) {
+                    expected = before;
+                } else {
+                    outer.commit();
+                }
+            }
+
+            // Compare amounts and iteration with the expected contents.
+            expected.values().removeIf(amount -> amount == 0);
+            Map<StringVariant, Long> iterated = new HashMap<>();
+
+            for (StorageView<StringVariant> view : storage) {
+                assertNull(iterated.put(view.getResource(), view.getAmount()));
+            }
+
+            assertEquals(expected, iterated);
+            assertEquals(expected.values().stream().mapToLong(Long::longValue).sum(), storage.getTotalAmount());
+
+            for (StringVariant variant : variants) {
+                assertEquals(expected.getOrDefault(variant, 0L), storage.getAmount(variant));
+            }
+        }
+
+        // Views stay valid while the storage is modified during iteration.
+        long extracted = 0;
+
+        for (StorageView<StringVariant> view : storage) {
+            try (Transaction transaction = Transaction.openOuter()) {
+                extracted += view.extract(view.getResource(), Long.MAX_VALUE, transaction);
+                transaction.commit();
+            }
+        }
+
+        assertEquals(expected.values().stream().mapToLong(Long::longValue).sum(), extracted);
+        assertEquals(0, storage.getTotalAmount());
+        assertFalse(storage.iterator().hasNext());
+    }
+
+    @Test
+    public void testArraySlottedStorageMatchesPlainSlots() {
+        int slotCount = 32;
+        StringVariant[] variantArray = new StringVariant[slotCount];
+        long[] amountArray = new long[slotCount];
+        Arrays.fill(variantArray, StringVariant.blank());
+        int[] finalCommits = new int[slotCount];
+        ArraySlottedStorage<StringVariant> array = assertMatchesPlainSlots(slotCount, 4, 5, false, count -> new ArraySlottedStorage<>(variantArray, amountArray) {
+            @Override
+            protected StringVariant getBlankVariant() {
+                return StringVariant.blank();
+            }
+
+            @Override
+            protected long getCapacity(int slot, StringVariant variant) {
+                return SLOT_CAPACITY;
+            }
+
+            @Override
+            protected void onFinalCommit(int slot) {
+                finalCommits[slot]++;
+            }
+        }, (storage, committed) -> {
+            // The storage writes through to the wrapped arrays.
+            for (int i = 0; i < slotCount; i++) {
+                assertEquals(storage.getSlot(i).getResource(), variantArray[i]);
+                assertEquals(storage.getSlot(i).getAmount(), amountArray[i]);
+            }
+        });
+
+        // Each modified slot is notified once per outer transaction.
+        array.set(1, StringVariant.blank(), 0);
+        array.set(2, StringVariant.blank(), 0);
+        assertThrows(IllegalArgumentException.class, () -> array.set(0, StringVariant.blank(), 5));
+        Arrays.fill(finalCommits, 0);
+
+        try (Transaction transaction = Transaction.openOuter()) {
+            assertEquals(UNIT_BUCKET, array.insert(1, LAVA, UNIT_BUCKET, transaction));
+            assertEquals(UNIT_BUCKET, array.insert(1, LAVA, UNIT_BUCKET, transaction));
+            assertEquals(UNIT_BUCKET, array.insert(2, LAVA, UNIT_BUCKET, transaction));
+            assertThrows(IllegalStateException.class, () -> array.set(0, LAVA, 1));
+            transaction.commit();
+        }
+
+        assertArrayEquals(new int[] { 0, 1, 1 }, Arrays.copyOf(finalCommits, 3));
+        assertEquals(2 * UNIT_BUCKET, amountArray[1]);
+    }
+
+    @Test
+    public void testOffHeapSlottedStorageMatchesPlainSlots() {
+        int slotCount = 32;
+        OffHeapSlottedStorage<StringVariant> offHeap = assertMatchesPlainSlots(slotCount, 8, 13, false, count -> new OffHeapSlottedStorage<>(count) {
+            @Override
+            protected StringVariant getBlankVariant() {
+                return StringVariant.blank();
+            }
+
+            @Override
+            protected long getCapacity(int slot, StringVariant variant) {
+                return SLOT_CAPACITY;
+            }
+        }, (storage, committed) -> { });
+
+        // Views are created on demand but compare equal, so slot lists can be compared.
+        assertEquals(offHeap.getSlot(3), offHeap.getSlot(3));
+        assertNotEquals(offHeap.getSlot(3), offHeap.getSlot(4));
+        assertEquals(offHeap.getSlots(), new ArrayList<>(offHeap.getSlots()));
+
+        // Ids of variants that are no longer stored are reused, and stored variants keep their slots.
+        for (int i = 0; i < slotCount; i++) {
+            offHeap.set(i, StringVariant.blank(), 0);
+        }
+
+        for (int round = 0; round < 100; round++) {
+            StringVariant variant = StringVariant.of("temporary" + round);
+            offHeap.set(round % slotCount, variant, 1);
+            assertEquals(variant, offHeap.getResource(round % slotCount));
+        }
+
+        assertTrue(offHeap.toString().contains(slotCount + " variant ids"));
+        assertThrows(IllegalArgumentException.class, () -> offHeap.set(0, StringVariant.blank(), 5));
+        offHeap.close();
+        assertThrows(IllegalStateException.class, offHeap::close);
+        assertThrows(IndexOutOfBoundsException.class, () -> offHeap.getAmount(0));
+    }
+
+    @Test
+    public void testPalettedSlottedStorageMatchesPlainSlots() {
+        int slotCount = 100;
+        // Palette size, bits per slot and round count before the current round.
+        int[] last = new int[3];
+        PalettedSlottedStorage<StringVariant> paletted = assertMatchesPlainSlots(slotCount, 6, 17, false, count -> {
+            PalettedSlottedStorage<StringVariant> storage = new PalettedSlottedStorage<>(count) {
+                @Override
+                protected StringVariant getBlankVariant() {
+                    return StringVariant.blank();
+                }
+
+                @Override
+                protected long getCapacity(int slot, StringVariant variant) {
+                    return SLOT_CAPACITY;
+                }
+            };
+            last[0] = storage.getPaletteSize();
+            last[1] = storage.getBitsPerSlot();
+            return storage;
+        }, (storage, committed) -> {
+            if (!committed) {
+                // Aborting restores the palette and the widths.
+                assertEquals(last[0], storage.getPaletteSize());
+                assertEquals(last[1], storage.getBitsPerSlot());
+            }
+
+            if (++last[2] % 50 == 0) {
+                storage.compact();
+            }
+
+            last[0] = storage.getPaletteSize();
+            last[1] = storage.getBitsPerSlot();
+        });
+
+        // Emptying the storage and compacting it shrinks it back to its minimal size.
+        for (int i = 0; i < slotCount; i++) {
+            paletted.set(i, StringVariant.blank(), 0);
+        }
+
+        paletted.compact();
+        assertEquals(1, paletted.getPaletteSize());
+        assertEquals(2, paletted.getBitsPerSlot());
+        assertThrows(IllegalArgumentException.class, () -> paletted.set(0, StringVariant.blank(), 5));
+        assertEquals(0, paletted.getSlot(0).getAmount());
+    }
+
+    @Test
+    public void testStorageCursorMatchesNonEmptyIterator() {
+        int slotCount = 40;
+        ArraySlottedStorage<StringVariant> array = new ArraySlottedStorage<>(slotCount) {
+            @Override
+            protected StringVariant getBlankVariant() {
+                return StringVariant.blank();
+            }
+
+            @Override
+            protected long getCapacity(int slot, StringVariant variant) {
+                return 2 * UNIT_BUCKET;
+            }
+        };
+        IndexedSlottedStorage<StringVariant> indexed = new IndexedSlottedStorage<>(slotCount) {
+            @Override
+            protected StringVariant getBlankVariant() {
+                return StringVariant.blank();
+            }
+
+            @Override
+            protected long getCapacity(int slot, StringVariant variant) {
+                return 2 * UNIT_BUCKET;
+            }
+        };
+        OffHeapSlottedStorage<StringVariant> offHeap = new OffHeapSlottedStorage<>(slotCount) {
+            @Override
+            protected StringVariant getBlankVariant() {
+                return StringVariant.blank();
+            }
+
+            @Override
+            protected long getCapacity(int slot, StringVariant variant) {
+                return 2 * UNIT_BUCKET;
+            }
+        };
+        PalettedSlottedStorage<StringVariant> paletted = new PalettedSlottedStorage<>(slotCount) {
+            @Override
+            protected StringVariant getBlankVariant() {
+                return StringVariant.blank();
+            }
+
+            @Override
+            protected long getCapacity(int slot, StringVariant variant) {
+                return 2 * UNIT_BUCKET;
+            }
+        };
+        AggregatedStorage<StringVariant> aggregated = new AggregatedStorage<>(10 * UNIT_BUCKET) {
+            @Override
+            protected StringVariant getBlankVariant() {
+                return StringVariant.blank();
+            }
+
+            @Override
+            protected long getCapacity(StringVariant variant) {
+                return 4 * UNIT_BUCKET;
+            }
+        };
+        List<SingleSlotStorage<StringVariant>> slots = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            slots.add(SingleStringStorage.withFixedCapacity(2 * UNIT_BUCKET));
+        }
+
+        // Single slot parts, a slotted part and a filtered part, so that every kind of combined part is visited.
+        List<Storage<StringVariant>> parts = new ArrayList<>(slots);
+        parts.add(array);
+        parts.add(FilteringStorage.readOnlyOf(indexed));
+        CombinedStorage<StringVariant, Storage<StringVariant>> combined = new CombinedStorage<>(parts);
+        List<Storage<StringVariant>> storages = List.of(array, indexed, offHeap, paletted, aggregated, slots.get(0), FilteringStorage.readOnlyOf(array), combined);
+
+        Random random = new Random(23);
+
+        try (Transaction transaction = Transaction.openOuter()) {
+            for (int i = 0; i < 60; i++) {
+                StringVariant variant = StringVariant.of("variant" + random.nextInt(5));
+                array.getSlot(random.nextInt(slotCount)).insert(variant, UNIT_BUCKET, transaction);
+                indexed.getSlot(random.nextInt(slotCount)).insert(variant, UNIT_BUCKET, transaction);
+                offHeap.insert(random.nextInt(slotCount), variant, UNIT_BUCKET, transaction);
+                paletted.insert(random.nextInt(slotCount), variant, UNIT_BUCKET, transaction);
+                aggregated.insert(variant, UNIT_BUCKET / 2, transaction);
+                slots.get(random.nextInt(slots.size())).insert(variant, UNIT_BUCKET, transaction);
+            }
+
+            for (Storage<StringVariant> storage : storages) {
+                assertCursorMatches(storage, transaction);
+            }
+
+            transaction.commit();
+        }
+
+        // Extractions through the cursor are visible to it, and checked by filtering storages.
+        try (Transaction transaction = Transaction.openOuter()) {
+            try (StorageCursor<StringVariant> cursor = FilteringStorage.readOnlyOf(array).cursor()) {
+                assertTrue(cursor.advance());
+                assertEquals(0, cursor.extract(cursor.getResource(), 1, transaction));
+            }
+
+            try (StorageCursor<StringVariant> cursor = array.cursor()) {
+                assertTrue(cursor.advance());
+                long amount = cursor.getAmount();
+                assertEquals(amount, cursor.extract(cursor.getResource(), amount, transaction));
+                assertEquals(0, cursor.getAmount());
+                assertTrue(cursor.getResource().isBlank());
+            }
+        }
+
+        // Closed cursors are reused, and cursors that are still open are not handed out again.
+        StorageCursor<StringVariant> first = array.cursor();
+        StorageCursor<StringVariant> second = array.cursor();
+        assertNotSame(first, second);
+        second.close();
+        first.close();
+        assertSame(first, array.cursor());
+        assertThrows(IllegalStateException.class, first::getResource);
+
+        // Single slot storages cache their cursor as well.
+        SingleSlotStorage<StringVariant> slot = slots.get(0);
+        StorageCursor<StringVariant> slotCursor = slot.cursor();
+        StorageCursor<StringVariant> otherSlotCursor = slot.cursor();
+        assertNotSame(slotCursor, otherSlotCursor);
+        otherSlotCursor.close();
+        slotCursor.close();
+        assertSame(slotCursor, slot.cursor());
+        offHeap.close();
+    }
+
+    @Test
+    public void testViewStreamMatchesIteration() {
+        List<SlottedStorage<StringVariant>> parts = new ArrayList<>();
+        Random random = new Random(29);
+
+        for (int i = 0; i < 50; i++) {
+            if (i % 5 == 0) {
+                parts.add(SingleStringStorage.withFixedCapacity(UNIT_BUCKET));
+            } else {
+                parts.add(new ArraySlottedStorage<>(random.nextInt(100)) {
+                    @Override
+                    protected StringVariant getBlankVariant() {
+                        return StringVariant.blank();
+                    }
+
+                    @Override
+                    protected long getCapacity(int slot, StringVariant variant) {
+                        return UNIT_BUCKET;
+                    }
+                });
+            }
+        }
+
+        CombinedSlottedStorage<StringVariant, SlottedStorage<StringVariant>> combined = new CombinedSlottedStorage<>(parts);
+
+        try (Transaction transaction = Transaction.openOuter()) {
+            for (int i = 0; i < 1000; i++) {
+                int slot = random.nextInt(combined.getSlotCount());
+                combined.getSlot(slot).insert(StringVariant.of("variant" + random.nextInt(4)), random.nextInt(100) + 1, transaction);
+            }
+
+            assertThrows(IllegalStateException.class, () -> combined.viewStream(false));
+            transaction.commit();
+        }
+
+        Map<StringVariant, Long> expected = new HashMap<>();
+        int nonEmpty = 0;
+
+        for (StorageView<StringVariant> view : combined.nonEmptyViews()) {
+            expected.merge(view.getResource(), view.getAmount(), Long::sum);
+            nonEmpty++;
+        }
+
+        assertEquals(combined.getSlotCount(), combined.spliterator().getExactSizeIfKnown());
+        assertEquals(parts.get(1).getSlotCount(), parts.get(1).spliterator().getExactSizeIfKnown());
+
+        for (boolean parallel : new boolean[] { false, true }) {
+            Map<StringVariant, Long> actual = combined.viewStream(parallel)
+                    .collect(Collectors.groupingBy(StorageView::getResource, Collectors.summingLong(StorageView::getAmount)));
+            assertEquals(expected, actual);
+            assertEquals(nonEmpty, combined.viewStream(parallel).count());
+        }
+
+        // Every slot is visited exactly once, however the spliterator is split.
+        assertEquals(combined.getSlotCount(), StreamSupport.stream(combined.spliterator(), true).distinct().count());
+    }
+
+    @Test
+    public void testProbesMatchSimulation() {
+        List<SingleSlotStorage<StringVariant>> slots = new ArrayList<>();
+
+        for (int i = 0; i < 8; i++) {
+            slots.add(SingleStringStorage.withFixedCapacity(2 * UNIT_BUCKET));
+        }
+
+        Storage<StringVariant> noHello = new FilteringStorage<>(slots.get(0)) {
+            @Override
+            protected boolean canInsert(StringVariant resource) {
+                return !resource.equals(LAVA);
+            }
+
+            @Override
+            protected boolean canExtract(StringVariant resource) {
+                return !resource.equals(WATER);
+            }
+        };
+        List<Storage<StringVariant>> storages = List.of(
+                slots.get(1),
+                noHello,
+                new CombinedStorage<>(slots.subList(2, 8)),
+                new CombinedStorage<>(slots.subList(2, 8), true));
+        StringVariant[] variants = { LAVA, WATER, STEAM };
+        Random random = new Random(31);
+
+        try (Transaction transaction = Transaction.openOuter()) {
+            for (int i = 0; i < 500; i++) {
+                Storage<StringVariant> storage = storages.get(random.nextInt(storages.size()));
+                StringVariant variant = variants[random.nextInt(variants.length)];
+                long amount = random.nextLong(3 * UNIT_BUCKET);
+
+                long probedInsert = storage.probeInsert(variant, amount);
+                long probedExtract = storage.probeExtract(variant, amount);
+                assertNotEquals(Storage.UNKNOWN_AMOUNT, probedInsert);
+                assertNotEquals(Storage.UNKNOWN_AMOUNT, probedExtract);
+
+                try (Transaction nested = transaction.openNested()) {
+                    assertEquals(probedInsert, storage.insert(variant, amount, nested));
+                }
+
+                try (Transaction nested = transaction.openNested()) {
+                    assertEquals(probedExtract, storage.extract(variant, amount, nested));
+                }
+
+                // Move the state forward so that the next probes see uncommitted changes.
+                if (random.nextBoolean()) {
+                    storage.insert(variant, amount, transaction);
+                } else {
+                    storage.extract(variant, amount, transaction);
+                }
+            }
+        }
+
+        // A part that cannot answer makes the combined storage unable to answer.
+        AggregatedStorage<StringVariant> aggregated = new AggregatedStorage<>(UNIT_BUCKET) {
+            @Override
+            protected StringVariant getBlankVariant() {
+                return StringVariant.blank();
+            }
+
+            @Override
+            protected long getCapacity(StringVariant variant) {
+                return UNIT_BUCKET;
+            }
+        };
+        CombinedStorage<StringVariant, Storage<StringVariant>> mixed = new CombinedStorage<>(List.of(slots.get(1), aggregated));
+        assertEquals(Storage.UNKNOWN_AMOUNT, mixed.probeInsert(LAVA, 10 * UNIT_BUCKET));
+        assertEquals(UNIT_BUCKET, StorageUtil.simulateInsert(aggregated, LAVA, 10 * UNIT_BUCKET, null));
+    }
+
+    @Test
+    public void testProbesRespectOverrides() {
+        // Only overrides extract, so its probes cannot know about the cap.
+        SingleStringStorage capped = new SingleStringStorage() {
+            @Override
+            protected long getCapacity(StringVariant variant) {
+                return UNIT_BUCKET;
+            }
+
+            @Override
+            public long extract(StringVariant extractedVariant, long maxAmount, TransactionContext transaction) {
+                return super.extract(extractedVariant, Math.min(maxAmount, 10), transaction);
+            }
+        };
+        TestStorageUtil.insert(capped, LAVA, 25);
+        assertEquals(Storage.UNKNOWN_AMOUNT, capped.probeExtract(LAVA, 100));
+        assertEquals(UNIT_BUCKET - 25, capped.probeInsert(LAVA, UNIT_BUCKET));
+
+        SingleStringStorage target = SingleStringStorage.withFixedCapacity(15);
+        assertEquals(10, StorageUtil.move(capped, target, variant -> true, 100, null));
+        assertEquals(15, capped.getAmount());
+        assertEquals(10, target.getAmount());
+
+        // The slots of an indexed storage override insert and extract without changing the amounts, and keep exact probes.
+        IndexedSlottedStorage<StringVariant> indexed = new IndexedSlottedStorage<>(2) {
+            @Override
+            protected StringVariant getBlankVariant() {
+                return StringVariant.blank();
+            }
+
+            @Override
+            protected long getCapacity(int slot, StringVariant variant) {
+                return UNIT_BUCKET;
+            }
+        };
+        TestStorageUtil.insert(indexed, LAVA, 25);
+        assertEquals(UNIT_BUCKET - 25, indexed.getSlot(0).probeInsert(LAVA, UNIT_BUCKET));
+        assertEquals(25, indexed.getSlot(0).probeExtract(LAVA, UNIT_BUCKET));
+    }
+
+    @Test
+    public void testMoveRollsBackMismatchedSteps() {
+        // Only extracts multiples of ten, so it can give back less than the target accepted.
+        SingleStringStorage tens = new SingleStringStorage() {
+            @Override
+            protected long getCapacity(StringVariant variant) {
+                return UNIT_BUCKET;
+            }
+
+            @Override
+            public long extract(StringVariant extractedVariant, long maxAmount, TransactionContext transaction) {
+                return super.extract(extractedVariant, maxAmount - maxAmount % 10, transaction);
+            }
+
+            @Override
+            public long probeExtract(StringVariant resource, long maxAmount) {
+                return super.probeExtract(resource, maxAmount - maxAmount % 10);
+            }
+        };
+        SingleStringStorage lava = SingleStringStorage.withFixedCapacity(UNIT_BUCKET);
+        SingleStringStorage water = SingleStringStorage.withFixedCapacity(UNIT_BUCKET);
+        TestStorageUtil.insert(tens, LAVA, 25);
+        TestStorageUtil.insert(lava, LAVA, 30);
+        TestStorageUtil.insert(water, WATER, 5);
+        Storage<StringVariant> source = new CombinedStorage<>(List.of(tens, lava, water));
+        SingleStringStorage target = SingleStringStorage.withFixedCapacity(15);
+
+        // The first step is rolled back on its own: the target accepts 15 but only 10 can be extracted.
+        assertEquals(15, StorageUtil.move(source, target, variant -> true, 100, null));
+        assertEquals(25, tens.getAmount());
+        assertEquals(15, lava.getAmount());
+        assertEquals(5, water.getAmount());
+        assertEquals(15, target.getAmount());
+
+        // A storage that only overrides extract, here to give at most ten per call: its probe is unknown, so each step is simulated.
+        SingleStringStorage capped = new SingleStringStorage() {
+            @Override
+            protected long getCapacity(StringVariant variant) {
+                return UNIT_BUCKET;
+            }
+
+            @Override
+            public long extract(StringVariant extractedVariant, long maxAmount, TransactionContext transaction) {
+                return super.extract(extractedVariant, Math.min(maxAmount, 10), transaction);
+            }
+        };
+        SingleStringStorage moreLava = SingleStringStorage.withFixedCapacity(UNIT_BUCKET);
+        TestStorageUtil.insert(capped, LAVA, 25);
+        TestStorageUtil.insert(moreLava, LAVA, 8);
+        SingleStringStorage smallTarget = SingleStringStorage.withFixedCapacity(15);
+
+        assertEquals(15, StorageUtil.move(new CombinedStorage<>(List.of(capped, moreLava)), smallTarget, variant -> true, 100, null));
+        assertEquals(15, capped.getAmount());
+        assertEquals(3, moreLava.getAmount());
+        assertEquals(15, smallTarget.getAmount());
+
+        // Without mismatches, every step is applied and the amounts are limited by maxAmount.
+        List<SingleSlotStorage<StringVariant>> targetSlots = List.of(SingleStringStorage.withFixedCapacity(10), SingleStringStorage.withFixedCapacity(10));
+        Storage<StringVariant> targets = new CombinedStorage<>(targetSlots);
+
+        try (Transaction transaction = Transaction.openOuter()) {
+            assertEquals(12, StorageUtil.move(new CombinedStorage<>(List.of(lava, water)), targets, variant -> true, 12, transaction));
+            assertEquals(3, lava.getAmount());
+            assertEquals(5, water.getAmount());
+            assertEquals(2, targetSlots.get(1).getAmount());
+        }
+
+        assertEquals(15, lava.getAmount());
+        assertEquals(5, water.getAmount());
+        assertTrue(targetSlots.get(0).isResourceBlank());
+    }
+
+    @Test
+    public void testMoveMemoizer() {
+        MoveMemoizer memoizer = new MoveMemoizer(4);
+        SingleStringStorage source = SingleStringStorage.withFixedCapacity(2 * UNIT_BUCKET);
+        SingleStringStorage target = SingleStringStorage.withFixedCapacity(UNIT_BUCKET);
+        Predicate<StringVariant> filter = variant -> true;
+
+        // An empty source moves nothing, and the attempt is skipped until the source changes.
+        assertEquals(0, memoizer.move(source, target, filter, UNIT_BUCKET, null));
+        assertEquals(0, memoizer.move(source, target, filter, UNIT_BUCKET, null));
+        assertEquals(1, memoizer.getHits());
+        assertEquals(1, memoizer.getMisses());
+
+        // Another filter is another attempt.
+        assertEquals(0, memoizer.move(source, target, variant -> true, UNIT_BUCKET, null));
+        assertEquals(2, memoizer.getMisses());
+
+        TestStorageUtil.insert(source, LAVA, 2 * UNIT_BUCKET);
+        assertEquals(UNIT_BUCKET, memoizer.move(source, target, filter, UNIT_BUCKET, null));
+        assertEquals(1, memoizer.getHits());
+
+        // The target is now full.
+        assertEquals(0, memoizer.move(source, target, filter, UNIT_BUCKET, null));
+        assertEquals(0, memoizer.move(source, target, filter, UNIT_BUCKET, null));
+        assertEquals(2, memoizer.getHits());
+
+        // Moves in a transaction are never skipped, and an aborted change does not change the versions.
+        try (Transaction transaction = Transaction.openOuter()) {
+            assertEquals(UNIT_BUCKET, TestStorageUtil.extract(target, LAVA, UNIT_BUCKET, transaction));
+            assertEquals(UNIT_BUCKET, memoizer.move(source, target, filter, UNIT_BUCKET, transaction));
+        }
+
+        assertEquals(0, memoizer.move(source, target, filter, UNIT_BUCKET, null));
+        assertEquals(3, memoizer.getHits());
+        assertEquals(5, memoizer.getMisses());
+
+        TestStorageUtil.extract(target, LAVA, UNIT_BUCKET);
+        assertEquals(UNIT_BUCKET, memoizer.move(source, target, filter, UNIT_BUCKET, null));
+        assertEquals(UNIT_BUCKET, target.getAmount());
+        assertEquals(6, memoizer.getMisses());
+    }
+
+    @Test
+    public void testTransferPlanCacheMatchesMove() {
+        List<SlottedStorage<StringVariant>> cached = new ArrayList<>();
+        List<SlottedStorage<StringVariant>> plain = new ArrayList<>();
+
+        for (int i = 0; i < 2; i++) {
+            List<SingleSlotStorage<StringVariant>> cachedSlots = new ArrayList<>();
+            List<SingleSlotStorage<StringVariant>> plainSlots = new ArrayList<>();
+
+            for (int j = 0; j < 4; j++) {
+                cachedSlots.add(SingleStringStorage.withFixedCapacity(5 * UNIT_BUCKET));
+                plainSlots.add(SingleStringStorage.withFixedCapacity(5 * UNIT_BUCKET));
+            }
+
+            cached.add(new CombinedSlottedStorage<>(cachedSlots));
+            plain.add(new CombinedSlottedStorage<>(plainSlots));
+        }
+
+        Predicate<StringVariant> noSteam = variant -> !variant.equals(STEAM);
+        TransferPlanCache<StringVariant> cache = new TransferPlanCache<>(cached.get(0), cached.get(1), noSteam, UNIT_BUCKET);
+        StringVariant[] variants = { LAVA, WATER, STEAM };
+        Random random = new Random(17);
+
+        for (int tick = 0; tick < 2000; tick++) {
+            // Occasionally change one of the storages from the outside.
+            if (random.nextInt(8) == 0) {
+                int storage = random.nextInt(2);
+                int slot = random.nextInt(4);
+                StringVariant variant = variants[random.nextInt(variants.length)];
+                long amount = random.nextLong(3 * UNIT_BUCKET);
+
+                if (random.nextBoolean()) {
+                    assertEquals(TestStorageUtil.insert(plain.get(storage).getSlot(slot), variant, amount), TestStorageUtil.insert(cached.get(storage).getSlot(slot), variant, amount));
+                } else {
+                    assertEquals(TestStorageUtil.extract(plain.get(storage).getSlot(slot), variant, amount), TestStorageUtil.extract(cached.get(storage).getSlot(slot), variant, amount));
+                }
+            }
+
+            assertEquals(StorageUtil.move(plain.get(0), plain.get(1), noSteam, UNIT_BUCKET, null), cache.move(null));
+
+            for (int storage = 0; storage < 2; storage++) {
+                for (int slot = 0; slot < 4; slot++) {
+                    assertEquals(plain.get(storage).getSlot(slot).getResource(), cached.get(storage).getSlot(slot).getResource());
+                    assertEquals(plain.get(storage).getSlot(slot).getAmount(), cached.get(storage).getSlot(slot).getAmount());
+                }
+            }
+        }
+
+        assertTrue(cache.getHits() > 0);
+        assertTrue(cache.getMisses() > 0);
+    }
+
+    @Test
+    public void testDistributorModes() {
+        SingleStringStorage source = SingleStringStorage.withFixedCapacity(100);
+        TestStorageUtil.insert(source, LAVA, 100);
+
+        // Round-robin: the small target is filled, the rest is split evenly and the extra unit rotates.
+        List<SingleStringStorage> targets = List.of(SingleStringStorage.withFixedCapacity(1), SingleStringStorage.withFixedCapacity(10), SingleStringStorage.withFixedCapacity(10));
+        Distributor<StringVariant> roundRobin = new Distributor<>(targets, Distributor.Mode.ROUND_ROBIN);
+        assertEquals(6, roundRobin.distribute(source, variant -> true, 6, null));
+        assertArrayEquals(new long[] { 1, 3, 2 }, amounts(targets));
+        assertEquals(3, roundRobin.distribute(source, variant -> true, 3, null));
+        assertArrayEquals(new long[] { 1, 4, 4 }, amounts(targets));
+        assertEquals(12, roundRobin.distribute(source, variant -> true, 100, null));
+        assertArrayEquals(new long[] { 1, 10, 10 }, amounts(targets));
+
+        // Proportional: the amount follows the space of each target, and nothing is moved into a target that rejects it.
+        targets = List.of(SingleStringStorage.withFixedCapacity(10), SingleStringStorage.withFixedCapacity(30), SingleStringStorage.withFixedCapacity(30));
+        TestStorageUtil.insert(targets.get(2), WATER, 1);
+        Distributor<StringVariant> proportional = new Distributor<>(targets, Distributor.Mode.PROPORTIONAL);
+        assertEquals(20, proportional.distribute(source, variant -> true, 20, null));
+        assertArrayEquals(new long[] { 5, 15, 1 }, amounts(targets));
+        assertEquals(20, proportional.distribute(source, variant -> true, 100, null));
+        assertArrayEquals(new long[] { 10, 30, 1 }, amounts(targets));
+
+        // Priority: higher priorities first, then the order of the targets.
+        targets = List.of(SingleStringStorage.withFixedCapacity(10), SingleStringStorage.withFixedCapacity(10), SingleStringStorage.withFixedCapacity(10));
+        Distributor<StringVariant> priority = new Distributor<>(targets, Distributor.Mode.PRIORITY);
+        priority.setPriority(2, 5);
+        assertEquals(15, priority.distribute(source, variant -> true, 15, null));
+        assertArrayEquals(new long[] { 5, 0, 10 }, amounts(targets));
+
+        // Everything is part of the passed transaction.
+        try (Transaction transaction = Transaction.openOuter()) {
+            assertEquals(15, priority.distribute(source, variant -> true, 100, transaction));
+            assertEquals(9, source.getAmount());
+        }
+
+        assertEquals(24, source.getAmount());
+        assertArrayEquals(new long[] { 5, 0, 10 }, amounts(targets));
+    }
+
+    @Test
+    public void testTransferNetworkFindsMaximumFlow() {
+        Random random = new Random(23);
+
+        for (int round = 0; round < 20; round++) {
+            TransferNetwork<StringVariant> network = new TransferNetwork<>();
+            int sourceCount = 1 + random.nextInt(3);
+            int sinkCount = 1 + random.nextInt(3);
+            int junctionCount = random.nextInt(4);
+            int nodeCount = sourceCount + sinkCount + junctionCount;
+            List<SingleStringStorage> storages = new ArrayList<>();
+
+            for (int i = 0; i < sourceCount + sinkCount; i++) {
+                SingleStringStorage storage = SingleStringStorage.withFixedCapacity(50);
+                storages.add(storage);
+                assertEquals(i, i < sourceCount ? network.addSource(storage) : network.addSink(storage));
+            }
+
+            for (int i = 0; i < junctionCount; i++) {
+                network.addJunction();
+            }
+
+            // Reference capacities, including the edges from the super source (index nodeCount) and to the super sink (nodeCount + 1).
+            long[][] capacities = new long[nodeCount + 2][nodeCount + 2];
+            List<int[]> edges = new ArrayList<>();
+
+            boolean[][] connected = new boolean[nodeCount][nodeCount];
+
+            for (int i = 0; i < 3 * nodeCount; i++) {
+                int from = random.nextInt(nodeCount);
+                int to = random.nextInt(nodeCount);
+                if (from == to || connected[from][to]) continue;
+
+                long maxFlow = random.nextInt(20);
+                edges.add(new int[] { network.addEdge(from, to, maxFlow), from, to });
+                capacities[from][to] = maxFlow;
+                connected[from][to] = true;
+            }
+
+            for (int tick = 0; tick < 10; tick++) {
+                for (int i = 0; i < sourceCount; i++) {
+                    TestStorageUtil.insert(storages.get(i), LAVA, random.nextInt(30));
+                }
+
+                for (int i = sourceCount; i < sourceCount + sinkCount; i++) {
+                    TestStorageUtil.extract(storages.get(i), LAVA, random.nextInt(30));
+                }
+
+                if (random.nextBoolean() && !edges.isEmpty()) {
+                    int[] edge = edges.get(random.nextInt(edges.size()));
+                    long maxFlow = random.nextInt(20);
+                    capacities[edge[1]][edge[2]] = maxFlow;
+                    network.setMaxFlow(edge[0], maxFlow);
+                }
+
+                long before = 0;
+
+                for (int i = 0; i < sourceCount; i++) {
+                    capacities[nodeCount][i] = storages.get(i).getAmount();
+                    before += storages.get(i).getAmount();
+                }
+
+                for (int i = sourceCount; i < sourceCount + sinkCount; i++) {
+                    capacities[i][nodeCount + 1] = 50 - storages.get(i).getAmount();
+                    before += storages.get(i).getAmount();
+                }
+
+                long maxAmount = random.nextInt(4) == 0 ? random.nextInt(10) : Long.MAX_VALUE;
+                long expected = Math.min(maxAmount, maxFlow(capacities, nodeCount, nodeCount + 1));
+                assertEquals(expected, network.transfer(LAVA, maxAmount, null));
+
+                long after = 0;
+
+                for (SingleStringStorage storage : storages) {
+                    after += storage.getAmount();
+                }
+
+                assertEquals(before, after);
+
+                for (int[] edge : edges) {
+                    assertTrue(network.getFlow(edge[0]) >= 0);
+                    assertTrue(network.getFlow(edge[0]) <= capacities[edge[1]][edge[2]]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTransferNetworkSharedStorages() {
+        // One tank reachable through two pipes is added as two sinks, and each of them announces the whole space of the tank.
+        SingleStringStorage source = SingleStringStorage.withFixedCapacity(UNIT_BUCKET);
+        SingleStringStorage tank = SingleStringStorage.withFixedCapacity(60);
+        TestStorageUtil.insert(source, LAVA, 100);
+        TransferNetwork<StringVariant> network = new TransferNetwork<>();
+        int sourceNode = network.addSource(source);
+        network.addEdge(sourceNode, network.addSink(tank), 50);
+        network.addEdge(sourceNode, network.addSink(tank), 50);
+
+        assertEquals(60, network.transfer(LAVA, Long.MAX_VALUE, null));
+        assertEquals(40, source.getAmount());
+        assertEquals(60, tank.getAmount());
+
+        TestStorageUtil.extract(tank, LAVA, 30);
+        assertEquals(30, network.transfer(LAVA, Long.MAX_VALUE, null));
+        assertEquals(10, source.getAmount());
+
+        // The same with one storage added as two sources.
+        SingleStringStorage shared = SingleStringStorage.withFixedCapacity(UNIT_BUCKET);
+        SingleStringStorage target = SingleStringStorage.withFixedCapacity(UNIT_BUCKET);
+        TestStorageUtil.insert(shared, LAVA, 50);
+        TransferNetwork<StringVariant> sources = new TransferNetwork<>();
+        int targetNode = sources.addSink(target);
+        sources.addEdge(sources.addSource(shared), targetNode, 40);
+        sources.addEdge(sources.addSource(shared), targetNode, 40);
+
+        assertEquals(50, sources.transfer(LAVA, Long.MAX_VALUE, null));
+        assertTrue(shared.isResourceBlank());
+        assertEquals(50, target.getAmount());
+
+        TestStorageUtil.insert(shared, LAVA, 20);
+        assertEquals(20, sources.transfer(LAVA, Long.MAX_VALUE, null));
+        assertEquals(70, target.getAmount());
+    }
+
+    @Test
+    public void testTransferNetworkCutsFlowOfShortStorages() {
+        // A jammed machine that still announces its space, and a source that announces its contents but gives nothing.
+        SingleStringStorage jammedSink = new SingleStringStorage() {
+            @Override
+            protected long getCapacity(StringVariant variant) {
+                return 50;
+            }
+
+            @Override
+            public long insert(StringVariant insertedVariant, long maxAmount, TransactionContext transaction) {
+                return 0;
+            }
+
+            @Override
+            public long probeInsert(StringVariant insertedVariant, long maxAmount) {
+                return Math.min(maxAmount, 50);
+            }
+        };
+        SingleStringStorage jammedSource = new SingleStringStorage() {
+            @Override
+            protected long getCapacity(StringVariant variant) {
+                return 50;
+            }
+
+            @Override
+            public long extract(StringVariant extractedVariant, long maxAmount, TransactionContext transaction) {
+                return 0;
+            }
+
+            @Override
+            public long probeExtract(StringVariant extractedVariant, long maxAmount) {
+                return Math.min(maxAmount, amount);
+            }
+        };
+
+        // Two disconnected pairs: the source of the first pair can never feed the sink of the second one.
+        SingleStringStorage first = SingleStringStorage.withFixedCapacity(50);
+        SingleStringStorage second = SingleStringStorage.withFixedCapacity(50);
+        SingleStringStorage secondSink = SingleStringStorage.withFixedCapacity(50);
+        TestStorageUtil.insert(first, LAVA, 20);
+        TestStorageUtil.insert(second, LAVA, 20);
+        TransferNetwork<StringVariant> network = new TransferNetwork<>();
+        network.addEdge(network.addSource(first), network.addSink(jammedSink), 50);
+        network.addEdge(network.addSource(second), network.addSink(secondSink), 50);
+
+        assertEquals(20, network.transfer(LAVA, Long.MAX_VALUE, null));
+        assertEquals(20, first.getAmount());
+        assertEquals(0, second.getAmount());
+        assertEquals(20, secondSink.getAmount());
+
+        // The same on the source side.
+        TestStorageUtil.insert(jammedSource, LAVA, 20);
+        SingleStringStorage firstSink = SingleStringStorage.withFixedCapacity(50);
+        TransferNetwork<StringVariant> sources = new TransferNetwork<>();
+        sources.addEdge(sources.addSource(jammedSource), sources.addSink(firstSink), 50);
+        sources.addEdge(sources.addSource(first), sources.addSink(secondSink), 50);
+
+        assertEquals(20, sources.transfer(LAVA, Long.MAX_VALUE, null));
+        assertEquals(20, jammedSource.getAmount());
+        assertTrue(firstSink.isResourceBlank());
+        assertEquals(0, first.getAmount());
+        assertEquals(40, secondSink.getAmount());
+    }
+
+    @Test
+    public void testRateLimitedStorage() {
+        long[] tick = { 0 };
+        SingleStringStorage storage = SingleStringStorage.withFixedCapacity(10 * UNIT_BUCKET);
+        RateLimitedStorage<StringVariant> limited = new RateLimitedStorage<>(storage, () -> tick[0], UNIT_BUCKET, 2 * UNIT_BUCKET, UNIT_BUCKET, UNIT_BUCKET);
+
+        // The buckets start full, and insertions are capped to the tokens that are left.
+        assertEquals(2 * UNIT_BUCKET, TestStorageUtil.insert(limited, LAVA, 3 * UNIT_BUCKET));
+        assertEquals(0, TestStorageUtil.insert(limited, LAVA, UNIT_BUCKET));
+        assertEquals(0, limited.probeInsert(LAVA, UNIT_BUCKET));
+
+        // Aborted insertions refund their tokens.
+        tick[0]++;
+
+        try (Transaction transaction = Transaction.openOuter()) {
+            assertEquals(UNIT_BUCKET, TestStorageUtil.insert(limited, LAVA, 3 * UNIT_BUCKET, transaction));
+            assertEquals(0, limited.insert(LAVA, UNIT_BUCKET, transaction));
+        }
+
+        assertEquals(UNIT_BUCKET, limited.getInsertTokens());
+        assertEquals(2 * UNIT_BUCKET, storage.getAmount());
+
+        // Tokens accumulate up to the maximum.
+        tick[0] += 5;
+        assertEquals(2 * UNIT_BUCKET, limited.getInsertTokens());
+
+        // Extractions through cursors and views share the extraction bucket.
+        try (Transaction transaction = Transaction.openOuter()) {
+            try (StorageCursor<StringVariant> cursor = limited.cursor()) {
+                assertTrue(cursor.advance());
+                assertEquals(UNIT_BUCKET, cursor.probeExtract(LAVA, 2 * UNIT_BUCKET));
+                assertEquals(UNIT_BUCKET, cursor.extract(LAVA, 2 * UNIT_BUCKET, transaction));
+            }
+
+            assertEquals(0, limited.iterator().next().extract(LAVA, UNIT_BUCKET, transaction));
+            transaction.commit();
+        }
+
+        assertEquals(UNIT_BUCKET, storage.getAmount());
+        assertEquals(0, limited.getExtractTokens());
+
+        // The version changes when tokens become available, so that memoized moves are retried.
+        MoveMemoizer memoizer = new MoveMemoizer(4);
+        SingleStringStorage target = SingleStringStorage.withFixedCapacity(10 * UNIT_BUCKET);
+        Predicate<StringVariant> filter = variant -> true;
+        assertEquals(0, memoizer.move(limited, target, filter, 10 * UNIT_BUCKET, null));
+        assertEquals(0, memoizer.move(limited, target, filter, 10 * UNIT_BUCKET, null));
+        assertEquals(1, memoizer.getHits());
+
+        tick[0]++;
+        assertEquals(UNIT_BUCKET, memoizer.move(limited, target, filter, 10 * UNIT_BUCKET, null));
+        assertEquals(0, storage.getAmount());
+    }
+
+    private static long maxFlow(long[][] capacities, int source, int sink) {
+        int size = capacities.length;
+        long[][] residual = new long[size][];
+
+        for (int i = 0; i < size; i++) {
+            residual[i] = capacities[i].clone();
+        }
+
+        long total = 0;
+
+        while (true) {
+            int[] parent = new int[size];
+            Arrays.fill(parent, -1);
+            parent[source] = source;
+            ArrayDeque<Integer> queue = new ArrayDeque<>(List.of(source));
+
+            while (!queue.isEmpty() && parent[sink] < 0) {
+                int node = queue.poll();
+
+                for (int next = 0; next < size; next++) {
+                    if (parent[next] < 0 && residual[node][next] > 0) {
+                        parent[next] = node;
+                        queue.add(next);
+                    }
+                }
+            }
+
+            if (parent[sink] < 0) return total;
+
+            long pushed = Long.MAX_VALUE;
+
+            for (int node = sink; node != source; node = parent[node]) {
+                pushed = Math.min(pushed, residual[parent[node]][node]);
+            }
+
+            for (int node = sink; node != source; node = parent[node]) {
+                residual[parent[node]][node] -= pushed;
+                residual[node][parent[node]] += pushed;
+            }
+
+            total += pushed;
+        }
+    }
+
+    /**
+     * Apply the same random operations to a slotted storage and to plain {@link SingleStringStorage} slots,
+     * in nested transactions that are randomly committed or aborted, and check after every round that both have the same contents.
+     * Every slot of the storage must have a capacity of {@link #SLOT_CAPACITY}.
+     *
+     * @param stackingInsert Whether {@link Storage#insert} of the storage stacks like {@link StorageUtil#insertStacking} instead of filling slots in order.
+     * @param afterRound Additional checks after each round, passed whether the round was committed.
+     * @return The storage, for further checks.
+     */
+    private static <S extends SlottedStorage<StringVariant>> S assertMatchesPlainSlots(int slotCount, int variantCount, long seed,
+            boolean stackingInsert, IntFunction<S> factory, BiConsumer<S, Boolean> afterRound) {
+        S storage = factory.apply(slotCount);
+        List<SingleSlotStorage<StringVariant>> plain = new ArrayList<>();
+
+        for (int i = 0; i < slotCount; i++) {
+            plain.add(SingleStringStorage.withFixedCapacity(SLOT_CAPACITY));
+        }
+
+        CombinedSlottedStorage<StringVariant, SingleSlotStorage<StringVariant>> plainStorage = new CombinedSlottedStorage<>(plain);
+        StringVariant[] variants = new StringVariant[variantCount];
+
+        for (int i = 0; i < variants.length; i++) {
+            variants[i] = StringVariant.of("variant" + i);
+        }
+
+        Random random = new Random(seed);
+
+        for (int round = 0; round < 300; round++) {
+            boolean committed = false;
+
+            try (Transaction transaction = Transaction.openOuter()) {
+                for (int op = 0; op < 5; op++) {
+                    StringVariant variant = variants[random.nextInt(variants.length)];
+                    // Small and large amounts, so that storages packing amounts have to change their widths.
+                    long amount = random.nextBoolean() ? random.nextInt(4) : random.nextInt(12) * UNIT_BUCKET / 2;
+                    int slot = random.nextInt(slotCount);
+
+                    try (Transaction nested = transaction.openNested()) {
+                        switch (random.nextInt(5)) {
+                            case 0 -> assertEquals(stackingInsert ? StorageUtil.insertStacking(plain, variant, amount, nested) : plainStorage.insert(variant, amount, nested),
+                                    storage.insert(variant, amount, nested));
+                            case 1 -> assertEquals(plainStorage.extract(variant, amount, nested), storage.extract(variant, amount, nested));
+                            case 2 -> assertEquals(plain.get(slot).insert(variant, amount, nested), storage.getSlot(slot).insert(variant, amount, nested));
+                            case 3 -> assertEquals(plain.get(slot).extract(variant, amount, nested), storage.getSlot(slot).extract(variant, amount, nested));
+                            default -> assertEquals(StorageUtil.insertStacking(plain, variant, amount, nested),
+                                    StorageUtil.tryInsertStacking(storage, variant, amount, nested));
+                        }
+
+                        if (random.nextInt(4) != 0) {
+                            nested.commit();
+                        }
+                    }
+                }
+
+                if (random.nextInt(3) != 0) {
+                    transaction.commit();
+                    committed = true;
+                }
+            }
+
+            afterRound.accept(storage, committed);
+
+            for (int i = 0; i < slotCount; i++) {
+                assertEquals(plain.get(i).getResource(), storage.getSlot(i).getResource());
+                assertEquals(plain.get(i).getAmount(), storage.getSlot(i).getAmount());
+            }
+
+            // Storages that skip empty slots must list exactly the non-empty slots, in order.
+            Iterator<StorageView<StringVariant>> expectedViews = plainStorage.nonEmptyIterator();
+            Iterator<StorageView<StringVariant>> actualViews = storage.nonEmptyIterator();
+
+            while (expectedViews.hasNext()) {
+                StorageView<StringVariant> expectedView = expectedViews.next();
+                StorageView<StringVariant> actualView = actualViews.next();
+                assertEquals(expectedView.getResource(), actualView.getResource());
+                assertEquals(expectedView.getAmount(), actualView.getAmount());
+            }
+
+            assertFalse(actualViews.hasNext());
+        }
+
+        return storage;
+    }
+
+    private static long[] amounts(List<? extends StorageView<StringVariant>> views) {
+        return views.stream().mapToLong(StorageView::getAmount).toArray();
+    }
+
+    private static void assertCursorMatches(Storage<StringVariant> storage, @Nullable TransactionContext transaction) {
+        try (StorageCursor<StringVariant> cursor = storage.cursor()) {
+            for (int pass = 0; pass < 2; pass++) {
+                Iterator<StorageView<StringVariant>> iterator = storage.nonEmptyIterator();
+
+                while (iterator.hasNext()) {
+                    StorageView<StringVariant> view = iterator.next();
+                    assertTrue(cursor.advance(), storage::toString);
+                    assertEquals(view.getResource(), cursor.getResource());
+                    assertEquals(view.getAmount(), cursor.getAmount());
+                    assertEquals(view.getCapacity(), cursor.getCapacity());
+
+                    // Probes that are not unknown must match a simulated extraction.
+                    long probed = cursor.probeExtract(view.getResource(), UNIT_BUCKET / 3);
+
+                    if (probed != Storage.UNKNOWN_AMOUNT) {
+                        try (Transaction simulation = Transaction.openSimulation(transaction)) {
+                            assertEquals(cursor.extract(view.getResource(), UNIT_BUCKET / 3, simulation), probed, storage::toString);
+                        }
+                    }
+                }
+
+                assertFalse(cursor.advance(), storage::toString);
+                cursor.reset();
+            }
+        }
+    }
 }
@@ -1,7 +1,12 @@
 package dev.hytalemodding.test.transfer.unittests;
 
+import dev.hytalemodding.api.transfer.v1.storage.Storage;
 import dev.hytalemodding.api.transfer.v1.storage.StorageUtil;
+import dev.hytalemodding.api.transfer.v1.storage.base.FilteringStorage;
+import dev.hytalemodding.api.transfer.v1.storage.base.OffHeapSlottedStorage;
+import dev.hytalemodding.api.transfer.v1.transaction.Transaction;
 import dev.hytalemodding.test.transfer.unittests.utils.StringSteamBoiler;
+import dev.hytalemodding.test.transfer.unittests.utils.StringVariant;
 import dev.hytalemodding.test.transfer.unittests.utils.TestStorageUtil;
 import org.junit.jupiter.api.Test;
 
@@ -119,4 +124,80 @@ public class ComplexStorageTests {
         assertEquals(STEAM, boiler.steamTank.variant);
         assertEquals(StringSteamBoiler.STEAM_CAPACITY, boiler.steamTank.amount);
     }
+
+    @Test
+    public void testOffHeapSteamBoiler() {
+        // The same boiler, with its tanks stored as the slots of an off-heap storage.
+        StringVariant[] slotVariants = { WATER, LAVA, STEAM };
+
+        try (var tanks = new OffHeapSlottedStorage<StringVariant>(3) {
+            @Override
+            protected StringVariant getBlankVariant() {
+                return StringVariant.blank();
+            }
+
+            @Override
+            protected long getCapacity(int slot, StringVariant variant) {
+                return StringSteamBoiler.STEAM_CAPACITY;
+            }
+
+            @Override
+            protected boolean canInsert(int slot, StringVariant variant) {
+                return variant.equals(slotVariants[slot]);
+            }
+        }) {
+            Storage<StringVariant> exposedWaterTank = FilteringStorage.insertOnlyOf(tanks.getSlot(0));
+            Storage<StringVariant> exposedLavaTank = FilteringStorage.insertOnlyOf(tanks.getSlot(1));
+            Storage<StringVariant> exposedSteamTank = FilteringStorage.extractOnlyOf(tanks.getSlot(2));
+
+            assertEquals(UNIT_BUCKET, TestStorageUtil.insert(exposedWaterTank, WATER, UNIT_BUCKET));
+            assertEquals(UNIT_BUCKET, TestStorageUtil.insert(exposedLavaTank, LAVA, UNIT_BUCKET));
+            assertEquals(0L, TestStorageUtil.insert(exposedWaterTank, LAVA, UNIT_BUCKET));
+            assertEquals(0L, TestStorageUtil.extract(exposedWaterTank, WATER, UNIT_BUCKET));
+            assertEquals(0L, TestStorageUtil.insert(exposedSteamTank, STEAM, UNIT_BUCKET));
+
+            produceSteam(tanks);
+            var estimatedSteamProduced = StringSteamBoiler.WATER_CONSUMPTION * StringSteamBoiler.WATER_TO_STEAM_RATIO;
+
+            assertEquals(UNIT_BUCKET - StringSteamBoiler.WATER_CONSUMPTION, tanks.getAmount(0));
+            assertEquals(UNIT_BUCKET - StringSteamBoiler.LAVA_CONSUMPTION, tanks.getAmount(1));
+            assertEquals(STEAM, StorageUtil.findStoredResource(exposedSteamTank));
+            assertEquals(estimatedSteamProduced, tanks.getAmount(2));
+
+            assertEquals(estimatedSteamProduced, TestStorageUtil.extract(exposedSteamTank, STEAM, Long.MAX_VALUE));
+            assertNull(StorageUtil.findStoredResource(exposedSteamTank));
+
+            // Produce steam without enough lava: the transaction is aborted and no water is consumed.
+
+            tanks.set(1, LAVA, StringSteamBoiler.LAVA_CONSUMPTION - 1);
+            produceSteam(tanks);
+
+            assertEquals(UNIT_BUCKET - StringSteamBoiler.WATER_CONSUMPTION, tanks.getAmount(0));
+            assertEquals(StringSteamBoiler.LAVA_CONSUMPTION - 1, tanks.getAmount(1));
+            assertNull(StorageUtil.findStoredResource(exposedSteamTank));
+
+            // Produce steam with partial amount of water
+
+            tanks.set(0, WATER, StringSteamBoiler.WATER_CONSUMPTION / 2L);
+            tanks.set(1, LAVA, UNIT_BUCKET);
+            produceSteam(tanks);
+
+            assertNull(StorageUtil.findStoredResource(exposedWaterTank));
+            assertEquals(UNIT_BUCKET - StringSteamBoiler.LAVA_CONSUMPTION, tanks.getAmount(1));
+            assertEquals((StringSteamBoiler.WATER_CONSUMPTION / 2L) * StringSteamBoiler.WATER_TO_STEAM_RATIO, tanks.getAmount(2));
+        }
+    }
+
+    private static void produceSteam(OffHeapSlottedStorage<StringVariant> tanks) {
+        try (Transaction transaction = Transaction.openOuter()) {
+            long waterExtracted = tanks.extract(0, WATER, StringSteamBoiler.WATER_CONSUMPTION, transaction);
+            if (waterExtracted == 0) return;
+
+            long lavaExtracted = tanks.extract(1, LAVA, StringSteamBoiler.LAVA_CONSUMPTION, transaction);
+            if (lavaExtracted != StringSteamBoiler.LAVA_CONSUMPTION) return;
+
+            tanks.insert(2, STEAM, waterExtracted * StringSteamBoiler.WATER_TO_STEAM_RATIO, transaction);
+            transaction.commit();
+        }
+    }
 }
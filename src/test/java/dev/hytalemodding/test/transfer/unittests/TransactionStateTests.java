@@ -19,12 +19,30 @@
 
 package dev.hytalemodding.test.transfer.unittests;
 
+import dev.hytalemodding.api.transfer.v1.transaction.types.JournaledTransactionalList;
+import dev.hytalemodding.api.transfer.v1.transaction.types.TransactionalBitSet;
+import dev.hytalemodding.api.transfer.v1.transaction.types.TransactionalBoolean;
+import dev.hytalemodding.api.transfer.v1.transaction.types.TransactionalInt;
+import dev.hytalemodding.api.transfer.v1.transaction.types.TransactionalLong;
+import dev.hytalemodding.api.transfer.v1.transaction.types.TransactionalMap;
+import dev.hytalemodding.api.transfer.v1.transaction.types.TransactionalSet;
 import dev.hytalemodding.api.transfer.v1.transaction.types.TransactionalValue;
+import dev.hytalemodding.impl.transfer.transaction.TransactionManagerImpl;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
 import dev.hytalemodding.api.transfer.v1.transaction.Transaction;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TransactionStateTests {
     private int callbacksInvoked = 0;
@@ -258,4 +276,294 @@ class TransactionStateTests {
 
         assertEquals("World", str.getValue());
     }
+
+    @Test
+    public void testJournaledNestedTransactions() {
+        int[] finalCommits = new int[1];
+        var str = new TransactionalValue<String>("Hello") {
+            @Override
+            protected void onFinalCommit() {
+                finalCommits[0]++;
+            }
+        };
+
+        TransactionManagerImpl.MANAGERS.get().setJournaling(true);
+
+        try {
+            // Nested commit followed by an outer abort reverts to the original value.
+            try (var transaction = Transaction.openOuter()) {
+                str.assignValue("World", transaction);
+
+                try (var nestedTransaction = transaction.openNested()) {
+                    str.assignValue("Nested", nestedTransaction);
+                    nestedTransaction.commit();
+                }
+
+                assertEquals("Nested", str.getValue());
+                str.assignValue("Outer", transaction);
+            }
+
+            assertEquals("Hello", str.getValue());
+            assertEquals(0, finalCommits[0]);
+
+            // Nested abort reverts to the state at the start of the nested transaction.
+            try (var transaction = Transaction.openOuter()) {
+                str.assignValue("World", transaction);
+
+                try (var nestedTransaction = transaction.openNested()) {
+                    str.assignValue("Nested", nestedTransaction);
+                }
+
+                assertEquals("World", str.getValue());
+
+                try (var nestedTransaction = transaction.openNested()) {
+                    str.assignValue("Committed", nestedTransaction);
+                    nestedTransaction.commit();
+                }
+
+                transaction.commit();
+            }
+
+            assertEquals("Committed", str.getValue());
+            // The participant recorded several journal entries, but its final commit must only happen once.
+            assertEquals(1, finalCommits[0]);
+        } finally {
+            TransactionManagerImpl.MANAGERS.get().setJournaling(false);
+        }
+    }
+
+    @Test
+    public void testSimulations() {
+        int[] finalCommits = new int[1];
+        var longValue = new TransactionalLong(5) {
+            @Override
+            protected void onFinalCommit() {
+                finalCommits[0]++;
+            }
+        };
+
+        // An outer simulation reverts its changes, and nested transactions inside it are simulations too.
+        try (var simulation = Transaction.openSimulation(null)) {
+            assertTrue(simulation.isSimulation());
+            longValue.assignValue(10, simulation);
+
+            try (var nested = simulation.openNested()) {
+                assertTrue(nested.isSimulation());
+                longValue.assignValue(20, nested);
+                nested.commit();
+            }
+
+            assertEquals(20, longValue.getValue());
+            ensureException(simulation::commit, "A simulation should not be committable.");
+        }
+
+        assertEquals(5, longValue.getValue());
+        assertEquals(0, finalCommits[0]);
+
+        // A simulation nested in a regular transaction only reverts its own changes.
+        try (var transaction = Transaction.openOuter()) {
+            assertFalse(transaction.isSimulation());
+            longValue.assignValue(6, transaction);
+
+            try (var simulation = Transaction.openSimulation(transaction)) {
+                longValue.assignValue(30, simulation);
+            }
+
+            assertEquals(6, longValue.getValue());
+            longValue.assignValue(7, transaction);
+            transaction.commit();
+        }
+
+        assertEquals(7, longValue.getValue());
+        assertEquals(1, finalCommits[0]);
+
+        // An outer simulation cannot be opened while another transaction is open.
+        try (var transaction = Transaction.openOuter()) {
+            ensureException(() -> Transaction.openSimulation(null), "An outer simulation should not open inside a transaction.");
+            assertFalse(transaction.isSimulation());
+        }
+    }
+
+    @Test
+    public void testPrimitiveTransactionalValues() {
+        int[] finalCommits = new int[1];
+        var longValue = new TransactionalLong(5) {
+            @Override
+            protected void onFinalCommit() {
+                finalCommits[0]++;
+            }
+        };
+        var intValue = new TransactionalInt(-3);
+        var booleanValue = new TransactionalBoolean(false);
+
+        try (var transaction = Transaction.openOuter()) {
+            longValue.addValue(10, transaction);
+            intValue.assignValue(7, transaction);
+            booleanValue.assignValue(true, transaction);
+
+            try (var nestedTransaction = transaction.openNested()) {
+                longValue.assignValue(Long.MIN_VALUE, nestedTransaction);
+                intValue.addValue(-10, nestedTransaction);
+                booleanValue.assignValue(false, nestedTransaction);
+            }
+
+            assertEquals(15, longValue.getValue());
+            assertEquals(7, intValue.getValue());
+            assertEquals(true, booleanValue.getValue());
+
+            try (var nestedTransaction = transaction.openNested()) {
+                longValue.assignValue(Long.MAX_VALUE, nestedTransaction);
+                nestedTransaction.commit();
+            }
+        }
+
+        assertEquals(5, longValue.getValue());
+        assertEquals(-3, intValue.getValue());
+        assertEquals(false, booleanValue.getValue());
+        assertEquals(0, finalCommits[0]);
+
+        try (var transaction = Transaction.openOuter()) {
+            longValue.assignValue(42, transaction);
+            transaction.commit();
+        }
+
+        assertEquals(42, longValue.getValue());
+        assertEquals(1, finalCommits[0]);
+    }
+
+    @Test
+    public void testJournaledListRollback() {
+        var list = new JournaledTransactionalList<>(new ArrayList<>(List.of("a", "b", "c", "d")));
+
+        try (var transaction = Transaction.openOuter()) {
+            list.add("e", transaction);
+            list.remove(0, transaction);
+
+            try (var nestedTransaction = transaction.openNested()) {
+                list.set(1, "x", nestedTransaction);
+                list.addAll(1, List.of("y", "z"), nestedTransaction);
+                list.remove("d", nestedTransaction);
+                list.clear(nestedTransaction);
+                list.add(0, "w", nestedTransaction);
+            }
+
+            assertEquals(List.of("b", "c", "d", "e"), list.getValue());
+
+            try (var nestedTransaction = transaction.openNested()) {
+                list.retainAll(List.of("c", "e"), nestedTransaction);
+                list.addAll(List.of("f"), nestedTransaction);
+                nestedTransaction.commit();
+            }
+
+            assertEquals(List.of("c", "e", "f"), list.getValue());
+        }
+
+        assertEquals(List.of("a", "b", "c", "d"), list.getValue());
+
+        try (var transaction = Transaction.openOuter()) {
+            list.removeAll(List.of("a", "c"), transaction);
+            list.set(0, "q", transaction);
+            transaction.commit();
+        }
+
+        assertEquals(List.of("q", "d"), list.getValue());
+    }
+
+    @Test
+    public void testTransactionalMapMatchesHashMap() {
+        var map = new TransactionalMap<String, String>();
+        Map<String, String> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int round = 0; round < 20; round++) {
+            Map<String, String> before = new HashMap<>(expected);
+            boolean commit = round % 2 == 0;
+
+            try (var transaction = Transaction.openOuter()) {
+                for (int i = 0; i < 500; i++) {
+                    // "Aa" and "BB" have the same hash code, so these keys also exercise full hash collisions.
+                    String key = random.nextBoolean()
+                            ? String.valueOf(random.nextInt(200))
+                            : (random.nextBoolean() ? "Aa" : "BB") + (random.nextBoolean() ? "Aa" : "BB");
+
+                    if (random.nextInt(3) == 0) {
+                        assertEquals(expected.remove(key), map.remove(key, transaction));
+                    } else {
+                        String value = "v" + random.nextInt(10);
+                        assertEquals(expected.put(key, value), map.put(key, value, transaction));
+                    }
+                }
+
+                assertEquals(expected, map.getValue());
+                assertEquals(expected.size(), map.size());
+
+                if (commit) {
+                    transaction.commit();
+                } else {
+                    expected = before;
+                }
+            }
+
+            assertEquals(expected, map.getValue());
+        }
+    }
+
+    @Test
+    public void testTransactionalSetSnapshots() {
+        var set = new TransactionalSet<>(List.of("a", "b"));
+        Set<String> snapshot = set.getValue();
+
+        try (var transaction = Transaction.openOuter()) {
+            assertEquals(true, set.add("c", transaction));
+            assertEquals(false, set.add("a", transaction));
+
+            try (var nestedTransaction = transaction.openNested()) {
+                set.clear(nestedTransaction);
+                assertEquals(0, set.size());
+            }
+
+            assertEquals(true, set.remove("a", transaction));
+            assertEquals(Set.of("b", "c"), set.getValue());
+        }
+
+        assertEquals(Set.of("a", "b"), set.getValue());
+        // Immutable snapshots are unaffected by later changes.
+        assertEquals(Set.of("a", "b"), snapshot);
+    }
+
+    @Test
+    public void testTransactionalBitSetMatchesBitSet() {
+        int size = 200;
+        var bits = new TransactionalBitSet(size);
+        BitSet expected = new BitSet(size);
+        Random random = new Random(3);
+
+        for (int round = 0; round < 50; round++) {
+            BitSet before = (BitSet) expected.clone();
+
+            try (var transaction = Transaction.openOuter()) {
+                for (int i = 0; i < 100; i++) {
+                    int index = random.nextInt(size);
+                    boolean value = random.nextBoolean();
+                    bits.set(index, value, transaction);
+                    expected.set(index, value);
+                }
+
+                if (round % 3 != 0) {
+                    transaction.commit();
+                } else {
+                    expected = before;
+                }
+            }
+
+            for (int i = 0; i < size; i++) {
+                assertEquals(expected.get(i), bits.get(i));
+                assertEquals(expected.nextSetBit(i), bits.nextSetBit(i));
+                int nextClear = expected.nextClearBit(i);
+                assertEquals(nextClear < size ? nextClear : -1, bits.nextClearBit(i));
+            }
+
+            assertEquals(expected.cardinality(), bits.cardinality());
+        }
+    }
 }